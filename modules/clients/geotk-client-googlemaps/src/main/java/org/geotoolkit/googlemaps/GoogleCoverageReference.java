@@ -17,8 +17,10 @@
 package org.geotoolkit.googlemaps;
 
 import java.awt.Dimension;
+import java.awt.Point;
 import java.awt.geom.Point2D;
 import java.awt.image.RenderedImage;
+import java.util.Map;
 import org.geotoolkit.coverage.*;
 import org.geotoolkit.coverage.io.GridCoverageReader;
 import org.geotoolkit.googlemaps.model.GoogleMapsPyramidSet;
@@ -74,4 +76,9 @@ public class GoogleCoverageReference implements CoverageReference, PyramidalMode
         throw new DataStoreException("Model is not writeable.");
     }
 
+    @Override
+    public void writeTiles(String pyramidId, String mosaicId, Map<Point,? extends RenderedImage> tiles) throws DataStoreException {
+        throw new DataStoreException("Model is not writeable.");
+    }
+
 }
@@ -17,8 +17,10 @@
 package org.geotoolkit.osmtms;
 
 import java.awt.Dimension;
+import java.awt.Point;
 import java.awt.geom.Point2D;
 import java.awt.image.RenderedImage;
+import java.util.Map;
 import org.geotoolkit.coverage.*;
 import org.geotoolkit.coverage.io.GridCoverageReader;
 import org.geotoolkit.storage.DataStoreException;
@@ -72,5 +74,10 @@ public class OSMTMSCoverageReference implements CoverageReference, PyramidalMode
         throw new DataStoreException("Model is not writeable.");
     }
 
+    @Override
+    public void writeTiles(String pyramidId, String mosaicId, Map<Point,? extends RenderedImage> tiles) throws DataStoreException {
+        throw new DataStoreException("Model is not writeable.");
+    }
+
     
 }
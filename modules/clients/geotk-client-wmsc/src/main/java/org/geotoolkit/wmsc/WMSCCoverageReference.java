@@ -17,8 +17,10 @@
 package org.geotoolkit.wmsc;
 
 import java.awt.Dimension;
+import java.awt.Point;
 import java.awt.geom.Point2D;
 import java.awt.image.RenderedImage;
+import java.util.Map;
 import org.geotoolkit.client.CapabilitiesException;
 import org.geotoolkit.coverage.*;
 import org.geotoolkit.coverage.io.GridCoverageReader;
@@ -75,4 +77,9 @@ public class WMSCCoverageReference implements CoverageReference, PyramidalModel{
         throw new DataStoreException("Model is not writeable.");
     }
 
+    @Override
+    public void writeTiles(String pyramidId, String mosaicId, Map<Point,? extends RenderedImage> tiles) throws DataStoreException {
+        throw new DataStoreException("Model is not writeable.");
+    }
+
 }
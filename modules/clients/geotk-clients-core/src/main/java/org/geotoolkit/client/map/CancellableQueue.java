@@ -27,7 +27,7 @@ import org.geotoolkit.util.Cancellable;
  */
 public class CancellableQueue<T> extends ArrayBlockingQueue<T> implements Cancellable{
 
-    private boolean cancelled = false;
+    private volatile boolean cancelled = false;
     
     public CancellableQueue(int capacity) {
         super(capacity);
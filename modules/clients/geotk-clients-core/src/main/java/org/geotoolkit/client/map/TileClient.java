@@ -0,0 +1,490 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.client.map;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.geotoolkit.client.AbstractRequest;
+import org.geotoolkit.security.ClientSecurity;
+import org.geotoolkit.security.DefaultClientSecurity;
+import org.geotoolkit.util.ExecutorUtilities;
+import org.geotoolkit.util.logging.Logging;
+
+/**
+ * Asynchronous tile downloader shared by tiled clients.
+ *
+ * <p>
+ * Each host has its own pool of download threads, the pool size limits the
+ * number of concurrent connections to the host. Connections are kept alive
+ * and reused between tiles. Concurrent requests for the same url are
+ * coalesced in a single download.
+ * </p>
+ * <p>
+ * Downloaded tiles are stored in a {@link TileDiskCache}. Cached tiles are
+ * used until they expire, as given by the Cache-Control max-age or Expires
+ * headers, then revalidated with If-None-Match and If-Modified-Since requests.
+ * Responses marked private or no-store are never stored.
+ * </p>
+ * <p>
+ * Requests with a client security or with credential headers are neither
+ * coalesced nor cached, their tiles are only returned to their caller.
+ * </p>
+ * <p>
+ * Downloads block on their connection, the host pools do not use the shared
+ * executor of {@link ExecutorUtilities}, only its thread factory. Threads are
+ * released after 30 seconds without work, {@link #shutdown()} stops them
+ * and {@link #setDefault(TileClient)} shuts the previous shared client down.
+ * </p>
+ *
+ * @author Johann Sorel (Geomatys)
+ * @module pending
+ */
+public final class TileClient {
+
+    private static final Logger LOGGER = Logging.getLogger(TileClient.class);
+
+    /**
+     * Callback of a tile download.
+     */
+    public static interface Listener {
+
+        /**
+         * @return true if tile is not needed anymore
+         */
+        boolean isCancelled();
+
+        /**
+         * Called by a download thread when tile is available.
+         *
+         * @param data : encoded tile
+         */
+        void completed(byte[] data);
+
+        /**
+         * Called by a download thread when tile could not be obtained.
+         *
+         * @param ex : download error
+         */
+        void failed(IOException ex);
+    }
+
+    private static TileClient DEFAULT;
+
+    /**
+     * @return shared client, with a disk cache in the temporary folder.
+     */
+    public static synchronized TileClient getDefault(){
+        if(DEFAULT == null){
+            DEFAULT = new TileClient(new File(System.getProperty("java.io.tmpdir"), "geotk-tiles"), 4);
+        }
+        return DEFAULT;
+    }
+
+    /**
+     * Replace the shared client, the previous one is shut down.
+     *
+     * @param client : new shared client, null to create a default one on next use
+     */
+    public static synchronized void setDefault(final TileClient client){
+        if(DEFAULT != null && DEFAULT != client){
+            DEFAULT.shutdown();
+        }
+        DEFAULT = client;
+    }
+
+    private final TileDiskCache diskCache;
+    private final int maxConnectionsPerHost;
+    private final Map<String,ThreadPoolExecutor> hostPools = new HashMap<String, ThreadPoolExecutor>();
+    private final Map<String,Download> pending = new HashMap<String, Download>();
+    private final AtomicInteger nbWrite = new AtomicInteger();
+    private volatile long defaultExpiration = 3600000;
+    private volatile long maxDiskSize = 512L*1024*1024;
+
+    /**
+     * @param cacheFolder : disk cache folder, null for no disk cache
+     * @param maxConnectionsPerHost : maximum number of simultaneous connections to a host
+     */
+    public TileClient(final File cacheFolder, final int maxConnectionsPerHost) {
+        if(maxConnectionsPerHost <= 0){
+            throw new IllegalArgumentException("Maximum number of connections must be positive.");
+        }
+        this.diskCache = (cacheFolder == null) ? null : new TileDiskCache(cacheFolder);
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+    }
+
+    /**
+     * Stop the download threads once the pending downloads are done.
+     * New threads are created for the next downloads.
+     */
+    public void shutdown(){
+        synchronized(hostPools){
+            for(ThreadPoolExecutor pool : hostPools.values()){
+                pool.shutdown();
+            }
+            hostPools.clear();
+        }
+    }
+
+    /**
+     * @return disk cache, can be null
+     */
+    public TileDiskCache getDiskCache() {
+        return diskCache;
+    }
+
+    /**
+     * @return time in milliseconds a tile is cached when server does not
+     *         provide any expiration information
+     */
+    public long getDefaultExpiration() {
+        return defaultExpiration;
+    }
+
+    public void setDefaultExpiration(final long defaultExpiration) {
+        this.defaultExpiration = defaultExpiration;
+    }
+
+    /**
+     * @return maximum size in bytes of the disk cache content
+     */
+    public long getMaxDiskSize() {
+        return maxDiskSize;
+    }
+
+    public void setMaxDiskSize(final long maxDiskSize) {
+        this.maxDiskSize = maxDiskSize;
+    }
+
+    /**
+     * Download a tile asynchronously. If the same url is already being
+     * downloaded the listener is attached to the running download.
+     *
+     * @param url : tile url
+     * @param headers : request headers, can be null
+     * @param security : client security, can be null
+     * @param listener : download callback
+     */
+    public void download(final URL url, final Map<String,String> headers,
+            ClientSecurity security, final Listener listener){
+        if(security == null){
+            security = DefaultClientSecurity.NO_SECURITY;
+        }
+
+        if(!isShareable(headers, security)){
+            //tile may depend on the credentials, do not share it
+            final Download download = new Download(url, null, headers, security);
+            download.listeners.add(listener);
+            execute(url, download);
+            return;
+        }
+
+        final String key = url.toString();
+        synchronized(pending){
+            Download download = pending.get(key);
+            if(download != null){
+                download.listeners.add(listener);
+                return;
+            }
+            download = new Download(url, key, headers, security);
+            download.listeners.add(listener);
+            pending.put(key, download);
+            execute(url, download);
+        }
+    }
+
+    /**
+     * @return true if the response can be shared with other requests and stored
+     *         in the disk cache, false if the request carries credentials
+     */
+    private static boolean isShareable(final Map<String,String> headers, final ClientSecurity security){
+        if(security != DefaultClientSecurity.NO_SECURITY){
+            return false;
+        }
+        if(headers != null){
+            for(String name : headers.keySet()){
+                if("Authorization".equalsIgnoreCase(name) || "Cookie".equalsIgnoreCase(name)
+                        || "Proxy-Authorization".equalsIgnoreCase(name)){
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Download a tile and wait for the result.
+     *
+     * @param url : tile url
+     * @param headers : request headers, can be null
+     * @param security : client security, can be null
+     * @return encoded tile
+     * @throws IOException if tile could not be downloaded
+     */
+    public byte[] download(final URL url, final Map<String,String> headers,
+            final ClientSecurity security) throws IOException{
+        final CountDownLatch latch = new CountDownLatch(1);
+        final Object[] result = new Object[1];
+        download(url, headers, security, new Listener() {
+            @Override
+            public boolean isCancelled() {
+                return false;
+            }
+            @Override
+            public void completed(final byte[] data) {
+                result[0] = data;
+                latch.countDown();
+            }
+            @Override
+            public void failed(final IOException ex) {
+                result[0] = ex;
+                latch.countDown();
+            }
+        });
+        try {
+            latch.await();
+        } catch (InterruptedException ex) {
+            throw new IOException("Interrupted while downloading "+url, ex);
+        }
+        if(result[0] instanceof IOException){
+            throw (IOException) result[0];
+        }
+        return (byte[]) result[0];
+    }
+
+    /**
+     * Run the download with the pool of the url host.
+     */
+    private void execute(final URL url, final Download download){
+        final int port = (url.getPort() == -1) ? url.getDefaultPort() : url.getPort();
+        final String host = url.getProtocol()+"://"+url.getHost()+":"+port;
+        synchronized(hostPools){
+            ThreadPoolExecutor pool = hostPools.get(host);
+            if(pool == null){
+                //downloads block on the connections, they do not use the shared executor
+                pool = new ThreadPoolExecutor(maxConnectionsPerHost, maxConnectionsPerHost,
+                        30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                        ExecutorUtilities.newThreadFactory("Tile download "+host));
+                pool.allowCoreThreadTimeOut(true);
+                hostPools.put(host, pool);
+            }
+            pool.execute(download);
+        }
+    }
+
+    /**
+     * Download of a tile url, shared by all listeners requesting it.
+     */
+    private final class Download implements Runnable {
+
+        private final URL url;
+        /** cache key, null if the download is not shared */
+        private final String key;
+        private final Map<String,String> headers;
+        private final ClientSecurity security;
+        /** modified only while download is in the pending map */
+        private final List<Listener> listeners = new ArrayList<Listener>(1);
+
+        private Download(final URL url, final String key, final Map<String,String> headers,
+                final ClientSecurity security) {
+            this.url = url;
+            this.key = key;
+            this.headers = headers;
+            this.security = security;
+        }
+
+        @Override
+        public void run() {
+            byte[] data = null;
+            IOException error = null;
+            if(!isCancelled()){
+                try{
+                    data = fetch(url, key, headers, security);
+                }catch(IOException ex){
+                    error = ex;
+                }
+            }
+
+            final List<Listener> toNotify;
+            synchronized(pending){
+                if(key != null){
+                    pending.remove(key);
+                }
+                toNotify = listeners;
+            }
+            for(Listener listener : toNotify){
+                if(data != null){
+                    listener.completed(data);
+                }else if(error != null){
+                    listener.failed(error);
+                }else{
+                    listener.failed(new IOException("Download cancelled : "+url));
+                }
+            }
+        }
+
+        private boolean isCancelled(){
+            synchronized(pending){
+                for(Listener listener : listeners){
+                    if(!listener.isCancelled()){
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Get tile from disk cache or from the server.
+     *
+     * @param key : cache key, null to bypass the disk cache
+     */
+    private byte[] fetch(final URL url, final String key, final Map<String,String> headers,
+            final ClientSecurity security) throws IOException{
+        final long now = System.currentTimeMillis();
+        final TileDiskCache diskCache = (key == null) ? null : this.diskCache;
+        final TileDiskCache.Entry entry = (diskCache == null) ? null : diskCache.getEntry(key);
+        final byte[] cached = (entry == null) ? null : diskCache.getContent(entry);
+        if(cached != null && !entry.isExpired(now)){
+            return cached;
+        }
+
+        URLConnection cnx = url.openConnection();
+        if(headers != null){
+            for(Map.Entry<String,String> header : headers.entrySet()){
+                cnx.setRequestProperty(header.getKey(), header.getValue());
+            }
+        }
+        cnx = security.secure(cnx);
+        cnx.setReadTimeout(60000);
+
+        if(cnx instanceof HttpURLConnection){
+            final HttpURLConnection http = (HttpURLConnection) cnx;
+            if(cached != null){
+                if(entry.getETag() != null){
+                    http.setRequestProperty("If-None-Match", entry.getETag());
+                }
+                if(entry.getLastModified() != null){
+                    http.setRequestProperty("If-Modified-Since", entry.getLastModified());
+                }
+            }
+            http.setConnectTimeout(20000);
+            if(cached != null && http.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED){
+                //release the connection for reuse
+                http.getInputStream().close();
+                final Long expires = getExpiration(cnx, now);
+                if(expires != null){
+                    diskCache.refresh(key, entry, expires);
+                }
+                return cached;
+            }
+        }
+
+        final InputStream in = AbstractRequest.openRichException(cnx, security);
+        final byte[] data;
+        try{
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(cnx.getContentLength(), 1024));
+            final byte[] buffer = new byte[8192];
+            int n;
+            while((n = in.read(buffer)) >= 0){
+                out.write(buffer, 0, n);
+            }
+            data = out.toByteArray();
+        }finally{
+            in.close();
+        }
+
+        final Long expires = getExpiration(cnx, now);
+        if(diskCache != null && expires != null){
+            try{
+                diskCache.put(key, data, expires, cnx.getHeaderField("ETag"), cnx.getHeaderField("Last-Modified"));
+                if(nbWrite.incrementAndGet() % 1000 == 0){
+                    diskCache.trim(maxDiskSize);
+                }
+            }catch(IOException ex){
+                LOGGER.log(Level.FINE, ex.getMessage(), ex);
+            }
+        }
+        return data;
+    }
+
+    /**
+     * @return expiration date of the response, null if it must not be stored
+     */
+    private Long getExpiration(final URLConnection cnx, final long now){
+        return getExpiration(cnx.getHeaderField("Cache-Control"), cnx.getExpiration(), now);
+    }
+
+    /**
+     * Directives are not ordered, all of them are read before deciding :
+     * private and no-store prevail, then no-cache, then max-age.
+     *
+     * @param cacheControl : Cache-Control header value, can be null
+     * @param expires : Expires header date, 0 if undefined
+     * @param now : response date
+     * @return expiration date of the response, null if it must not be stored
+     */
+    Long getExpiration(final String cacheControl, final long expires, final long now){
+        boolean noCache = false;
+        String maxAge = null;
+        if(cacheControl != null){
+            for(String directive : cacheControl.split(",")){
+                directive = directive.trim().toLowerCase();
+                if(directive.equals("no-store") || directive.equals("private")
+                        || directive.startsWith("private=")){
+                    return null;
+                }else if(directive.equals("no-cache")){
+                    noCache = true;
+                }else if(directive.startsWith("max-age=") && maxAge == null){
+                    maxAge = directive.substring(8).trim();
+                }
+            }
+        }
+        if(noCache){
+            return 0l;
+        }
+        if(maxAge != null){
+            try{
+                return now + Long.parseLong(maxAge)*1000;
+            }catch(NumberFormatException ex){
+                //invalid max-age, expired
+                return 0l;
+            }
+        }
+        if(expires != 0){
+            return expires;
+        }
+        return now + defaultExpiration;
+    }
+
+}
@@ -0,0 +1,390 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.client.map;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Content addressed disk cache of downloaded tiles.
+ *
+ * <p>
+ * Tile bytes are stored once in the data folder, named by the SHA-1 of their
+ * content, identical tiles (empty sea or land tiles) share the same file.
+ * Each tile url has an entry file, named by the SHA-1 of the url, holding the
+ * content key, the expiration date and the HTTP validators (ETag and
+ * Last-Modified) used to revalidate the tile once expired.
+ * </p>
+ *
+ * @author Johann Sorel (Geomatys)
+ * @module pending
+ */
+public final class TileDiskCache {
+
+    private static final int VERSION = 1;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Cached tile informations.
+     */
+    public static final class Entry {
+        private final String contentKey;
+        private final long expires;
+        private final String etag;
+        private final String lastModified;
+
+        public Entry(final String contentKey, final long expires, final String etag, final String lastModified) {
+            this.contentKey = contentKey;
+            this.expires = expires;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * @return SHA-1 of tile content
+         */
+        public String getContentKey() {
+            return contentKey;
+        }
+
+        /**
+         * @return expiration date in milliseconds, 0 if tile must always be revalidated
+         */
+        public long getExpires() {
+            return expires;
+        }
+
+        /**
+         * @return ETag returned by the server, can be null
+         */
+        public String getETag() {
+            return etag;
+        }
+
+        /**
+         * @return Last-Modified header returned by the server, can be null
+         */
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * @param time : time in milliseconds
+         * @return true if entry must be revalidated at given time
+         */
+        public boolean isExpired(final long time) {
+            return time >= expires;
+        }
+    }
+
+    private final File entryFolder;
+    private final File dataFolder;
+
+    /**
+     * @param folder : cache folder, created if it does not exist
+     */
+    public TileDiskCache(final File folder) {
+        this.entryFolder = new File(folder, "entries");
+        this.dataFolder = new File(folder, "data");
+    }
+
+    /**
+     * @param url : tile url
+     * @return cached entry, null if url is not in cache
+     */
+    public Entry getEntry(final String url) {
+        final File file = entryFile(url);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            final DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try {
+                if (in.readInt() != VERSION || !url.equals(in.readUTF())) {
+                    return null;
+                }
+                final String key = in.readUTF();
+                final long expires = in.readLong();
+                final String etag = readOptional(in);
+                final String lastModified = readOptional(in);
+                return new Entry(key, expires, etag, lastModified);
+            } finally {
+                in.close();
+            }
+        } catch (IOException ex) {
+            //entry file is being written or corrupted, consider as missing
+            return null;
+        }
+    }
+
+    /**
+     * @param entry : cached entry
+     * @return tile content, null if content is no longer in cache
+     */
+    public byte[] getContent(final Entry entry) {
+        final File file = dataFile(entry.getContentKey());
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            final byte[] data = new byte[(int) file.length()];
+            final DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try {
+                in.readFully(data);
+            } finally {
+                in.close();
+            }
+            return data;
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Store tile content and its entry.
+     *
+     * @param url : tile url
+     * @param data : tile content
+     * @param expires : expiration date in milliseconds
+     * @param etag : ETag returned by the server, can be null
+     * @param lastModified : Last-Modified header returned by the server, can be null
+     * @return stored entry
+     * @throws IOException if cache could not be written
+     */
+    public Entry put(final String url, final byte[] data, final long expires,
+            final String etag, final String lastModified) throws IOException {
+        final String key = hash(data);
+        final File file = dataFile(key);
+        if (!file.isFile() || file.length() != data.length) {
+            dataFolder.mkdirs();
+            final File tmp = tempFile(file);
+            final FileOutputStream out = new FileOutputStream(tmp);
+            try {
+                out.write(data);
+            } finally {
+                out.close();
+            }
+            replace(tmp, file);
+        }
+        final Entry entry = new Entry(key, expires, etag, lastModified);
+        writeEntry(url, entry);
+        return entry;
+    }
+
+    /**
+     * Update the expiration date of a revalidated entry.
+     *
+     * @param url : tile url
+     * @param entry : previous entry
+     * @param expires : new expiration date in milliseconds
+     * @return updated entry
+     * @throws IOException if cache could not be written
+     */
+    public Entry refresh(final String url, final Entry entry, final long expires) throws IOException {
+        final Entry updated = new Entry(entry.getContentKey(), expires, entry.getETag(), entry.getLastModified());
+        writeEntry(url, updated);
+        //mark content as recently used
+        dataFile(entry.getContentKey()).setLastModified(System.currentTimeMillis());
+        return updated;
+    }
+
+    /**
+     * Delete the least recently written contents until the cache content
+     * size is under the given size. Entries referencing deleted contents
+     * are deleted too.
+     *
+     * @param maxSize : maximum content size in bytes
+     */
+    public void trim(final long maxSize) {
+        final File[] files = dataFolder.listFiles();
+        if (files == null) {
+            return;
+        }
+        long size = 0;
+        for (File f : files) {
+            size += f.length();
+        }
+        if (size <= maxSize) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(final File f1, final File f2) {
+                final long m1 = f1.lastModified();
+                final long m2 = f2.lastModified();
+                return (m1 < m2) ? -1 : ((m1 == m2) ? 0 : 1);
+            }
+        });
+        for (int i = 0; i < files.length && size > maxSize; i++) {
+            final long length = files[i].length();
+            if (files[i].delete()) {
+                size -= length;
+            }
+        }
+        deleteOrphanEntries();
+    }
+
+    /**
+     * Delete the entries which content is no longer in cache.
+     */
+    private void deleteOrphanEntries() {
+        final File[] folders = entryFolder.listFiles();
+        if (folders == null) {
+            return;
+        }
+        for (File folder : folders) {
+            final File[] entries = folder.listFiles();
+            if (entries == null) {
+                continue;
+            }
+            for (File entry : entries) {
+                if (entry.getName().endsWith(".tmp")) {
+                    //being written
+                    continue;
+                }
+                final String key = readContentKey(entry);
+                if (key == null || !dataFile(key).isFile()) {
+                    entry.delete();
+                }
+            }
+            //only deleted if empty
+            folder.delete();
+        }
+    }
+
+    /**
+     * @return content key of the entry file, null if it can not be read
+     */
+    private static String readContentKey(final File file) {
+        try {
+            final DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try {
+                if (in.readInt() != VERSION) {
+                    return null;
+                }
+                //skip url
+                in.readUTF();
+                return in.readUTF();
+            } finally {
+                in.close();
+            }
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Remove all cached tiles.
+     */
+    public void clear() {
+        delete(entryFolder);
+        delete(dataFolder);
+    }
+
+    private void writeEntry(final String url, final Entry entry) throws IOException {
+        final File file = entryFile(url);
+        file.getParentFile().mkdirs();
+        final File tmp = tempFile(file);
+        final DataOutputStream out = new DataOutputStream(new FileOutputStream(tmp));
+        try {
+            out.writeInt(VERSION);
+            out.writeUTF(url);
+            out.writeUTF(entry.getContentKey());
+            out.writeLong(entry.getExpires());
+            writeOptional(out, entry.getETag());
+            writeOptional(out, entry.getLastModified());
+        } finally {
+            out.close();
+        }
+        replace(tmp, file);
+    }
+
+    private File entryFile(final String url) {
+        final String key = hash(url.getBytes(UTF8));
+        //split entries in sub folders to avoid huge folders
+        return new File(new File(entryFolder, key.substring(0, 2)), key);
+    }
+
+    private File dataFile(final String key) {
+        return new File(dataFolder, key);
+    }
+
+    private static File tempFile(final File file) {
+        return new File(file.getPath() + '.' + Thread.currentThread().getId() + ".tmp");
+    }
+
+    private static void replace(final File tmp, final File file) throws IOException {
+        if (!tmp.renameTo(file)) {
+            file.delete();
+            if (!tmp.renameTo(file)) {
+                tmp.delete();
+                throw new IOException("Could not rename file " + tmp + " to " + file);
+            }
+        }
+    }
+
+    private static String readOptional(final DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeOptional(final DataOutputStream out, final String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static void delete(final File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * @return SHA-1 of given bytes in hexadecimal
+     */
+    static String hash(final byte[] data) {
+        final byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1").digest(data);
+        } catch (NoSuchAlgorithmException ex) {
+            //SHA-1 is available in all java platforms
+            throw new IllegalStateException(ex);
+        }
+        final char[] chars = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            chars[i * 2] = HEX[(digest[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[digest[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+}
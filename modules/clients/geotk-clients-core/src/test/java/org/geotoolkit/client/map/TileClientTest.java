@@ -0,0 +1,188 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.client.map;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for TileClient, using a local tile server.
+ *
+ * @author Johann Sorel (Geomatys)
+ * @module pending
+ */
+public class TileClientTest {
+
+    private static final byte[] TILE = new byte[]{1,2,3,4,5,6,7,8};
+
+    private final AtomicInteger nbRequest = new AtomicInteger();
+    private final AtomicInteger nbNotModified = new AtomicInteger();
+    private HttpServer server;
+    private File cacheFolder;
+    private TileClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                nbRequest.incrementAndGet();
+                try {
+                    //slow server, concurrent requests overlap
+                    Thread.sleep(200);
+                } catch (InterruptedException ex) {
+                    //continue
+                }
+                final boolean revalidate = exchange.getRequestURI().getPath().startsWith("/revalidate");
+                exchange.getResponseHeaders().set("ETag", "\"v1\"");
+                exchange.getResponseHeaders().set("Cache-Control", revalidate ? "max-age=0" : "max-age=3600");
+                if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    nbNotModified.incrementAndGet();
+                    exchange.sendResponseHeaders(304, -1);
+                } else {
+                    exchange.sendResponseHeaders(200, TILE.length);
+                    final OutputStream out = exchange.getResponseBody();
+                    out.write(TILE);
+                    out.close();
+                }
+                exchange.close();
+            }
+        });
+        server.start();
+
+        cacheFolder = File.createTempFile("tiles", "");
+        cacheFolder.delete();
+        client = new TileClient(cacheFolder, 2);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        client.shutdown();
+        client.getDiskCache().clear();
+        cacheFolder.delete();
+    }
+
+    private URL url(final String path) throws IOException {
+        return new URL("http://localhost:" + server.getAddress().getPort() + path);
+    }
+
+    @Test
+    public void testCoalescing() throws Exception {
+        final URL url = url("/tile/0/0/0.png");
+        final CountDownLatch latch = new CountDownLatch(5);
+        final AtomicInteger nbCompleted = new AtomicInteger();
+        for (int i = 0; i < 5; i++) {
+            client.download(url, null, null, new TileClient.Listener() {
+                @Override
+                public boolean isCancelled() {
+                    return false;
+                }
+                @Override
+                public void completed(final byte[] data) {
+                    assertArrayEquals(TILE, data);
+                    nbCompleted.incrementAndGet();
+                    latch.countDown();
+                }
+                @Override
+                public void failed(final IOException ex) {
+                    latch.countDown();
+                }
+            });
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals(5, nbCompleted.get());
+        assertEquals(1, nbRequest.get());
+
+        //from disk cache
+        assertArrayEquals(TILE, client.download(url, null, null));
+        assertEquals(1, nbRequest.get());
+    }
+
+    @Test
+    public void testRevalidation() throws Exception {
+        final URL url = url("/revalidate/0/0/0.png");
+        assertArrayEquals(TILE, client.download(url, null, null));
+        assertEquals(1, nbRequest.get());
+
+        //tile expired, revalidated with its ETag
+        assertArrayEquals(TILE, client.download(url, null, null));
+        assertEquals(2, nbRequest.get());
+        assertEquals(1, nbNotModified.get());
+    }
+
+    @Test
+    public void testCredentialsNotShared() throws Exception {
+        final URL url = url("/tile/1/0/0.png");
+        assertArrayEquals(TILE, client.download(url, Collections.singletonMap("Authorization", "Basic dXNlcjpwd2Q="), null));
+        assertEquals(1, nbRequest.get());
+
+        //tile was not stored, other callers download it again
+        assertArrayEquals(TILE, client.download(url, null, null));
+        assertEquals(2, nbRequest.get());
+    }
+
+    @Test
+    public void testExpiration() {
+        final long now = 1000000;
+        assertEquals(Long.valueOf(now+600000), client.getExpiration("max-age=600", 0, now));
+        assertEquals(Long.valueOf(now+600000), client.getExpiration("public, max-age=600", 5000, now));
+        assertEquals(Long.valueOf(5000), client.getExpiration(null, 5000, now));
+        assertEquals(Long.valueOf(now+client.getDefaultExpiration()), client.getExpiration(null, 0, now));
+        assertEquals(Long.valueOf(0), client.getExpiration("max-age=abc", 0, now));
+
+        //directive order does not matter
+        assertNull(client.getExpiration("max-age=600, private", 0, now));
+        assertNull(client.getExpiration("max-age=600, private=\"Set-Cookie\"", 0, now));
+        assertNull(client.getExpiration("max-age=600, no-store", 0, now));
+        assertNull(client.getExpiration("no-cache, no-store", 0, now));
+        assertNull(client.getExpiration("no-store, no-cache", 0, now));
+        assertEquals(Long.valueOf(0), client.getExpiration("max-age=600, no-cache", 0, now));
+        assertEquals(Long.valueOf(0), client.getExpiration("no-cache, max-age=600", 0, now));
+    }
+
+    @Test
+    public void testTrim() throws Exception {
+        final TileDiskCache cache = client.getDiskCache();
+        cache.put("http://localhost/a", new byte[]{1,2,3}, Long.MAX_VALUE, null, null);
+        cache.put("http://localhost/b", new byte[]{4,5,6}, Long.MAX_VALUE, null, null);
+        assertNotNull(cache.getEntry("http://localhost/a"));
+
+        //contents and their entries are deleted
+        cache.trim(0);
+        assertNull(cache.getEntry("http://localhost/a"));
+        assertNull(cache.getEntry("http://localhost/b"));
+        final File[] entries = new File(cacheFolder, "entries").listFiles();
+        assertTrue(entries == null || entries.length == 0);
+    }
+
+}
@@ -19,14 +19,27 @@ package org.geotoolkit.coverage;
 import java.awt.Dimension;
 import java.awt.Point;
 import java.awt.geom.Point2D;
+import java.awt.image.RenderedImage;
+import java.io.IOException;
 import java.util.Collection;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import org.geotoolkit.geometry.GeneralEnvelope;
 import org.geotoolkit.referencing.operation.transform.AffineTransform2D;
 import org.geotoolkit.storage.DataStoreException;
+import org.geotoolkit.util.Cancellable;
+import org.geotoolkit.util.ExecutorUtilities;
 import org.geotoolkit.util.converter.Classes;
 import org.opengis.geometry.Envelope;
 
@@ -38,6 +51,23 @@ import org.opengis.geometry.Envelope;
  */
 public abstract class AbstractGridMosaic implements GridMosaic{
     
+    private static final Logger LOGGER = Logger.getLogger(AbstractGridMosaic.class.getName());
+    
+    /**
+     * Shared pool used to load tiles, as many threads as the shared executor.
+     * Loading blocks on I/O, tiles requested from worker threads are loaded
+     * in parallel too. Threads are released after a minute without work.
+     */
+    private static final ExecutorService TILE_LOADER;
+    static {
+        final int nbThread = ExecutorUtilities.getThreadCount();
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(nbThread, nbThread, 
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), 
+                ExecutorUtilities.newThreadFactory("Tile loader"));
+        executor.allowCoreThreadTimeOut(true);
+        TILE_LOADER = executor;
+    }
+    
     private final String id = UUID.randomUUID().toString();
     private final Pyramid pyramid;
     private final Point2D upperLeft;
@@ -147,14 +177,132 @@ public abstract class AbstractGridMosaic implements GridMosaic{
         return new AffineTransform2D(scale, 0, 0, -scale, offsetX, offsetY);
     }
     
-    public static BlockingQueue<Object> getTiles(GridMosaic mosaic, Collection<? extends Point> positions, Map hints) throws DataStoreException{
-        final ArrayBlockingQueue queue = new ArrayBlockingQueue(positions.size()+1);
-        for(Point p : positions){
-            final TileReference t = mosaic.getTile(p.x, p.y, hints);
-            queue.offer(t);
+    /**
+     * Load tiles in parallel, using the default {@link TileCache}.
+     * 
+     * @see #getTiles(org.geotoolkit.coverage.GridMosaic, java.util.Collection, java.util.Map, org.geotoolkit.coverage.TileCache) 
+     */
+    public static BlockingQueue<Object> getTiles(final GridMosaic mosaic, 
+            final Collection<? extends Point> positions, final Map hints) throws DataStoreException{
+        return getTiles(mosaic, positions, hints, TileCache.getDefault());
+    }
+    
+    /**
+     * Load tiles in parallel. Tiles are decoded by a shared pool of threads
+     * and pushed in the queue as soon as they are ready, the queue order
+     * is the order in which tiles have been decoded.
+     * The returned queue is {@link Cancellable}, once cancelled the remaining
+     * tiles are not loaded and {@link GridMosaic#END_OF_QUEUE} is pushed
+     * when running tasks are finished.
+     * A tile which could not be loaded is replaced in the queue by the
+     * {@link DataStoreException} raised while reading it.
+     * 
+     * @param mosaic : mosaic to load tiles from
+     * @param positions : requested tiles positions
+     * @param hints : additional hints
+     * @param cache : decoded tiles cache, can be null
+     * @return cancellable blocking queue over the requested tiles.
+     * @throws DataStoreException 
+     */
+    public static BlockingQueue<Object> getTiles(final GridMosaic mosaic, 
+            final Collection<? extends Point> positions, final Map hints, 
+            final TileCache cache) throws DataStoreException{
+        final TileQueue queue = new TileQueue(positions.size()+1);
+        if(positions.isEmpty()){
+            queue.offer(END_OF_QUEUE);
+            return queue;
+        }
+        
+        final AtomicInteger remaining = new AtomicInteger(positions.size());
+        for(final Point p : positions){
+            TILE_LOADER.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try{
+                        if(queue.isCancelled()) return;
+                        if(cache != null){
+                            final RenderedImage image = cache.get(mosaic, p.x, p.y);
+                            if(image != null){
+                                queue.offer(new DefaultTileReference(null, image, 0, new Point(p)));
+                                return;
+                            }
+                        }
+                        final TileReference tile = mosaic.getTile(p.x, p.y, hints);
+                        if(tile == null || queue.isCancelled()) return;
+                        final TileReference decoded = decode(tile);
+                        if(cache != null && decoded != tile){
+                            cache.put(mosaic, p.x, p.y, (RenderedImage)decoded.getInput());
+                        }
+                        queue.offer(decoded);
+                    }catch(DataStoreException ex){
+                        LOGGER.log(Level.FINE, ex.getMessage(), ex);
+                        queue.offer(ex);
+                    }finally{
+                        if(remaining.decrementAndGet() == 0){
+                            queue.offer(END_OF_QUEUE);
+                        }
+                    }
+                }
+            });
         }
-        queue.offer(END_OF_QUEUE);
         return queue;
     }
     
+    /**
+     * Read the tile image in current thread.
+     * 
+     * @return tile reference with the decoded image as input, or the original
+     *         tile reference if image was already decoded or could not be read.
+     */
+    private static TileReference decode(final TileReference tile){
+        if(tile.getInput() instanceof RenderedImage){
+            return tile;
+        }
+        ImageReader reader = null;
+        try {
+            reader = tile.getImageReader();
+            final RenderedImage image = reader.read(tile.getImageIndex());
+            return new DefaultTileReference(tile.getImageReaderSpi(), image, 0, tile.getPosition());
+        } catch (IOException ex) {
+            //let the consumer handle the error when reading it again.
+            LOGGER.log(Level.FINE, ex.getMessage(), ex);
+            return tile;
+        } finally {
+            if(reader != null){
+                final Object in = reader.getInput();
+                reader.dispose();
+                if(in != tile.getInput() && in instanceof ImageInputStream){
+                    try {
+                        ((ImageInputStream)in).close();
+                    } catch (IOException ex) {
+                        LOGGER.log(Level.FINE, ex.getMessage(), ex);
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Tile queue which can be cancelled by the consumer.
+     */
+    private static final class TileQueue extends ArrayBlockingQueue<Object> implements Cancellable{
+        
+        private volatile boolean cancelled = false;
+
+        private TileQueue(int capacity) {
+            super(capacity);
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+        
+    }
+    
 }
@@ -112,6 +112,8 @@ public interface GridMosaic {
     /**
      * Retrieve a set of TileReferences.<p>
      * The end of the queue is notified by the {@link GridMosaic#END_OF_QUEUE} object.<p>
+     * A tile which could not be loaded may be replaced in the queue by the
+     * {@link DataStoreException} raised while reading it.<p>
      * The returned queue may implement Canceleable if for some reason there is no need
      * to continue iteration on the queue.
      * 
@@ -17,8 +17,10 @@
 package org.geotoolkit.coverage;
 
 import java.awt.Dimension;
+import java.awt.Point;
 import java.awt.geom.Point2D;
 import java.awt.image.RenderedImage;
+import java.util.Map;
 import org.geotoolkit.storage.DataStoreException;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
@@ -86,4 +88,17 @@ public interface PyramidalModel {
     void writeTile(String pyramidId, String mosaicId, int col, int row, 
             RenderedImage image) throws DataStoreException;
     
+    /**
+     * Write or update several tiles in the mosaic, the model may store them
+     * at once instead of one by one.
+     * Rendered images size must match mosaic tile size.
+     * 
+     * @param pyramidId : pyramid id in which to insert the tiles
+     * @param mosaicId : mosaic id in which to insert the tiles
+     * @param tiles : images to insert by tile position (column, row)
+     * @throws DataStoreException  
+     */
+    void writeTiles(String pyramidId, String mosaicId, 
+            Map<Point,? extends RenderedImage> tiles) throws DataStoreException;
+    
 }
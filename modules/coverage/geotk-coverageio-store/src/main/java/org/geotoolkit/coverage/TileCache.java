@@ -0,0 +1,302 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.coverage;
+
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.geotoolkit.util.ArgumentChecks;
+import org.geotoolkit.util.converter.Classes;
+
+/**
+ * Cache of decoded tiles, shared by mosaics.
+ * Tiles are identified by their pyramid, mosaic id and position in the mosaic.
+ * The cache holds tiles up to a given amount of memory, least recently used
+ * tiles are evicted first.
+ *
+ * @author Johann Sorel (Geomatys)
+ * @module pending
+ */
+public final class TileCache {
+
+    private static final TileCache DEFAULT = new TileCache(Runtime.getRuntime().maxMemory() / 8);
+
+    /**
+     * Tile identifier. Pyramid is compared by identity since pyramid ids
+     * are only unique in their pyramid set.
+     */
+    private static final class TileKey {
+        private final Pyramid pyramid;
+        private final String mosaicId;
+        private final int col;
+        private final int row;
+
+        private TileKey(final GridMosaic mosaic, final int col, final int row) {
+            this.pyramid = mosaic.getPyramid();
+            this.mosaicId = mosaic.getId();
+            this.col = col;
+            this.row = row;
+        }
+
+        private boolean isFrom(final GridMosaic mosaic){
+            return pyramid == mosaic.getPyramid() && mosaicId.equals(mosaic.getId());
+        }
+
+        @Override
+        public int hashCode() {
+            return ((System.identityHashCode(pyramid)*31 + mosaicId.hashCode())*31 + col)*31 + row;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if(!(obj instanceof TileKey)){
+                return false;
+            }
+            final TileKey other = (TileKey) obj;
+            return col == other.col && row == other.row
+                && pyramid == other.pyramid && mosaicId.equals(other.mosaicId);
+        }
+    }
+
+    /**
+     * Cached tile with it's memory size.
+     */
+    private static final class TileEntry {
+        private final RenderedImage image;
+        private final long size;
+
+        private TileEntry(final RenderedImage image) {
+            this.image = image;
+            this.size = getMemorySize(image);
+        }
+    }
+
+    /**
+     * Tiles in access order, eldest first.
+     */
+    private final LinkedHashMap<TileKey,TileEntry> tiles = new LinkedHashMap<TileKey, TileEntry>(16, 0.75f, true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private long maxMemory;
+    private long memory = 0;
+
+    /**
+     * @param maxMemory : maximum memory used by cached tiles, in bytes
+     */
+    public TileCache(final long maxMemory) {
+        ArgumentChecks.ensurePositive("maxMemory", maxMemory);
+        this.maxMemory = maxMemory;
+    }
+
+    /**
+     * @return cache shared by all mosaics, limited by default to 1/8 of the
+     *         maximum heap size.
+     */
+    public static TileCache getDefault(){
+        return DEFAULT;
+    }
+
+    /**
+     * Get a tile image from the cache.
+     *
+     * @param mosaic : mosaic of the tile
+     * @param col : tile column index
+     * @param row : tile row index
+     * @return cached image, or null if tile is not in the cache
+     */
+    public RenderedImage get(final GridMosaic mosaic, final int col, final int row){
+        final TileEntry entry;
+        synchronized(this){
+            entry = tiles.get(new TileKey(mosaic, col, row));
+        }
+        if(entry == null){
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.image;
+    }
+
+    /**
+     * Store a tile image in the cache, evicting least recently used tiles if
+     * the memory limit is reached. An image larger than the memory limit is
+     * not cached.
+     *
+     * @param mosaic : mosaic of the tile
+     * @param col : tile column index
+     * @param row : tile row index
+     * @param image : decoded tile image
+     */
+    public void put(final GridMosaic mosaic, final int col, final int row, final RenderedImage image){
+        ArgumentChecks.ensureNonNull("image", image);
+        final TileEntry entry = new TileEntry(image);
+        synchronized(this){
+            final TileKey key = new TileKey(mosaic, col, row);
+            if(entry.size > maxMemory){
+                remove(key);
+                return;
+            }
+            final TileEntry old = tiles.put(key, entry);
+            if(old != null){
+                memory -= old.size;
+            }
+            memory += entry.size;
+            evict();
+        }
+    }
+
+    /**
+     * Remove a tile from the cache, this method must be called when a tile
+     * is modified.
+     *
+     * @param mosaic : mosaic of the tile
+     * @param col : tile column index
+     * @param row : tile row index
+     */
+    public synchronized void remove(final GridMosaic mosaic, final int col, final int row){
+        remove(new TileKey(mosaic, col, row));
+    }
+
+    /**
+     * Remove all tiles of the given mosaic from the cache.
+     *
+     * @param mosaic : mosaic to remove tiles from
+     */
+    public synchronized void remove(final GridMosaic mosaic){
+        final Iterator<Map.Entry<TileKey,TileEntry>> ite = tiles.entrySet().iterator();
+        while(ite.hasNext()){
+            final Map.Entry<TileKey,TileEntry> entry = ite.next();
+            if(entry.getKey().isFrom(mosaic)){
+                memory -= entry.getValue().size;
+                ite.remove();
+            }
+        }
+    }
+
+    /**
+     * Remove all tiles from the cache. Counters are not reset.
+     */
+    public synchronized void clear(){
+        tiles.clear();
+        memory = 0;
+    }
+
+    private void remove(final TileKey key){
+        final TileEntry old = tiles.remove(key);
+        if(old != null){
+            memory -= old.size;
+        }
+    }
+
+    /**
+     * Remove eldest tiles until memory limit is respected.
+     */
+    private void evict(){
+        final Iterator<TileEntry> ite = tiles.values().iterator();
+        while(memory > maxMemory && ite.hasNext()){
+            memory -= ite.next().size;
+            ite.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return maximum memory used by cached tiles, in bytes
+     */
+    public synchronized long getMaxMemory() {
+        return maxMemory;
+    }
+
+    /**
+     * Change memory limit, tiles are evicted if needed.
+     *
+     * @param maxMemory : maximum memory used by cached tiles, in bytes
+     */
+    public synchronized void setMaxMemory(final long maxMemory) {
+        ArgumentChecks.ensurePositive("maxMemory", maxMemory);
+        this.maxMemory = maxMemory;
+        evict();
+    }
+
+    /**
+     * @return memory used by cached tiles, in bytes
+     */
+    public synchronized long getMemoryUsage(){
+        return memory;
+    }
+
+    /**
+     * @return number of cached tiles
+     */
+    public synchronized int size(){
+        return tiles.size();
+    }
+
+    /**
+     * @return number of requests which found the tile in the cache
+     */
+    public long getHitCount(){
+        return hits.get();
+    }
+
+    /**
+     * @return number of requests which did not found the tile in the cache
+     */
+    public long getMissCount(){
+        return misses.get();
+    }
+
+    /**
+     * @return number of tiles removed from the cache because of memory limit
+     */
+    public long getEvictionCount(){
+        return evictions.get();
+    }
+
+    /**
+     * Estimate image memory size from it's sample model.
+     *
+     * @param image
+     * @return size in bytes
+     */
+    static long getMemorySize(final RenderedImage image){
+        final SampleModel sm = image.getSampleModel();
+        long bits = 0;
+        for(int size : sm.getSampleSize()){
+            bits += size;
+        }
+        return ((long)image.getWidth() * image.getHeight() * bits + 7) / 8;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder(Classes.getShortClassName(this));
+        synchronized(this){
+            sb.append("   tiles = ").append(tiles.size());
+            sb.append("   memory = ").append(memory).append('/').append(maxMemory);
+        }
+        sb.append("   hits = ").append(getHitCount());
+        sb.append("   misses = ").append(getMissCount());
+        sb.append("   evictions = ").append(getEvictionCount());
+        return sb.toString();
+    }
+
+}
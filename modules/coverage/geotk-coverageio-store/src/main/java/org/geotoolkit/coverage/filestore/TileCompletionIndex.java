@@ -0,0 +1,495 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.coverage.filestore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Index of existing and empty tiles of a mosaic, stored in a binary file.
+ *
+ * <p>
+ * Tiles are grouped in chunks of 4096 consecutive tiles. Chunks without any tile
+ * are not stored. Consecutive chunks where all tiles exist with the same state
+ * are merged in a single range, other chunks use two bit sets.
+ * </p>
+ * <p>
+ * The file contains a snapshot of all chunks followed by a journal of tile
+ * updates, each {@link #flush()} only appends the modified tiles. The file is
+ * rewritten as a new snapshot when the journal becomes larger than the snapshot.
+ * The snapshot is written in a temporary file which replaces the index file,
+ * if the replacement is interrupted the temporary file is used when opening the index.
+ * </p>
+ *
+ * @author Johann Sorel (Geomatys)
+ * @module pending
+ */
+public final class TileCompletionIndex {
+
+    private static final int MAGIC = 0x47544349; //GTCI
+    private static final int VERSION = 2;
+
+    private static final int CHUNK_SHIFT = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_WORDS = CHUNK_SIZE / 64;
+
+    /** record types */
+    private static final byte CHUNK = 1;
+    private static final byte CHUNK_FULL = 2;
+    private static final byte CHUNK_FULL_EMPTY = 3;
+    private static final byte TILE = 4;
+    private static final byte RANGE_FULL = 5;
+    private static final byte RANGE_FULL_EMPTY = 6;
+
+    /** tile states */
+    public static final byte MISSING = 0;
+    public static final byte EXIST = 1;
+    public static final byte EXIST_EMPTY = 2;
+
+    /** size in bytes of records */
+    private static final int CHUNK_RECORD_SIZE = 1 + 8 + 2*8*CHUNK_WORDS;
+    private static final int TILE_RECORD_SIZE = 1 + 8 + 1;
+    private static final int RANGE_RECORD_SIZE = 1 + 8 + 8;
+
+    /**
+     * Bits of a chunk, shared constants are never modified.
+     */
+    private static final class Chunk {
+        private final long[] exist;
+        private final long[] empty;
+
+        private Chunk(final long[] exist, final long[] empty) {
+            this.exist = exist;
+            this.empty = empty;
+        }
+
+        private Chunk copy(){
+            return new Chunk(exist.clone(), empty.clone());
+        }
+
+        private boolean isEmpty(){
+            for(long l : exist){
+                if(l != 0) return false;
+            }
+            return true;
+        }
+    }
+
+    private static final long[] ZEROS = new long[CHUNK_WORDS];
+    private static final long[] ONES = new long[CHUNK_WORDS];
+    static {
+        Arrays.fill(ONES, -1L);
+    }
+    private static final Chunk FULL = new Chunk(ONES, ZEROS);
+    private static final Chunk FULL_EMPTY = new Chunk(ONES, ONES);
+
+    /**
+     * Consecutive chunks sharing the same constant.
+     */
+    private static final class Range {
+        private final Chunk chunk;
+        /** exclusive end chunk */
+        private long end;
+
+        private Range(final Chunk chunk, final long end) {
+            this.chunk = chunk;
+            this.end = end;
+        }
+    }
+
+    private final File file;
+    /** chunks with bit sets */
+    private final Map<Long,Chunk> chunks = new HashMap<Long, Chunk>();
+    /** ranges of FULL or FULL_EMPTY chunks, by first chunk */
+    private final TreeMap<Long,Range> ranges = new TreeMap<Long, Range>();
+    /** updates not yet written, tile index -> state */
+    private final Map<Long,Byte> pending = new HashMap<Long, Byte>();
+    private long journalSize = 0;
+    private boolean snapshotRequired = false;
+
+    /**
+     * Open the index, reading the file if it exists.
+     *
+     * @param file : index file, created on first flush if it does not exist
+     * @throws IOException if file could not be read
+     */
+    public TileCompletionIndex(final File file) throws IOException {
+        this(file, true);
+    }
+
+    /**
+     * Open the index.
+     *
+     * @param file : index file, created on first flush if it does not exist
+     * @param load : false to ignore the file content, it will be overwritten on first flush
+     * @throws IOException if file could not be read
+     */
+    public TileCompletionIndex(final File file, final boolean load) throws IOException {
+        this.file = file;
+        final File tmp = getTemporaryFile();
+        if(tmp.exists()){
+            if(file.exists()){
+                //snapshot was not complete
+                tmp.delete();
+            }else if(!tmp.renameTo(file)){
+                //snapshot was complete but not renamed
+                throw new IOException("Could not rename file "+tmp+" to "+file);
+            }
+        }
+        if(load && file.exists()){
+            read();
+        }else{
+            snapshotRequired = true;
+        }
+    }
+
+    /**
+     * @return index file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    private File getTemporaryFile() {
+        return new File(file.getPath()+".tmp");
+    }
+
+    /**
+     * @param index : tile index
+     * @return one of MISSING, EXIST or EXIST_EMPTY
+     */
+    public synchronized byte getState(final long index){
+        final Chunk chunk = getChunk(index >>> CHUNK_SHIFT);
+        if(chunk == null){
+            return MISSING;
+        }
+        final int bit = (int) (index & (CHUNK_SIZE-1));
+        final long mask = 1L << (bit & 63);
+        if((chunk.exist[bit >>> 6] & mask) == 0){
+            return MISSING;
+        }
+        return ((chunk.empty[bit >>> 6] & mask) == 0) ? EXIST : EXIST_EMPTY;
+    }
+
+    /**
+     * @param index : tile index
+     * @return true if tile exist
+     */
+    public boolean exist(final long index){
+        return getState(index) != MISSING;
+    }
+
+    /**
+     * @param index : tile index
+     * @return true if tile exist and is empty
+     */
+    public boolean isEmpty(final long index){
+        return getState(index) == EXIST_EMPTY;
+    }
+
+    /**
+     * Change a tile state. Change is written on next flush.
+     *
+     * @param index : tile index
+     * @param state : one of MISSING, EXIST or EXIST_EMPTY
+     */
+    public synchronized void setState(final long index, final byte state){
+        if(state != MISSING && state != EXIST && state != EXIST_EMPTY){
+            throw new IllegalArgumentException("Unknowned state : "+state);
+        }
+        if(apply(index, state)){
+            pending.put(index, state);
+        }
+    }
+
+    /**
+     * Change tile state in memory.
+     *
+     * @return true if state has changed
+     */
+    private boolean apply(final long index, final byte state){
+        final long key = index >>> CHUNK_SHIFT;
+        Chunk chunk = getChunk(key);
+        if(chunk == null){
+            if(state == MISSING){
+                return false;
+            }
+            chunk = new Chunk(new long[CHUNK_WORDS], new long[CHUNK_WORDS]);
+        }else if(chunk == FULL || chunk == FULL_EMPTY){
+            if((chunk == FULL && state == EXIST) || (chunk == FULL_EMPTY && state == EXIST_EMPTY)){
+                return false;
+            }
+            chunk = chunk.copy();
+        }
+
+        final int bit = (int) (index & (CHUNK_SIZE-1));
+        final int word = bit >>> 6;
+        final long mask = 1L << (bit & 63);
+        final long exist = (state == MISSING) ? chunk.exist[word] & ~mask : chunk.exist[word] | mask;
+        final long empty = (state == EXIST_EMPTY) ? chunk.empty[word] | mask : chunk.empty[word] & ~mask;
+        if(exist == chunk.exist[word] && empty == chunk.empty[word]){
+            return false;
+        }
+        chunk.exist[word] = exist;
+        chunk.empty[word] = empty;
+
+        putChunk(key, chunk);
+        return true;
+    }
+
+    /**
+     * @return chunk, null if it does not contain any tile
+     */
+    private Chunk getChunk(final long key){
+        final Chunk chunk = chunks.get(key);
+        if(chunk != null){
+            return chunk;
+        }
+        final Map.Entry<Long,Range> entry = ranges.floorEntry(key);
+        if(entry != null && key < entry.getValue().end){
+            return entry.getValue().chunk;
+        }
+        return null;
+    }
+
+    /**
+     * Store a chunk, full chunks are merged with adjacent ranges.
+     */
+    private void putChunk(final long key, Chunk chunk){
+        chunk = compact(chunk);
+        chunks.remove(key);
+        removeFromRange(key);
+        if(chunk.isEmpty()){
+            return;
+        }
+        if(chunk != FULL && chunk != FULL_EMPTY){
+            chunks.put(key, chunk);
+            return;
+        }
+
+        long end = key+1;
+        final Range after = ranges.get(end);
+        if(after != null && after.chunk == chunk){
+            ranges.remove(end);
+            end = after.end;
+        }
+        final Map.Entry<Long,Range> before = ranges.lowerEntry(key);
+        if(before != null && before.getValue().end == key && before.getValue().chunk == chunk){
+            before.getValue().end = end;
+        }else{
+            ranges.put(key, new Range(chunk, end));
+        }
+    }
+
+    /**
+     * Remove a chunk from the range which contains it, the range is split.
+     */
+    private void removeFromRange(final long key){
+        final Map.Entry<Long,Range> entry = ranges.floorEntry(key);
+        if(entry == null || key >= entry.getValue().end){
+            return;
+        }
+        final Range range = entry.getValue();
+        final long end = range.end;
+        if(entry.getKey() == key){
+            ranges.remove(key);
+        }else{
+            range.end = key;
+        }
+        if(key+1 < end){
+            ranges.put(key+1, new Range(range.chunk, end));
+        }
+    }
+
+    /**
+     * @return shared constant if chunk is full, same chunk otherwise
+     */
+    private static Chunk compact(final Chunk chunk){
+        if(chunk == FULL || chunk == FULL_EMPTY || !Arrays.equals(chunk.exist, ONES)){
+            return chunk;
+        }
+        if(Arrays.equals(chunk.empty, ZEROS)){
+            return FULL;
+        }else if(Arrays.equals(chunk.empty, ONES)){
+            return FULL_EMPTY;
+        }
+        return chunk;
+    }
+
+    /**
+     * @return true if some changes are not written
+     */
+    public synchronized boolean isModified(){
+        return snapshotRequired || !pending.isEmpty();
+    }
+
+    /**
+     * Remove all tiles.
+     */
+    public synchronized void clear(){
+        chunks.clear();
+        ranges.clear();
+        pending.clear();
+        snapshotRequired = true;
+    }
+
+    /**
+     * Write pending changes at the end of the file, or rewrite the file if
+     * the journal is too large.
+     *
+     * @throws IOException if file could not be written
+     */
+    public synchronized void flush() throws IOException{
+        if(!isModified()){
+            return;
+        }
+        final long snapshotSize = 8 + chunks.size()*(long)CHUNK_RECORD_SIZE + ranges.size()*(long)RANGE_RECORD_SIZE;
+        final long newJournalSize = journalSize + pending.size()*(long)TILE_RECORD_SIZE;
+        if(snapshotRequired || !file.exists() || newJournalSize > snapshotSize){
+            writeSnapshot();
+            return;
+        }
+
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+        try{
+            for(Map.Entry<Long,Byte> entry : pending.entrySet()){
+                out.writeByte(TILE);
+                out.writeLong(entry.getKey());
+                out.writeByte(entry.getValue());
+            }
+        }finally{
+            out.close();
+        }
+        journalSize = newJournalSize;
+        pending.clear();
+    }
+
+    /**
+     * Rewrite the complete file in a temporary file then replace it.
+     * The temporary file is only renamed once complete, if the index file
+     * must be deleted first the constructor finishes an interrupted replacement.
+     */
+    private void writeSnapshot() throws IOException{
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if(parent != null){
+            parent.mkdirs();
+        }
+        final File tmp = getTemporaryFile();
+        final FileOutputStream stream = new FileOutputStream(tmp);
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+        try{
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            for(Map.Entry<Long,Chunk> entry : chunks.entrySet()){
+                final Chunk chunk = entry.getValue();
+                out.writeByte(CHUNK);
+                out.writeLong(entry.getKey());
+                for(long l : chunk.exist) out.writeLong(l);
+                for(long l : chunk.empty) out.writeLong(l);
+            }
+            for(Map.Entry<Long,Range> entry : ranges.entrySet()){
+                final Range range = entry.getValue();
+                out.writeByte((range.chunk == FULL) ? RANGE_FULL : RANGE_FULL_EMPTY);
+                out.writeLong(entry.getKey());
+                out.writeLong(range.end);
+            }
+            out.flush();
+            stream.getFD().sync();
+        }finally{
+            out.close();
+        }
+        //rename replaces the file atomically where supported
+        if(!tmp.renameTo(file)){
+            if(file.exists() && !file.delete()){
+                throw new IOException("Could not replace file "+file);
+            }
+            if(!tmp.renameTo(file)){
+                throw new IOException("Could not rename file "+tmp+" to "+file);
+            }
+        }
+        journalSize = 0;
+        pending.clear();
+        snapshotRequired = false;
+    }
+
+    private void read() throws IOException{
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try{
+            if(in.readInt() != MAGIC){
+                throw new IOException("File "+file+" is not a tile completion index.");
+            }
+            final int version = in.readInt();
+            if(version < 1 || version > VERSION){
+                throw new IOException("Unsupported tile completion index version : "+version);
+            }
+            while(true){
+                final int type = in.read();
+                if(type < 0){
+                    break;
+                }
+                switch(type){
+                    case CHUNK : {
+                        final long key = in.readLong();
+                        final Chunk chunk = new Chunk(new long[CHUNK_WORDS], new long[CHUNK_WORDS]);
+                        for(int i=0;i<CHUNK_WORDS;i++) chunk.exist[i] = in.readLong();
+                        for(int i=0;i<CHUNK_WORDS;i++) chunk.empty[i] = in.readLong();
+                        putChunk(key, chunk);
+                        break;
+                    }
+                    case CHUNK_FULL :
+                        putChunk(in.readLong(), FULL);
+                        break;
+                    case CHUNK_FULL_EMPTY :
+                        putChunk(in.readLong(), FULL_EMPTY);
+                        break;
+                    case RANGE_FULL :
+                    case RANGE_FULL_EMPTY : {
+                        final long start = in.readLong();
+                        final long end = in.readLong();
+                        ranges.put(start, new Range((type == RANGE_FULL) ? FULL : FULL_EMPTY, end));
+                        break;
+                    }
+                    case TILE : {
+                        final long index = in.readLong();
+                        apply(index, in.readByte());
+                        journalSize += TILE_RECORD_SIZE;
+                        break;
+                    }
+                    default :
+                        throw new IOException("Corrupted tile completion index "+file+", unknowned record type "+type);
+                }
+            }
+        }catch(EOFException ex){
+            //last journal record was not fully written, ignore it and rewrite the file on next flush.
+            snapshotRequired = true;
+        }finally{
+            in.close();
+        }
+    }
+
+}
@@ -0,0 +1,397 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.coverage.filestore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import javax.imageio.stream.ImageInputStreamImpl;
+
+/**
+ * Encoded tiles of a mosaic stored in a single append only data file.
+ *
+ * <p>
+ * Tiles are appended in the data file, an index file stores for each written
+ * tile its index, offset and length in the data file. When a tile is written
+ * again the new tile is appended, last index record wins.
+ * Data and index records are buffered and written on {@link #flush()}, data
+ * is always written before the index records referencing it.
+ * </p>
+ * <p>
+ * Data file is memory mapped by blocks of 256Mb, a tile never spans over
+ * two blocks, tiles are read without any copy.
+ * </p>
+ *
+ * @author Johann Sorel (Geomatys)
+ * @module pending
+ */
+public final class TilePack {
+
+    private static final int BLOCK_SHIFT = 28;
+    private static final long BLOCK_SIZE = 1L << BLOCK_SHIFT;
+    private static final int BUFFER_SIZE = 4*1024*1024;
+    /** tile index, offset, length */
+    private static final int INDEX_RECORD_SIZE = 8 + 8 + 4;
+
+    private final File dataFile;
+    private final File indexFile;
+    private final TileOffsets offsets = new TileOffsets();
+
+    //reading
+    private RandomAccessFile dataReader;
+    private MappedByteBuffer[] blocks = new MappedByteBuffer[0];
+    private long dataLength;
+
+    //writing
+    private RandomAccessFile dataWriter;
+    private ByteBuffer dataBuffer;
+    private ByteBuffer indexBuffer;
+    private long dataEnd;
+    private long bufferStart;
+    private int nbPending = 0;
+
+    /**
+     * Open the pack, reading index file if it exists.
+     *
+     * @param dataFile : file where tiles are stored
+     * @param indexFile : file where tile offsets are stored
+     * @throws IOException if index file could not be read
+     */
+    public TilePack(final File dataFile, final File indexFile) throws IOException {
+        this.dataFile = dataFile;
+        this.indexFile = indexFile;
+        if(indexFile.exists()){
+            readIndex();
+        }
+        dataLength = dataFile.length();
+        dataEnd = dataLength;
+    }
+
+    private void readIndex() throws IOException{
+        final RandomAccessFile raf = new RandomAccessFile(indexFile, "r");
+        try{
+            final FileChannel channel = raf.getChannel();
+            //ignore last record if it was not fully written
+            final long size = channel.size() - (channel.size() % INDEX_RECORD_SIZE);
+            final ByteBuffer buffer = ByteBuffer.allocate(INDEX_RECORD_SIZE * 4096);
+            long position = 0;
+            while(position < size){
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), size - position));
+                while(buffer.hasRemaining()){
+                    if(channel.read(buffer, position + buffer.position()) < 0){
+                        throw new IOException("Unexpected end of file "+indexFile);
+                    }
+                }
+                buffer.flip();
+                while(buffer.hasRemaining()){
+                    final long index = buffer.getLong();
+                    final long offset = buffer.getLong();
+                    final int length = buffer.getInt();
+                    offsets.put(index, offset, length);
+                }
+                position += buffer.limit();
+            }
+        }finally{
+            raf.close();
+        }
+    }
+
+    /**
+     * @param index : tile index
+     * @return true if tile has been written and flushed
+     */
+    public synchronized boolean contains(final long index){
+        return offsets.getLength(index) >= 0;
+    }
+
+    /**
+     * Get encoded tile without copying it.
+     *
+     * @param index : tile index
+     * @return encoded tile, or null if tile has not been written and flushed
+     * @throws IOException if data file could not be mapped
+     */
+    public synchronized ByteBuffer read(final long index) throws IOException{
+        final int length = offsets.getLength(index);
+        if(length < 0){
+            return null;
+        }
+        final long offset = offsets.getOffset(index);
+        final int blockIndex = (int) (offset >>> BLOCK_SHIFT);
+        final int position = (int) (offset & (BLOCK_SIZE-1));
+        final MappedByteBuffer block = getBlock(blockIndex, position + length);
+        final ByteBuffer buffer = block.duplicate();
+        buffer.position(position);
+        buffer.limit(position + length);
+        return buffer.slice();
+    }
+
+    /**
+     * @return a mapped block at least of the given size.
+     */
+    private MappedByteBuffer getBlock(final int blockIndex, final int minSize) throws IOException{
+        if(blockIndex >= blocks.length){
+            blocks = Arrays.copyOf(blocks, blockIndex+1);
+        }
+        MappedByteBuffer block = blocks[blockIndex];
+        if(block == null || block.capacity() < minSize){
+            if(dataReader == null){
+                dataReader = new RandomAccessFile(dataFile, "r");
+            }
+            final long start = blockIndex * BLOCK_SIZE;
+            final long size = Math.min(BLOCK_SIZE, dataLength - start);
+            block = dataReader.getChannel().map(FileChannel.MapMode.READ_ONLY, start, size);
+            blocks[blockIndex] = block;
+        }
+        return block;
+    }
+
+    /**
+     * Append a tile, it will be visible after next flush.
+     *
+     * @param index : tile index
+     * @param data : encoded tile
+     * @throws IOException if data could not be written
+     */
+    public synchronized void write(final long index, final byte[] data) throws IOException{
+        if(data.length > BLOCK_SIZE){
+            throw new IOException("Tile too large : "+data.length+" bytes.");
+        }
+        if(dataWriter == null){
+            dataWriter = new RandomAccessFile(dataFile, "rw");
+            dataBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+            indexBuffer = ByteBuffer.allocate(INDEX_RECORD_SIZE*1024);
+            bufferStart = dataEnd;
+        }
+
+        //tile must not span over two blocks
+        final long remaining = BLOCK_SIZE - (dataEnd & (BLOCK_SIZE-1));
+        if(data.length > remaining){
+            writeData();
+            dataEnd += remaining;
+            bufferStart = dataEnd;
+        }
+
+        if(data.length > dataBuffer.remaining()){
+            writeData();
+        }
+        if(data.length > dataBuffer.remaining()){
+            //larger than buffer, write it directly
+            dataWriter.getChannel().write(ByteBuffer.wrap(data), dataEnd);
+            bufferStart = dataEnd + data.length;
+        }else{
+            dataBuffer.put(data);
+        }
+
+        if(!indexBuffer.hasRemaining()){
+            flush();
+        }
+        indexBuffer.putLong(index);
+        indexBuffer.putLong(dataEnd);
+        indexBuffer.putInt(data.length);
+        dataEnd += data.length;
+        nbPending++;
+    }
+
+    private void writeData() throws IOException{
+        dataBuffer.flip();
+        final FileChannel channel = dataWriter.getChannel();
+        long position = bufferStart;
+        while(dataBuffer.hasRemaining()){
+            position += channel.write(dataBuffer, position);
+        }
+        dataBuffer.clear();
+        bufferStart = position;
+    }
+
+    /**
+     * Write buffered tiles then their index records.
+     *
+     * @throws IOException if data could not be written
+     */
+    public synchronized void flush() throws IOException{
+        if(nbPending == 0){
+            return;
+        }
+        writeData();
+
+        //write index records after data
+        indexBuffer.flip();
+        final RandomAccessFile raf = new RandomAccessFile(indexFile, "rw");
+        try{
+            final FileChannel channel = raf.getChannel();
+            long position = channel.size() - (channel.size() % INDEX_RECORD_SIZE);
+            while(indexBuffer.hasRemaining()){
+                position += channel.write(indexBuffer, position);
+            }
+        }finally{
+            raf.close();
+        }
+
+        indexBuffer.flip();
+        while(indexBuffer.hasRemaining()){
+            final long index = indexBuffer.getLong();
+            final long offset = indexBuffer.getLong();
+            final int length = indexBuffer.getInt();
+            offsets.put(index, offset, length);
+        }
+        indexBuffer.clear();
+        nbPending = 0;
+        dataLength = dataEnd;
+    }
+
+    /**
+     * Flush pending tiles and release files.
+     *
+     * @throws IOException if data could not be written
+     */
+    public synchronized void close() throws IOException{
+        try{
+            flush();
+        }finally{
+            blocks = new MappedByteBuffer[0];
+            if(dataReader != null){
+                dataReader.close();
+                dataReader = null;
+            }
+            if(dataWriter != null){
+                dataWriter.close();
+                dataWriter = null;
+            }
+        }
+    }
+
+    /**
+     * Open addressing hash map of tile offsets and lengths.
+     */
+    private static final class TileOffsets {
+        private long[] keys = new long[1024];
+        private long[] offsets = new long[1024];
+        private int[] lengths = new int[1024];
+        private boolean[] used = new boolean[1024];
+        private int size = 0;
+
+        private int slot(final long key){
+            final int mask = keys.length-1;
+            int i = (int) ((key ^ (key >>> 32)) * 0x9E3779B9) & mask;
+            while(used[i] && keys[i] != key){
+                i = (i+1) & mask;
+            }
+            return i;
+        }
+
+        void put(final long key, final long offset, final int length){
+            int i = slot(key);
+            if(!used[i]){
+                if((size+1)*2 > keys.length){
+                    grow();
+                    i = slot(key);
+                }
+                used[i] = true;
+                keys[i] = key;
+                size++;
+            }
+            offsets[i] = offset;
+            lengths[i] = length;
+        }
+
+        /**
+         * @return length, or -1 if key is not in the map
+         */
+        int getLength(final long key){
+            final int i = slot(key);
+            return used[i] ? lengths[i] : -1;
+        }
+
+        long getOffset(final long key){
+            return offsets[slot(key)];
+        }
+
+        private void grow(){
+            final long[] oldKeys = keys;
+            final long[] oldOffsets = offsets;
+            final int[] oldLengths = lengths;
+            final boolean[] oldUsed = used;
+            final int capacity = keys.length*2;
+            keys = new long[capacity];
+            offsets = new long[capacity];
+            lengths = new int[capacity];
+            used = new boolean[capacity];
+            for(int k=0;k<oldKeys.length;k++){
+                if(oldUsed[k]){
+                    final int i = slot(oldKeys[k]);
+                    used[i] = true;
+                    keys[i] = oldKeys[k];
+                    offsets[i] = oldOffsets[k];
+                    lengths[i] = oldLengths[k];
+                }
+            }
+        }
+    }
+
+    /**
+     * Image input stream reading a byte buffer.
+     */
+    static final class ByteBufferImageInputStream extends ImageInputStreamImpl {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferImageInputStream(final ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkClosed();
+            bitOffset = 0;
+            if(streamPos >= buffer.limit()){
+                return -1;
+            }
+            return buffer.get((int) streamPos++) & 0xFF;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            checkClosed();
+            bitOffset = 0;
+            if(len == 0){
+                return 0;
+            }
+            final int remaining = buffer.limit() - (int) Math.min(streamPos, buffer.limit());
+            if(remaining <= 0){
+                return -1;
+            }
+            final int n = Math.min(len, remaining);
+            final ByteBuffer view = buffer.duplicate();
+            view.position((int) streamPos);
+            view.get(b, off, n);
+            streamPos += n;
+            return n;
+        }
+
+        @Override
+        public long length() {
+            return buffer.limit();
+        }
+    }
+
+}
@@ -43,12 +43,14 @@ public class XMLCoverageStore extends AbstractCoverageStore{
 
     private final File root;
     private final URL rootPath;
+    private final boolean packed;
     private final Map<Name,XMlCoverageReference> names = new HashMap<Name, XMlCoverageReference>();
     
     XMLCoverageStore(ParameterValueGroup params) throws URISyntaxException{
         super(Parameters.value(AbstractCoverageStoreFactory.NAMESPACE, params));
         rootPath = (URL) params.parameter(XMLCoverageStoreFactory.PATH.getName().getCode()).getValue();
         root = new File(rootPath.toURI());
+        packed = Boolean.TRUE.equals(Parameters.value(XMLCoverageStoreFactory.PACKED, params));
         explore();
     }
     
@@ -91,6 +93,13 @@ public class XMLCoverageStore extends AbstractCoverageStore{
 
     @Override
     public void dispose() {
+        for(XMlCoverageReference ref : names.values()){
+            try {
+                ref.getPyramidSet().dispose();
+            } catch (Exception ex) {
+                getLogger().log(Level.WARNING, ex.getMessage(), ex);
+            }
+        }
     }
 
     @Override
@@ -100,7 +109,7 @@ public class XMLCoverageStore extends AbstractCoverageStore{
             throw new DataStoreException("Name already used in store : " + name.getLocalPart());
         }
         
-        final XMLPyramidSet set = new XMLPyramidSet();
+        final XMLPyramidSet set = new XMLPyramidSet("image/png", packed);
         set.initialize(new File(root, name.getLocalPart()+".xml"));
         final XMlCoverageReference ref = new XMlCoverageReference(set);
         names.put(name, ref);
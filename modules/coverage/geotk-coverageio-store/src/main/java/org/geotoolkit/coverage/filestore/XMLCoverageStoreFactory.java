@@ -40,10 +40,17 @@ public class XMLCoverageStoreFactory extends AbstractCoverageStoreFactory{
      */
     public static final ParameterDescriptor<URL> PATH =
             new DefaultParameterDescriptor<URL>("path","folder path",URL.class,null,true);
+    
+    /**
+     * Optional - store tiles of created pyramids in one pack file for each 
+     * mosaic instead of one file for each tile. Existing pyramids keep their layout.
+     */
+    public static final ParameterDescriptor<Boolean> PACKED =
+            new DefaultParameterDescriptor<Boolean>("packed","store tiles in pack files",Boolean.class,Boolean.FALSE,false);
 
     public static final ParameterDescriptorGroup PARAMETERS_DESCRIPTOR =
             new DefaultParameterDescriptorGroup("XMLCoverageStoreParameters",
-                PATH,NAMESPACE);
+                PATH,NAMESPACE,PACKED);
     
     @Override
     public String getDescription() {
@@ -27,7 +27,7 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.util.BitSet;
+import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
@@ -36,14 +36,15 @@ import java.util.logging.Logger;
 import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
 import javax.imageio.ImageWriter;
-import javax.imageio.spi.ImageReaderSpi;
 import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlTransient;
 import org.geotoolkit.coverage.AbstractGridMosaic;
 import org.geotoolkit.coverage.DefaultTileReference;
 import org.geotoolkit.coverage.GridMosaic;
+import org.geotoolkit.coverage.TileCache;
 import org.geotoolkit.coverage.TileReference;
 import org.geotoolkit.geometry.GeneralEnvelope;
 import org.geotoolkit.image.io.XImageIO;
@@ -73,29 +74,50 @@ public class XMLMosaic implements GridMosaic{
     int gridHeight;
     int tileWidth;
     int tileHeight;
+    /**
+     * Old tile completion text grid, only used to read previous pyramids.
+     * Tile completion is stored in a {@link TileCompletionIndex} file, the 
+     * completion is removed once this file has been written.
+     */
     String completion;
 
     @XmlTransient
     XMLPyramid pyramid = null;
     @XmlTransient
-    BitSet tileExist;
+    TileCompletionIndex tileIndex;
     @XmlTransient
-    BitSet tileEmpty;
+    private TilePack tilePack;
     
     void initialize(XMLPyramid pyramid){
         this.pyramid = pyramid;
-        if(completion == null){
-            completion = "";
-        }
-        tileExist = new BitSet(gridWidth*gridHeight);
-        tileEmpty = new BitSet(gridWidth*gridHeight);
-        String packed = completion.replaceAll("\n", "");
-        packed = packed.replaceAll("\t", "");
-        packed = packed.replaceAll(" ", "");
-        for(int i=0,n=packed.length();i<n;i++){
-            final char c = packed.charAt(i);
-            tileExist.set(i, c!='0');
-            tileEmpty.set(i, c=='2');
+        final File indexFile = new File(getFolder(), "completion.idx");
+        try {
+            if(completion == null){
+                tileIndex = new TileCompletionIndex(indexFile);
+            }else{
+                //new mosaic or previous pyramid format
+                tileIndex = new TileCompletionIndex(indexFile, false);
+                long index = 0;
+                for(int i=0,n=completion.length();i<n;i++){
+                    final char c = completion.charAt(i);
+                    if(c=='0'){
+                        index++;
+                    }else if(c=='1'){
+                        tileIndex.setState(index++, TileCompletionIndex.EXIST);
+                    }else if(c=='2'){
+                        tileIndex.setState(index++, TileCompletionIndex.EXIST_EMPTY);
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(XMLMosaic.class.getName()).log(Level.WARNING, ex.getMessage(), ex);
+            try {
+                //consider all tiles are missing, index will be overwritten
+                tileIndex = new TileCompletionIndex(indexFile, false);
+            } catch (IOException e) {
+                //can not happen, file is not read
+                throw new IllegalStateException(e);
+            }
         }
         
         //create an empty tile
@@ -110,21 +132,21 @@ public class XMLMosaic implements GridMosaic{
         emptyTileEncoded = out.toByteArray();
     }
     
-    private void updateCompletionString(){
-        final StringBuilder sb = new StringBuilder();
-        int index = 0;
-        for(int y=0,l=getGridSize().height;y<l;y++){
-            sb.append('\n');
-            for(int x=0,n=getGridSize().width;x<n;x++){
-                char tc = !tileExist.get(index) ? '0': 
-                          !tileEmpty.get(index) ? '1': 
-                                                  '2';
-                sb.append(tc);
-                index++;
-            }
+    /**
+     * Write tile completion changes in the index file.
+     * 
+     * @return true if the old completion string has been removed and 
+     *         pyramid set definition must be saved.
+     */
+    private boolean flushCompletion() throws DataStoreException{
+        try {
+            tileIndex.flush();
+        } catch (IOException ex) {
+            throw new DataStoreException(ex.getMessage(), ex);
         }
-        sb.append('\n');
-        completion = sb.toString();
+        final boolean changed = (completion != null);
+        completion = null;
+        return changed;
     }
     
     /**
@@ -196,11 +218,11 @@ public class XMLMosaic implements GridMosaic{
 
     @Override
     public boolean isMissing(int col, int row) {
-        return !tileExist.get(getTileIndex(col, row));
+        return !tileIndex.exist(getTileIndex(col, row));
     }
     
     private boolean isEmpty(int col, int row){
-        return tileEmpty.get(getTileIndex(col, row));
+        return tileIndex.isEmpty(getTileIndex(col, row));
     }
 
     @Override
@@ -210,8 +232,19 @@ public class XMLMosaic implements GridMosaic{
         if(isEmpty(col, row)){
             tile = new DefaultTileReference(getPyramid().getPyramidSet().getReaderSpi(), 
                     new ByteArrayInputStream(emptyTileEncoded), 0, new Point(col, row));
+        }else if(isPacked()){
+            final ByteBuffer buffer;
+            try {
+                buffer = getTilePack().read(getTileIndex(col, row));
+            } catch (IOException ex) {
+                throw new DataStoreException(ex.getMessage(), ex);
+            }
+            if(buffer == null){
+                return null;
+            }
+            tile = new DefaultTileReference(getPyramid().getPyramidSet().getReaderSpi(), 
+                    new TilePack.ByteBufferImageInputStream(buffer), 0, new Point(col, row));
         }else{
-            final ImageReaderSpi spi;
             tile = new DefaultTileReference(getPyramid().getPyramidSet().getReaderSpi(), 
                     getTileFile(col, row), 0, new Point(col, row));
         }
@@ -228,41 +261,141 @@ public class XMLMosaic implements GridMosaic{
         return sb.toString();
     }
     
+    /**
+     * @return true if tiles are stored in a {@link TilePack}, one file per tile otherwise.
+     */
+    private boolean isPacked(){
+        return getPyramid().getPyramidSet().isPacked();
+    }
+    
+    /**
+     * @return pack where tiles are stored if pyramid set is packed
+     */
+    synchronized TilePack getTilePack() throws IOException{
+        if(tilePack == null){
+            tilePack = new TilePack(new File(getFolder(), "tiles.pack"), new File(getFolder(), "tiles.pidx"));
+        }
+        return tilePack;
+    }
+    
+    /**
+     * Release pack files if any.
+     */
+    synchronized void dispose() throws IOException{
+        if(tilePack != null){
+            tilePack.close();
+            tilePack = null;
+        }
+    }
+    
+    /**
+     * Create the output where to write a tile.
+     * 
+     * @param buffer : where tile is written if pyramid set is packed
+     */
+    private ImageOutputStream createTileOutput(int col, int row, ByteArrayOutputStream buffer) throws IOException, DataStoreException{
+        if(isPacked()){
+            buffer.reset();
+            getFolder().mkdirs();
+            return new MemoryCacheImageOutputStream(buffer);
+        }else{
+            final File f = getTileFile(col, row);
+            f.getParentFile().mkdirs();
+            return ImageIO.createImageOutputStream(f);
+        }
+    }
+    
+    /**
+     * Close tile output, appending tile in the pack if pyramid set is packed.
+     */
+    private void closeTileOutput(long index, ImageOutputStream out, ByteArrayOutputStream buffer) throws IOException{
+        out.close();
+        if(isPacked()){
+            getTilePack().write(index, buffer.toByteArray());
+        }
+    }
+    
     public File getTileFile(int col, int row) throws DataStoreException{
         checkPosition(col, row);
         final String postfix = getPyramid().getPyramidSet().getReaderSpi().getFileSuffixes()[0];
         return new File(getFolder(),row+"_"+col+"."+postfix);
     }
 
-    void createTile(int col, int row, RenderedImage image) throws DataStoreException {
+    /**
+     * Write a single tile.
+     * 
+     * @return true if pyramid set definition must be saved
+     */
+    boolean createTile(int col, int row, RenderedImage image) throws DataStoreException {
+        writeTile(col, row, image, new ByteArrayOutputStream());
+        return flush();
+    }
+    
+    /**
+     * Write several tiles, the pack and the completion are written once
+     * all tiles are written.
+     * 
+     * @param tiles : images by tile position
+     * @return true if pyramid set definition must be saved
+     */
+    boolean createTiles(final Map<Point,? extends RenderedImage> tiles) throws DataStoreException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        for(Map.Entry<Point,? extends RenderedImage> entry : tiles.entrySet()){
+            final Point pt = entry.getKey();
+            writeTile(pt.x, pt.y, entry.getValue(), buffer);
+        }
+        return flush();
+    }
+    
+    /**
+     * Write a tile and update its completion, without writing the pack
+     * and the completion files.
+     */
+    private void writeTile(int col, int row, RenderedImage image, ByteArrayOutputStream buffer) throws DataStoreException {
+        TileCache.getDefault().remove(this, col, row);
+        checkPosition(col, row);
         if(isEmpty(image.getData())){
-            tileExist.set(getTileIndex(col, row), true);
-            tileEmpty.set(getTileIndex(col, row), true);
-            updateCompletionString();
+            tileIndex.setState(getTileIndex(col, row), TileCompletionIndex.EXIST_EMPTY);
             return;
         }
         
-        checkPosition(col, row);
-        final File f = getTileFile(col, row);
-        f.getParentFile().mkdirs();
         try {
-            final ImageOutputStream out = ImageIO.createImageOutputStream(f);
+            final ImageOutputStream out = createTileOutput(col, row, buffer);
             final ImageWriter writer = XImageIO.getWriterByMIMEType(
                     getPyramid().getPyramidSet().getMimeType(), out, image);
             writer.setOutput(out);
             writer.write(image);
             writer.dispose();
-            tileExist.set(getTileIndex(col, row), true);
-            tileEmpty.set(getTileIndex(col, row), false);
-            updateCompletionString();
+            closeTileOutput(getTileIndex(col, row), out, buffer);
+            tileIndex.setState(getTileIndex(col, row), TileCompletionIndex.EXIST);
         } catch (IOException ex) {
             throw new DataStoreException(ex.getMessage(),ex);
         }
     }
     
+    /**
+     * Write the pack then the completion, tiles must be written before
+     * the completion marks them as existing.
+     * 
+     * @return true if pyramid set definition must be saved
+     */
+    private boolean flush() throws DataStoreException {
+        if(isPacked()){
+            try {
+                getTilePack().flush();
+            } catch (IOException ex) {
+                throw new DataStoreException(ex.getMessage(),ex);
+            }
+        }
+        return flushCompletion();
+    }
+    
     void writeTiles(final RenderedImage image, final boolean onlyMissing) throws DataStoreException{
+        TileCache.getDefault().remove(this);
         
         ImageWriter writer = null;
+        final ByteArrayOutputStream tileBuffer = new ByteArrayOutputStream();
+        boolean success = false;
         try {            
             writer = ImageIO.getImageWritersByFormatName("PNG").next();
             final boolean canWriteRaster = writer.canWriteRasters();
@@ -273,22 +406,18 @@ public class XMLMosaic implements GridMosaic{
                         continue;
                     }
                     
-                    final int tileIndex = getTileIndex(x, y);
+                    final long index = getTileIndex(x, y);
                     checkPosition(x, y);
                     
                     final Raster raster = image.getTile(x, y);
                     
                     //check if image is empty
                     if(isEmpty(raster)){
-                        tileExist.set(tileIndex, true);
-                        tileEmpty.set(tileIndex, true);
+                        tileIndex.setState(index, TileCompletionIndex.EXIST_EMPTY);
                         continue;
                     }
                     
-                    final File f = getTileFile(x, y);
-                    f.getParentFile().mkdirs();
-                    
-                    final ImageOutputStream out = ImageIO.createImageOutputStream(f);                    
+                    final ImageOutputStream out = createTileOutput(x, y, tileBuffer);
                     writer.reset();
                     writer.setOutput(out);
                     
@@ -303,21 +432,30 @@ public class XMLMosaic implements GridMosaic{
                                 (WritableRaster)raster, true, null);
                         writer.write(buffer);
                     }
+                    closeTileOutput(index, out, tileBuffer);
                     
-                    tileExist.set(tileIndex, true);
-                    tileEmpty.set(tileIndex, false);
+                    tileIndex.setState(index, TileCompletionIndex.EXIST);
                 }
             }
+            success = true;
                     
         } catch (IOException ex) {
             throw new DataStoreException(ex.getMessage(),ex);
         } finally{
-            updateCompletionString();
             if(writer != null){
                 writer.dispose();
             }
+            if(!success){
+                //keep the tiles already written, without hiding the original error
+                try {
+                    flush();
+                } catch (DataStoreException ex) {
+                    Logger.getLogger(XMLMosaic.class.getName()).log(Level.WARNING, ex.getMessage(), ex);
+                }
+            }
         }
         
+        flush();
     }
     
     private void checkPosition(int col, int row) throws DataStoreException{
@@ -326,8 +464,8 @@ public class XMLMosaic implements GridMosaic{
         }
     }
     
-    private int getTileIndex(int col, int row){
-        final int index = row*getGridSize().width + col;
+    private long getTileIndex(int col, int row){
+        final long index = (long)row*gridWidth + col;
         return index;
     }
 
@@ -63,6 +63,8 @@ public class XMLPyramidSet implements PyramidSet{
     private List<XMLPyramid> pyramids;
     @XmlElement(name="MimeType")
     private String mimeType;
+    @XmlElement(name="Packed")
+    private Boolean packed;
     
     @XmlTransient
     private String id;
@@ -76,7 +78,17 @@ public class XMLPyramidSet implements PyramidSet{
     }
     
     public XMLPyramidSet(String mimeType){
+        this(mimeType, false);
+    }
+    
+    /**
+     * @param mimeType : tiles mime type
+     * @param packed : true to store tiles in a {@link TilePack} for each mosaic,
+     *        false to store each tile in a file
+     */
+    public XMLPyramidSet(String mimeType, boolean packed){
         this.mimeType = mimeType;
+        this.packed = packed ? Boolean.TRUE : null;
     }
     
     void initialize(File mainFile){
@@ -136,6 +148,24 @@ public class XMLPyramidSet implements PyramidSet{
         return mimeType;
     }
     
+    /**
+     * @return true if tiles are stored in a {@link TilePack} for each mosaic.
+     */
+    public boolean isPacked() {
+        return Boolean.TRUE.equals(packed);
+    }
+    
+    /**
+     * Release mosaic resources.
+     */
+    void dispose() throws IOException{
+        for(XMLPyramid pyramid : pyramids()){
+            for(XMLMosaic mosaic : pyramid.mosaics()){
+                mosaic.dispose();
+            }
+        }
+    }
+    
     @Override
     public Collection<Pyramid> getPyramids() {
         return (Collection)pyramids();
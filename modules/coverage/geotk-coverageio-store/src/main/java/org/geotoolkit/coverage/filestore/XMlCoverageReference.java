@@ -17,8 +17,10 @@
 package org.geotoolkit.coverage.filestore;
 
 import java.awt.Dimension;
+import java.awt.Point;
 import java.awt.geom.Point2D;
 import java.awt.image.RenderedImage;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.xml.bind.JAXBException;
@@ -80,8 +82,9 @@ public class XMlCoverageReference implements CoverageReference, PyramidalModel{
         final XMLPyramidSet set = getPyramidSet();
         final XMLPyramid pyramid = set.getPyramid(pyramidId);
         final XMLMosaic mosaic = pyramid.getMosaic(mosaicId);
-        mosaic.createTile(col,row,image);
-        save();
+        if(mosaic.createTile(col,row,image)){
+            save();
+        }
     }
     
     /**
@@ -105,5 +108,15 @@ public class XMlCoverageReference implements CoverageReference, PyramidalModel{
         mosaic.writeTiles(image,onlyMissing);
         save();
     }
+
+    @Override
+    public void writeTiles(String pyramidId, String mosaicId, Map<Point,? extends RenderedImage> tiles) throws DataStoreException {
+        final XMLPyramidSet set = getPyramidSet();
+        final XMLPyramid pyramid = set.getPyramid(pyramidId);
+        final XMLMosaic mosaic = pyramid.getMosaic(mosaicId);
+        if(mosaic.createTiles(tiles)){
+            save();
+        }
+    }
     
 }
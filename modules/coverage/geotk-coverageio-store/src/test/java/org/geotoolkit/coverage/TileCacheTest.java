@@ -0,0 +1,79 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.coverage;
+
+import java.awt.Dimension;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.util.Map;
+import org.geotoolkit.storage.DataStoreException;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests for TileCache
+ *
+ * @author Johann Sorel (Geomatys)
+ * @module pending
+ */
+public class TileCacheTest {
+
+    private static final int TILE_MEMORY = 256*256*4;
+
+    private static GridMosaic createMosaic(){
+        return new AbstractGridMosaic(null, new Point2D.Double(), new Dimension(10, 10),
+                new Dimension(256, 256), 1) {
+            @Override
+            public TileReference getTile(int col, int row, Map hints) throws DataStoreException {
+                return null;
+            }
+        };
+    }
+
+    @Test
+    public void testEviction() {
+        final GridMosaic mosaic1 = createMosaic();
+        final GridMosaic mosaic2 = createMosaic();
+        final BufferedImage image = new BufferedImage(256, 256, BufferedImage.TYPE_INT_ARGB);
+        final TileCache cache = new TileCache(3*TILE_MEMORY);
+
+        cache.put(mosaic1, 0, 0, image);
+        cache.put(mosaic1, 1, 0, image);
+        cache.put(mosaic1, 2, 0, image);
+        assertEquals(3*TILE_MEMORY, cache.getMemoryUsage());
+        assertSame(image, cache.get(mosaic1, 0, 0));
+        assertNull(cache.get(mosaic2, 0, 0));
+
+        //tile 1,0 is the least recently used
+        cache.put(mosaic2, 0, 0, image);
+        assertEquals(1, cache.getEvictionCount());
+        assertNull(cache.get(mosaic1, 1, 0));
+        assertNotNull(cache.get(mosaic1, 0, 0));
+        assertNotNull(cache.get(mosaic1, 2, 0));
+        assertEquals(3, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+
+        cache.remove(mosaic1);
+        assertEquals(1, cache.size());
+        assertEquals(TILE_MEMORY, cache.getMemoryUsage());
+
+        cache.setMaxMemory(0);
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getMemoryUsage());
+    }
+
+}
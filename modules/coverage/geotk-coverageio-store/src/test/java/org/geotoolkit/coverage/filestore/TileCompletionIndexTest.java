@@ -0,0 +1,139 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.coverage.filestore;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests for TileCompletionIndex
+ *
+ * @author Johann Sorel (Geomatys)
+ * @module pending
+ */
+public class TileCompletionIndexTest {
+
+    @Test
+    public void testReadWrite() throws IOException {
+        final File file = File.createTempFile("completion", ".idx");
+        file.deleteOnExit();
+        file.delete();
+
+        //large grid index, beyond integer range
+        final long far = 262144L*262144L - 1;
+
+        TileCompletionIndex index = new TileCompletionIndex(file);
+        assertFalse(index.exist(0));
+        index.setState(0, TileCompletionIndex.EXIST);
+        index.setState(5, TileCompletionIndex.EXIST_EMPTY);
+        index.setState(far, TileCompletionIndex.EXIST);
+        for(int i=8192; i<8192+4096; i++){
+            index.setState(i, TileCompletionIndex.EXIST);
+        }
+        index.flush();
+        assertTrue(file.exists());
+
+        //journal update
+        index.setState(0, TileCompletionIndex.MISSING);
+        index.setState(8200, TileCompletionIndex.EXIST_EMPTY);
+        index.flush();
+
+        index = new TileCompletionIndex(file);
+        assertFalse(index.exist(0));
+        assertFalse(index.exist(1));
+        assertTrue(index.isEmpty(5));
+        assertTrue(index.exist(far));
+        assertFalse(index.isEmpty(far));
+        assertTrue(index.exist(8192));
+        assertFalse(index.isEmpty(8192));
+        assertTrue(index.isEmpty(8200));
+        assertTrue(index.exist(8192+4095));
+        assertFalse(index.exist(8192+4096));
+        assertFalse(index.isModified());
+    }
+
+    @Test
+    public void testRanges() throws IOException {
+        final File file = File.createTempFile("completion", ".idx");
+        file.deleteOnExit();
+        file.delete();
+
+        //ten full chunks merged in a single range
+        TileCompletionIndex index = new TileCompletionIndex(file);
+        for(int i=0; i<10*4096; i++){
+            index.setState(i, (i < 5*4096) ? TileCompletionIndex.EXIST : TileCompletionIndex.EXIST_EMPTY);
+        }
+        index.flush();
+        assertEquals(8 + 2*(1+8+8), file.length());
+
+        //split a range
+        index.setState(2*4096+7, TileCompletionIndex.MISSING);
+        index.flush();
+
+        index = new TileCompletionIndex(file);
+        assertTrue(index.exist(0));
+        assertTrue(index.exist(2*4096+6));
+        assertFalse(index.exist(2*4096+7));
+        assertTrue(index.exist(2*4096+8));
+        assertFalse(index.isEmpty(4*4096));
+        assertTrue(index.isEmpty(5*4096));
+        assertTrue(index.isEmpty(10*4096-1));
+        assertFalse(index.exist(10*4096));
+
+        //merge the range again
+        index.setState(2*4096+7, TileCompletionIndex.EXIST);
+        index.clear();
+        for(int i=0; i<10*4096; i++){
+            index.setState(i, TileCompletionIndex.EXIST);
+        }
+        index.flush();
+        assertEquals(8 + (1+8+8), file.length());
+    }
+
+    @Test
+    public void testInterruptedSnapshot() throws IOException {
+        final File file = File.createTempFile("completion", ".idx");
+        file.deleteOnExit();
+        file.delete();
+        final File tmp = new File(file.getPath()+".tmp");
+        tmp.deleteOnExit();
+
+        TileCompletionIndex index = new TileCompletionIndex(file);
+        index.setState(3, TileCompletionIndex.EXIST);
+        index.flush();
+        assertFalse(tmp.exists());
+
+        //snapshot written but index file deleted before rename
+        assertTrue(file.renameTo(tmp));
+        index = new TileCompletionIndex(file);
+        assertTrue(index.exist(3));
+        assertTrue(file.exists());
+        assertFalse(tmp.exists());
+
+        //incomplete snapshot is ignored
+        final FileOutputStream out = new FileOutputStream(tmp);
+        out.write(new byte[]{1,2,3});
+        out.close();
+        index = new TileCompletionIndex(file);
+        assertTrue(index.exist(3));
+        assertFalse(tmp.exists());
+    }
+
+}
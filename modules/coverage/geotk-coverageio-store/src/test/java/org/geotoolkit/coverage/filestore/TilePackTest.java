@@ -0,0 +1,78 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.coverage.filestore;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests for TilePack
+ *
+ * @author Johann Sorel (Geomatys)
+ * @module pending
+ */
+public class TilePackTest {
+
+    private static byte[] bytes(final int length, final int value){
+        final byte[] data = new byte[length];
+        for(int i=0;i<length;i++){
+            data[i] = (byte) (value+i);
+        }
+        return data;
+    }
+
+    private static void assertContent(final byte[] expected, final ByteBuffer buffer){
+        assertNotNull(buffer);
+        final byte[] actual = new byte[buffer.remaining()];
+        buffer.get(actual);
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void testReadWrite() throws IOException {
+        final File data = File.createTempFile("tiles", ".pack");
+        final File index = File.createTempFile("tiles", ".pidx");
+        data.deleteOnExit();
+        index.deleteOnExit();
+        data.delete();
+        index.delete();
+
+        TilePack pack = new TilePack(data, index);
+        pack.write(3, bytes(100, 3));
+        pack.write(7, bytes(5000, 7));
+        //not visible before flush
+        assertFalse(pack.contains(3));
+        pack.flush();
+        assertTrue(pack.contains(3));
+        assertContent(bytes(100, 3), pack.read(3));
+        assertContent(bytes(5000, 7), pack.read(7));
+
+        //rewritten tile, last record wins
+        pack.write(3, bytes(50, 9));
+        pack.close();
+
+        pack = new TilePack(data, index);
+        assertContent(bytes(50, 9), pack.read(3));
+        assertContent(bytes(5000, 7), pack.read(7));
+        assertNull(pack.read(4));
+        pack.close();
+    }
+
+}
@@ -256,15 +256,8 @@ public abstract class AbstractFeatureCollection<F extends Feature> extends Abstr
         //          otherwise the result will be illogic.
 
 
-        //wrap sort by ---------------------------------------------------------
-        //This can be really expensive, and force the us to read the full iterator.
-        //that may cause out of memory errors.
-        if(sorts != null && sorts.length != 0){
-            result = GenericSortByFeatureIterator.wrap(result, sorts);
-        }
-
         //wrap filter ----------------------------------------------------------
-        //we must keep the filter first since it impacts the start index and max feature
+        //we must keep the filter first since it impacts the sort, start index and max feature
         if(filter != null && filter != Filter.INCLUDE){
             if(filter == Filter.EXCLUDE){
                 //filter that exclude everything, use optimzed reader
@@ -274,6 +267,19 @@ public abstract class AbstractFeatureCollection<F extends Feature> extends Abstr
             }
         }
 
+        //wrap sort by ---------------------------------------------------------
+        //This can be really expensive, and force the us to read the full iterator.
+        //placed after the filter to sort only the selected features, when the
+        //number of features is known only the first ones are kept.
+        if(sorts != null && sorts.length != 0){
+            int limit = -1;
+            if(max != null){
+                final long l = ((start == null) ? 0l : start.longValue()) + max.longValue();
+                limit = (l > Integer.MAX_VALUE) ? -1 : (int) l;
+            }
+            result = GenericSortByFeatureIterator.wrap(result, sorts, limit, hints);
+        }
+
         //wrap start index -----------------------------------------------------
         if(start != null && start > 0){
             result = GenericStartIndexFeatureIterator.wrap(result, start);
@@ -17,8 +17,13 @@
 
 package org.geotoolkit.data;
 
+import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 
 import org.geotoolkit.data.query.Join;
@@ -30,27 +35,44 @@ import org.geotoolkit.data.query.Selector;
 import org.geotoolkit.data.query.Source;
 import org.geotoolkit.factory.FactoryFinder;
 import org.geotoolkit.factory.Hints;
+import org.geotoolkit.factory.HintsPending;
 import org.geotoolkit.feature.AttributeDescriptorBuilder;
 import org.geotoolkit.feature.DefaultName;
 import org.geotoolkit.feature.FeatureTypeBuilder;
 import org.geotoolkit.feature.LenientFeatureFactory;
+import org.geotoolkit.data.session.Session;
 import org.geotoolkit.storage.DataStoreException;
-import org.opengis.feature.ComplexAttribute;
 
 import org.opengis.feature.Feature;
 import org.opengis.feature.FeatureFactory;
 import org.opengis.feature.Property;
 import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.AttributeType;
 import org.opengis.feature.type.FeatureType;
 import org.opengis.feature.type.Name;
+import org.opengis.feature.type.PropertyDescriptor;
 import org.opengis.filter.Filter;
 import org.opengis.filter.FilterFactory;
 import org.opengis.filter.PropertyIsEqualTo;
 import org.opengis.filter.expression.PropertyName;
+import org.opengis.filter.sort.SortBy;
+import org.opengis.filter.sort.SortOrder;
 
 /**
  * FeatureCollection that takes it'es source from a join query.
  *
+ * <p>
+ * The join is executed with one of the following strategies :
+ * <ul>
+ *   <li>sort-merge : when both sides are sorted natively by their datastore
+ *       on numeric join properties, both sides are read once in key order.</li>
+ *   <li>hash : when join values can be compared without converters, one side
+ *       is loaded in a hash table by blocks of {@link HintsPending#JOIN_BUFFER_SIZE}
+ *       features and the other side is read once for each block.</li>
+ *   <li>nested loop : otherwise, the other side is queried for each feature.</li>
+ * </ul>
+ * </p>
+ *
  * @author Johann Sorel (Geomatys)
  * @module pending
  */
@@ -61,6 +83,17 @@ public class DefaultJoinFeatureCollection extends AbstractFeatureCollection<Feat
 
     private static final FilterFactory FF = FactoryFinder.getFilterFactory(null);
 
+    private static final int DEFAULT_BUFFER_SIZE = 100000;
+
+    /**
+     * Join execution strategies.
+     */
+    private static enum Strategy{
+        NESTED_LOOP,
+        HASH,
+        SORT_MERGE
+    }
+
     private final Query query;
     private final FeatureCollection leftCollection;
     private final FeatureCollection rightCollection;
@@ -157,22 +190,135 @@ public class DefaultJoinFeatureCollection extends AbstractFeatureCollection<Feat
     @Override
     public FeatureIterator<Feature> iterator(final Hints hints) throws DataStoreRuntimeException {
         final JoinType jt = getSource().getJoinType();
+        if(jt != JoinType.INNER && jt != JoinType.LEFT_OUTER && jt != JoinType.RIGHT_OUTER){
+            throw new IllegalArgumentException("Unknowned Join type : " + jt);
+        }
+
+        int bufferSize = DEFAULT_BUFFER_SIZE;
+        if(hints != null && hints.get(HintsPending.JOIN_BUFFER_SIZE) instanceof Integer){
+            bufferSize = (Integer) hints.get(HintsPending.JOIN_BUFFER_SIZE);
+        }
 
         try{
-            if(jt == JoinType.INNER){
+            final Strategy strategy = getStrategy();
+            if(strategy == Strategy.SORT_MERGE){
+                return new MergeJoinIterator(jt, bufferSize);
+            }else if(strategy == Strategy.HASH){
+                return new HashJoinIterator(jt, leftCollection, rightCollection, bufferSize);
+            }else if(jt == JoinType.INNER){
                 return new JoinInnerRowIterator(null);
             }else if(jt == JoinType.LEFT_OUTER){
                 return new JoinOuterRowIterator(true,null);
-            }else if(jt == JoinType.RIGHT_OUTER){
-                return new JoinOuterRowIterator(false,null);
             }else{
-                throw new IllegalArgumentException("Unknowned Join type : " + jt);
+                return new JoinOuterRowIterator(false,null);
             }
         }catch(DataStoreException ex){
             throw new DataStoreRuntimeException(ex);
         }
     }
 
+    /**
+     * Choose the join strategy.
+     * Hash and sort-merge joins compare join values with equals, they are
+     * used only when the filter would not need converters to compare values.
+     */
+    private Strategy getStrategy(){
+        final Join join = getSource();
+        final PropertyIsEqualTo condition = join.getJoinCondition();
+        if(!(condition.getExpression1() instanceof PropertyName)
+         || !(condition.getExpression2() instanceof PropertyName)){
+            return Strategy.NESTED_LOOP;
+        }
+
+        final Class leftBinding = getBinding(leftCollection.getFeatureType(),
+                (PropertyName) condition.getExpression1());
+        final Class rightBinding = getBinding(rightCollection.getFeatureType(),
+                (PropertyName) condition.getExpression2());
+        if(leftBinding == null || rightBinding == null){
+            return Strategy.NESTED_LOOP;
+        }
+
+        if(Number.class.isAssignableFrom(leftBinding) && Number.class.isAssignableFrom(rightBinding)){
+            if(isNativelySorted(join.getLeft()) && isNativelySorted(join.getRight())){
+                return Strategy.SORT_MERGE;
+            }
+            return Strategy.HASH;
+        }else if(leftBinding == rightBinding && (leftBinding == Boolean.class
+                || (leftBinding == String.class && condition.isMatchingCase()))){
+            return Strategy.HASH;
+        }
+        return Strategy.NESTED_LOOP;
+    }
+
+    private static Class getBinding(final FeatureType type, final PropertyName property){
+        final PropertyDescriptor desc = type.getDescriptor(property.getPropertyName());
+        if(desc == null || !(desc.getType() instanceof AttributeType)){
+            return null;
+        }
+        return desc.getType().getBinding();
+    }
+
+    /**
+     * @return true if source datastore can sort features without loading them.
+     */
+    private static boolean isNativelySorted(final Source source){
+        if(!(source instanceof Selector)){
+            return false;
+        }
+        final Session session = ((Selector)source).getSession();
+        return session.getDataStore().getQueryCapabilities().handleSortBy()
+            && !session.hasPendingChanges();
+    }
+
+    /**
+     * Normalize a join value. Numbers are converted to Long when they have
+     * no fraction part, to Double otherwise, making equals and hashcode
+     * consistent with the join condition.
+     */
+    private static Object toKey(final Object value){
+        if(!(value instanceof Number) || value instanceof Long){
+            return value;
+        }
+        if(value instanceof Integer || value instanceof Short || value instanceof Byte){
+            return ((Number)value).longValue();
+        }
+        if(value instanceof BigInteger && ((BigInteger)value).bitLength() < 64){
+            return ((BigInteger)value).longValue();
+        }
+        final double d = ((Number)value).doubleValue();
+        final long l = (long) d;
+        if(l == d && l != Long.MAX_VALUE && l != Long.MIN_VALUE){
+            return l;
+        }
+        return d;
+    }
+
+    /**
+     * Compare normalized numeric join values.
+     */
+    private static int compareKeys(final Object key1, final Object key2){
+        if(key1 instanceof Long && key2 instanceof Long){
+            final long l1 = (Long) key1;
+            final long l2 = (Long) key2;
+            return (l1 < l2) ? -1 : ((l1 == l2) ? 0 : 1);
+        }
+        return Double.compare(((Number)key1).doubleValue(), ((Number)key2).doubleValue());
+    }
+
+    /**
+     * Collection of the features of one side matching the filter.
+     */
+    private static FeatureCollection subCollection(final String id, final Source source,
+            final Filter filter, final PropertyName sortProperty){
+        final QueryBuilder qb = new QueryBuilder();
+        qb.setSource(source);
+        qb.setFilter(filter);
+        if(sortProperty != null){
+            qb.setSortBy(new SortBy[]{FF.sort(sortProperty.getPropertyName(), SortOrder.ASCENDING)});
+        }
+        return QueryUtilities.evaluate(id, qb.buildQuery());
+    }
+
     @Override
     public void update(final Filter filter, final Map<? extends AttributeDescriptor, ? extends Object> values) throws DataStoreException {
         if(isWritable()){
@@ -439,4 +585,355 @@ public class DefaultJoinFeatureCollection extends AbstractFeatureCollection<Feat
 
     }
 
+    /**
+     * Hash join. The build side features are loaded in a hash table by blocks
+     * and the probe side is read once for each block. The build side is the
+     * preserved side of outer joins, its unmatched features are returned
+     * after each block.
+     */
+    private class HashJoinIterator implements FeatureIterator<Feature>{
+
+        private final boolean buildLeft;
+        private final boolean outer;
+        private final FeatureCollection probeCollection;
+        private final PropertyName buildProperty;
+        private final PropertyName probeProperty;
+        private final int bufferSize;
+        private final FeatureIterator<Feature> buildIterator;
+        private final List<Feature> block = new ArrayList<Feature>();
+        private final Map<Object,List<Integer>> table = new HashMap<Object, List<Integer>>();
+        private final BitSet matched = new BitSet();
+        private final LinkedList<Feature> buffer = new LinkedList<Feature>();
+        private FeatureIterator<Feature> probeIterator;
+
+        HashJoinIterator(final JoinType jt, final FeatureCollection left,
+                final FeatureCollection right, final int bufferSize) throws DataStoreException{
+            final PropertyIsEqualTo equal = getSource().getJoinCondition();
+            this.buildLeft = (jt == JoinType.LEFT_OUTER);
+            this.outer = (jt != JoinType.INNER);
+            this.bufferSize = Math.max(1, bufferSize);
+            if(buildLeft){
+                buildProperty = (PropertyName) equal.getExpression1();
+                probeProperty = (PropertyName) equal.getExpression2();
+                probeCollection = right;
+                buildIterator = left.iterator();
+            }else{
+                buildProperty = (PropertyName) equal.getExpression2();
+                probeProperty = (PropertyName) equal.getExpression1();
+                probeCollection = left;
+                buildIterator = right.iterator();
+            }
+        }
+
+        @Override
+        public Feature next() {
+            try {
+                searchNext();
+            } catch (DataStoreException ex) {
+                throw new DataStoreRuntimeException(ex);
+            }
+            return buffer.poll();
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                searchNext();
+            } catch (DataStoreException ex) {
+                throw new DataStoreRuntimeException(ex);
+            }
+            return !buffer.isEmpty();
+        }
+
+        @Override
+        public void close() {
+            buildIterator.close();
+            if(probeIterator != null){
+                probeIterator.close();
+            }
+        }
+
+        private void searchNext() throws DataStoreException{
+            while(buffer.isEmpty()){
+                if(probeIterator != null && probeIterator.hasNext()){
+                    probe(probeIterator.next());
+                    continue;
+                }
+
+                if(probeIterator != null){
+                    //block finished
+                    probeIterator.close();
+                    probeIterator = null;
+                    if(outer){
+                        for(int i=matched.nextClearBit(0); i<block.size(); i=matched.nextClearBit(i+1)){
+                            buffer.add(combine(block.get(i), null));
+                        }
+                    }
+                    continue;
+                }
+
+                if(!loadBlock()){
+                    return;
+                }
+                probeIterator = probeCollection.iterator();
+            }
+        }
+
+        private boolean loadBlock(){
+            block.clear();
+            table.clear();
+            matched.clear();
+            while(block.size() < bufferSize && buildIterator.hasNext()){
+                final Feature feature = buildIterator.next();
+                final Object key = toKey(buildProperty.evaluate(feature));
+                List<Integer> indexes = table.get(key);
+                if(indexes == null){
+                    indexes = new ArrayList<Integer>(1);
+                    table.put(key, indexes);
+                }
+                indexes.add(block.size());
+                block.add(feature);
+            }
+            return !block.isEmpty();
+        }
+
+        private void probe(final Feature feature) throws DataStoreException{
+            final List<Integer> indexes = table.get(toKey(probeProperty.evaluate(feature)));
+            if(indexes == null){
+                return;
+            }
+            for(Integer index : indexes){
+                final Feature candidate = combine(block.get(index), feature);
+                if(query.getFilter().evaluate(candidate)){
+                    buffer.add(candidate);
+                    matched.set(index);
+                }
+            }
+        }
+
+        private Feature combine(final Feature build, final Feature probe) throws DataStoreException{
+            return buildLeft ? toFeature(build, probe) : toFeature(probe, build);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Not supported yet on join queries.");
+        }
+
+    }
+
+    /**
+     * Sort-merge join. Features with a join value are read from both sides
+     * sorted by the datastores, features of the right side sharing the same
+     * join value are kept in memory. Features without join value are joined
+     * afterwards with a hash join.
+     */
+    private class MergeJoinIterator implements FeatureIterator<Feature>{
+
+        private final JoinType jt;
+        private final int bufferSize;
+        private final PropertyName leftProperty;
+        private final PropertyName rightProperty;
+        private final FeatureIterator<Feature> leftIterator;
+        private final FeatureIterator<Feature> rightIterator;
+        private final LinkedList<Feature> buffer = new LinkedList<Feature>();
+
+        private Feature leftFeature;
+        private Object leftKey;
+        private Feature rightFeature;
+        private Object rightKey;
+
+        //right features with the current join value
+        private final List<Feature> group = new ArrayList<Feature>();
+        private final BitSet groupMatched = new BitSet();
+        private Object groupKey;
+
+        private FeatureIterator<Feature> nullIterator;
+
+        MergeJoinIterator(final JoinType jt, final int bufferSize) throws DataStoreException{
+            final Join join = getSource();
+            final PropertyIsEqualTo equal = join.getJoinCondition();
+            this.jt = jt;
+            this.bufferSize = bufferSize;
+            this.leftProperty = (PropertyName) equal.getExpression1();
+            this.rightProperty = (PropertyName) equal.getExpression2();
+            leftIterator = subCollection("left-sorted", join.getLeft(),
+                    FF.not(FF.isNull(leftProperty)), leftProperty).iterator();
+            rightIterator = subCollection("right-sorted", join.getRight(),
+                    FF.not(FF.isNull(rightProperty)), rightProperty).iterator();
+        }
+
+        @Override
+        public Feature next() {
+            try {
+                searchNext();
+            } catch (DataStoreException ex) {
+                throw new DataStoreRuntimeException(ex);
+            }
+            return buffer.poll();
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                searchNext();
+            } catch (DataStoreException ex) {
+                throw new DataStoreRuntimeException(ex);
+            }
+            return !buffer.isEmpty();
+        }
+
+        @Override
+        public void close() {
+            leftIterator.close();
+            rightIterator.close();
+            if(nullIterator != null){
+                nullIterator.close();
+            }
+        }
+
+        private void searchNext() throws DataStoreException{
+            while(buffer.isEmpty()){
+                if(nullIterator != null){
+                    if(nullIterator.hasNext()){
+                        buffer.add(nullIterator.next());
+                    }
+                    return;
+                }
+                if(!step()){
+                    final Join join = getSource();
+                    nullIterator = new HashJoinIterator(jt,
+                            subCollection("left-null", join.getLeft(), FF.isNull(leftProperty), null),
+                            subCollection("right-null", join.getRight(), FF.isNull(rightProperty), null),
+                            bufferSize);
+                }
+            }
+        }
+
+        /**
+         * Consume one feature.
+         * @return false if both sides are finished
+         */
+        private boolean step() throws DataStoreException{
+            if(leftFeature == null){
+                readLeft();
+            }
+            if(rightFeature == null){
+                readRight();
+            }
+
+            if(leftFeature == null){
+                //no more left features
+                if(flushGroup()){
+                    return true;
+                }
+                if(rightFeature != null){
+                    if(jt == JoinType.RIGHT_OUTER){
+                        buffer.add(toFeature(null, rightFeature));
+                    }
+                    rightFeature = null;
+                    return true;
+                }
+                return false;
+            }
+
+            if(groupKey != null){
+                if(compareKeys(groupKey, leftKey) == 0){
+                    joinGroup(leftFeature);
+                    leftFeature = null;
+                }else{
+                    flushGroup();
+                }
+                return true;
+            }
+
+            final int cmp = (rightFeature == null) ? 1 : compareKeys(rightKey, leftKey);
+            if(cmp < 0){
+                //right feature without left match
+                if(jt == JoinType.RIGHT_OUTER){
+                    buffer.add(toFeature(null, rightFeature));
+                }
+                rightFeature = null;
+            }else if(cmp == 0){
+                groupKey = rightKey;
+                while(rightFeature != null && compareKeys(rightKey, groupKey) == 0){
+                    group.add(rightFeature);
+                    rightFeature = null;
+                    readRight();
+                }
+            }else{
+                //left feature without right match
+                if(jt == JoinType.LEFT_OUTER){
+                    buffer.add(toFeature(leftFeature, null));
+                }
+                leftFeature = null;
+            }
+            return true;
+        }
+
+        private void joinGroup(final Feature left) throws DataStoreException{
+            boolean found = false;
+            for(int i=0,n=group.size(); i<n; i++){
+                final Feature candidate = toFeature(left, group.get(i));
+                if(query.getFilter().evaluate(candidate)){
+                    buffer.add(candidate);
+                    groupMatched.set(i);
+                    found = true;
+                }
+            }
+            if(!found && jt == JoinType.LEFT_OUTER){
+                buffer.add(toFeature(left, null));
+            }
+        }
+
+        /**
+         * Release current group, returning unmatched right features of right outer joins.
+         * @return false if there was no group
+         */
+        private boolean flushGroup() throws DataStoreException{
+            if(groupKey == null){
+                return false;
+            }
+            if(jt == JoinType.RIGHT_OUTER){
+                for(int i=groupMatched.nextClearBit(0); i<group.size(); i=groupMatched.nextClearBit(i+1)){
+                    buffer.add(toFeature(null, group.get(i)));
+                }
+            }
+            group.clear();
+            groupMatched.clear();
+            groupKey = null;
+            return true;
+        }
+
+        private void readLeft() throws DataStoreException{
+            if(leftIterator.hasNext()){
+                leftFeature = leftIterator.next();
+                leftKey = checkOrder(leftKey, toKey(leftProperty.evaluate(leftFeature)));
+            }
+        }
+
+        private void readRight() throws DataStoreException{
+            if(rightIterator.hasNext()){
+                rightFeature = rightIterator.next();
+                rightKey = checkOrder(rightKey, toKey(rightProperty.evaluate(rightFeature)));
+            }
+        }
+
+        private Object checkOrder(final Object previous, final Object key) throws DataStoreException{
+            if(!(key instanceof Number)){
+                throw new DataStoreException("Join value is not a number : " + key);
+            }
+            if(previous != null && compareKeys(previous, key) > 0){
+                throw new DataStoreException("Join source is not sorted on the join property.");
+            }
+            return key;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Not supported yet on join queries.");
+        }
+
+    }
+
 }
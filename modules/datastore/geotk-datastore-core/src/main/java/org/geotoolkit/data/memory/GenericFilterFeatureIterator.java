@@ -26,6 +26,7 @@ import org.geotoolkit.data.FeatureWriter;
 import org.geotoolkit.data.DataStoreRuntimeException;
 import org.geotoolkit.data.FeatureCollection;
 import org.geotoolkit.factory.Hints;
+import org.geotoolkit.filter.FilterUtilities;
 import org.geotoolkit.util.converter.Classes;
 
 import org.opengis.feature.Feature;
@@ -204,14 +205,27 @@ public class GenericFilterFeatureIterator<F extends Feature, R extends FeatureIt
      * Wrap a FeatureReader with a filter.
      */
     public static <T extends FeatureType, F extends Feature> FeatureReader<T,F> wrap(final FeatureReader<T,F> reader, final Filter filter){
-        return new GenericFilterFeatureReader(reader, filter);
+        return new GenericFilterFeatureReader(reader, compile(filter, reader.getFeatureType()));
     }
 
     /**
      * Wrap a FeatureWriter with a filter.
      */
     public static <T extends FeatureType, F extends Feature> FeatureWriter<T,F> wrap(final FeatureWriter<T,F> writer, final Filter filter){
-        return new GenericFilterFeatureWriter(writer, filter);
+        return new GenericFilterFeatureWriter(writer, compile(filter, writer.getFeatureType()));
+    }
+
+    /**
+     * Compile the filter for the features of the given type.
+     * The filter is used as is if it can not be compiled.
+     */
+    private static Filter compile(final Filter filter, final FeatureType type){
+        try{
+            return FilterUtilities.compile(filter, type);
+        }catch(IllegalArgumentException ex){
+            //filter can not be duplicated
+            return filter;
+        }
     }
 
     /**
@@ -0,0 +1,274 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+
+package org.geotoolkit.data.memory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.geotoolkit.data.DataStoreRuntimeException;
+import org.geotoolkit.data.FeatureReader;
+import org.geotoolkit.util.ExecutorUtilities;
+import org.geotoolkit.util.converter.Classes;
+
+import org.opengis.feature.Feature;
+import org.opengis.feature.type.FeatureType;
+
+/**
+ * Feature reader merging several readers, each one consumed by its own thread.
+ * Features are returned in no particular order.
+ *
+ * <p>
+ * The wrapped readers must return separate feature instances, since features
+ * are passed between threads by batches.
+ * When one of the readers fails, the exception is thrown by the next call
+ * to hasNext or next. Closing this reader stops the threads then closes all
+ * the wrapped readers in the calling thread : readers must be closed by the
+ * thread which opened them, some of them hold locks owned by that thread.
+ * </p>
+ * <p>
+ * Readers block when the consumer is slower than them, they run in dedicated
+ * threads built with the {@link ExecutorUtilities} thread factory rather than
+ * in the shared executor. Work already running in parallel is not split
+ * again : from a worker thread, all readers are read by a single thread.
+ * </p>
+ *
+ * @author Johann Sorel (Geomatys)
+ * @module pending
+ */
+public class GenericParallelFeatureIterator<T extends FeatureType, F extends Feature>
+        implements FeatureReader<T,F> {
+
+    /**
+     * Number of features passed at once between the threads.
+     */
+    private static final int BATCH_SIZE = 256;
+
+    /**
+     * Marker put in the queue when a reader is finished.
+     */
+    private static final List END = new ArrayList(0);
+
+    private final List<? extends FeatureReader<T,F>> readers;
+    private final BlockingQueue<List<F>> queue;
+    private final ThreadPoolExecutor pool;
+    private final AtomicReference<RuntimeException> error = new AtomicReference<RuntimeException>();
+    private volatile boolean closed = false;
+
+    private List<F> current = null;
+    private int index = 0;
+    private int finished = 0;
+
+    private GenericParallelFeatureIterator(final List<? extends FeatureReader<T,F>> readers, int nbThread) {
+        this.readers = readers;
+        //work already running in parallel is not split again
+        if (ExecutorUtilities.isWorkerThread()) {
+            nbThread = 1;
+        }
+        nbThread = Math.max(1, Math.min(nbThread, readers.size()));
+        this.queue = new ArrayBlockingQueue<List<F>>(nbThread * 2);
+        //readers block when the queue is full, they can not use the shared executor
+        this.pool = new ThreadPoolExecutor(nbThread, nbThread, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), ExecutorUtilities.newThreadFactory("Parallel feature reader"));
+        for (FeatureReader<T,F> reader : readers) {
+            pool.execute(new ReadTask(reader));
+        }
+        pool.shutdown();
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public T getFeatureType() {
+        return readers.get(0).getFeatureType();
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public F next() throws DataStoreRuntimeException {
+        if (!hasNext()) {
+            throw new NoSuchElementException("No more features.");
+        }
+        return current.get(index++);
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public boolean hasNext() throws DataStoreRuntimeException {
+        if (closed) {
+            return false;
+        }
+        while (current == null || index >= current.size()) {
+            current = null;
+            checkError();
+            if (finished == readers.size()) {
+                return false;
+            }
+            final List<F> batch;
+            try {
+                batch = queue.take();
+            } catch (InterruptedException ex) {
+                throw new DataStoreRuntimeException(ex);
+            }
+            if (batch == END) {
+                finished++;
+            } else {
+                current = batch;
+                index = 0;
+            }
+        }
+        return true;
+    }
+
+    private void checkError() throws DataStoreRuntimeException {
+        final RuntimeException ex = error.get();
+        if (ex != null) {
+            throw new DataStoreRuntimeException(ex);
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void close() throws DataStoreRuntimeException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        pool.shutdownNow();
+        queue.clear();
+        current = null;
+
+        //wait for the threads to release the readers before closing them here
+        try {
+            while (!pool.awaitTermination(1, TimeUnit.SECONDS)) {
+                queue.clear();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        RuntimeException failure = null;
+        for (FeatureReader<T,F> reader : readers) {
+            try {
+                reader.close();
+            } catch (RuntimeException ex) {
+                if (failure == null) {
+                    failure = ex;
+                }
+            }
+        }
+        if (failure != null) {
+            throw new DataStoreRuntimeException(failure);
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void remove() {
+        throw new DataStoreRuntimeException("Can not remove from a parallel reader.");
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder(Classes.getShortClassName(this));
+        sb.append("[Readers=").append(readers.size()).append(", Threads=")
+          .append(pool.getCorePoolSize()).append("]\n");
+        for (int i = 0, n = readers.size(); i < n; i++) {
+            String subIterator = ((i == n - 1) ? "\u2514\u2500\u2500" : "\u251C\u2500\u2500")
+                    + readers.get(i).toString(); //move text to the right
+            subIterator = subIterator.replaceAll("\n", "\n\u00A0\u00A0\u00A0"); //move text to the right
+            sb.append(subIterator).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private final class ReadTask implements Runnable {
+
+        private final FeatureReader<T,F> reader;
+
+        private ReadTask(final FeatureReader<T,F> reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public void run() {
+            try {
+                List<F> batch = new ArrayList<F>(BATCH_SIZE);
+                while (!closed && reader.hasNext()) {
+                    batch.add(reader.next());
+                    if (batch.size() == BATCH_SIZE) {
+                        queue.put(batch);
+                        batch = new ArrayList<F>(BATCH_SIZE);
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    queue.put(batch);
+                }
+            } catch (InterruptedException ex) {
+                //iterator has been closed
+            } catch (RuntimeException ex) {
+                error.compareAndSet(null, ex);
+            } finally {
+                //the reader is closed by the thread closing the iterator
+                if (!closed) {
+                    try {
+                        queue.put(END);
+                    } catch (InterruptedException ex) {
+                        //iterator has been closed
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Merge the readers, each one is read in a separate thread.
+     *
+     * @param readers : readers to merge, all with the same feature type,
+     *                  returning separate feature instances, they are closed
+     *                  when the merged reader is closed
+     * @param nbThread : maximum number of threads, a single thread when
+     *                   called from a worker thread
+     * @return merged reader
+     */
+    public static <T extends FeatureType, F extends Feature> FeatureReader<T,F> wrap(
+            final List<? extends FeatureReader<T,F>> readers, final int nbThread) {
+        if (readers.isEmpty()) {
+            throw new IllegalArgumentException("No readers to merge.");
+        } else if (readers.size() == 1) {
+            return readers.get(0);
+        }
+        return new GenericParallelFeatureIterator<T,F>(readers, nbThread);
+    }
+
+}
@@ -17,11 +17,22 @@
 
 package org.geotoolkit.data.memory;
 
+import com.vividsolutions.jts.geom.Geometry;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
 
 import org.geotoolkit.data.FeatureIterator;
 import org.geotoolkit.data.FeatureReader;
@@ -29,20 +40,31 @@ import org.geotoolkit.data.DataStoreRuntimeException;
 import org.geotoolkit.data.FeatureCollection;
 import org.geotoolkit.data.query.SortByComparator;
 import org.geotoolkit.factory.Hints;
+import org.geotoolkit.factory.HintsPending;
 import org.geotoolkit.feature.FeatureUtilities;
 import org.geotoolkit.util.converter.Classes;
 
 import org.opengis.feature.Feature;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.FeatureType;
 import org.opengis.filter.sort.SortBy;
 
 /**
  * Basic support for a  FeatureIterator that will sort features using the given sort by
- * orders. This may be very consuming in memory since this implementation must iterate
- * over all features and store them in memory in the right order.
+ * orders. This implementation must iterate over all features before returning
+ * the first one.
  *
- * Don't use this class in you now that your iterator holds a great amount of features,
- * otherwise it may cause an Out Of Memory Exception.
+ * <p>
+ * Features are sorted in memory as long as their estimated size is below
+ * {@link HintsPending#SORT_BUFFER_SIZE} bytes. Beyond, simple features are
+ * sorted by runs of this size, each run is encoded in a temporary file and the
+ * runs are merged while iterating. If a feature can not be encoded before the
+ * first run is written, all features are sorted in memory, otherwise the sort
+ * fails. Other features are always sorted in memory.
+ * When only the first features are requested, only those are kept in memory.
+ * The sort is stable, features with equal sort values keep their original order.
+ * </p>
  *
  * @author Johann Sorel (Geomatys)
  * @module pending
@@ -50,32 +72,365 @@ import org.opengis.filter.sort.SortBy;
 public class GenericSortByFeatureIterator<F extends Feature, R extends FeatureIterator<F>>
         implements FeatureIterator<F> {
 
+    /** default size of runs sorted in memory : 64Mb */
+    private static final long DEFAULT_BUFFER_SIZE = 64L*1024*1024;
+    /** features kept in memory by top-k sort */
+    private static final int MAX_TOP_K = 100000;
+    /** maximum number of runs merged at the same time */
+    private static final int MAX_RUNS = 64;
+    /** estimated memory of an entry in a run, besides its feature */
+    private static final int ENTRY_SIZE = 64;
+    /** estimated memory of each sorted value of an entry and of each attribute */
+    private static final int VALUE_SIZE = 32;
+    /** estimated memory of a geometry coordinate */
+    private static final int COORDINATE_SIZE = 40;
+
     protected final R iterator;
-    private final Comparator<Feature> comparator;
-    protected List<F> ordered = null;
-    protected int index = 0;
+    private final SortByComparator comparator;
+    private final Comparator<Entry> entryComparator;
+    private final int limit;
+    private final long bufferSize;
+    private final int entrySize;
+    private Iterator<F> ordered = null;
+    private final List<File> runs = new ArrayList<File>();
+    private final List<RunReader> readers = new ArrayList<RunReader>();
+    private SimpleFeatureCodec codec;
 
     /**
      * Creates a new instance of GenericSortByFeatureIterator
      *
      * @param iterator FeatureReader to sort
      * @param orders sorting orders
+     * @param limit maximum number of features which will be read, -1 if unknowned
+     * @param hints hints, can be null
      */
-    private GenericSortByFeatureIterator(final R iterator, final SortBy[] orders) {
+    private GenericSortByFeatureIterator(final R iterator, final SortBy[] orders, final int limit, final Hints hints) {
         this.iterator = iterator;
         this.comparator = new SortByComparator(orders);
+        this.entrySize = ENTRY_SIZE + VALUE_SIZE*orders.length;
+        this.entryComparator = new Comparator<Entry>() {
+            @Override
+            public int compare(final Entry e1, final Entry e2) {
+                final int c = comparator.compareValues(e1.values, e2.values);
+                if(c != 0){
+                    return c;
+                }
+                return (e1.order < e2.order) ? -1 : ((e1.order == e2.order) ? 0 : 1);
+            }
+        };
+        this.limit = limit;
+        final Object size = (hints == null) ? null : hints.get(HintsPending.SORT_BUFFER_SIZE);
+        this.bufferSize = (size instanceof Number) ? ((Number)size).longValue() : DEFAULT_BUFFER_SIZE;
+    }
+
+    /**
+     * Sorted values of a feature and its position, used for stable sorts.
+     * The feature is either kept or encoded.
+     */
+    private static final class Entry {
+        private final Object[] values;
+        private final long order;
+        private Feature feature;
+        private byte[] data;
+
+        private Entry(final Object[] values, final long order) {
+            this.values = values;
+            this.order = order;
+        }
+    }
+
+    private Entry createEntry(final Feature feature, final long order){
+        final Entry entry = new Entry(comparator.getValues(feature), order);
+        entry.feature = feature;
+        return entry;
+    }
+
+    /**
+     * @return estimated memory used by the feature
+     */
+    private static long estimateSize(final SimpleFeature feature){
+        long size = 0;
+        for(int i=0,n=feature.getAttributeCount(); i<n; i++){
+            final Object value = feature.getAttribute(i);
+            size += VALUE_SIZE;
+            if(value instanceof CharSequence){
+                size += 2*((CharSequence)value).length();
+            }else if(value instanceof Geometry){
+                size += COORDINATE_SIZE*((Geometry)value).getNumPoints();
+            }else if(value instanceof byte[]){
+                size += ((byte[])value).length;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Encode the features of a sorted run before it is written.
+     *
+     * @return false if a feature can not be encoded and no run has been
+     *         written yet, features must then be sorted in memory
+     * @throws DataStoreRuntimeException if a feature can not be encoded
+     *         and runs are already written
+     */
+    private boolean encode(final List<Entry> run) throws DataStoreRuntimeException{
+        for(Entry e : run){
+            Exception error = null;
+            try{
+                e.data = codec.encode((SimpleFeature)e.feature);
+            }catch(IOException ex){
+                error = ex;
+            }catch(RuntimeException ex){
+                error = ex;
+            }
+            if(error != null){
+                for(Entry r : run){
+                    r.data = null;
+                }
+                if(runs.isEmpty()){
+                    return false;
+                }
+                throw new DataStoreRuntimeException("Feature "+((SimpleFeature)e.feature).getID()
+                        +" can not be written in a temporary file, increase the sort buffer size to sort in memory : "
+                        +error.getMessage(), error);
+            }
+        }
+        for(Entry e : run){
+            e.feature = null;
+        }
+        return true;
     }
 
     private synchronized void sort() throws DataStoreRuntimeException{
         if(ordered != null) return;
 
-        ordered = new ArrayList<F>();
+        if(limit >= 0 && limit <= MAX_TOP_K){
+            ordered = sortTopK();
+            return;
+        }
 
+        try{
+            List<Entry> run = new ArrayList<Entry>();
+            long runSize = 0;
+            long order = 0;
+            while(iterator.hasNext()){
+                final Feature feature = iterator.next();
+                if(order == 0 && feature instanceof SimpleFeature){
+                    codec = new SimpleFeatureCodec((SimpleFeatureType)feature.getType());
+                }
+                if(codec != null && feature.getType() != codec.getFeatureType()){
+                    //mixed feature types, can not be written
+                    if(!runs.isEmpty()){
+                        throw new DataStoreRuntimeException("Features of different types can not be sorted.");
+                    }
+                    codec = null;
+                }
+
+                //features are only encoded when the run exceeds the buffer size
+                final Entry entry = createEntry(FeatureUtilities.copy(feature), order++);
+                run.add(entry);
+                if(codec == null){
+                    continue;
+                }
+                runSize += estimateSize((SimpleFeature)entry.feature) + entrySize;
+
+                if(runSize > bufferSize){
+                    Collections.sort(run, entryComparator);
+                    if(!encode(run)){
+                        //features can not be written, sort all of them in memory
+                        codec = null;
+                        continue;
+                    }
+                    runs.add(writeRun(run));
+                    run = new ArrayList<Entry>();
+                    runSize = 0;
+                    if(runs.size() >= MAX_RUNS){
+                        //merge the runs to limit the number of opened files
+                        final File merged = mergeRuns(new ArrayList<File>(runs));
+                        runs.clear();
+                        runs.add(merged);
+                    }
+                }
+            }
+
+            Collections.sort(run, entryComparator);
+            if(runs.isEmpty()){
+                final List<F> features = new ArrayList<F>(run.size());
+                for(int i=0,n=run.size(); i<n; i++){
+                    features.add((F)run.get(i).feature);
+                    run.set(i, null);
+                }
+                ordered = features.iterator();
+            }else{
+                if(!run.isEmpty()){
+                    encode(run);
+                    runs.add(writeRun(run));
+                }
+                ordered = new MergeIterator(new ArrayList<File>(runs));
+            }
+        }catch(IOException ex){
+            throw new DataStoreRuntimeException(ex);
+        }
+    }
+
+    /**
+     * Keep only the first features in a bounded heap.
+     */
+    private Iterator<F> sortTopK(){
+        if(limit == 0){
+            return Collections.<F>emptyList().iterator();
+        }
+        //head of the queue is the last feature kept
+        final PriorityQueue<Entry> heap = new PriorityQueue<Entry>(Math.min(limit, 1024)+1,
+                Collections.reverseOrder(entryComparator));
+        long order = 0;
         while(iterator.hasNext()){
-            ordered.add((F) FeatureUtilities.copy( iterator.next()));
+            final F feature = iterator.next();
+            final Entry candidate = createEntry(feature, order++);
+            if(heap.size() < limit){
+                candidate.feature = FeatureUtilities.copy(feature);
+                heap.add(candidate);
+            }else if(entryComparator.compare(candidate, heap.peek()) < 0){
+                heap.poll();
+                candidate.feature = FeatureUtilities.copy(feature);
+                heap.add(candidate);
+            }
+        }
+        final List<Entry> entries = new ArrayList<Entry>(heap);
+        Collections.sort(entries, entryComparator);
+        final List<F> features = new ArrayList<F>(entries.size());
+        for(Entry e : entries){
+            features.add((F)e.feature);
+        }
+        return features.iterator();
+    }
+
+    private File writeRun(final List<Entry> run) throws IOException{
+        final File file = File.createTempFile("sort", ".run");
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 65536));
+        try{
+            for(Entry e : run){
+                out.writeLong(e.order);
+                out.writeInt(e.data.length);
+                out.write(e.data);
+            }
+        }finally{
+            out.close();
+        }
+        return file;
+    }
+
+    private File mergeRuns(final List<File> files) throws IOException{
+        final MergeIterator merge = new MergeIterator(files);
+        final File file = File.createTempFile("sort", ".run");
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 65536));
+        try{
+            while(merge.hasNext()){
+                final RunReader reader = merge.queue.peek();
+                out.writeLong(reader.current.order);
+                out.writeInt(reader.current.data.length);
+                out.write(reader.current.data);
+                merge.next();
+            }
+        }finally{
+            out.close();
+            merge.close();
+        }
+        return file;
+    }
+
+    /**
+     * Read sorted features of a run file.
+     */
+    private final class RunReader {
+        private final File file;
+        private final DataInputStream in;
+        private Entry current;
+
+        private RunReader(final File file) throws IOException {
+            this.file = file;
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 65536));
+            readers.add(this);
         }
 
-        Collections.sort(ordered,comparator);
+        /**
+         * @return false if there are no more features
+         */
+        private boolean read() throws IOException {
+            if(in.available() <= 0){
+                current = null;
+                close();
+                return false;
+            }
+            final long order = in.readLong();
+            final byte[] data = new byte[in.readInt()];
+            in.readFully(data);
+            current = createEntry(codec.decode(data), order);
+            current.data = data;
+            return true;
+        }
+
+        private void close() throws IOException {
+            readers.remove(this);
+            in.close();
+            file.delete();
+        }
+    }
+
+    /**
+     * K-way merge of run files.
+     */
+    private final class MergeIterator implements Iterator<F> {
+
+        private final PriorityQueue<RunReader> queue;
+
+        private MergeIterator(final List<File> files) throws IOException {
+            queue = new PriorityQueue<RunReader>(files.size(), new Comparator<RunReader>() {
+                @Override
+                public int compare(final RunReader r1, final RunReader r2) {
+                    return entryComparator.compare(r1.current, r2.current);
+                }
+            });
+            for(File f : files){
+                final RunReader reader = new RunReader(f);
+                if(reader.read()){
+                    queue.add(reader);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public F next() {
+            final RunReader reader = queue.poll();
+            if(reader == null){
+                throw new NoSuchElementException("No more elements.");
+            }
+            final F feature = (F) reader.current.feature;
+            try {
+                if(reader.read()){
+                    queue.add(reader);
+                }
+            } catch (IOException ex) {
+                throw new DataStoreRuntimeException(ex);
+            }
+            return feature;
+        }
+
+        private void close() throws IOException {
+            for(RunReader reader : queue){
+                reader.close();
+            }
+            queue.clear();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Not supported.");
+        }
     }
 
     /**
@@ -84,13 +439,10 @@ public class GenericSortByFeatureIterator<F extends Feature, R extends FeatureIt
     @Override
     public F next() throws DataStoreRuntimeException {
         sort();
-        try{
-            F c = ordered.get(index);
-            index++;
-            return c;
-        }catch(IndexOutOfBoundsException ex){
+        if(!ordered.hasNext()){
             throw new NoSuchElementException("No more elements.");
         }
+        return ordered.next();
     }
 
     /**
@@ -99,6 +451,17 @@ public class GenericSortByFeatureIterator<F extends Feature, R extends FeatureIt
     @Override
     public void close() throws DataStoreRuntimeException {
         iterator.close();
+        //remove temporary files
+        for(RunReader reader : new ArrayList<RunReader>(readers)){
+            try {
+                reader.close();
+            } catch (IOException ex) {
+                //we tryed
+            }
+        }
+        for(File run : runs){
+            run.delete();
+        }
     }
 
     /**
@@ -107,7 +470,7 @@ public class GenericSortByFeatureIterator<F extends Feature, R extends FeatureIt
     @Override
     public boolean hasNext() throws DataStoreRuntimeException {
         sort();
-        return index < ordered.size();
+        return ordered.hasNext();
     }
 
     /**
@@ -138,8 +501,8 @@ public class GenericSortByFeatureIterator<F extends Feature, R extends FeatureIt
     private static final class GenericSortByFeatureReader<T extends FeatureType, F extends Feature, R extends FeatureReader<T,F>>
             extends GenericSortByFeatureIterator<F,R> implements FeatureReader<T,F>{
 
-        private GenericSortByFeatureReader(final R reader,final SortBy[] orders){
-            super(reader,orders);
+        private GenericSortByFeatureReader(final R reader,final SortBy[] orders, final int limit, final Hints hints){
+            super(reader,orders,limit,hints);
         }
 
         @Override
@@ -152,15 +515,21 @@ public class GenericSortByFeatureIterator<F extends Feature, R extends FeatureIt
     private static final class GenericSortByFeatureCollection extends WrapFeatureCollection{
 
         private final SortBy[] order;
+        private final int limit;
+        private final Hints sortHints;
 
-        private GenericSortByFeatureCollection(final FeatureCollection original, final SortBy[] order){
+        private GenericSortByFeatureCollection(final FeatureCollection original, final SortBy[] order,
+                final int limit, final Hints sortHints){
             super(original);
             this.order = order;
+            this.limit = limit;
+            this.sortHints = sortHints;
         }
 
         @Override
         public FeatureIterator iterator(final Hints hints) throws DataStoreRuntimeException {
-            return wrap(getOriginalFeatureCollection().iterator(hints), order);
+            return wrap(getOriginalFeatureCollection().iterator(hints), order, limit,
+                    (sortHints != null) ? sortHints : hints);
         }
 
         @Override
@@ -174,17 +543,39 @@ public class GenericSortByFeatureIterator<F extends Feature, R extends FeatureIt
      * Wrap a FeatureReader will a sort by order.
      */
     public static <T extends FeatureType, F extends Feature> FeatureReader<T,F> wrap(final FeatureReader<T,F> reader, final SortBy[] orders){
-        return new GenericSortByFeatureReader(reader, orders);
+        return wrap(reader, orders, -1, null);
+    }
+
+    /**
+     * Wrap a FeatureReader will a sort by order.
+     *
+     * @param limit : maximum number of features which will be read, -1 if unknowned
+     * @param hints : sort hints, can be null
+     */
+    public static <T extends FeatureType, F extends Feature> FeatureReader<T,F> wrap(final FeatureReader<T,F> reader,
+            final SortBy[] orders, final int limit, final Hints hints){
+        return new GenericSortByFeatureReader(reader, orders, limit, hints);
     }
 
     /**
      * Wrap a FeatureIterator will a sort by order.
      */
     public static <F extends Feature> FeatureIterator<F> wrap(final FeatureIterator<F> reader, final SortBy[] orders){
+        return wrap(reader, orders, -1, null);
+    }
+
+    /**
+     * Wrap a FeatureIterator will a sort by order.
+     *
+     * @param limit : maximum number of features which will be read, -1 if unknowned
+     * @param hints : sort hints, can be null
+     */
+    public static <F extends Feature> FeatureIterator<F> wrap(final FeatureIterator<F> reader,
+            final SortBy[] orders, final int limit, final Hints hints){
         if(reader instanceof FeatureReader){
-            return wrap((FeatureReader)reader,orders);
+            return wrap((FeatureReader)reader,orders,limit,hints);
         }else{
-            return new GenericSortByFeatureIterator(reader, orders);
+            return new GenericSortByFeatureIterator(reader, orders, limit, hints);
         }
     }
 
@@ -192,7 +583,18 @@ public class GenericSortByFeatureIterator<F extends Feature, R extends FeatureIt
      * Wrap a FeatureCollection will a sort by order.
      */
     public static FeatureCollection wrap(final FeatureCollection original, final SortBy[] orders){
-        return new GenericSortByFeatureCollection(original,orders);
+        return wrap(original, orders, -1, null);
+    }
+
+    /**
+     * Wrap a FeatureCollection will a sort by order.
+     *
+     * @param limit : maximum number of features which will be read, -1 if unknowned
+     * @param hints : sort hints, can be null
+     */
+    public static FeatureCollection wrap(final FeatureCollection original, final SortBy[] orders,
+            final int limit, final Hints hints){
+        return new GenericSortByFeatureCollection(original,orders,limit,hints);
     }
 
 }
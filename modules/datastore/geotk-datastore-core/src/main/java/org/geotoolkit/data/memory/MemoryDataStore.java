@@ -71,10 +71,12 @@ public class MemoryDataStore extends AbstractDataStore{
         final AtomicLong incId = new AtomicLong(-1);//first one will be 0
         final FeatureType type;
         final Map<String,Feature> features;
+        final MemoryIndex index;
 
         Group(final FeatureType type){
             this.type = type;
             this.features = new ConcurrentHashMap<String, Feature>();
+            this.index = new MemoryIndex(type);
         }
 
         public String generateId(){
@@ -99,7 +101,16 @@ public class MemoryDataStore extends AbstractDataStore{
             }
 
             final Set<Identifier> fids = ids.getIdentifiers();
-            final Iterator<Identifier> iteIds = fids.iterator();
+            final List<String> strids = new ArrayList<String>(fids.size());
+            for(Identifier id : fids){
+                strids.add(id.getID().toString());
+            }
+            return createIterator(strids);
+        }
+
+        public Iterator<? extends Feature> createIterator(final Collection<String> ids) {
+
+            final Iterator<String> iteIds = ids.iterator();
 
             return new Iterator<Feature>(){
 
@@ -130,8 +141,7 @@ public class MemoryDataStore extends AbstractDataStore{
                     if(next != null) return;
 
                     while(next == null && iteIds.hasNext()){
-                        final String strid = iteIds.next().getID().toString();
-                        next = features.get(strid);
+                        next = features.get(iteIds.next());
                     }
 
                 }
@@ -263,6 +273,53 @@ public class MemoryDataStore extends AbstractDataStore{
         fireSchemaDeleted(typeName, grp.getFeatureType());
     }
 
+    /**
+     * Index the default geometry of the given type in a quadtree.
+     * The index is updated when features are added, updated or removed
+     * through this datastore, and used by BBOX and intersects queries.
+     * Features returned by readers must not be modified directly.
+     * Indexes are lost when the schema is updated.
+     *
+     * @param typeName : type to index
+     * @throws DataStoreException if the type doesn't exist or has no default geometry
+     */
+    public void createSpatialIndex(final Name typeName) throws DataStoreException {
+        typeCheck(typeName);
+        final Group grp = groups.get(typeName);
+        try{
+            grp.index.createSpatialIndex(grp.features);
+        }catch(IllegalArgumentException ex){
+            throw new DataStoreException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Index the given attribute of the given type in a hash map.
+     * The index is updated when features are added, updated or removed
+     * through this datastore, and used by equal queries.
+     * Features returned by readers must not be modified directly.
+     * Indexes are lost when the schema is updated.
+     *
+     * @param typeName : type to index
+     * @param propertyName : attribute to index
+     * @throws DataStoreException if the type or attribute doesn't exist
+     *         or if the attribute can not be indexed
+     */
+    public void createAttributeIndex(final Name typeName, final Name propertyName) throws DataStoreException {
+        typeCheck(typeName);
+        ensureNonNull("property name", propertyName);
+        final Group grp = groups.get(typeName);
+        final PropertyDescriptor desc = grp.getFeatureType().getDescriptor(propertyName);
+        if(desc == null){
+            throw new DataStoreException("No property "+ propertyName +" in type "+ typeName);
+        }
+        try{
+            grp.index.createAttributeIndex(desc, grp.features);
+        }catch(IllegalArgumentException ex){
+            throw new DataStoreException(ex.getMessage(), ex);
+        }
+    }
+
     /**
      * {@inheritDoc }
      */
@@ -307,6 +364,7 @@ public class MemoryDataStore extends AbstractDataStore{
             final Feature copy = FeatureUtilities.copy(f,candidateId);
 
             grp.features.put(candidateId, copy);
+            grp.index.add(candidateId, copy);
             addedIds.add(new DefaultFeatureId(candidateId));
         }
 
@@ -332,17 +390,22 @@ public class MemoryDataStore extends AbstractDataStore{
             if(candidate == null) continue;
 
             ups.add(itd);
-            for(Map.Entry<? extends PropertyDescriptor, ? extends Object> entry : values.entrySet()){
-                final PropertyDescriptor desc = entry.getKey();
-                final Property prop = candidate.getProperty(desc.getName());
-                if(prop != null){
-                    final Object value = entry.getValue();
-                    if(value instanceof Geometry){
-                        JTS.setCRS((Geometry)value, ((GeometryDescriptor)desc).getCoordinateReferenceSystem() );
-                    }                    
-                    prop.setValue(value);
+            grp.index.update(itd.getID(), candidate, new Runnable() {
+                @Override
+                public void run() {
+                    for(Map.Entry<? extends PropertyDescriptor, ? extends Object> entry : values.entrySet()){
+                        final PropertyDescriptor desc = entry.getKey();
+                        final Property prop = candidate.getProperty(desc.getName());
+                        if(prop != null){
+                            final Object value = entry.getValue();
+                            if(value instanceof Geometry){
+                                JTS.setCRS((Geometry)value, ((GeometryDescriptor)desc).getCoordinateReferenceSystem() );
+                            }
+                            prop.setValue(value);
+                        }
+                    }
                 }
-            }
+            });
         }
 
         //fire update event
@@ -365,6 +428,7 @@ public class MemoryDataStore extends AbstractDataStore{
             final Feature candidate = grp.features.remove(itd.getID());
             if(candidate == null) continue;
 
+            grp.index.remove(itd.getID(), candidate);
             rems.add(itd);
         }
 
@@ -420,7 +484,13 @@ public class MemoryDataStore extends AbstractDataStore{
                 remaining.setFilter(Filter.INCLUDE);
             }
         }else{
-            ite = grp.createIterator(null);
+            //indexes only select candidates, the filter is kept
+            final Collection<String> candidates = grp.index.candidates(filter);
+            if(candidates != null){
+                ite = grp.createIterator(candidates);
+            }else{
+                ite = grp.createIterator((Id)null);
+            }
         }
 
         final FeatureReader reader;
@@ -428,7 +498,6 @@ public class MemoryDataStore extends AbstractDataStore{
         reader = GenericWrapFeatureIterator.wrapToReader(ite, grp.getFeatureType()); 
 
         //fall back on generic parameter handling.
-        //todo we should handle at least spatial filter here by using a quadtree.
         return handleRemaining(reader, remaining.buildQuery());
     }
 
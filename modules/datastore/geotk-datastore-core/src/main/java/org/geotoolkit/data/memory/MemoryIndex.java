@@ -0,0 +1,490 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.data.memory;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.index.quadtree.Quadtree;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotoolkit.geometry.jts.JTS;
+import org.geotoolkit.referencing.CRS;
+import org.geotoolkit.util.logging.Logging;
+
+import org.opengis.feature.Feature;
+import org.opengis.feature.Property;
+import org.opengis.feature.type.FeatureType;
+import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.feature.type.PropertyDescriptor;
+import org.opengis.filter.And;
+import org.opengis.filter.Filter;
+import org.opengis.filter.PropertyIsEqualTo;
+import org.opengis.filter.expression.Expression;
+import org.opengis.filter.expression.Literal;
+import org.opengis.filter.expression.PropertyName;
+import org.opengis.filter.spatial.BBOX;
+import org.opengis.filter.spatial.Intersects;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.util.FactoryException;
+
+/**
+ * Optional indexes of a memory datastore feature group.
+ * The default geometry can be indexed in a quadtree and any attribute can
+ * be indexed in a hash map. Indexes only select candidate features, a
+ * superset of the features matching the filter, the filter must still
+ * be evaluated on each candidate.
+ *
+ * @author Johann Sorel (Geomatys)
+ * @module pending
+ */
+final class MemoryIndex {
+
+    private static final Logger LOGGER = Logging.getLogger(MemoryIndex.class);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final FeatureType type;
+
+    //spatial index on the default geometry, null if not created
+    private GeometryDescriptor geometryDesc = null;
+    private CoordinateReferenceSystem crs = null;
+    private Quadtree tree = null;
+    private Map<String,Envelope> envelopes = null;
+    //features which can not be placed in the quadtree, always candidates
+    private Set<String> unlocated = null;
+
+    private final Map<PropertyDescriptor,AttributeIndex> attributes =
+            new HashMap<PropertyDescriptor, AttributeIndex>();
+
+    MemoryIndex(final FeatureType type){
+        this.type = type;
+    }
+
+    /**
+     * Create the quadtree index of the default geometry.
+     * A quadtree is used rather than a STR tree since features can be removed.
+     *
+     * @param features : features already in the group
+     * @throws IllegalArgumentException if the type has no default geometry
+     */
+    void createSpatialIndex(final Map<String,Feature> features){
+        final GeometryDescriptor desc = type.getGeometryDescriptor();
+        if(desc == null){
+            throw new IllegalArgumentException("Type "+type.getName()+" has no default geometry.");
+        }
+
+        lock.writeLock().lock();
+        try{
+            geometryDesc = desc;
+            crs = desc.getCoordinateReferenceSystem();
+            tree = new Quadtree();
+            envelopes = new HashMap<String, Envelope>();
+            unlocated = new HashSet<String>();
+            for(Map.Entry<String,Feature> entry : features.entrySet()){
+                addSpatial(entry.getKey(), entry.getValue());
+            }
+        }finally{
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Create a hash index on the given attribute.
+     *
+     * @param desc : attribute descriptor
+     * @param features : features already in the group
+     * @throws IllegalArgumentException if the attribute can not be indexed
+     */
+    void createAttributeIndex(final PropertyDescriptor desc, final Map<String,Feature> features){
+        final Class binding = desc.getType().getBinding();
+        if(binding == null || Geometry.class.isAssignableFrom(binding) || binding.isArray()){
+            throw new IllegalArgumentException("Attribute "+desc.getName()+" can not be indexed.");
+        }
+
+        lock.writeLock().lock();
+        try{
+            final AttributeIndex index = new AttributeIndex(desc);
+            for(Map.Entry<String,Feature> entry : features.entrySet()){
+                index.add(entry.getKey(), entry.getValue());
+            }
+            attributes.put(desc, index);
+        }finally{
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Index a feature, must be called after the feature has been added or updated.
+     */
+    void add(final String id, final Feature feature){
+        lock.writeLock().lock();
+        try{
+            addIndexed(id, feature);
+        }finally{
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a feature from the indexes, must be called before the
+     * feature is removed or updated.
+     */
+    void remove(final String id, final Feature feature){
+        lock.writeLock().lock();
+        try{
+            removeIndexed(id, feature);
+        }finally{
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Modify an indexed feature in place. The feature is removed from the
+     * indexes, modified and indexed again while holding the write lock,
+     * searches never see the feature missing or indexed with stale values.
+     *
+     * @param id : feature identifier
+     * @param feature : indexed feature, modified by the change
+     * @param change : modification of the feature
+     */
+    void update(final String id, final Feature feature, final Runnable change){
+        lock.writeLock().lock();
+        try{
+            removeIndexed(id, feature);
+            try{
+                change.run();
+            }finally{
+                //index the feature as it is, even if the change failed
+                addIndexed(id, feature);
+            }
+        }finally{
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void addIndexed(final String id, final Feature feature){
+        if(tree != null){
+            addSpatial(id, feature);
+        }
+        for(AttributeIndex index : attributes.values()){
+            index.add(id, feature);
+        }
+    }
+
+    private void removeIndexed(final String id, final Feature feature){
+        if(tree != null){
+            final Envelope env = envelopes.remove(id);
+            if(env != null){
+                tree.remove(env, id);
+            }
+            unlocated.remove(id);
+        }
+        for(AttributeIndex index : attributes.values()){
+            index.remove(id, feature);
+        }
+    }
+
+    private boolean isEmpty(){
+        lock.readLock().lock();
+        try{
+            return tree == null && attributes.isEmpty();
+        }finally{
+            lock.readLock().unlock();
+        }
+    }
+
+    private void addSpatial(final String id, final Feature feature){
+        //a feature added while the index is created may be seen twice
+        final Envelope previous = envelopes.remove(id);
+        if(previous != null){
+            tree.remove(previous, id);
+        }
+        unlocated.remove(id);
+
+        final Property prop = feature.getProperty(geometryDesc.getName());
+        final Object value = (prop == null) ? null : prop.getValue();
+        if(!(value instanceof Geometry)){
+            //no geometry, spatial filters will never match
+            return;
+        }
+
+        final Geometry geom = (Geometry) value;
+        if(geom.isEmpty() || !isIndexCRS(geom)){
+            unlocated.add(id);
+            return;
+        }
+        final Envelope env = geom.getEnvelopeInternal();
+        tree.insert(env, id);
+        envelopes.put(id, env);
+    }
+
+    /**
+     * @return true if the geometry coordinates are in the index crs
+     */
+    private boolean isIndexCRS(final Geometry geom){
+        final CoordinateReferenceSystem geomCRS;
+        try {
+            geomCRS = JTS.findCoordinateReferenceSystem(geom);
+        } catch (FactoryException ex) {
+            LOGGER.log(Level.WARNING, null, ex);
+            return false;
+        }
+        return geomCRS == null || geomCRS == crs
+            || (crs != null && CRS.equalsIgnoreMetadata(crs, geomCRS));
+    }
+
+    /**
+     * Find the candidate features for the given filter.
+     *
+     * @return identifiers of the features which may match the filter,
+     *         null if no index can be used for this filter
+     */
+    Collection<String> candidates(final Filter filter){
+        if(isEmpty()) return null;
+
+        lock.readLock().lock();
+        try{
+            return search(filter);
+        }finally{
+            lock.readLock().unlock();
+        }
+    }
+
+    private Collection<String> search(final Filter filter){
+        if(filter instanceof And){
+            //use the most selective child
+            Collection<String> best = null;
+            for(Filter child : ((And)filter).getChildren()){
+                final Collection<String> candidates = search(child);
+                if(candidates != null && (best == null || candidates.size() < best.size())){
+                    best = candidates;
+                }
+            }
+            return best;
+        }else if(filter instanceof PropertyIsEqualTo){
+            final PropertyIsEqualTo equal = (PropertyIsEqualTo) filter;
+            Collection<String> candidates = searchEqual(equal.getExpression1(), equal.getExpression2(), equal.isMatchingCase());
+            if(candidates == null){
+                candidates = searchEqual(equal.getExpression2(), equal.getExpression1(), equal.isMatchingCase());
+            }
+            return candidates;
+        }else if(filter instanceof BBOX && tree != null){
+            final BBOX bbox = (BBOX) filter;
+            final String name = bbox.getPropertyName();
+            if(!(name == null || name.isEmpty() || isIndexedGeometry(name))
+               || !(bbox.getExpression2() instanceof Literal)){
+                return null;
+            }
+            final Object value = ((Literal)bbox.getExpression2()).getValue();
+            if(!(value instanceof org.opengis.geometry.Envelope)){
+                return null;
+            }
+            final org.opengis.geometry.Envelope env = (org.opengis.geometry.Envelope) value;
+            if(!isCompatibleCRS(env.getCoordinateReferenceSystem())){
+                return null;
+            }
+            return searchSpatial(new Envelope(
+                    env.getMinimum(0), env.getMaximum(0), env.getMinimum(1), env.getMaximum(1)));
+        }else if(filter instanceof Intersects && tree != null){
+            final Intersects intersects = (Intersects) filter;
+            Collection<String> candidates = searchIntersects(intersects.getExpression1(), intersects.getExpression2());
+            if(candidates == null){
+                candidates = searchIntersects(intersects.getExpression2(), intersects.getExpression1());
+            }
+            return candidates;
+        }
+        return null;
+    }
+
+    private Collection<String> searchEqual(final Expression property, final Expression literal, final boolean matchCase){
+        if(!(property instanceof PropertyName) || !(literal instanceof Literal)){
+            return null;
+        }
+        final PropertyDescriptor desc = getDescriptor((PropertyName) property);
+        final AttributeIndex index = (desc == null) ? null : attributes.get(desc);
+        if(index == null){
+            return null;
+        }
+        final Object value = ((Literal)literal).getValue();
+        if(value instanceof String && !matchCase){
+            return null;
+        }
+        return index.search(value);
+    }
+
+    private Collection<String> searchIntersects(final Expression property, final Expression literal){
+        if(!(property instanceof PropertyName) || !(literal instanceof Literal)
+           || !isIndexedGeometry(((PropertyName)property).getPropertyName())){
+            return null;
+        }
+        final Object value = ((Literal)literal).getValue();
+        if(!(value instanceof Geometry)){
+            return null;
+        }
+        final Geometry geom = (Geometry) value;
+        try {
+            if(!isCompatibleCRS(JTS.findCoordinateReferenceSystem(geom))){
+                return null;
+            }
+        } catch (FactoryException ex) {
+            LOGGER.log(Level.WARNING, null, ex);
+            return null;
+        }
+        return searchSpatial(geom.getEnvelopeInternal());
+    }
+
+    private Collection<String> searchSpatial(final Envelope env){
+        final List<String> candidates = new ArrayList<String>(unlocated);
+        if(!env.isNull()){
+            for(Object id : tree.query(env)){
+                //the quadtree returns all features in the matching nodes
+                if(envelopes.get(id).intersects(env)){
+                    candidates.add((String)id);
+                }
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Features which are not in the index crs are not in the quadtree,
+     * so any query crs can be used when there is no index crs.
+     */
+    private boolean isCompatibleCRS(final CoordinateReferenceSystem queryCRS){
+        return crs == null || queryCRS == null || CRS.equalsIgnoreMetadata(crs, queryCRS);
+    }
+
+    private boolean isIndexedGeometry(final String name){
+        final PropertyDescriptor desc = getDescriptor(name);
+        return desc != null && desc.equals(geometryDesc);
+    }
+
+    private PropertyDescriptor getDescriptor(final PropertyName property){
+        return getDescriptor(property.getPropertyName());
+    }
+
+    private PropertyDescriptor getDescriptor(final String name){
+        if(name == null || name.isEmpty() || name.indexOf('/') >= 0 || name.indexOf('@') >= 0){
+            return null;
+        }
+        return type.getDescriptor(name);
+    }
+
+    /**
+     * Integral numbers are compared by their long value by the equal filter.
+     */
+    private static Object toKey(final Object value){
+        if(value instanceof Byte || value instanceof Short || value instanceof Integer){
+            return Long.valueOf(((Number)value).longValue());
+        }
+        return value;
+    }
+
+    private static Class toKeyClass(final Class binding){
+        if(binding == Byte.class || binding == Short.class || binding == Integer.class){
+            return Long.class;
+        }
+        return binding;
+    }
+
+    /**
+     * Hash index of an attribute. Values of the attribute binding class are
+     * indexed by value, the equal filter compares them with equals.
+     * Values of any other class may be converted by the equal filter,
+     * they are always candidates.
+     */
+    private static final class AttributeIndex {
+
+        private final PropertyDescriptor desc;
+        private final Class keyClass;
+        private final Map<Object,Set<String>> values = new HashMap<Object, Set<String>>();
+        private final Set<String> others = new HashSet<String>();
+
+        AttributeIndex(final PropertyDescriptor desc){
+            this.desc = desc;
+            this.keyClass = toKeyClass(desc.getType().getBinding());
+        }
+
+        void add(final String id, final Feature feature){
+            final Object key = getKey(feature);
+            if(key == null){
+                //null values never match a literal
+                return;
+            }
+            if(key.getClass() != keyClass){
+                others.add(id);
+                return;
+            }
+            Set<String> ids = values.get(key);
+            if(ids == null){
+                ids = new HashSet<String>();
+                values.put(key, ids);
+            }
+            ids.add(id);
+        }
+
+        void remove(final String id, final Feature feature){
+            final Object key = getKey(feature);
+            if(key == null){
+                return;
+            }
+            if(key.getClass() != keyClass){
+                others.remove(id);
+                return;
+            }
+            final Set<String> ids = values.get(key);
+            if(ids != null){
+                ids.remove(id);
+                if(ids.isEmpty()){
+                    values.remove(key);
+                }
+            }
+        }
+
+        /**
+         * @return candidates for the given value, null if the index can not be used
+         */
+        Collection<String> search(final Object value){
+            final Object key = toKey(value);
+            if(key == null || key.getClass() != keyClass){
+                return null;
+            }
+            final List<String> candidates = new ArrayList<String>(others);
+            final Set<String> ids = values.get(key);
+            if(ids != null){
+                candidates.addAll(ids);
+            }
+            return candidates;
+        }
+
+        private Object getKey(final Feature feature){
+            final Property prop = feature.getProperty(desc.getName());
+            return (prop == null) ? null : toKey(prop.getValue());
+        }
+    }
+
+}
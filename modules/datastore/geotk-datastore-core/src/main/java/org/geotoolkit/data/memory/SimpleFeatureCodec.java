@@ -0,0 +1,361 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+
+package org.geotoolkit.data.memory;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryCollection;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LinearRing;
+import com.vividsolutions.jts.io.ParseException;
+import com.vividsolutions.jts.io.WKBReader;
+import com.vividsolutions.jts.io.WKBWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.Date;
+import org.geotoolkit.factory.FactoryFinder;
+import org.geotoolkit.feature.simple.DefaultSimpleFeature;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.filter.FilterFactory;
+import org.opengis.filter.identity.FeatureId;
+
+/**
+ * Binary encoding of simple features of a given type, used to store
+ * features in temporary files. Identifier and attribute values are encoded,
+ * user datas are not. Geometries are written in WKB, except those WKB can not
+ * restore exactly, empty geometries and linear rings, which are serialized.
+ *
+ * @author Johann Sorel (Geomatys)
+ * @module pending
+ */
+final class SimpleFeatureCodec {
+
+    private static final FilterFactory FF = FactoryFinder.getFilterFactory(null);
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INTEGER = 2;
+    private static final byte LONG = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte FLOAT = 5;
+    private static final byte SHORT = 6;
+    private static final byte BYTE = 7;
+    private static final byte BOOLEAN = 8;
+    private static final byte DATE = 9;
+    private static final byte SQL_DATE = 10;
+    private static final byte SQL_TIME = 11;
+    private static final byte SQL_TIMESTAMP = 12;
+    private static final byte BIG_DECIMAL = 13;
+    private static final byte BIG_INTEGER = 14;
+    private static final byte BYTES = 15;
+    private static final byte GEOMETRY = 16;
+    private static final byte SERIALIZED = 17;
+
+    /** geometry user data flags */
+    private static final byte NO_USERDATA = 0;
+    private static final byte TYPE_CRS = 1;
+
+    /** geometry encodings */
+    private static final byte WKB = 0;
+    private static final byte SERIALIZED_GEOMETRY = 1;
+
+    private final SimpleFeatureType type;
+    private final Object[] typeCRS;
+    private GeometryFactory geometryFactory;
+    private WKBWriter wkbWriter;
+    private WKBReader wkbReader;
+
+    /**
+     * @param type : type of all encoded features
+     */
+    SimpleFeatureCodec(final SimpleFeatureType type) {
+        this.type = type;
+        final int nb = type.getAttributeCount();
+        typeCRS = new Object[nb];
+        for(int i=0; i<nb; i++){
+            final AttributeDescriptor desc = type.getDescriptor(i);
+            if(desc instanceof GeometryDescriptor){
+                typeCRS[i] = ((GeometryDescriptor)desc).getCoordinateReferenceSystem();
+            }
+        }
+    }
+
+    SimpleFeatureType getFeatureType() {
+        return type;
+    }
+
+    /**
+     * @param feature : feature of the codec type
+     * @return encoded feature
+     * @throws IOException if a value can not be encoded
+     */
+    byte[] encode(final SimpleFeature feature) throws IOException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+        final DataOutputStream out = new DataOutputStream(buffer);
+        final FeatureId id = feature.getIdentifier();
+        writeString(out, (id == null) ? null : id.getID());
+        final int nb = type.getAttributeCount();
+        for(int i=0; i<nb; i++){
+            writeValue(out, feature.getAttribute(i), i);
+        }
+        out.flush();
+        return buffer.toByteArray();
+    }
+
+    /**
+     * @param data : encoded feature
+     * @return decoded feature
+     * @throws IOException if data is not a valid encoded feature
+     */
+    SimpleFeature decode(final byte[] data) throws IOException {
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        final String id = readString(in);
+        final int nb = type.getAttributeCount();
+        final Object[] values = new Object[nb];
+        for(int i=0; i<nb; i++){
+            values[i] = readValue(in, i);
+        }
+        return new DefaultSimpleFeature(type, (id == null) ? null : FF.featureId(id), values, false);
+    }
+
+    private void writeValue(final DataOutputStream out, final Object value, final int index) throws IOException {
+        if(value == null){
+            out.writeByte(NULL);
+        }else if(value instanceof String){
+            out.writeByte(STRING);
+            writeString(out, (String)value);
+        }else if(value instanceof Integer){
+            out.writeByte(INTEGER);
+            out.writeInt((Integer)value);
+        }else if(value instanceof Long){
+            out.writeByte(LONG);
+            out.writeLong((Long)value);
+        }else if(value instanceof Double){
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double)value);
+        }else if(value instanceof Float){
+            out.writeByte(FLOAT);
+            out.writeFloat((Float)value);
+        }else if(value instanceof Short){
+            out.writeByte(SHORT);
+            out.writeShort((Short)value);
+        }else if(value instanceof Byte){
+            out.writeByte(BYTE);
+            out.writeByte((Byte)value);
+        }else if(value instanceof Boolean){
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean)value);
+        }else if(value.getClass() == Date.class){
+            out.writeByte(DATE);
+            out.writeLong(((Date)value).getTime());
+        }else if(value.getClass() == java.sql.Date.class){
+            out.writeByte(SQL_DATE);
+            out.writeLong(((Date)value).getTime());
+        }else if(value.getClass() == java.sql.Time.class){
+            out.writeByte(SQL_TIME);
+            out.writeLong(((Date)value).getTime());
+        }else if(value.getClass() == java.sql.Timestamp.class){
+            out.writeByte(SQL_TIMESTAMP);
+            out.writeLong(((Date)value).getTime());
+            out.writeInt(((java.sql.Timestamp)value).getNanos());
+        }else if(value.getClass() == BigDecimal.class){
+            out.writeByte(BIG_DECIMAL);
+            writeString(out, value.toString());
+        }else if(value.getClass() == BigInteger.class){
+            out.writeByte(BIG_INTEGER);
+            writeBytes(out, ((BigInteger)value).toByteArray());
+        }else if(value instanceof byte[]){
+            out.writeByte(BYTES);
+            writeBytes(out, (byte[])value);
+        }else if(value instanceof Geometry){
+            writeGeometry(out, (Geometry)value, index);
+        }else if(value instanceof Serializable){
+            out.writeByte(SERIALIZED);
+            writeBytes(out, serialize(value));
+        }else{
+            throw new NotSerializableException(value.getClass().getName());
+        }
+    }
+
+    private Object readValue(final DataInputStream in, final int index) throws IOException {
+        final byte tag = in.readByte();
+        switch(tag){
+            case NULL :         return null;
+            case STRING :       return readString(in);
+            case INTEGER :      return in.readInt();
+            case LONG :         return in.readLong();
+            case DOUBLE :       return in.readDouble();
+            case FLOAT :        return in.readFloat();
+            case SHORT :        return in.readShort();
+            case BYTE :         return in.readByte();
+            case BOOLEAN :      return in.readBoolean();
+            case DATE :         return new Date(in.readLong());
+            case SQL_DATE :     return new java.sql.Date(in.readLong());
+            case SQL_TIME :     return new java.sql.Time(in.readLong());
+            case SQL_TIMESTAMP : {
+                final java.sql.Timestamp ts = new java.sql.Timestamp(in.readLong());
+                ts.setNanos(in.readInt());
+                return ts;
+            }
+            case BIG_DECIMAL :  return new BigDecimal(readString(in));
+            case BIG_INTEGER :  return new BigInteger(readBytes(in));
+            case BYTES :        return readBytes(in);
+            case GEOMETRY :     return readGeometry(in, index);
+            case SERIALIZED :   return deserialize(readBytes(in));
+            default : throw new IOException("Unknowned value tag : "+tag);
+        }
+    }
+
+    private void writeGeometry(final DataOutputStream out, final Geometry geom, final int index) throws IOException {
+        if(wkbWriter == null){
+            geometryFactory = geom.getFactory();
+            wkbWriter = new WKBWriter(3);
+        }
+        out.writeByte(GEOMETRY);
+        out.writeInt(geom.getSRID());
+        final Object userData = geom.getUserData();
+        if(userData == null){
+            out.writeByte(NO_USERDATA);
+        }else if(userData == typeCRS[index]){
+            out.writeByte(TYPE_CRS);
+        }else if(userData instanceof Serializable){
+            out.writeByte(SERIALIZED);
+            writeBytes(out, serialize(userData));
+        }else{
+            throw new NotSerializableException(userData.getClass().getName());
+        }
+        if(isWKBCompatible(geom)){
+            out.writeByte(WKB);
+            writeBytes(out, wkbWriter.write(geom));
+        }else{
+            //user data is already written and may not be serializable
+            final Geometry copy = (Geometry) geom.clone();
+            copy.setUserData(null);
+            out.writeByte(SERIALIZED_GEOMETRY);
+            writeBytes(out, serialize(copy));
+        }
+    }
+
+    /**
+     * @return false if the geometry can not be written in WKB or would be
+     *         read back as a different geometry
+     */
+    private static boolean isWKBCompatible(final Geometry geom){
+        if(geom.isEmpty() || geom instanceof LinearRing){
+            return false;
+        }
+        if(geom instanceof GeometryCollection){
+            for(int i=0,n=geom.getNumGeometries(); i<n; i++){
+                if(!isWKBCompatible(geom.getGeometryN(i))){
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private Geometry readGeometry(final DataInputStream in, final int index) throws IOException {
+        if(wkbReader == null){
+            wkbReader = new WKBReader((geometryFactory == null) ? new GeometryFactory() : geometryFactory);
+        }
+        final int srid = in.readInt();
+        final byte flag = in.readByte();
+        final Object userData;
+        if(flag == NO_USERDATA){
+            userData = null;
+        }else if(flag == TYPE_CRS){
+            userData = typeCRS[index];
+        }else{
+            userData = deserialize(readBytes(in));
+        }
+        final Geometry geom;
+        if(in.readByte() == SERIALIZED_GEOMETRY){
+            geom = (Geometry) deserialize(readBytes(in));
+        }else{
+            try {
+                geom = wkbReader.read(readBytes(in));
+            } catch (ParseException ex) {
+                throw new IOException(ex.getMessage(), ex);
+            }
+        }
+        geom.setSRID(srid);
+        geom.setUserData(userData);
+        return geom;
+    }
+
+    private static void writeString(final DataOutputStream out, final String str) throws IOException {
+        if(str == null){
+            out.writeInt(-1);
+        }else{
+            writeBytes(out, str.getBytes(UTF8));
+        }
+    }
+
+    private static String readString(final DataInputStream in) throws IOException {
+        final byte[] bytes = readBytes(in);
+        return (bytes == null) ? null : new String(bytes, UTF8);
+    }
+
+    private static void writeBytes(final DataOutputStream out, final byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(final DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if(length < 0){
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static byte[] serialize(final Object value) throws IOException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(buffer);
+        out.writeObject(value);
+        out.close();
+        return buffer.toByteArray();
+    }
+
+    private static Object deserialize(final byte[] bytes) throws IOException {
+        final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        try {
+            return in.readObject();
+        } catch (ClassNotFoundException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        } finally {
+            in.close();
+        }
+    }
+
+}
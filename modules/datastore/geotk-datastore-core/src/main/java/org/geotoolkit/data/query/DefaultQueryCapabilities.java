@@ -28,6 +28,7 @@ import org.geotoolkit.util.XArrays;
 public class DefaultQueryCapabilities implements QueryCapabilities{
 
     private final boolean crossQuery;
+    private final boolean sortBy;
     private final String[] supportedLanguages;
 
     public DefaultQueryCapabilities(final boolean crossQuery) {
@@ -35,7 +36,12 @@ public class DefaultQueryCapabilities implements QueryCapabilities{
     }
 
     public DefaultQueryCapabilities(final boolean crossQuery, final String[] languages) {
+        this(crossQuery, languages, false);
+    }
+
+    public DefaultQueryCapabilities(final boolean crossQuery, final String[] languages, final boolean sortBy) {
         this.crossQuery = crossQuery;
+        this.sortBy = sortBy;
 
         if(languages == null){
             this.supportedLanguages = new String[]{Query.GEOTK_QOM};
@@ -55,6 +61,14 @@ public class DefaultQueryCapabilities implements QueryCapabilities{
         return crossQuery;
     }
 
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public boolean handleSortBy(){
+        return sortBy;
+    }
+
     @Override
     public String[] getSupportedQueryLanguages() {
         return supportedLanguages;
@@ -42,4 +42,13 @@ public interface QueryCapabilities {
      */
     boolean handleCrossQuery();
 
+    /**
+     * Sort by parameters are always supported, this indicates if the sort is
+     * done natively by the datastore (database index or ORDER BY clause) and
+     * not by loading and sorting the features in memory.
+     *
+     * @return true if the datastore sorts features natively.
+     */
+    boolean handleSortBy();
+
 }
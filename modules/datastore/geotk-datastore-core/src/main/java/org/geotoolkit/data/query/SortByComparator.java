@@ -51,30 +51,61 @@ public class SortByComparator implements Comparator<Feature> {
 
         for (final SortBy order : orders) {
             final PropertyName property = order.getPropertyName();
-            final Comparable o1 = (Comparable) property.evaluate(f1);
-            final Comparable o2 = (Comparable) property.evaluate(f2);
-
-            if(o1 == null){
-                return -1;
-            }else if(o2 == null){
-                return 1;
+            final int result = compare(order, property.evaluate(f1), property.evaluate(f2));
+            if (result != 0) {
+                return result;
             }
+        }
 
-            final int result;
-            if (order.getSortOrder() == SortOrder.ASCENDING) {
-                result = o1.compareTo(o2);
-            } else {
-                result = o2.compareTo(o1);
-            }
+        return 0;
+    }
 
+    /**
+     * Extract the sorted values of a feature, used to sort features
+     * which are not kept in memory.
+     *
+     * @param feature : feature to extract values from
+     * @return values of the sorted properties, in sort by order
+     */
+    public Object[] getValues(final Feature feature) {
+        final Object[] values = new Object[orders.length];
+        for (int i = 0; i < orders.length; i++) {
+            values[i] = orders[i].getPropertyName().evaluate(feature);
+        }
+        return values;
+    }
+
+    /**
+     * Compare the values extracted by {@link #getValues(org.opengis.feature.Feature) },
+     * the result is the same as comparing the features.
+     */
+    public int compareValues(final Object[] values1, final Object[] values2) {
+        for (int i = 0; i < orders.length; i++) {
+            final int result = compare(orders[i], values1[i], values2[i]);
             if (result != 0) {
                 return result;
             }
         }
-
         return 0;
     }
 
+    private static int compare(final SortBy order, final Object value1, final Object value2) {
+        final Comparable o1 = (Comparable) value1;
+        final Comparable o2 = (Comparable) value2;
+
+        if(o1 == null){
+            return -1;
+        }else if(o2 == null){
+            return 1;
+        }
+
+        if (order.getSortOrder() == SortOrder.ASCENDING) {
+            return o1.compareTo(o2);
+        } else {
+            return o2.compareTo(o1);
+        }
+    }
+
     @Override
     public String toString() {
         final StringBuilder sb = new StringBuilder(Classes.getShortClassName(this));
@@ -18,17 +18,21 @@
 package org.geotoolkit.data.iterator;
 
 import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.GeometryFactory;
 import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.LinearRing;
 import com.vividsolutions.jts.geom.Point;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import junit.framework.TestCase;
 
 import org.geotoolkit.storage.DataStoreException;
+import org.geotoolkit.data.DataStoreRuntimeException;
 import org.geotoolkit.data.DataUtilities;
 import org.geotoolkit.data.FeatureCollection;
 import org.geotoolkit.data.FeatureIterator;
@@ -590,6 +594,129 @@ public class GenericIteratorTest extends TestCase{
         assertTrue(checkIte.isClosed());
     }
 
+    @Test
+    public void testSortByIteratorOnDisk(){
+        SortBy[] sorts = new SortBy[]{
+            FF.sort("att_string", SortOrder.ASCENDING)
+        };
+
+        //one feature by run, all features are merged from temporary files
+        final Hints hints = new Hints(HintsPending.SORT_BUFFER_SIZE, 1l);
+        FeatureIterator ite = GenericSortByFeatureIterator.wrap(collection.iterator(), sorts, -1, hints);
+        SimpleFeature f = (SimpleFeature) ite.next();
+        assertEquals(id3, f.getIdentifier().getID());
+        assertEquals("aaa", f.getAttribute("att_string"));
+        assertEquals(2d, f.getAttribute("att_double"));
+        assertEquals(GF.createPoint(new Coordinate(2, 0)), f.getAttribute("att_geom"));
+        assertEquals(ite.next().getIdentifier().getID(),id1);
+        assertEquals(ite.next().getIdentifier().getID(),id2);
+        assertFalse(ite.hasNext());
+        ite.close();
+
+        //features sorted in memory are not encoded
+        ite = GenericSortByFeatureIterator.wrap(collection.iterator(), sorts, -1, null);
+        f = (SimpleFeature) ite.next();
+        assertEquals(id3, f.getIdentifier().getID());
+        assertEquals("aaa", f.getAttribute("att_string"));
+        assertEquals(2d, f.getAttribute("att_double"));
+        assertEquals(GF.createPoint(new Coordinate(2, 0)), f.getAttribute("att_geom"));
+        assertEquals(ite.next().getIdentifier().getID(),id1);
+        assertEquals(ite.next().getIdentifier().getID(),id2);
+        assertFalse(ite.hasNext());
+        ite.close();
+
+        //only the first features are kept
+        ite = GenericSortByFeatureIterator.wrap(collection.iterator(), sorts, 2, null);
+        assertEquals(ite.next().getIdentifier().getID(),id3);
+        assertEquals(ite.next().getIdentifier().getID(),id1);
+        assertFalse(ite.hasNext());
+        ite.close();
+    }
+
+    @Test
+    public void testSortByIteratorOnDiskGeometries(){
+        final FeatureTypeBuilder builder = new FeatureTypeBuilder();
+        builder.setName(name);
+        builder.add("att_geom", Geometry.class, DefaultGeographicCRS.WGS84);
+        builder.add("att_string", String.class);
+        final SimpleFeatureType type = builder.buildSimpleFeatureType();
+
+        final Geometry[] geoms = new Geometry[]{
+            GF.createPoint((Coordinate)null),
+            GF.createLinearRing(new Coordinate[]{
+                new Coordinate(0, 0), new Coordinate(1, 0), new Coordinate(1, 1), new Coordinate(0, 0)}),
+            GF.createLineString(new Coordinate[0]),
+            GF.createGeometryCollection(new Geometry[]{GF.createPoint((Coordinate)null)}),
+            GF.createPoint(new Coordinate(5, 6))
+        };
+        final FeatureCollection<SimpleFeature> col = DataUtilities.collection("geoms", type);
+        for(int i=0; i<geoms.length; i++){
+            final SimpleFeature sf = FeatureUtilities.defaultFeature(type, "");
+            sf.setAttribute("att_geom", geoms[i]);
+            sf.setAttribute("att_string", String.valueOf((char)('e'-i)));
+            col.add(sf);
+        }
+
+        //one feature by run, all features are merged from temporary files
+        final SortBy[] sorts = new SortBy[]{FF.sort("att_string", SortOrder.ASCENDING)};
+        final Hints hints = new Hints(HintsPending.SORT_BUFFER_SIZE, 1l);
+        final FeatureIterator ite = GenericSortByFeatureIterator.wrap(col.iterator(), sorts, -1, hints);
+        for(int i=geoms.length-1; i>=0; i--){
+            final Geometry geom = (Geometry) ((SimpleFeature)ite.next()).getAttribute("att_geom");
+            assertEquals(geoms[i].getClass(), geom.getClass());
+            assertTrue(geoms[i].equalsExact(geom));
+        }
+        assertFalse(ite.hasNext());
+        ite.close();
+    }
+
+    @Test
+    public void testSortByIteratorNotSerializable(){
+        final FeatureTypeBuilder builder = new FeatureTypeBuilder();
+        builder.setName(name);
+        builder.add("att_object", Object.class);
+        builder.add("att_string", String.class);
+        final SimpleFeatureType type = builder.buildSimpleFeatureType();
+
+        final FeatureCollection<SimpleFeature> col = DataUtilities.collection("objects", type);
+        for(String str : new String[]{"c","b","a"}){
+            final SimpleFeature sf = FeatureUtilities.defaultFeature(type, "");
+            sf.setAttribute("att_object", new Object());
+            sf.setAttribute("att_string", str);
+            col.add(sf);
+        }
+
+        //features can not be written, they are sorted in memory
+        final SortBy[] sorts = new SortBy[]{FF.sort("att_string", SortOrder.ASCENDING)};
+        final Hints hints = new Hints(HintsPending.SORT_BUFFER_SIZE, 1l);
+        FeatureIterator ite = GenericSortByFeatureIterator.wrap(col.iterator(), sorts, -1, hints);
+        for(String str : new String[]{"a","b","c"}){
+            final SimpleFeature f = (SimpleFeature) ite.next();
+            assertEquals(str, f.getAttribute("att_string"));
+            assertNotNull(f.getAttribute("att_object"));
+        }
+        assertFalse(ite.hasNext());
+        ite.close();
+
+        //a feature can not be written after the first runs
+        final SimpleFeature sf = FeatureUtilities.defaultFeature(type, "");
+        sf.setAttribute("att_object", "serializable");
+        sf.setAttribute("att_string", "d");
+        final List<SimpleFeature> mixed = new ArrayList<SimpleFeature>();
+        mixed.add(sf);
+        mixed.addAll(col);
+        ite = GenericSortByFeatureIterator.wrap(GenericWrapFeatureIterator.wrapToIterator(mixed.iterator()), sorts, -1, hints);
+        try{
+            ite.hasNext();
+            fail("Sort should have failed with a clear error.");
+        }catch(DataStoreRuntimeException ex){
+            //ok
+            assertTrue(ex.getMessage().contains("temporary file"));
+        }finally{
+            ite.close();
+        }
+    }
+
     @Test
     public void testSortByIteratorOnComplex(){
 
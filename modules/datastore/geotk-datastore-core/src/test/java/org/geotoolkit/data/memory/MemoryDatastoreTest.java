@@ -42,7 +42,10 @@ import org.geotoolkit.feature.DefaultName;
 import org.geotoolkit.feature.simple.SimpleFeatureBuilder;
 import org.geotoolkit.feature.FeatureTypeBuilder;
 import org.geotoolkit.filter.sort.DefaultSortBy;
+import org.geotoolkit.geometry.DefaultBoundingBox;
 import org.geotoolkit.referencing.CRS;
+import org.geotoolkit.referencing.crs.DefaultGeographicCRS;
+import org.geotoolkit.storage.DataStoreException;
 
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -52,6 +55,7 @@ import org.opengis.feature.Feature;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.Name;
+import org.opengis.feature.type.PropertyDescriptor;
 import org.opengis.filter.Filter;
 import org.opengis.filter.FilterFactory;
 import org.opengis.filter.sort.SortBy;
@@ -815,4 +819,95 @@ public class MemoryDatastoreTest extends TestCase{
 
     }
 
+
+    /**
+     * Indexed stores must return the same features as not indexed stores.
+     */
+    @Test
+    public void testIndexes() throws Exception{
+        final FeatureTypeBuilder builder = new FeatureTypeBuilder();
+        final GeometryFactory gf = new GeometryFactory();
+
+        final Name name = new DefaultName("http://test.com", "TestSchema1");
+        builder.reset();
+        builder.setName(name);
+        builder.add("geom", Point.class, DefaultGeographicCRS.WGS84);
+        builder.add("integer", Integer.class);
+        builder.add("string", String.class);
+        final SimpleFeatureType type = builder.buildSimpleFeatureType();
+
+        final MemoryDataStore indexed = new MemoryDataStore(type, true);
+        final MemoryDataStore scanned = new MemoryDataStore(type, true);
+
+        final SimpleFeatureBuilder sfb = new SimpleFeatureBuilder(type);
+        final List<Feature> features = new ArrayList<Feature>();
+        for(int x=0; x<20; x++){
+            for(int y=0; y<20; y++){
+                sfb.reset();
+                sfb.set("geom", gf.createPoint(new Coordinate(x, y)));
+                sfb.set("integer", x);
+                sfb.set("string", (y%2==0) ? "even" : "odd");
+                features.add(sfb.buildFeature(""));
+            }
+        }
+
+        //create indexes before and after adding features
+        indexed.createSpatialIndex(name);
+        indexed.addFeatures(name, features);
+        indexed.createAttributeIndex(name, new DefaultName("integer"));
+        indexed.createAttributeIndex(name, new DefaultName("string"));
+        scanned.addFeatures(name, features);
+
+        try{
+            indexed.createAttributeIndex(name, new DefaultName("unexisting"));
+            fail("Indexing an unexisting attribute should have raised an error");
+        }catch(DataStoreException ex){
+            //ok
+        }
+
+        final DefaultBoundingBox bbox = new DefaultBoundingBox(DefaultGeographicCRS.WGS84);
+        bbox.setRange(0, 2.5, 6.5);
+        bbox.setRange(1, 4, 8);
+
+        final Filter[] filters = {
+            FF.bbox(FF.property("geom"), bbox),
+            FF.bbox(FF.property(""), bbox),
+            FF.intersects(FF.property("geom"), FF.literal(gf.createPoint(new Coordinate(3, 4)).buffer(1.5))),
+            FF.equals(FF.property("integer"), FF.literal(4)),
+            FF.equals(FF.literal(4L), FF.property("integer")),
+            FF.equals(FF.property("integer"), FF.literal("4")),
+            FF.equals(FF.property("string"), FF.literal("odd")),
+            FF.equal(FF.property("string"), FF.literal("ODD"), false),
+            FF.and(FF.bbox(FF.property("geom"), bbox), FF.equals(FF.property("integer"), FF.literal(3))),
+            FF.or(FF.bbox(FF.property("geom"), bbox), FF.equals(FF.property("integer"), FF.literal(3)))
+        };
+
+        checkSameCount(indexed, scanned, name, filters);
+
+        //update and remove features through the stores
+        final PropertyDescriptor geomDesc = type.getDescriptor("geom");
+        final PropertyDescriptor intDesc = type.getDescriptor("integer");
+        final Filter toUpdate = FF.equals(FF.property("integer"), FF.literal(19));
+        final Filter toRemove = FF.equals(FF.property("string"), FF.literal("even"));
+        for(MemoryDataStore store : new MemoryDataStore[]{indexed, scanned}){
+            store.updateFeatures(name, toUpdate, geomDesc, gf.createPoint(new Coordinate(4, 5)));
+            store.updateFeatures(name, toUpdate, intDesc, 3);
+            store.removeFeatures(name, toRemove);
+        }
+
+        checkSameCount(indexed, scanned, name, filters);
+        assertEquals(20, indexed.getCount(QueryBuilder.filtered(name, FF.equals(FF.property("integer"), FF.literal(3)))));
+        assertEquals(12, indexed.getCount(QueryBuilder.filtered(name, filters[8])));
+    }
+
+    private static void checkSameCount(final MemoryDataStore indexed, final MemoryDataStore scanned,
+            final Name name, final Filter[] filters) throws Exception{
+        assertEquals(indexed.getCount(QueryBuilder.all(name)), scanned.getCount(QueryBuilder.all(name)));
+        for(Filter filter : filters){
+            final long count = scanned.getCount(QueryBuilder.filtered(name, filter));
+            assertTrue(filter.toString(), count > 0);
+            assertEquals(filter.toString(), count, indexed.getCount(QueryBuilder.filtered(name, filter)));
+        }
+    }
+
 }
@@ -26,6 +26,8 @@ import org.geotoolkit.data.FeatureWriter;
 import org.geotoolkit.data.memory.MemoryDataStore;
 import org.geotoolkit.data.session.Session;
 import org.geotoolkit.factory.FactoryFinder;
+import org.geotoolkit.factory.Hints;
+import org.geotoolkit.factory.HintsPending;
 import org.geotoolkit.feature.DefaultName;
 import org.geotoolkit.feature.FeatureTypeBuilder;
 import org.geotoolkit.referencing.crs.DefaultGeographicCRS;
@@ -53,7 +55,13 @@ public class QueryTest extends TestCase{
     private static final FilterFactory FF = FactoryFinder.getFilterFactory(null);
 
 
-    private final MemoryDataStore store = new MemoryDataStore();
+    private boolean nativeSort = false;
+    private final MemoryDataStore store = new MemoryDataStore(){
+        @Override
+        public QueryCapabilities getQueryCapabilities() {
+            return new DefaultQueryCapabilities(false, null, nativeSort);
+        }
+    };
     private final Name name1;
     private final Name name2;
     
@@ -576,4 +584,57 @@ public class QueryTest extends TestCase{
         
     }
 
+    /**
+     * Test the hash join when features do not fit in the join buffer.
+     */
+    @Test
+    public void testHashJoinBlocks() throws Exception{
+        final Session session = store.createSession(false);
+        final Hints hints = new Hints(HintsPending.JOIN_BUFFER_SIZE, 1);
+
+        assertEquals(4, count(session, JoinType.INNER, hints));
+        assertEquals(6, count(session, JoinType.LEFT_OUTER, hints));
+        assertEquals(6, count(session, JoinType.RIGHT_OUTER, hints));
+    }
+
+    /**
+     * Test the sort-merge join used when datastores sort features natively.
+     */
+    @Test
+    public void testSortMergeJoin() throws Exception{
+        nativeSort = true;
+        final Session session = store.createSession(false);
+
+        assertEquals(4, count(session, JoinType.INNER, null));
+        assertEquals(6, count(session, JoinType.LEFT_OUTER, null));
+        assertEquals(6, count(session, JoinType.RIGHT_OUTER, null));
+    }
+
+    private int count(final Session session, final JoinType type, final Hints hints){
+        final QueryBuilder qb = new QueryBuilder();
+        qb.setSource(new DefaultJoin(
+                new DefaultSelector(session, name1, "s1"),
+                new DefaultSelector(session, name2, "s2"),
+                type,
+                FF.equals(FF.property("att2"), FF.property("att3"))));
+
+        final FeatureCollection col = session.getFeatureCollection(qb.buildQuery());
+        final FeatureIterator ite = col.iterator(hints);
+        int count = 0;
+        try{
+            while(ite.hasNext()){
+                final Feature f = ite.next();
+                final ComplexAttribute c1 = (ComplexAttribute) f.getProperty("s1");
+                final ComplexAttribute c2 = (ComplexAttribute) f.getProperty("s2");
+                if(c1 != null && c2 != null){
+                    assertEquals(c1.getProperty("att2").getValue(), c2.getProperty("att3").getValue());
+                }
+                count++;
+            }
+        }finally{
+            ite.close();
+        }
+        return count;
+    }
+
 }
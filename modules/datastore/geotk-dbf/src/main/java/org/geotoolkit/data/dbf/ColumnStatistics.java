@@ -0,0 +1,534 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.data.dbf;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Date;
+
+import org.geotoolkit.util.Converters;
+
+/**
+ * Statistics of a dbf column : number of null values, minimum and maximum
+ * values, and for numeric and date columns an equal width histogram.
+ *
+ * <p>
+ * The histogram range is not known before reading the values, it starts on
+ * the first values read and its buckets are merged by pairs each time a value
+ * falls outside of the range.
+ * </p>
+ *
+ * @author Johann Sorel (Geomatys)
+ * @module pending
+ */
+public final class ColumnStatistics {
+
+    /**
+     * Number of histogram buckets.
+     */
+    static final int NB_BUCKETS = 64;
+
+    /**
+     * Estimated selectivity of an equality on a text column.
+     */
+    static final double EQUALITY_SELECTIVITY = 0.1;
+
+    private final String name;
+    private final Class binding;
+    private int nullCount = 0;
+    private int valueCount = 0;
+
+    //numeric and date values, dates as milliseconds
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+    private int[] buckets;
+    private double origin = 0;
+    private double width = 0;
+
+    //text values
+    private String minText = null;
+    private String maxText = null;
+
+    ColumnStatistics(final String name, final Class binding) {
+        this.name = name;
+        this.binding = binding;
+        this.buckets = isNumeric() ? new int[NB_BUCKETS] : null;
+    }
+
+    /**
+     * @return dbf column name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return class of the column values
+     */
+    public Class getBinding() {
+        return binding;
+    }
+
+    /**
+     * @return number of null values
+     */
+    public int getNullCount() {
+        return nullCount;
+    }
+
+    /**
+     * @return number of non null values
+     */
+    public int getValueCount() {
+        return valueCount;
+    }
+
+    /**
+     * @return smallest value, null if unknowned or if there are no values
+     */
+    public Object getMinimum() {
+        return (binding == String.class) ? minText : toValue(min);
+    }
+
+    /**
+     * @return greatest value, null if unknowned or if there are no values
+     */
+    public Object getMaximum() {
+        return (binding == String.class) ? maxText : toValue(max);
+    }
+
+    private boolean isNumeric() {
+        return Number.class.isAssignableFrom(binding) || Date.class.isAssignableFrom(binding);
+    }
+
+    private boolean isIntegral() {
+        return binding == Integer.class || binding == Long.class;
+    }
+
+    private Object toValue(final double value) {
+        if (Double.isNaN(value)) {
+            return null;
+        } else if (binding == Integer.class) {
+            return (int) value;
+        } else if (binding == Long.class) {
+            return (long) value;
+        } else if (Date.class.isAssignableFrom(binding)) {
+            return new Date((long) value);
+        }
+        return value;
+    }
+
+    private static double toDouble(final Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        } else if (value instanceof Date) {
+            return ((Date) value).getTime();
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * Add a value read in the column.
+     */
+    void add(final Object value) {
+        if (value == null) {
+            nullCount++;
+            return;
+        }
+        valueCount++;
+
+        if (value instanceof String) {
+            final String str = (String) value;
+            if (minText == null || str.compareTo(minText) < 0) {
+                minText = str;
+            }
+            if (maxText == null || str.compareTo(maxText) > 0) {
+                maxText = str;
+            }
+            return;
+        }
+
+        final double v = toDouble(value);
+        if (Double.isNaN(v)) {
+            return;
+        }
+        if (Double.isNaN(min) || v < min) {
+            min = v;
+        }
+        if (Double.isNaN(max) || v > max) {
+            max = v;
+        }
+        if (buckets != null) {
+            addToHistogram(v);
+        }
+    }
+
+    private void addToHistogram(final double v) {
+        if (Double.isInfinite(v)) {
+            buckets = null;
+            return;
+        }
+
+        if (width == 0) {
+            if (valueCount == 1 || v == origin) {
+                //all values are equal so far, they are all counted in the first bucket
+                origin = v;
+                buckets[0]++;
+                return;
+            }
+            //first distinct value, place the range on the two values
+            final double previous = origin;
+            origin = min;
+            width = (max - min) / (NB_BUCKETS / 2);
+            if (width == 0 || Double.isInfinite(width)) {
+                buckets = null;
+                return;
+            }
+            final int count = buckets[0];
+            buckets[0] = 0;
+            buckets[index(previous)] += count;
+        }
+
+        int index = index(v);
+        while (index < 0 || index >= NB_BUCKETS) {
+            final int[] merged = new int[NB_BUCKETS];
+            final int shift;
+            if (index < 0) {
+                //extend the range to the left
+                origin -= NB_BUCKETS * width;
+                shift = NB_BUCKETS;
+            } else {
+                //extend the range to the right
+                shift = 0;
+            }
+            for (int i = 0; i < NB_BUCKETS; i++) {
+                merged[(shift + i) / 2] += buckets[i];
+            }
+            buckets = merged;
+            width *= 2;
+            if (Double.isInfinite(width) || Double.isInfinite(origin)) {
+                buckets = null;
+                return;
+            }
+            index = index(v);
+        }
+        buckets[index]++;
+    }
+
+    private int index(final double v) {
+        final double d = Math.floor((v - origin) / width);
+        if (d < 0) {
+            return -1;
+        } else if (d >= NB_BUCKETS) {
+            return NB_BUCKETS;
+        }
+        return (int) d;
+    }
+
+    /**
+     * Check if the comparison "column operator value" is true or false for all records.
+     *
+     * @param operator : one of the DbasePredicate comparison operators, except NOT_EQUAL
+     * @param literal : compared value, converted to the column type
+     * @param matchCase : if text comparison is case sensitive
+     * @return DbaseStatistics.ALL, NONE or UNKNOWN
+     */
+    int matches(final int operator, final Object literal, final boolean matchCase) {
+        if (operator == DbasePredicate.NOT_EQUAL) {
+            return DbaseStatistics.UNKNOWN;
+        }
+        if (valueCount == 0) {
+            //null values never match a comparison
+            return DbaseStatistics.NONE;
+        }
+
+        final int cmpMin;
+        final int cmpMax;
+        if (binding == String.class) {
+            if (!matchCase || !(literal instanceof String) || minText == null) {
+                return DbaseStatistics.UNKNOWN;
+            }
+            cmpMin = ((String) literal).compareTo(minText);
+            cmpMax = ((String) literal).compareTo(maxText);
+        } else if (isNumeric() && !Double.isNaN(min)) {
+            if (operator == DbasePredicate.EQUAL) {
+                //floating equality uses a tolerance, only integers are exact
+                if (!isIntegral() || !(literal instanceof Integer || literal instanceof Long
+                        || literal instanceof Short || literal instanceof Byte)) {
+                    return DbaseStatistics.UNKNOWN;
+                }
+            } else if (!(literal instanceof Number || literal instanceof Date || literal instanceof String)) {
+                return DbaseStatistics.UNKNOWN;
+            }
+            //the filter converts the literal to the column type before comparing
+            final double v = toDouble(Converters.convert(literal, binding));
+            if (Double.isNaN(v)) {
+                return DbaseStatistics.UNKNOWN;
+            }
+            cmpMin = Double.compare(v, min);
+            cmpMax = Double.compare(v, max);
+        } else {
+            return DbaseStatistics.UNKNOWN;
+        }
+
+        final boolean none;
+        final boolean all;
+        switch (operator) {
+            case DbasePredicate.EQUAL:
+                none = cmpMin < 0 || cmpMax > 0;
+                all = cmpMin == 0 && cmpMax == 0;
+                break;
+            case DbasePredicate.LESS:
+                none = cmpMin <= 0;
+                all = cmpMax > 0;
+                break;
+            case DbasePredicate.LESS_OR_EQUAL:
+                none = cmpMin < 0;
+                all = cmpMax >= 0;
+                break;
+            case DbasePredicate.GREATER:
+                none = cmpMax >= 0;
+                all = cmpMin < 0;
+                break;
+            default:
+                none = cmpMax > 0;
+                all = cmpMin <= 0;
+                break;
+        }
+        if (none) {
+            return DbaseStatistics.NONE;
+        } else if (all && nullCount == 0) {
+            return DbaseStatistics.ALL;
+        }
+        return DbaseStatistics.UNKNOWN;
+    }
+
+    /**
+     * Estimate the fraction of records for which "column operator value" is true.
+     *
+     * @param operator : one of the DbasePredicate comparison operators
+     * @param literal : compared value
+     * @param count : total number of records
+     * @return estimated fraction, between 0 and 1
+     */
+    double selectivity(final int operator, final Object literal, final int count) {
+        if (count == 0) {
+            return 0;
+        }
+        final double ratio = (double) valueCount / count;
+        final double equal;
+        final double less;
+        final double greater;
+
+        if (binding == String.class && literal instanceof String && minText != null) {
+            final String str = (String) literal;
+            if (str.compareTo(minText) < 0) {
+                equal = 0;
+                less = 0;
+                greater = 1;
+            } else if (str.compareTo(maxText) > 0) {
+                equal = 0;
+                less = 1;
+                greater = 0;
+            } else {
+                equal = (minText.equals(maxText)) ? 1 : EQUALITY_SELECTIVITY;
+                less = DbaseStatistics.DEFAULT_SELECTIVITY;
+                greater = DbaseStatistics.DEFAULT_SELECTIVITY;
+            }
+        } else if (isNumeric() && !Double.isNaN(min)) {
+            double v = toDouble(literal);
+            if (Double.isNaN(v)) {
+                v = toDouble(Converters.convert(literal, binding));
+            }
+            if (Double.isNaN(v)) {
+                return DbaseStatistics.DEFAULT_SELECTIVITY;
+            }
+            if (isIntegral()) {
+                //each integer stands for the range [i-0.5, i+0.5]
+                equal = (v == Math.rint(v)) ? rangeFraction(v - 0.5, v + 0.5) : 0;
+                less = rangeFraction(Double.NEGATIVE_INFINITY, Math.ceil(v) - 0.5);
+                greater = rangeFraction(Math.floor(v) + 0.5, Double.POSITIVE_INFINITY);
+            } else {
+                equal = equalFraction(v);
+                less = rangeFraction(Double.NEGATIVE_INFINITY, v) - equal;
+                greater = rangeFraction(v, Double.POSITIVE_INFINITY) - equal;
+            }
+        } else {
+            return DbaseStatistics.DEFAULT_SELECTIVITY;
+        }
+
+        final double fraction;
+        switch (operator) {
+            case DbasePredicate.EQUAL:            fraction = equal; break;
+            case DbasePredicate.NOT_EQUAL:        fraction = 1 - equal; break;
+            case DbasePredicate.LESS:             fraction = less; break;
+            case DbasePredicate.LESS_OR_EQUAL:    fraction = less + equal; break;
+            case DbasePredicate.GREATER:          fraction = greater; break;
+            default:                              fraction = greater + equal; break;
+        }
+        return ratio * clamp(fraction);
+    }
+
+    /**
+     * Estimate the fraction of records with a value between the two bounds, inclusive.
+     *
+     * @param count : total number of records
+     */
+    double betweenSelectivity(final Object lower, final Object upper, final int count) {
+        if (count == 0) {
+            return 0;
+        }
+        if (!isNumeric() || Double.isNaN(min)) {
+            return DbaseStatistics.DEFAULT_SELECTIVITY;
+        }
+        double lo = toDouble(Converters.convert(lower, binding));
+        double hi = toDouble(Converters.convert(upper, binding));
+        if (Double.isNaN(lo) || Double.isNaN(hi)) {
+            return DbaseStatistics.DEFAULT_SELECTIVITY;
+        }
+        if (isIntegral()) {
+            lo -= 0.5;
+            hi += 0.5;
+        }
+        return (double) valueCount / count * clamp(rangeFraction(lo, hi));
+    }
+
+    /**
+     * @return estimated fraction of the values between lo and hi, inclusive
+     */
+    private double rangeFraction(final double lo, final double hi) {
+        if (hi < min || lo > max || hi < lo) {
+            return 0;
+        } else if (lo <= min && hi >= max) {
+            return 1;
+        }
+
+        if (buckets == null || width == 0) {
+            //values supposed uniformly distributed between min and max
+            if (max == min) {
+                return 1;
+            }
+            return (Math.min(hi, max) - Math.max(lo, min)) / (max - min);
+        }
+
+        double sum = 0;
+        for (int i = 0; i < NB_BUCKETS; i++) {
+            if (buckets[i] == 0) {
+                continue;
+            }
+            final double start = origin + i * width;
+            final double overlap = Math.min(hi, start + width) - Math.max(lo, start);
+            if (overlap > 0) {
+                sum += buckets[i] * Math.min(1, overlap / width);
+            }
+        }
+        return sum / valueCount;
+    }
+
+    /**
+     * @return estimated fraction of the values equal to v
+     */
+    private double equalFraction(final double v) {
+        if (v < min || v > max) {
+            return 0;
+        } else if (min == max) {
+            return 1;
+        }
+
+        final double inBucket;
+        if (buckets == null || width == 0) {
+            inBucket = valueCount;
+        } else {
+            final int index = index(v);
+            if (index < 0 || index >= NB_BUCKETS) {
+                return 0;
+            }
+            inBucket = buckets[index];
+        }
+        return inBucket * EQUALITY_SELECTIVITY / valueCount;
+    }
+
+    private static double clamp(final double d) {
+        return (d < 0) ? 0 : ((d > 1) ? 1 : d);
+    }
+
+    void write(final DataOutput out) throws IOException {
+        out.writeUTF(name);
+        out.writeUTF(binding.getName());
+        out.writeInt(nullCount);
+        out.writeInt(valueCount);
+        if (binding == String.class) {
+            out.writeBoolean(minText != null);
+            if (minText != null) {
+                out.writeUTF(minText);
+                out.writeUTF(maxText);
+            }
+        } else {
+            out.writeDouble(min);
+            out.writeDouble(max);
+            out.writeBoolean(buckets != null);
+            if (buckets != null) {
+                out.writeDouble(origin);
+                out.writeDouble(width);
+                for (int count : buckets) {
+                    out.writeInt(count);
+                }
+            }
+        }
+    }
+
+    static ColumnStatistics read(final DataInput in) throws IOException {
+        final String name = in.readUTF();
+        final Class binding;
+        try {
+            binding = Class.forName(in.readUTF());
+        } catch (ClassNotFoundException ex) {
+            throw new IOException(ex);
+        }
+        final ColumnStatistics stats = new ColumnStatistics(name, binding);
+        stats.nullCount = in.readInt();
+        stats.valueCount = in.readInt();
+        if (binding == String.class) {
+            if (in.readBoolean()) {
+                stats.minText = in.readUTF();
+                stats.maxText = in.readUTF();
+            }
+        } else {
+            stats.min = in.readDouble();
+            stats.max = in.readDouble();
+            if (in.readBoolean()) {
+                stats.origin = in.readDouble();
+                stats.width = in.readDouble();
+                stats.buckets = new int[NB_BUCKETS];
+                for (int i = 0; i < NB_BUCKETS; i++) {
+                    stats.buckets[i] = in.readInt();
+                }
+            } else {
+                stats.buckets = null;
+            }
+        }
+        return stats;
+    }
+
+    @Override
+    public String toString() {
+        return "ColumnStatistics[" + name + ", nulls=" + nullCount + ", values=" + valueCount
+                + ", min=" + getMinimum() + ", max=" + getMaximum() + "]";
+    }
+
+}
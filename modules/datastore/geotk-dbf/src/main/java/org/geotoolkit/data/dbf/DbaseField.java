@@ -18,6 +18,7 @@
 package org.geotoolkit.data.dbf;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.util.Calendar;
 import java.util.Date;
@@ -34,6 +35,30 @@ abstract class DbaseField {
     private static final String NULL_STRING = "";
     private static final Date NULL_DATE = new Date();
 
+    /**
+     * Returned by the raw byte read methods when the field bytes are not in the
+     * plain form handled without the charset decoder.
+     */
+    static final Object UNDECODED = new Object();
+
+    /**
+     * Returned by {@link #readLong(java.nio.ByteBuffer, int) } when the field
+     * bytes are not a plain integer.
+     */
+    static final long NO_LONG = Long.MIN_VALUE;
+
+    /**
+     * Exact powers of ten, a double holding an integer under 2^53 divided by
+     * one of them is correctly rounded, the same as Double.valueOf.
+     */
+    private static final double[] POW10 = new double[23];
+    static {
+        POW10[0] = 1;
+        for(int i=1;i<POW10.length;i++){
+            POW10[i] = POW10[i-1] * 10;
+        }
+    }
+
     public static DbaseField create(final String fieldName, final char fieldType, final int fieldDataAddress,
                         final int fieldLength, final int decimalCount, final Class clazz) throws IOException{
 
@@ -139,6 +164,116 @@ abstract class DbaseField {
 
     public abstract Object read(CharBuffer charBuffer) throws IOException;
 
+    /**
+     * Read the field value straight from the record bytes, numbers and dates
+     * are ascii in all dbf files and do not need the charset decoder.
+     *
+     * @param buffer : dbf buffer
+     * @param offset : absolute position of the field in the buffer
+     * @return field value, or {@link #UNDECODED} if the bytes must go through
+     *         the charset decoder and {@link #read(java.nio.CharBuffer) }
+     */
+    Object read(final ByteBuffer buffer, final int offset) throws IOException {
+        return UNDECODED;
+    }
+
+    /**
+     * Read an integer field value straight from the record bytes, without
+     * creating any object.
+     *
+     * @param buffer : dbf buffer
+     * @param offset : absolute position of the field in the buffer
+     * @return field value, or {@link #NO_LONG} if the field is not an integer
+     *         field or if the bytes are not a plain integer
+     */
+    long readLong(final ByteBuffer buffer, final int offset) {
+        return NO_LONG;
+    }
+
+    /**
+     * Read a numeric field value straight from the record bytes, without
+     * creating any object.
+     *
+     * @param buffer : dbf buffer
+     * @param offset : absolute position of the field in the buffer
+     * @return field value, or NaN if the field is not numeric or if the bytes
+     *         are not a plain decimal number
+     */
+    double readDouble(final ByteBuffer buffer, final int offset) {
+        final long l = readLong(buffer, offset);
+        return (l == NO_LONG) ? Double.NaN : l;
+    }
+
+    /**
+     * Parse a plain integer : leading blanks, an optional minus sign and up to
+     * 18 digits. Anything else is left to the slower char path which knows
+     * how to handle it.
+     */
+    private static long parseLong(final ByteBuffer buffer, int i, final int end) {
+        while (i < end && (buffer.get(i) & 0xFF) <= ' ') i++;
+        boolean negative = false;
+        if (i < end && buffer.get(i) == '-') {
+            negative = true;
+            i++;
+        }
+        if (i == end || end - i > 18) {
+            return NO_LONG;
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            final int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return NO_LONG;
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parse a plain decimal number : blanks, an optional sign, digits and an
+     * optional fraction, with at most 15 significant digits so the result is
+     * exactly the one of Double.valueOf.
+     */
+    private static double parseDecimal(final ByteBuffer buffer, int i, int end) {
+        while (i < end && (buffer.get(i) & 0xFF) <= ' ') i++;
+        while (end > i && (buffer.get(end-1) & 0xFF) <= ' ') end--;
+        boolean negative = false;
+        if (i < end) {
+            final byte b = buffer.get(i);
+            if (b == '-') {
+                negative = true;
+                i++;
+            } else if (b == '+') {
+                i++;
+            }
+        }
+        long mantissa = 0;
+        boolean hasDigit = false;
+        int nbDigits = 0;
+        int nbDecimals = -1;
+        for (; i < end; i++) {
+            final byte b = buffer.get(i);
+            if (b == '.' && nbDecimals < 0) {
+                nbDecimals = 0;
+                continue;
+            }
+            final int digit = b - '0';
+            if (digit < 0 || digit > 9 || nbDigits == 15) {
+                return Double.NaN;
+            }
+            hasDigit = true;
+            mantissa = mantissa * 10 + digit;
+            if (mantissa != 0) nbDigits++;
+            if (nbDecimals >= 0) nbDecimals++;
+        }
+        if (!hasDigit || nbDecimals >= POW10.length) {
+            return Double.NaN;
+        }
+        final double value = (nbDecimals > 0) ? mantissa / POW10[nbDecimals] : mantissa;
+        return negative ? -value : value;
+    }
+
     public abstract String string(Object obj, DbaseFieldFormatter formatter) throws IOException;
 
 
@@ -169,6 +304,24 @@ abstract class DbaseField {
                 }
         }
 
+        @Override
+        Object read(final ByteBuffer buffer, final int offset) throws IOException {
+            switch (buffer.get(offset)) {
+                case 't':
+                case 'T':
+                case 'Y':
+                case 'y':
+                    return Boolean.TRUE;
+                case 'f':
+                case 'F':
+                case 'N':
+                case 'n':
+                    return Boolean.FALSE;
+                default:
+                    return UNDECODED;
+            }
+        }
+
         @Override
         public String string(final Object obj, final DbaseFieldFormatter formatter) throws IOException {
             return (obj == null ? "F" : obj == Boolean.TRUE ? "T" : "F");
@@ -238,18 +391,38 @@ abstract class DbaseField {
                 final int tempMonth = Integer.parseInt(tempString) - 1;
                 tempString = charBuffer.subSequence(6,8).toString();
                 final int tempDay = Integer.parseInt(tempString);
-                final Calendar cal = Calendar.getInstance();
-                cal.clear();
-                cal.set(Calendar.YEAR, tempYear);
-                cal.set(Calendar.MONTH, tempMonth);
-                cal.set(Calendar.DAY_OF_MONTH, tempDay);
-                return cal.getTime();
+                return toDate(tempYear, tempMonth, tempDay);
             } catch (NumberFormatException nfe) {
                 // todo: use progresslistener, this isn't a grave error.
                 return null;
             }
         }
 
+        @Override
+        Object read(final ByteBuffer buffer, final int offset) throws IOException {
+            if (fieldLength < 8) {
+                return UNDECODED;
+            }
+            int value = 0;
+            for (int i = offset; i < offset+8; i++) {
+                final int digit = buffer.get(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    return UNDECODED;
+                }
+                value = value * 10 + digit;
+            }
+            return toDate(value / 10000, (value / 100) % 100 - 1, value % 100);
+        }
+
+        private static Date toDate(final int year, final int month, final int day) {
+            final Calendar cal = Calendar.getInstance();
+            cal.clear();
+            cal.set(Calendar.YEAR, year);
+            cal.set(Calendar.MONTH, month);
+            cal.set(Calendar.DAY_OF_MONTH, day);
+            return cal.getTime();
+        }
+
         @Override
         public String string(final Object obj, final DbaseFieldFormatter formatter) throws IOException {
             return formatter.getFieldString((Date) (obj == null ? NULL_DATE : obj));
@@ -282,6 +455,23 @@ abstract class DbaseField {
             }
         }
 
+        @Override
+        Object read(final ByteBuffer buffer, final int offset) throws IOException {
+            final long value = readLong(buffer, offset);
+            if (value == NO_LONG) {
+                return UNDECODED;
+            } else if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                return Integer.valueOf((int) value);
+            } else {
+                return Long.valueOf(value);
+            }
+        }
+
+        @Override
+        long readLong(final ByteBuffer buffer, final int offset) {
+            return parseLong(buffer, offset, offset+fieldLength);
+        }
+
         @Override
         public String string(final Object obj, final DbaseFieldFormatter formatter) throws IOException {
             return formatter.getFieldString(fieldLength, 0,(Number) (obj == null ? NULL_NUMBER : obj));
@@ -309,6 +499,17 @@ abstract class DbaseField {
             }
         }
 
+        @Override
+        Object read(final ByteBuffer buffer, final int offset) throws IOException {
+            final long value = readLong(buffer, offset);
+            return (value == NO_LONG) ? UNDECODED : Long.valueOf(value);
+        }
+
+        @Override
+        long readLong(final ByteBuffer buffer, final int offset) {
+            return parseLong(buffer, offset, offset+fieldLength);
+        }
+
         @Override
         public String string(final Object obj, final DbaseFieldFormatter formatter) throws IOException {
             return formatter.getFieldString(fieldLength, 0,(Number) (obj == null ? NULL_NUMBER : obj));
@@ -337,6 +538,17 @@ abstract class DbaseField {
             }
         }
 
+        @Override
+        Object read(final ByteBuffer buffer, final int offset) throws IOException {
+            final double value = readDouble(buffer, offset);
+            return Double.isNaN(value) ? UNDECODED : Double.valueOf(value);
+        }
+
+        @Override
+        double readDouble(final ByteBuffer buffer, final int offset) {
+            return parseDecimal(buffer, offset, offset+fieldLength);
+        }
+
         @Override
         public String string(final Object obj, final DbaseFieldFormatter formatter) throws IOException {
             return formatter.getFieldString(fieldLength, decimalCount,
@@ -63,6 +63,7 @@ public class DbaseFileDataStore extends AbstractDataStore{
     private String name;
 
     private SimpleFeatureType featureType;
+    private DbaseStatistics statistics = null;
 
     public DbaseFileDataStore(final File f, final String namespace, final String name){
         super(namespace);
@@ -139,6 +140,90 @@ public class DbaseFileDataStore extends AbstractDataStore{
         return handleRemaining(fr, query);
     }
 
+    /**
+     * {@inheritDoc }
+     *
+     * Use the file statistics when they can answer.
+     */
+    @Override
+    public long getCount(final Query query) throws DataStoreException {
+        typeCheck(query.getTypeName()); //raise error is type doesnt exist
+        final DbaseStatistics stats = getStatistics();
+        if (stats != null) {
+            final long count = stats.getCount(query);
+            if (count >= 0) {
+                return count;
+            }
+        }
+        return super.getCount(query);
+    }
+
+    /**
+     * Estimate the number of features matching the query, using the file
+     * statistics, without reading the records.
+     *
+     * @param query : query
+     * @return estimated number of features, -1 if the file has no statistics
+     * @throws DataStoreException
+     */
+    public long estimateCount(final Query query) throws DataStoreException {
+        typeCheck(query.getTypeName()); //raise error is type doesnt exist
+        final DbaseStatistics stats = getStatistics();
+        return (stats == null) ? -1 : stats.estimateCount(query);
+    }
+
+    /**
+     * Get the dbf statistics, read from the sidecar file if it is up to date.
+     * Statistics are never computed by the queries, see {@link #computeStatistics() }.
+     *
+     * @return dbf statistics, null if they were not computed or are obsolete
+     * @throws DataStoreException
+     */
+    public synchronized DbaseStatistics getStatistics() throws DataStoreException {
+        if (statistics != null && statistics.isUpToDate()) {
+            return statistics;
+        }
+
+        final File statFile = DbaseStatistics.getStatisticsFile(file);
+        try {
+            statistics = DbaseStatistics.read(statFile, file);
+        } catch (IOException ex) {
+            getLogger().log(Level.FINE, "Invalid statistics file "+statFile, ex);
+            statistics = null;
+        }
+        return statistics;
+    }
+
+    /**
+     * Compute the dbf statistics, reading all records, and save them in the
+     * sidecar file. Queries use them from then on, until the file is modified.
+     *
+     * @return dbf statistics
+     * @throws DataStoreException
+     */
+    public DbaseStatistics computeStatistics() throws DataStoreException {
+        final File statFile = DbaseStatistics.getStatisticsFile(file);
+        final DbaseStatistics stats;
+        RWLock.readLock().lock();
+        try {
+            stats = DbaseStatistics.compute(file, null);
+        } catch (IOException ex) {
+            throw new DataStoreException(ex);
+        } finally {
+            RWLock.readLock().unlock();
+        }
+        try {
+            stats.save(statFile);
+        } catch (IOException ex) {
+            //statistics are only kept in memory
+            getLogger().log(Level.FINE, "Could not save statistics file "+statFile, ex);
+        }
+        synchronized (this) {
+            statistics = stats;
+        }
+        return stats;
+    }
+
     
     ////////////////////////////////////////////////////////////////////////////
     // FALLTHROUGHT OR NOT IMPLEMENTED /////////////////////////////////////////
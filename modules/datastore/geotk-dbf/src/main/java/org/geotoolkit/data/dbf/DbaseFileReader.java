@@ -52,6 +52,9 @@ import org.geotoolkit.io.Closeable;
  * Remember that the Row object is always the same.
  * The values are parsed as they are read, so it pays to copy them out (as each
  * call to Row.read() will result in an expensive String parse).
+ * Numeric, logical and date fields are parsed straight from the record bytes,
+ * only character fields go through the charset decoder. Rows can be tested
+ * against a {@link DbasePredicate} before reading any value.
  * 
  * @author Ian Schneider
  * @author Johann Sorel (Geomatys)
@@ -64,11 +67,36 @@ public final class DbaseFileReader implements Closeable{
     public final class Row {
         
         public Object read(final int column) throws IOException {
-            final int offset = header.getFieldOffset(column);
             final DbaseField field = fieldReaders[column];
+            final int offset = fieldOffsets[column];
+            final Object value = field.read(buffer, buffer.position()+offset);
+            if(value != DbaseField.UNDECODED){
+                return value;
+            }
             prepareFieldRead(field, offset);
             return field.read(charBuffer);
         }
+
+        /**
+         * Read only the given columns.
+         *
+         * @param columns : indexes of the columns to read
+         * @param entry : array to fill, values are stored in the columns order,
+         *                can be null
+         * @return entry array
+         * @throws IOException
+         */
+        public Object[] read(final int[] columns, Object[] entry) throws IOException {
+            if(entry == null){
+                entry = new Object[columns.length];
+            }else if (entry.length < columns.length) {
+                throw new ArrayIndexOutOfBoundsException();
+            }
+            for (int x = 0; x < columns.length; x++) {
+                entry[x] = read(columns[x]);
+            }
+            return entry;
+        }
         
         public Object[] readAll(Object[] entry) throws IOException {
             if(entry == null){
@@ -76,18 +104,59 @@ public final class DbaseFileReader implements Closeable{
             }else if (entry.length < fieldReaders.length) {
                 throw new ArrayIndexOutOfBoundsException();
             }
-
-            int fieldOffset = 1; //1 to skip the delete flag
             for (int x = 0; x < fieldReaders.length; x++) {
-                final DbaseField field = fieldReaders[x];
-                prepareFieldRead(field, fieldOffset);
-                entry[x] = field.read(charBuffer);
-                fieldOffset += field.fieldLength;
+                entry[x] = read(x);
             }
-
             return entry;
         }
-        
+
+        /**
+         * @param predicate : predicate to test on the raw bytes of the row
+         * @return true if the row matches the predicate
+         * @throws IOException
+         */
+        public boolean matches(final DbasePredicate predicate) throws IOException {
+            return predicate.evaluate(this);
+        }
+
+        long readLong(final int column) throws IOException {
+            final long value = fieldReaders[column].readLong(buffer, buffer.position()+fieldOffsets[column]);
+            if(value != DbaseField.NO_LONG){
+                return value;
+            }
+            final Object obj = read(column);
+            return (obj instanceof Number) ? ((Number)obj).longValue() : DbaseField.NO_LONG;
+        }
+
+        double readDouble(final int column) throws IOException {
+            final double value = fieldReaders[column].readDouble(buffer, buffer.position()+fieldOffsets[column]);
+            if(!Double.isNaN(value)){
+                return value;
+            }
+            final Object obj = read(column);
+            return (obj instanceof Number) ? ((Number)obj).doubleValue() : Double.NaN;
+        }
+
+        /**
+         * Compare the encoded characters of the field, blanks and zero bytes
+         * trimmed, with the given bytes.
+         */
+        boolean equalBytes(final int column, final byte[] value){
+            int start = buffer.position() + fieldOffsets[column];
+            int end = start + fieldReaders[column].fieldLength;
+            while (start < end && isBlank(buffer.get(start))) start++;
+            while (end > start && isBlank(buffer.get(end-1))) end--;
+            if(end - start != value.length){
+                return false;
+            }
+            for(int i=0; i<value.length; i++){
+                if(buffer.get(start+i) != value[i]){
+                    return false;
+                }
+            }
+            return true;
+        }
+
     }
 
     protected final DbaseFileHeader header;
@@ -96,6 +165,7 @@ public final class DbaseFileReader implements Closeable{
     protected final CharBuffer charBuffer; //char buffer cache
     private final CharsetDecoder decoder;
     private final DbaseField[] fieldReaders;
+    private final int[] fieldOffsets;
     private int cnt = 0;
     private final Row row = new Row();
     private Row next = null;
@@ -148,8 +218,12 @@ public final class DbaseFileReader implements Closeable{
         
         // Set up some buffers and lookups for efficiency
         fieldReaders = new DbaseField[header.getNumFields()];
+        fieldOffsets = new int[header.getNumFields()];
+        int offset = 1; //1 to skip the delete flag
         for (int i = 0, ii = header.getNumFields(); i < ii; i++) {
             fieldReaders[i] = header.getField(i);
+            fieldOffsets[i] = offset;
+            offset += fieldReaders[i].fieldLength;
         }
         
         charBuffer = CharBuffer.allocate(header.getRecordLength() - 1);
@@ -182,6 +256,13 @@ public final class DbaseFileReader implements Closeable{
         }
     }
 
+    /**
+     * @return charset used to decode character fields
+     */
+    public Charset getCharset() {
+        return decoder.charset();
+    }
+
     /**
      * Get the header from this file. The header is read upon instantiation.
      * 
@@ -247,6 +328,14 @@ public final class DbaseFileReader implements Closeable{
         cnt++;
     }
     
+    /**
+     * Blank bytes trimmed from character fields, same as the whitespace and
+     * zero chars trimmed once decoded for ascii compatible charsets.
+     */
+    private static boolean isBlank(final byte b){
+        return b == 0 || (b > 0 && Character.isWhitespace((char)b));
+    }
+
     private void prepareFieldRead(final DbaseField field, final int fieldOffset) throws CharacterCodingException{
         //prepare byte buffer
         final int previousposition = buffer.position();
@@ -0,0 +1,246 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.data.dbf;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Simple comparison predicate evaluated on the raw bytes of a dbf row, before
+ * any value is decoded. Used to skip the rows which do not match a filter
+ * without creating any object.
+ *
+ * <p>
+ * Numeric fields support all comparison operators, character fields only
+ * equality and inequality. The factory methods return null when a comparison
+ * can not be evaluated on the raw bytes.
+ * </p>
+ *
+ * @author Johann Sorel (Geomatys)
+ * @module pending
+ */
+public abstract class DbasePredicate {
+
+    public static final int EQUAL = 0;
+    public static final int NOT_EQUAL = 1;
+    public static final int LESS = 2;
+    public static final int LESS_OR_EQUAL = 3;
+    public static final int GREATER = 4;
+    public static final int GREATER_OR_EQUAL = 5;
+
+    private static final String ASCII_SAMPLE = "AZaz09 ";
+
+    DbasePredicate() {
+    }
+
+    /**
+     * @param row : current row of the reader the predicate was created for
+     * @return true if the row matches
+     */
+    abstract boolean evaluate(DbaseFileReader.Row row) throws IOException;
+
+    /**
+     * Create a predicate comparing a column value with a constant.
+     *
+     * @param reader : dbf reader the predicate will be evaluated on
+     * @param column : column index
+     * @param operator : one of EQUAL, NOT_EQUAL, LESS, LESS_OR_EQUAL, GREATER, GREATER_OR_EQUAL
+     * @param value : constant, a Number for numeric columns, a String for character columns
+     * @return predicate, or null if the comparison can not be done on the raw bytes
+     */
+    public static DbasePredicate compare(final DbaseFileReader reader, final int column,
+            final int operator, final Object value) {
+        if (operator < EQUAL || operator > GREATER_OR_EQUAL) {
+            throw new IllegalArgumentException("Unknowned operator : " + operator);
+        }
+        final DbaseFileHeader header = reader.getHeader();
+        final char type = Character.toUpperCase(header.getFieldType(column));
+
+        if ((type == 'N' || type == 'F') && value instanceof Number) {
+            final Class clazz = header.getFieldClass(column);
+            final boolean integral = (clazz == Integer.class || clazz == Long.class);
+            if (integral && (value instanceof Integer || value instanceof Long
+                          || value instanceof Short || value instanceof Byte)) {
+                return new LongPredicate(column, operator, ((Number) value).longValue());
+            }
+            final double d = ((Number) value).doubleValue();
+            if (Double.isNaN(d)) {
+                return null;
+            }
+            return new DoublePredicate(column, operator, d);
+
+        } else if (type == 'C' && value instanceof String
+                && (operator == EQUAL || operator == NOT_EQUAL)) {
+            final byte[] bytes = encode(reader.getCharset(), (String) value);
+            if (bytes == null) {
+                return null;
+            }
+            return new TextPredicate(column, operator == NOT_EQUAL, bytes);
+        }
+        return null;
+    }
+
+    /**
+     * @param predicates : predicates, null values are ignored
+     * @return predicate matching when all predicates match, null if there are no predicates
+     */
+    public static DbasePredicate and(final List<DbasePredicate> predicates) {
+        final DbasePredicate[] array = predicates.toArray(new DbasePredicate[predicates.size()]);
+        int n = 0;
+        for (DbasePredicate p : array) {
+            if (p != null) {
+                array[n++] = p;
+            }
+        }
+        if (n == 0) {
+            return null;
+        } else if (n == 1) {
+            return array[0];
+        }
+        return new AndPredicate(Arrays.copyOf(array, n));
+    }
+
+    /**
+     * Encode a character constant as stored in the dbf file. Only single byte
+     * charsets compatible with ascii are supported, in those, trimming blank
+     * bytes is the same as trimming decoded blank chars.
+     *
+     * @return encoded constant or null if it can not be compared on bytes
+     */
+    private static byte[] encode(final Charset charset, final String value) {
+        final int length = value.length();
+        if (length == 0 || isBlank(value.charAt(0)) || isBlank(value.charAt(length - 1))) {
+            return null;
+        }
+        final CharsetEncoder encoder = charset.newEncoder();
+        if (encoder.maxBytesPerChar() != 1f) {
+            return null;
+        }
+        try {
+            final ByteBuffer sample = encoder.encode(CharBuffer.wrap(ASCII_SAMPLE));
+            for (int i = 0; i < ASCII_SAMPLE.length(); i++) {
+                if (sample.get(i) != ASCII_SAMPLE.charAt(i)) {
+                    return null;
+                }
+            }
+            encoder.reset();
+            final ByteBuffer buffer = encoder.encode(CharBuffer.wrap(value));
+            final byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return bytes;
+        } catch (CharacterCodingException ex) {
+            return null;
+        }
+    }
+
+    private static boolean isBlank(final char c) {
+        return c == 0 || Character.isWhitespace(c);
+    }
+
+    private static boolean test(final int operator, final int cmp) {
+        switch (operator) {
+            case EQUAL:            return cmp == 0;
+            case NOT_EQUAL:        return cmp != 0;
+            case LESS:             return cmp < 0;
+            case LESS_OR_EQUAL:    return cmp <= 0;
+            case GREATER:          return cmp > 0;
+            default:               return cmp >= 0;
+        }
+    }
+
+    private static final class LongPredicate extends DbasePredicate {
+
+        private final int column;
+        private final int operator;
+        private final long value;
+
+        private LongPredicate(final int column, final int operator, final long value) {
+            this.column = column;
+            this.operator = operator;
+            this.value = value;
+        }
+
+        @Override
+        boolean evaluate(final DbaseFileReader.Row row) throws IOException {
+            final long v = row.readLong(column);
+            return test(operator, (v < value) ? -1 : ((v == value) ? 0 : 1));
+        }
+    }
+
+    private static final class DoublePredicate extends DbasePredicate {
+
+        private final int column;
+        private final int operator;
+        private final double value;
+
+        private DoublePredicate(final int column, final int operator, final double value) {
+            this.column = column;
+            this.operator = operator;
+            this.value = value;
+        }
+
+        @Override
+        boolean evaluate(final DbaseFileReader.Row row) throws IOException {
+            //same order as Double.compareTo
+            return test(operator, Double.compare(row.readDouble(column), value));
+        }
+    }
+
+    private static final class TextPredicate extends DbasePredicate {
+
+        private final int column;
+        private final boolean negate;
+        private final byte[] value;
+
+        private TextPredicate(final int column, final boolean negate, final byte[] value) {
+            this.column = column;
+            this.negate = negate;
+            this.value = value;
+        }
+
+        @Override
+        boolean evaluate(final DbaseFileReader.Row row) throws IOException {
+            return row.equalBytes(column, value) != negate;
+        }
+    }
+
+    private static final class AndPredicate extends DbasePredicate {
+
+        private final DbasePredicate[] predicates;
+
+        private AndPredicate(final DbasePredicate[] predicates) {
+            this.predicates = predicates;
+        }
+
+        @Override
+        boolean evaluate(final DbaseFileReader.Row row) throws IOException {
+            for (DbasePredicate p : predicates) {
+                if (!p.evaluate(row)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+}
@@ -0,0 +1,566 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.data.dbf;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+
+import org.geotoolkit.data.query.Query;
+
+import org.opengis.filter.And;
+import org.opengis.filter.BinaryComparisonOperator;
+import org.opengis.filter.Filter;
+import org.opengis.filter.Id;
+import org.opengis.filter.Not;
+import org.opengis.filter.Or;
+import org.opengis.filter.PropertyIsBetween;
+import org.opengis.filter.PropertyIsEqualTo;
+import org.opengis.filter.PropertyIsGreaterThan;
+import org.opengis.filter.PropertyIsGreaterThanOrEqualTo;
+import org.opengis.filter.PropertyIsLessThan;
+import org.opengis.filter.PropertyIsLessThanOrEqualTo;
+import org.opengis.filter.PropertyIsNotEqualTo;
+import org.opengis.filter.PropertyIsNull;
+import org.opengis.filter.expression.Expression;
+import org.opengis.filter.expression.Literal;
+import org.opengis.filter.expression.PropertyName;
+
+/**
+ * Statistics of a dbf file : number of records and statistics of each column.
+ *
+ * <p>
+ * Statistics are used to answer some queries without reading the records,
+ * when they prove that a filter matches all or none of the records, and to
+ * estimate the selectivity of the other filters.
+ * They are saved in a sidecar file, [dbf file].stat, which stores the size and
+ * modification date of the files they were computed from, and is ignored when
+ * those files change.
+ * </p>
+ *
+ * @author Johann Sorel (Geomatys)
+ * @module pending
+ */
+public class DbaseStatistics {
+
+    /** The filter matches all records. */
+    public static final int ALL = 1;
+    /** The filter matches no record. */
+    public static final int NONE = 0;
+    /** The statistics can not tell how many records match the filter. */
+    public static final int UNKNOWN = -1;
+
+    /**
+     * Estimated selectivity of the filters statistics can not evaluate.
+     */
+    public static final double DEFAULT_SELECTIVITY = 1d / 3d;
+
+    private static final int MAGIC = 0x53544154; //STAT
+    private static final int VERSION = 1;
+
+    private final File[] sources;
+    private final long[] lengths;
+    private final long[] lastModified;
+    private File persisted = null;
+
+    protected int count = 0;
+    protected final ColumnStatistics[] columns;
+
+    /**
+     * Prepare empty statistics, records are added with {@link #add(DbaseFileReader.Row) }.
+     * Sources sizes and dates are read now, so a file modified while the
+     * statistics are computed makes them obsolete.
+     *
+     * @param header : dbf header, null if there is no dbf file
+     * @param sources : files the statistics are computed from
+     */
+    protected DbaseStatistics(final DbaseFileHeader header, final File ... sources) {
+        this.sources = sources.clone();
+        this.lengths = new long[sources.length];
+        this.lastModified = new long[sources.length];
+        for (int i = 0; i < sources.length; i++) {
+            lengths[i] = sources[i].length();
+            lastModified[i] = sources[i].lastModified();
+        }
+
+        final int nb = (header == null) ? 0 : header.getNumFields();
+        columns = new ColumnStatistics[nb];
+        for (int i = 0; i < nb; i++) {
+            columns[i] = new ColumnStatistics(header.getFieldName(i), header.getFieldClass(i));
+        }
+    }
+
+    /**
+     * Read statistics, the sidecar header has already been read.
+     */
+    protected DbaseStatistics(final DataInput in, final File[] sources, final long[] lengths,
+            final long[] lastModified) throws IOException {
+        this.sources = sources;
+        this.lengths = lengths;
+        this.lastModified = lastModified;
+        this.count = in.readInt();
+        this.columns = new ColumnStatistics[in.readInt()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = ColumnStatistics.read(in);
+        }
+    }
+
+    /**
+     * Add a record.
+     *
+     * @param row : dbf row, null if there is no dbf file
+     */
+    protected void add(final DbaseFileReader.Row row) throws IOException {
+        count++;
+        if (row != null) {
+            for (int i = 0; i < columns.length; i++) {
+                columns[i].add(row.read(i));
+            }
+        }
+    }
+
+    /**
+     * @return number of records
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @param name : column name
+     * @return column statistics or null if there is no such column
+     */
+    public ColumnStatistics getColumn(String name) {
+        final int sep = name.lastIndexOf(':');
+        if (sep >= 0) {
+            name = name.substring(sep + 1);
+        }
+        for (ColumnStatistics column : columns) {
+            if (column.getName().equals(name)) {
+                return column;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return true if the files the statistics were computed from have not
+     *         changed, and if the sidecar file they were saved in still exists
+     */
+    public boolean isUpToDate() {
+        for (int i = 0; i < sources.length; i++) {
+            if (sources[i].length() != lengths[i] || sources[i].lastModified() != lastModified[i]) {
+                return false;
+            }
+        }
+        return persisted == null || persisted.exists();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // filter evaluation ///////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Check if the filter matches all records, or none of them.
+     *
+     * @param filter : filter to test
+     * @return ALL, NONE or UNKNOWN
+     */
+    public int matches(final Filter filter) {
+        if (filter == Filter.INCLUDE) {
+            return ALL;
+        } else if (filter == Filter.EXCLUDE || count == 0) {
+            return NONE;
+        } else if (filter instanceof And) {
+            int result = ALL;
+            for (Filter child : ((And) filter).getChildren()) {
+                final int m = matches(child);
+                if (m == NONE) {
+                    return NONE;
+                } else if (m == UNKNOWN) {
+                    result = UNKNOWN;
+                }
+            }
+            return result;
+        } else if (filter instanceof Or) {
+            int result = NONE;
+            for (Filter child : ((Or) filter).getChildren()) {
+                final int m = matches(child);
+                if (m == ALL) {
+                    return ALL;
+                } else if (m == UNKNOWN) {
+                    result = UNKNOWN;
+                }
+            }
+            return result;
+        } else if (filter instanceof Not) {
+            final int m = matches(((Not) filter).getFilter());
+            return (m == UNKNOWN) ? UNKNOWN : ((m == ALL) ? NONE : ALL);
+        } else if (filter instanceof PropertyIsNull) {
+            final ColumnStatistics column = getColumn(((PropertyIsNull) filter).getExpression());
+            if (column == null) {
+                return UNKNOWN;
+            } else if (column.getNullCount() == 0) {
+                return NONE;
+            } else if (column.getNullCount() == count) {
+                return ALL;
+            }
+            return UNKNOWN;
+        } else if (filter instanceof BinaryComparisonOperator) {
+            final BinaryComparisonOperator op = (BinaryComparisonOperator) filter;
+            final int operator = getOperator(op);
+            //the literal is converted to the property type, only in this order
+            if (operator < 0 || !(op.getExpression2() instanceof Literal)) {
+                return UNKNOWN;
+            }
+            final ColumnStatistics column = getColumn(op.getExpression1());
+            if (column == null) {
+                return UNKNOWN;
+            }
+            return column.matches(operator, ((Literal) op.getExpression2()).getValue(), op.isMatchingCase());
+        }
+        return matchesOther(filter);
+    }
+
+    /**
+     * Count the records matching the query, when the statistics prove that
+     * the query filter matches all records or none of them.
+     *
+     * @param query : query
+     * @return number of records matching the query, -1 if it can not be known
+     *         from the statistics
+     */
+    public long getCount(final Query query) {
+        final int match = matches(query.getFilter());
+        if (match == UNKNOWN) {
+            return -1;
+        }
+        return limit((match == ALL) ? count : 0, query);
+    }
+
+    /**
+     * Estimate the number of records matching the query.
+     *
+     * @param query : query
+     * @return estimated number of records matching the query
+     */
+    public long estimateCount(final Query query) {
+        final int match = matches(query.getFilter());
+        if (match != UNKNOWN) {
+            return limit((match == ALL) ? count : 0, query);
+        }
+        return limit(Math.round(selectivity(query.getFilter()) * count), query);
+    }
+
+    private static long limit(long nb, final Query query) {
+        nb = Math.max(0, nb - query.getStartIndex());
+        if (query.getMaxFeatures() != null) {
+            nb = Math.min(nb, query.getMaxFeatures());
+        }
+        return nb;
+    }
+
+    /**
+     * Check filters which are not attribute comparisons.
+     * Default implementation returns UNKNOWN.
+     *
+     * @return ALL, NONE or UNKNOWN
+     */
+    protected int matchesOther(final Filter filter) {
+        return UNKNOWN;
+    }
+
+    /**
+     * Estimate the fraction of records matching the filter.
+     *
+     * @param filter : filter to estimate
+     * @return estimated selectivity, between 0 and 1
+     */
+    public double selectivity(final Filter filter) {
+        if (filter == Filter.INCLUDE) {
+            return 1;
+        } else if (filter == Filter.EXCLUDE || count == 0) {
+            return 0;
+        } else if (filter instanceof And) {
+            //filters supposed independent
+            double s = 1;
+            for (Filter child : ((And) filter).getChildren()) {
+                s *= selectivity(child);
+            }
+            return s;
+        } else if (filter instanceof Or) {
+            double s = 1;
+            for (Filter child : ((Or) filter).getChildren()) {
+                s *= 1 - selectivity(child);
+            }
+            return 1 - s;
+        } else if (filter instanceof Not) {
+            return 1 - selectivity(((Not) filter).getFilter());
+        } else if (filter instanceof Id) {
+            return Math.min(1d, (double) ((Id) filter).getIdentifiers().size() / count);
+        } else if (filter instanceof PropertyIsNull) {
+            final ColumnStatistics column = getColumn(((PropertyIsNull) filter).getExpression());
+            if (column != null) {
+                return (double) column.getNullCount() / count;
+            }
+        } else if (filter instanceof PropertyIsBetween) {
+            final PropertyIsBetween between = (PropertyIsBetween) filter;
+            final ColumnStatistics column = getColumn(between.getExpression());
+            if (column != null && between.getLowerBoundary() instanceof Literal
+                    && between.getUpperBoundary() instanceof Literal) {
+                return column.betweenSelectivity(((Literal) between.getLowerBoundary()).getValue(),
+                        ((Literal) between.getUpperBoundary()).getValue(), count);
+            }
+        } else if (filter instanceof BinaryComparisonOperator) {
+            final BinaryComparisonOperator op = (BinaryComparisonOperator) filter;
+            int operator = getOperator(op);
+            Expression property = op.getExpression1();
+            Expression literal = op.getExpression2();
+            if (property instanceof Literal) {
+                property = op.getExpression2();
+                literal = op.getExpression1();
+                operator = inverse(operator);
+            }
+            final ColumnStatistics column = getColumn(property);
+            if (operator >= 0 && column != null && literal instanceof Literal) {
+                return column.selectivity(operator, ((Literal) literal).getValue(), count);
+            }
+        } else {
+            return selectivityOther(filter);
+        }
+        return DEFAULT_SELECTIVITY;
+    }
+
+    /**
+     * Estimate the selectivity of filters which are not attribute comparisons.
+     * Default implementation returns DEFAULT_SELECTIVITY.
+     *
+     * @return estimated selectivity, between 0 and 1
+     */
+    protected double selectivityOther(final Filter filter) {
+        return DEFAULT_SELECTIVITY;
+    }
+
+    private ColumnStatistics getColumn(final Expression exp) {
+        if (exp instanceof PropertyName) {
+            return getColumn(((PropertyName) exp).getPropertyName());
+        }
+        return null;
+    }
+
+    /**
+     * @return DbasePredicate operator, -1 if not a supported comparison
+     */
+    private static int getOperator(final BinaryComparisonOperator filter) {
+        if (filter instanceof PropertyIsEqualTo) {
+            return DbasePredicate.EQUAL;
+        } else if (filter instanceof PropertyIsNotEqualTo) {
+            return DbasePredicate.NOT_EQUAL;
+        } else if (filter instanceof PropertyIsLessThan) {
+            return DbasePredicate.LESS;
+        } else if (filter instanceof PropertyIsLessThanOrEqualTo) {
+            return DbasePredicate.LESS_OR_EQUAL;
+        } else if (filter instanceof PropertyIsGreaterThan) {
+            return DbasePredicate.GREATER;
+        } else if (filter instanceof PropertyIsGreaterThanOrEqualTo) {
+            return DbasePredicate.GREATER_OR_EQUAL;
+        }
+        return -1;
+    }
+
+    /**
+     * @return operator when the operands are swapped
+     */
+    private static int inverse(final int operator) {
+        switch (operator) {
+            case DbasePredicate.LESS:             return DbasePredicate.GREATER;
+            case DbasePredicate.LESS_OR_EQUAL:    return DbasePredicate.GREATER_OR_EQUAL;
+            case DbasePredicate.GREATER:          return DbasePredicate.LESS;
+            case DbasePredicate.GREATER_OR_EQUAL: return DbasePredicate.LESS_OR_EQUAL;
+            default:                              return operator;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // persistence /////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Write the statistics content, subclasses append their own values.
+     */
+    protected void write(final DataOutput out) throws IOException {
+        out.writeInt(count);
+        out.writeInt(columns.length);
+        for (ColumnStatistics column : columns) {
+            column.write(out);
+        }
+    }
+
+    /**
+     * Save the statistics in a sidecar file. The file is written in a temporary
+     * file first, other readers never see a partial file.
+     *
+     * @param file : sidecar file
+     * @throws IOException
+     */
+    public void save(final File file) throws IOException {
+        final File tmp = new File(file.getPath() + ".tmp");
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(sources.length);
+            for (int i = 0; i < sources.length; i++) {
+                out.writeLong(lengths[i]);
+                out.writeLong(lastModified[i]);
+            }
+            write(out);
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) {
+            file.delete();
+            if (!tmp.renameTo(file)) {
+                tmp.delete();
+                throw new IOException("Could not rename file " + tmp + " to " + file);
+            }
+        }
+        persisted = file;
+    }
+
+    /**
+     * Open a sidecar file and check it is up to date.
+     *
+     * @param file : sidecar file
+     * @param sources : files the statistics must have been computed from
+     * @param lengths : filled with the files sizes stored in the sidecar
+     * @param lastModified : filled with the files dates stored in the sidecar
+     * @return stream positioned on the statistics content, null if the file
+     *         does not exist, is not valid or obsolete
+     */
+    protected static DataInputStream open(final File file, final File[] sources,
+            final long[] lengths, final long[] lastModified) throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        boolean valid = false;
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readInt() != sources.length) {
+                return null;
+            }
+            for (int i = 0; i < sources.length; i++) {
+                lengths[i] = in.readLong();
+                lastModified[i] = in.readLong();
+                if (sources[i].length() != lengths[i] || sources[i].lastModified() != lastModified[i]) {
+                    return null;
+                }
+            }
+            valid = true;
+            return in;
+        } finally {
+            if (!valid) {
+                in.close();
+            }
+        }
+    }
+
+    /**
+     * Mark the statistics as read from the sidecar file.
+     */
+    protected void setPersisted(final File file) {
+        this.persisted = file;
+    }
+
+    /**
+     * Compute the statistics of a dbf file.
+     *
+     * @param file : dbf file
+     * @param charset : dbf charset, null for default
+     * @return statistics
+     * @throws IOException
+     */
+    public static DbaseStatistics compute(final File file, final Charset charset) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            final DbaseFileReader reader = new DbaseFileReader(raf.getChannel(), false, charset);
+            try {
+                final DbaseStatistics stats = new DbaseStatistics(reader.getHeader(), file);
+                while (reader.hasNext()) {
+                    stats.add(reader.next());
+                }
+                return stats;
+            } finally {
+                reader.close();
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Read the statistics of a dbf file from its sidecar file.
+     *
+     * @param file : sidecar file
+     * @param dbf : dbf file
+     * @return statistics, null if the sidecar file does not exist, is not valid or obsolete
+     */
+    public static DbaseStatistics read(final File file, final File dbf) throws IOException {
+        final File[] sources = new File[]{dbf};
+        final long[] lengths = new long[1];
+        final long[] lastModified = new long[1];
+        final DataInputStream in = open(file, sources, lengths, lastModified);
+        if (in == null) {
+            return null;
+        }
+        try {
+            final DbaseStatistics stats = new DbaseStatistics(in, sources, lengths, lastModified);
+            stats.setPersisted(file);
+            return stats;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * @param dbf : dbf file
+     * @return sidecar file of the dbf file statistics
+     */
+    public static File getStatisticsFile(final File dbf) {
+        return new File(dbf.getPath() + ".stat");
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("DbaseStatistics[count=");
+        sb.append(count).append(']');
+        for (ColumnStatistics column : columns) {
+            sb.append('\n').append(column);
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,193 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.data.dbf;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the raw byte decoding and predicates of the dbf reader.
+ *
+ * @author Johann Sorel (Geomatys)
+ * @module pending
+ */
+public class DbaseFileReaderTest {
+
+    /**
+     * Field values, as stored in the file, including values which can not be
+     * parsed on the raw bytes.
+     */
+    private static final String[][] RECORDS = {
+        {"    12", "      123456", "    1.500", "    2.25", "T", "20120615", "Ohio  "},
+        {"   -42", " 12345678901", "   -0.125", "  -100.5", "f", "19991231", "  Utah"},
+        {"     0", "           0", "    3.000", "       7", "Y", "        ", "      "},
+        {"      ", "           -", "   1.5e3 ", "  ******", "N", "2012xx01", "Texas "},
+        {" 00007", "        -007", "     .250", "   +3.50", "n", "00010101", "Ohio  "},
+    };
+
+    private static File createFile() throws IOException, DbaseFileException {
+        final DbaseFileHeader header = new DbaseFileHeader();
+        header.addColumn("I", 'N', 6, 0);
+        header.addColumn("L", 'N', 12, 0);
+        header.addColumn("D", 'N', 9, 3);
+        header.addColumn("F", 'F', 8, 2);
+        header.addColumn("B", 'L', 1, 0);
+        header.addColumn("DT", 'D', 8, 0);
+        header.addColumn("S", 'C', 6, 0);
+        header.setNumRecords(RECORDS.length);
+
+        final File file = File.createTempFile("test", ".dbf");
+        file.deleteOnExit();
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            final FileChannel channel = out.getChannel();
+            header.writeHeader(channel);
+            for (String[] record : RECORDS) {
+                final StringBuilder sb = new StringBuilder(" ");
+                for (String str : record) {
+                    sb.append(str);
+                }
+                channel.write(ByteBuffer.wrap(sb.toString().getBytes("ISO-8859-1")));
+            }
+            channel.write(ByteBuffer.wrap(new byte[]{0x1A}));
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static DbaseFileReader open(final File file, final boolean memoryMapped) throws IOException {
+        return new DbaseFileReader(new FileInputStream(file).getChannel(), memoryMapped, null);
+    }
+
+    /**
+     * Values read from the raw bytes must be the same as the ones decoded
+     * by the charset decoder.
+     */
+    @Test
+    public void testRawDecoding() throws IOException, DbaseFileException {
+        final File file = createFile();
+        for (boolean memoryMapped : new boolean[]{true, false}) {
+            final DbaseFileReader reader = open(file, memoryMapped);
+            try {
+                final DbaseFileHeader header = reader.getHeader();
+                int r = 0;
+                while (reader.hasNext()) {
+                    final Object[] values = reader.next().readAll(null);
+                    for (int i = 0; i < values.length; i++) {
+                        final Object expected = header.getField(i).read(CharBuffer.wrap(RECORDS[r][i]));
+                        assertEquals("record " + r + " field " + i, expected, values[i]);
+                    }
+                    r++;
+                }
+                assertEquals(RECORDS.length, r);
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    @Test
+    public void testProjection() throws IOException, DbaseFileException {
+        final DbaseFileReader reader = open(createFile(), true);
+        try {
+            final int[] columns = {6, 0};
+            final Object[] values = reader.next().read(columns, null);
+            assertEquals(2, values.length);
+            assertEquals("Ohio", values[0]);
+            assertEquals(12, values[1]);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testPredicate() throws IOException, DbaseFileException {
+        final File file = createFile();
+
+        assertEquals(Arrays.asList(1), match(file, DbasePredicate.LESS, 0, -1));
+        assertEquals(Arrays.asList(0, 2, 3, 4), match(file, DbasePredicate.GREATER_OR_EQUAL, 0, 0));
+        assertEquals(Arrays.asList(4), match(file, DbasePredicate.EQUAL, 0, 7));
+        assertEquals(Arrays.asList(1), match(file, DbasePredicate.GREATER, 1, 123456L));
+        assertEquals(Arrays.asList(1, 4), match(file, DbasePredicate.LESS, 2, 1d));
+        assertEquals(Arrays.asList(0, 2, 4), match(file, DbasePredicate.GREATER, 3, 2d));
+        assertEquals(Arrays.asList(0, 4), match(file, DbasePredicate.EQUAL, 6, "Ohio"));
+        assertEquals(Arrays.asList(1, 2, 3), match(file, DbasePredicate.NOT_EQUAL, 6, "Ohio"));
+
+        //not possible on raw bytes
+        final DbaseFileReader reader = open(file, true);
+        try {
+            assertNull(DbasePredicate.compare(reader, 6, DbasePredicate.LESS, "Ohio"));
+            assertNull(DbasePredicate.compare(reader, 6, DbasePredicate.EQUAL, " Ohio"));
+            assertNull(DbasePredicate.compare(reader, 5, DbasePredicate.EQUAL, "20120615"));
+            assertNull(DbasePredicate.compare(reader, 0, DbasePredicate.EQUAL, "12"));
+        } finally {
+            reader.close();
+        }
+
+        //and
+        final DbaseFileReader reader2 = open(file, false);
+        try {
+            final List<DbasePredicate> predicates = new ArrayList<DbasePredicate>();
+            predicates.add(DbasePredicate.compare(reader2, 0, DbasePredicate.GREATER, 0));
+            predicates.add(null);
+            predicates.add(DbasePredicate.compare(reader2, 6, DbasePredicate.EQUAL, "Ohio"));
+            final DbasePredicate predicate = DbasePredicate.and(predicates);
+            final List<Integer> result = new ArrayList<Integer>();
+            for (int r = 0; reader2.hasNext(); r++) {
+                if (reader2.next().matches(predicate)) {
+                    result.add(r);
+                }
+            }
+            assertEquals(Arrays.asList(0, 4), result);
+        } finally {
+            reader2.close();
+        }
+    }
+
+    /**
+     * @return indexes of the records matching the comparison
+     */
+    private static List<Integer> match(final File file, final int operator, final int column,
+            final Object value) throws IOException {
+        final DbaseFileReader reader = open(file, true);
+        try {
+            final DbasePredicate predicate = DbasePredicate.compare(reader, column, operator, value);
+            assertNotNull(predicate);
+            final List<Integer> result = new ArrayList<Integer>();
+            for (int r = 0; reader.hasNext(); r++) {
+                if (reader.next().matches(predicate)) {
+                    result.add(r);
+                }
+            }
+            return result;
+        } finally {
+            reader.close();
+        }
+    }
+
+}
@@ -0,0 +1,151 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.data.dbf;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the dbf statistics and their sidecar file.
+ *
+ * @author Johann Sorel (Geomatys)
+ * @module pending
+ */
+public class DbaseStatisticsTest {
+
+    /**
+     * Write a dbf file with an integer column, values 0 to nb-1, and a text column.
+     */
+    private static void write(final File file, final int nb) throws IOException, DbaseFileException {
+        final DbaseFileHeader header = new DbaseFileHeader();
+        header.addColumn("I", 'N', 6, 0);
+        header.addColumn("S", 'C', 6, 0);
+        header.setNumRecords(nb);
+
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            final FileChannel channel = out.getChannel();
+            header.writeHeader(channel);
+            for (int i = 0; i < nb; i++) {
+                final String value = String.valueOf(i);
+                final String text = (i % 2 == 0) ? "even" : "odd";
+                final String record = " " + pad(value, 6, true) + pad(text, 6, false);
+                channel.write(ByteBuffer.wrap(record.getBytes("ISO-8859-1")));
+            }
+            channel.write(ByteBuffer.wrap(new byte[]{0x1A}));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static String pad(String str, final int length, final boolean left) {
+        while (str.length() < length) {
+            str = left ? " " + str : str + " ";
+        }
+        return str;
+    }
+
+    @Test
+    public void testColumnStatistics() throws IOException, DbaseFileException {
+        final File file = File.createTempFile("test", ".dbf");
+        file.deleteOnExit();
+        write(file, 200);
+
+        final DbaseStatistics stats = DbaseStatistics.compute(file, null);
+        assertEquals(200, stats.getCount());
+
+        final ColumnStatistics column = stats.getColumn("I");
+        assertEquals(0, column.getNullCount());
+        assertEquals(200, column.getValueCount());
+        assertEquals(0, ((Number) column.getMinimum()).intValue());
+        assertEquals(199, ((Number) column.getMaximum()).intValue());
+
+        final ColumnStatistics text = stats.getColumn("S");
+        assertEquals(0, text.getNullCount());
+        assertEquals("even", text.getMinimum());
+        assertEquals("odd", text.getMaximum());
+
+        //proven results
+        assertEquals(DbaseStatistics.NONE, column.matches(DbasePredicate.LESS, 0, true));
+        assertEquals(DbaseStatistics.NONE, column.matches(DbasePredicate.GREATER, 199, true));
+        assertEquals(DbaseStatistics.NONE, column.matches(DbasePredicate.EQUAL, 500, true));
+        assertEquals(DbaseStatistics.ALL, column.matches(DbasePredicate.GREATER_OR_EQUAL, 0, true));
+        assertEquals(DbaseStatistics.UNKNOWN, column.matches(DbasePredicate.LESS, 50, true));
+        assertEquals(DbaseStatistics.ALL, text.matches(DbasePredicate.GREATER_OR_EQUAL, "even", true));
+        assertEquals(DbaseStatistics.NONE, text.matches(DbasePredicate.EQUAL, "zero", true));
+
+        //estimations
+        assertEquals(0, column.selectivity(DbasePredicate.LESS, 0, 200), 0d);
+        assertEquals(1, column.selectivity(DbasePredicate.GREATER_OR_EQUAL, 0, 200), 1e-9);
+        assertEquals(0.25, column.selectivity(DbasePredicate.LESS, 50, 200), 0.03);
+        assertEquals(0.5, column.betweenSelectivity(100, 199, 200), 0.03);
+        assertEquals(0.005, column.selectivity(DbasePredicate.EQUAL, 120, 200), 0.01);
+        for (int i = -10; i < 210; i += 7) {
+            for (int op = DbasePredicate.EQUAL; op <= DbasePredicate.GREATER_OR_EQUAL; op++) {
+                final double s = column.selectivity(op, i, 200);
+                assertTrue(s >= 0 && s <= 1);
+            }
+        }
+    }
+
+    @Test
+    public void testSidecar() throws IOException, DbaseFileException {
+        final File file = File.createTempFile("test", ".dbf");
+        file.deleteOnExit();
+        write(file, 50);
+        final File sidecar = DbaseStatistics.getStatisticsFile(file);
+        sidecar.deleteOnExit();
+
+        assertNull(DbaseStatistics.read(sidecar, file));
+        final DbaseStatistics stats = DbaseStatistics.compute(file, null);
+        stats.save(sidecar);
+        assertTrue(stats.isUpToDate());
+
+        final DbaseStatistics read = DbaseStatistics.read(sidecar, file);
+        assertNotNull(read);
+        assertTrue(read.isUpToDate());
+        assertEquals(stats.getCount(), read.getCount());
+        for (String name : new String[]{"I", "S"}) {
+            final ColumnStatistics expected = stats.getColumn(name);
+            final ColumnStatistics column = read.getColumn(name);
+            assertEquals(expected.getBinding(), column.getBinding());
+            assertEquals(expected.getNullCount(), column.getNullCount());
+            assertEquals(expected.getMinimum(), column.getMinimum());
+            assertEquals(expected.getMaximum(), column.getMaximum());
+        }
+        assertEquals(stats.getColumn("I").selectivity(DbasePredicate.LESS, 20, 50),
+                     read.getColumn("I").selectivity(DbasePredicate.LESS, 20, 50), 0d);
+
+        //statistics are obsolete when the dbf changes
+        write(file, 60);
+        assertFalse(read.isUpToDate());
+        assertNull(DbaseStatistics.read(sidecar, file));
+
+        //or when the sidecar is removed
+        final DbaseStatistics updated = DbaseStatistics.compute(file, null);
+        updated.save(sidecar);
+        assertEquals(60, DbaseStatistics.read(sidecar, file).getCount());
+        sidecar.delete();
+        assertFalse(updated.isUpToDate());
+    }
+
+}
@@ -70,6 +70,12 @@ public abstract class AbstractJDBCDataStore extends AbstractDataStore implements
      */
     protected int fetchSize;
 
+    /**
+     * The batch size for this datastore, defaulting to 1000. Set to a value less or equal
+     * to 0 to insert all the features in one shot.
+     */
+    protected int batchSize = 1000;
+
 
     public AbstractJDBCDataStore() {
         this(null);
@@ -223,6 +229,22 @@ public abstract class AbstractJDBCDataStore extends AbstractDataStore implements
         this.fetchSize = fetchSize;
     }
 
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void setBatchSize(final int batchSize) {
+        this.batchSize = batchSize;
+    }
+
 
     ////////////////////////////////////////////////////////////////////////////
     // Connection utils ////////////////////////////////////////////////////////
@@ -29,6 +29,8 @@ import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -41,6 +43,7 @@ import org.geotoolkit.jdbc.fid.PrimaryKey;
 import org.geotoolkit.jdbc.fid.PrimaryKeyColumn;
 import org.geotoolkit.jdbc.fid.PrimaryKeyFIDValidator;
 import org.geotoolkit.jdbc.fid.NullPrimaryKey;
+import org.geotoolkit.jdbc.dialect.BulkInsertSQLDialect;
 import org.geotoolkit.jdbc.dialect.PreparedStatementSQLDialect;
 import org.geotoolkit.jdbc.dialect.SQLDialect;
 import org.geotoolkit.jdbc.reverse.DataBaseModel;
@@ -105,8 +108,10 @@ public final class DefaultJDBCDataStore extends AbstractJDBCDataStore {
     }
 
     private final DataBaseModel dbmodel = new DataBaseModel(this);
-    private final QueryCapabilities capabilities = new DefaultQueryCapabilities(true, new String[]{Query.GEOTK_QOM, CUSTOM_SQL});
+    private final QueryCapabilities capabilities = new DefaultQueryCapabilities(true, new String[]{Query.GEOTK_QOM, CUSTOM_SQL}, true);
     final SQLQueryBuilder queryBuilder = new SQLQueryBuilder(this);
+    //last computed key values, by table and column
+    private final Map<String,Object> computedKeys = new HashMap<String, Object>();
 
     DefaultJDBCDataStore(final String namespace){
         super(namespace);
@@ -788,93 +793,301 @@ public final class DefaultJDBCDataStore extends AbstractJDBCDataStore {
     /**
      * Inserts a collection of new features into the database for a particular
      * feature type / table.
-     * This method does not return the featureID.
+     * Features are inserted by groups of {@link #getBatchSize() } features, with
+     * a bulk load if the dialect supports it, otherwise with batched statements.
+     * This method does not return the featureID, it is reported in the feature
+     * user data when the key is not generated by the database.
      */
     protected void insert(final Collection<? extends Feature> features, final SimpleFeatureType featureType,
             final Connection cx) throws DataStoreException {
-        final PrimaryKey key = dbmodel.getPrimaryKey(featureType.getName());
+        if (features.isEmpty()) {
+            return;
+        }
 
-        // we do this in a synchronized block because we need to do two queries,
-        // first to figure out what the id will be, then the insert statement
-        synchronized (this) {
-            Statement st = null;
-            try {
-                st = cx.createStatement();
-                
-                final List<Object> nextKeyValues = getNextValues(key, cx);
-                final String sql = queryBuilder.insertSQL(featureType, features, nextKeyValues, cx);
-                st.executeUpdate(sql);
-                
-            } catch (SQLException e) {
-                throw new DataStoreException("Error inserting features",e);
-            } catch (IOException e) {
-                throw new DataStoreException("Error inserting features",e);
-            }finally {
-                closeSafe(st);
+        final PrimaryKey key = dbmodel.getPrimaryKey(featureType.getName());
+        final int size = (batchSize > 0) ? Math.min(batchSize, features.size()) : features.size();
+        final List<SimpleFeature> batch = new ArrayList<SimpleFeature>(size);
+        try {
+            for (Feature feature : features) {
+                batch.add((SimpleFeature) feature);
+                if (batch.size() >= size) {
+                    insertBatch(batch, featureType, key, null, cx);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                insertBatch(batch, featureType, key, null, cx);
             }
+        } catch (SQLException e) {
+            throw new DataStoreException("Error inserting features",e);
+        } catch (IOException e) {
+            throw new DataStoreException("Error inserting features",e);
         }
-        
+
         fireFeaturesAdded(featureType.getName(), null);
     }
-    
+
     /**
-     * Inserts a collection of new features into the database for a particular
-     * feature type / table.
+     * Inserts a group of features which keys were already allocated with
+     * {@link #getNextValues(org.geotoolkit.jdbc.fid.PrimaryKey, int, java.sql.Connection) },
+     * all features are inserted at once.
+     *
+     * @param keyValues : key values of each feature
      */
-    protected void insert(final Feature ffeature, final SimpleFeatureType featureType,
-            final Connection cx) throws DataStoreException {
+    protected void insert(final List<SimpleFeature> features, final List<List<Object>> keyValues,
+            final SimpleFeatureType featureType, final Connection cx) throws DataStoreException {
+        if (features.isEmpty()) {
+            return;
+        }
+
         final PrimaryKey key = dbmodel.getPrimaryKey(featureType.getName());
+        try {
+            insertBatch(features, featureType, key, keyValues, cx);
+        } catch (SQLException e) {
+            throw new DataStoreException("Error inserting features",e);
+        } catch (IOException e) {
+            throw new DataStoreException("Error inserting features",e);
+        }
 
-        // we do this in a synchronized block because we need to do two queries,
-        // first to figure out what the id will be, then the insert statement
-        synchronized (this) {
-            Statement st = null;
-            try {
-                if (!(dialect instanceof PreparedStatementSQLDialect)) {
-                    st = cx.createStatement();
+        fireFeaturesAdded(featureType.getName(), null);
+    }
+
+    /**
+     * Inserts a group of features, the keys of all features are allocated at once
+     * if they are not given.
+     */
+    private void insertBatch(final List<SimpleFeature> features, final SimpleFeatureType featureType,
+            final PrimaryKey key, List<List<Object>> keyValues, final Connection cx)
+            throws SQLException, IOException, DataStoreException {
+        if (keyValues == null) {
+            keyValues = getNextValues(key, features.size(), cx);
+        }
+
+        if (!(dialect instanceof BulkInsertSQLDialect) || !insertBulk(features, featureType, key, keyValues, cx)) {
+            final boolean batched = cx.getMetaData().supportsBatchUpdates();
+            if (dialect instanceof PreparedStatementSQLDialect) {
+                insertBatchPS(features, featureType, keyValues, batched, cx);
+            } else {
+                insertBatchSQL(features, featureType, keyValues, batched, cx);
+            }
+        }
+
+        //report the feature ids as user data since we cant set the fid
+        for (int i=0,n=features.size(); i<n; i++) {
+            final SimpleFeature feature = features.get(i);
+            final String fid = encodeFID(featureType, key, feature, keyValues.get(i));
+            if (fid != null) {
+                feature.getUserData().put("fid", fid);
+            }
+        }
+    }
+
+    /**
+     * Feature id of a feature to insert, key attributes of the feature
+     * override the allocated key values.
+     *
+     * @param keyValues : allocated key values
+     * @return feature id, null if a key value is generated by the database
+     */
+    String encodeFID(final SimpleFeatureType featureType, final PrimaryKey key,
+            final SimpleFeature feature, final List<Object> keyValues) {
+        final List<PrimaryKeyColumn> keyColumns = key.getColumns();
+        final List<Object> values = new ArrayList<Object>(keyValues);
+        for (int k=0; k<values.size(); k++) {
+            final String name = keyColumns.get(k).getName();
+            final Object value = (featureType.getDescriptor(name) != null) ? feature.getAttribute(name) : null;
+            if (value != null) {
+                values.set(k, value);
+            } else if (values.get(k) == null) {
+                //generated by the database, unknowned
+                return null;
+            }
+        }
+        return featureType.getTypeName() + "." + PrimaryKey.encodeFID(values);
+    }
+
+    /**
+     * Inserts a group of features with the bulk load of the dialect.
+     *
+     * @return false if the bulk load is not possible
+     */
+    private boolean insertBulk(final List<SimpleFeature> features, final SimpleFeatureType featureType,
+            final PrimaryKey key, final List<List<Object>> keyValues, final Connection cx)
+            throws SQLException, IOException {
+        final List<PrimaryKeyColumn> keyColumns = key.getColumns();
+
+        //find the columns, all rows must have the same columns
+        final List<AttributeDescriptor> columns = new ArrayList<AttributeDescriptor>();
+        final List<Integer> keyIndexes = new ArrayList<Integer>();
+        for (AttributeDescriptor desc : featureType.getAttributeDescriptors()) {
+            final String attName = desc.getLocalName();
+            int keyIndex = -1;
+            for (int k=0; k<keyColumns.size(); k++) {
+                if (keyColumns.get(k).getName().equals(attName)) {
+                    keyIndex = k;
+                    break;
                 }
+            }
+
+            if (keyIndex >= 0 && keyColumns.get(keyIndex) instanceof AutoGeneratedPrimaryKeyColumn) {
+                //generated by the database, unless all features have a value
+                int nbNull = 0;
+                for (SimpleFeature feature : features) {
+                    if (feature.getAttribute(attName) == null) {
+                        nbNull++;
+                    }
+                }
+                if (nbNull == features.size()) {
+                    continue;
+                } else if (nbNull > 0) {
+                    return false;
+                }
+                keyIndex = -1;
+            }
+
+            columns.add(desc);
+            keyIndexes.add(keyIndex);
+        }
+
+        final List<Object[]> rows = new ArrayList<Object[]>(features.size());
+        for (int i=0,n=features.size(); i<n; i++) {
+            final SimpleFeature feature = features.get(i);
+            final Object[] row = new Object[columns.size()];
+            for (int c=0; c<row.length; c++) {
+                Object value = feature.getAttribute(columns.get(c).getLocalName());
+                final int keyIndex = keyIndexes.get(c);
+                if (value == null && keyIndex >= 0) {
+                    value = keyValues.get(i).get(keyIndex);
+                }
+                row[c] = value;
+            }
+            rows.add(row);
+        }
 
-                //figure out what the next fid will be
-                final List<Object> nextKeyValues = getNextValues(key, cx);
-                final SimpleFeature feature = (SimpleFeature) ffeature;
+        return ((BulkInsertSQLDialect) dialect).insertBulk(
+                databaseSchema, featureType.getTypeName(), columns, rows, cx);
+    }
 
-                if (dialect instanceof PreparedStatementSQLDialect) {
-                    final PreparedStatement ps = queryBuilder.insertSQLPS(featureType, feature, nextKeyValues, cx);
-                    try {
-                        ps.execute();
-                    } finally {
+    /**
+     * Inserts a group of features with batched prepared statements.
+     * Consecutive features with the same sql share the same statement.
+     */
+    private void insertBatchPS(final List<SimpleFeature> features, final SimpleFeatureType featureType,
+            final List<List<Object>> keyValues, final boolean batched, final Connection cx)
+            throws SQLException {
+        PreparedStatement ps = null;
+        String sql = null;
+        try {
+            for (int i=0,n=features.size(); i<n; i++) {
+                final SimpleFeature feature = features.get(i);
+                final String candidate = queryBuilder.insertSQLPSQuery(featureType, feature);
+                if (!candidate.equals(sql)) {
+                    if (ps != null) {
+                        if (batched) {
+                            ps.executeBatch();
+                        }
                         closeSafe(ps);
+                        ps = null;
                     }
+                    sql = candidate;
+                    getLogger().log(Level.FINE, "Inserting new features: {0}", sql);
+                    ps = cx.prepareStatement(sql);
+                }
+
+                queryBuilder.setInsertSQLPSValues(ps, featureType, feature, keyValues.get(i), cx);
+                if (batched) {
+                    ps.addBatch();
                 } else {
-                    //this technic must be generalize to all primary keys, must revisite tests for this
-                    final String sql = queryBuilder.insertSQL(featureType, feature, nextKeyValues, cx);
-                    getLogger().log(Level.FINE, "Inserting new feature: {0}", sql);
-
-                    if(nextKeyValues.isEmpty() || nextKeyValues.get(0) == null){
-                        st.execute(sql,Statement.RETURN_GENERATED_KEYS);
-                        ResultSet rs = st.getGeneratedKeys();
-                        rs.next();
-                        final int id = rs.getInt(1);
-                        nextKeyValues.set(0, id);
-                        rs.close();
-                        feature.setAttribute(key.getColumns().get(0).getName(), id);
-                    }else{
-                        st.execute(sql);
-                    }
+                    ps.execute();
                 }
+            }
+            if (ps != null && batched) {
+                ps.executeBatch();
+            }
+        } finally {
+            closeSafe(ps);
+        }
+    }
 
-                //report the feature id as user data since we cant set the fid
-                final String fid = featureType.getTypeName() + "." + PrimaryKey.encodeFID(nextKeyValues);
-                feature.getUserData().put("fid", fid);
+    /**
+     * Inserts a group of features with a batch of sql statements.
+     */
+    private void insertBatchSQL(final List<SimpleFeature> features, final SimpleFeatureType featureType,
+            final List<List<Object>> keyValues, final boolean batched, final Connection cx)
+            throws SQLException, DataStoreException {
+        Statement st = null;
+        try {
+            st = cx.createStatement();
+            for (int i=0,n=features.size(); i<n; i++) {
+                final String sql = queryBuilder.insertSQL(featureType, features.get(i), keyValues.get(i), cx);
+                getLogger().log(Level.FINE, "Inserting new feature: {0}", sql);
+                if (batched) {
+                    st.addBatch(sql);
+                } else {
+                    st.execute(sql);
+                }
+            }
+            if (batched) {
+                st.executeBatch();
+            }
+        } finally {
+            closeSafe(st);
+        }
+    }
 
-            //st.executeBatch();
-            } catch (SQLException e) {
-                throw new DataStoreException("Error inserting features",e);
-            } catch (IOException e) {
-                throw new DataStoreException("Error inserting features",e);
-            }finally {
-                closeSafe(st);
+    /**
+     * Inserts a new feature into the database for a particular
+     * feature type / table.
+     */
+    protected void insert(final Feature ffeature, final SimpleFeatureType featureType,
+            final Connection cx) throws DataStoreException {
+        final PrimaryKey key = dbmodel.getPrimaryKey(featureType.getName());
+
+        Statement st = null;
+        try {
+            if (!(dialect instanceof PreparedStatementSQLDialect)) {
+                st = cx.createStatement();
+            }
+
+            //figure out what the next fid will be
+            final List<Object> nextKeyValues = getNextValues(key, cx);
+            final SimpleFeature feature = (SimpleFeature) ffeature;
+
+            if (dialect instanceof PreparedStatementSQLDialect) {
+                final PreparedStatement ps = queryBuilder.insertSQLPS(featureType, feature, nextKeyValues, cx);
+                try {
+                    ps.execute();
+                } finally {
+                    closeSafe(ps);
+                }
+            } else {
+                //this technic must be generalize to all primary keys, must revisite tests for this
+                final String sql = queryBuilder.insertSQL(featureType, feature, nextKeyValues, cx);
+                getLogger().log(Level.FINE, "Inserting new feature: {0}", sql);
+
+                if(nextKeyValues.isEmpty() || nextKeyValues.get(0) == null){
+                    st.execute(sql,Statement.RETURN_GENERATED_KEYS);
+                    ResultSet rs = st.getGeneratedKeys();
+                    rs.next();
+                    final int id = rs.getInt(1);
+                    nextKeyValues.set(0, id);
+                    rs.close();
+                    feature.setAttribute(key.getColumns().get(0).getName(), id);
+                }else{
+                    st.execute(sql);
+                }
             }
+
+            //report the feature id as user data since we cant set the fid
+            final String fid = featureType.getTypeName() + "." + PrimaryKey.encodeFID(nextKeyValues);
+            feature.getUserData().put("fid", fid);
+
+        } catch (SQLException e) {
+            throw new DataStoreException("Error inserting features",e);
+        } catch (IOException e) {
+            throw new DataStoreException("Error inserting features",e);
+        }finally {
+            closeSafe(st);
         }
         fireFeaturesAdded(featureType.getName(), null);
     }
@@ -1138,9 +1351,28 @@ public final class DefaultJDBCDataStore extends AbstractJDBCDataStore {
      */
     protected List<Object> getNextValues(final PrimaryKey pkey, final Connection cx)
             throws SQLException, IOException {
-        final ArrayList<Object> next = new ArrayList<Object>();
-        for (PrimaryKeyColumn col : pkey.getColumns()) {
-            next.add(getNextValue(col, pkey, cx));
+        return getNextValues(pkey, 1, cx).get(0);
+    }
+
+    /**
+     * Gets the next values of a primary key, the values of each column are
+     * allocated at once. Values generated by the database on insert are null.
+     *
+     * @param count number of keys to allocate
+     * @return list of count key values
+     */
+    protected List<List<Object>> getNextValues(final PrimaryKey pkey, final int count, final Connection cx)
+            throws SQLException, IOException {
+        final List<PrimaryKeyColumn> columns = pkey.getColumns();
+        final List<List<Object>> next = new ArrayList<List<Object>>(count);
+        for (int i=0; i<count; i++) {
+            next.add(new ArrayList<Object>(columns.size()));
+        }
+        for (PrimaryKeyColumn col : columns) {
+            final List<Object> values = getNextValues(col, pkey, count, cx);
+            for (int i=0; i<count; i++) {
+                next.get(i).add(values.get(i));
+            }
         }
         return next;
     }
@@ -1150,13 +1382,32 @@ public final class DefaultJDBCDataStore extends AbstractJDBCDataStore {
      */
     protected Object getNextValue(final PrimaryKeyColumn col, final PrimaryKey pkey, final Connection cx)
             throws SQLException, IOException {
-        Object next = null;
+        return getNextValues(col, pkey, 1, cx).get(0);
+    }
+
+    /**
+     * Gets the next values for the column of a primary key.
+     *
+     * @param count number of values to allocate
+     * @return list of count values, values generated by the database on insert are null
+     */
+    protected List<Object> getNextValues(final PrimaryKeyColumn col, final PrimaryKey pkey, final int count,
+            final Connection cx) throws SQLException, IOException {
+        final List<Object> next = new ArrayList<Object>(count);
 
         if (col instanceof AutoGeneratedPrimaryKeyColumn) {
-            next = dialect.getNextAutoGeneratedValue(databaseSchema, pkey.getTableName(), col.getName(), cx);
+            //the value can only be known before a single insert
+            final Object value = (count == 1) ?
+                    dialect.getNextAutoGeneratedValue(databaseSchema, pkey.getTableName(), col.getName(), cx) : null;
+            next.addAll(Collections.nCopies(count, value));
         } else if (col instanceof SequencedPrimaryKeyColumn) {
             final String sequenceName = ((SequencedPrimaryKeyColumn) col).getSequenceName();
-            next = dialect.getNextSequenceValue(databaseSchema, sequenceName, cx);
+            final List<Object> values = dialect.getNextSequenceValues(databaseSchema, sequenceName, count, cx);
+            if (values != null) {
+                next.addAll(values);
+            } else {
+                next.addAll(Collections.nCopies(count, null));
+            }
         } else {
             //try to calculate
             final Class t = col.getType();
@@ -1172,42 +1423,39 @@ public final class DefaultJDBCDataStore extends AbstractJDBCDataStore {
                 queryBuilder.encodeTableName(pkey.getTableName(), sql);
                 getLogger().log(Level.FINE, "Getting next FID: {0}", sql);
 
+                Object max;
                 final Statement st = cx.createStatement();
                 ResultSet rs = null;
                 try {
                     rs = st.executeQuery(sql.toString());
                     rs.next();
-                    next = rs.getObject(1);
+                    max = rs.getObject(1);
                 } finally {
                     closeSafe(rs);
                     closeSafe(st);
                 }
 
-                if(next == null){
-                    //this probably means there was no data in the table, set to 1
-                    //TODO: probably better to do a count to check... but if this
-                    // value already exists the db will throw an error when it tries
-                    // to insert
-                    next = 1;
-                }else if (t == Short.class || t == Integer.class || t == Long.class
-                        || BigInteger.class.isAssignableFrom(t)
-                        || BigDecimal.class.isAssignableFrom(t) ) {
-                    next = ((Number)next).longValue() +1;
-                }else if (t == Float.class){
-                    next = Math.nextUp( ((Number)next).floatValue() );
-                }else if (t == Double.class){
-                    next = Math.nextUp( ((Number)next).doubleValue() );
-                }else{
-                    //can't calculate for other types
-                    next = 1;
+                //values allocated by this datastore may not be inserted yet
+                final String keyName = pkey.getTableName() + '.' + col.getName();
+                synchronized (computedKeys) {
+                    final Object last = computedKeys.get(keyName);
+                    if (last != null && (max == null
+                            || ((Number)last).doubleValue() > ((Number)max).doubleValue())) {
+                        max = last;
+                    }
+                    for (int i=0; i<count; i++) {
+                        max = nextComputedValue(max, t);
+                        next.add(max);
+                    }
+                    computedKeys.put(keyName, max);
                 }
 
             } else if (CharSequence.class.isAssignableFrom(t)) {
-                //generate a random string
-                next = SimpleFeatureBuilder.createDefaultFeatureId();
-            }
-
-            if (next == null) {
+                //generate random strings
+                for (int i=0; i<count; i++) {
+                    next.add(SimpleFeatureBuilder.createDefaultFeatureId());
+                }
+            } else {
                 throw new IOException("Cannot generate key value for column of type: " + t.getName());
             }
         }
@@ -1215,6 +1463,32 @@ public final class DefaultJDBCDataStore extends AbstractJDBCDataStore {
         return next;
     }
 
+    /**
+     * @param previous : previous value of the key, null if there is no data in the table
+     * @param t : class of the key
+     * @return value following the previous one
+     */
+    private static Object nextComputedValue(final Object previous, final Class t) {
+        if (previous == null) {
+            //this probably means there was no data in the table, set to 1
+            //TODO: probably better to do a count to check... but if this
+            // value already exists the db will throw an error when it tries
+            // to insert
+            return 1;
+        } else if (t == Short.class || t == Integer.class || t == Long.class
+                || BigInteger.class.isAssignableFrom(t)
+                || BigDecimal.class.isAssignableFrom(t) ) {
+            return ((Number)previous).longValue() +1;
+        } else if (t == Float.class) {
+            return Math.nextUp( ((Number)previous).floatValue() );
+        } else if (t == Double.class) {
+            return Math.nextUp( ((Number)previous).doubleValue() );
+        } else {
+            //can't calculate for other types
+            return 1;
+        }
+    }
+
 
     ////////////////////////////////////////////////////////////////////////////
     // Fallback on reader/write iterator methods ///////////////////////////////
@@ -139,6 +139,24 @@ public interface JDBCDataStore extends DataStore {
      */
     void setFetchSize(final int fetchSize);
 
+    /**
+     * The current batch size. The batch size is the number of features inserted
+     * with each interaction with the dbms when features are written in batch.
+     * If set to a value less or equal than zero, all the features will be
+     * inserted in one shot.
+     * Features are written in batch unless the primary key is generated by the
+     * database on insert, the hint {@link org.geotoolkit.factory.HintsPending#UPDATE_ID_ON_INSERT}
+     * set to false enables batches for those tables too, without feature ids.
+     * @return int size
+     */
+    int getBatchSize();
+
+    /**
+     * Changes the batch size.
+     * @param batchSize
+     */
+    void setBatchSize(final int batchSize);
+
     /**
      * Creates a new instance of a filter to sql encoder.
      * <p>
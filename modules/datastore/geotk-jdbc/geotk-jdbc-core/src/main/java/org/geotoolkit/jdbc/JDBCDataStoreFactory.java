@@ -99,6 +99,14 @@ public abstract class JDBCDataStoreFactory extends AbstractDataStoreFactory {
     /** If connections should be validated before using them */
     public static final ParameterDescriptor<Integer> FETCHSIZE =
              new DefaultParameterDescriptor<Integer>("fetch size","number of records read with each iteraction with the dbms",Integer.class,1000,false);
+
+    /**
+     * Number of features inserted with each interaction with the dbms.
+     * Tables with a key generated by the database are only written in batch
+     * with the hint UPDATE_ID_ON_INSERT set to false.
+     */
+    public static final ParameterDescriptor<Integer> BATCHSIZE =
+             new DefaultParameterDescriptor<Integer>("batch size","number of records inserted with each iteraction with the dbms",Integer.class,1000,false);
     
     /** Maximum amount of time the pool will wait when trying to grab a new connection **/
     public static final ParameterDescriptor<Integer> MAXWAIT =
@@ -164,6 +172,12 @@ public abstract class JDBCDataStoreFactory extends AbstractDataStoreFactory {
             dataStore.setFetchSize(fetchSize);
         }
 
+        // batch size
+        final Integer batchSize = (Integer) params.parameter(BATCHSIZE.getName().toString()).getValue();
+        if (batchSize != null) {
+            dataStore.setBatchSize(batchSize);
+        }
+
         //database schema
         final String schema = (String) params.parameter(SCHEMA.getName().toString()).getValue();
 
@@ -21,7 +21,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.List;
 
 import org.geotoolkit.storage.DataStoreException;
 import org.geotoolkit.data.DataStoreRuntimeException;
@@ -29,16 +29,39 @@ import org.geotoolkit.data.FeatureWriter;
 import org.geotoolkit.factory.Hints;
 import org.geotoolkit.factory.HintsPending;
 import org.geotoolkit.feature.FeatureUtilities;
+import org.geotoolkit.jdbc.fid.AutoGeneratedPrimaryKeyColumn;
 import org.geotoolkit.jdbc.fid.PrimaryKey;
+import org.geotoolkit.jdbc.fid.PrimaryKeyColumn;
 
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.Name;
 
+/**
+ * Append feature writer.
+ * <p>
+ * Features are inserted by groups of {@link JDBCDataStore#getBatchSize() }
+ * features, the last group is inserted when the writer is closed.
+ * Key values are allocated by the writer before insertion, by growing blocks,
+ * so the feature id is known after each write. When the key is generated by
+ * the database, features are inserted one by one to know their id, unless the
+ * {@link HintsPending#UPDATE_ID_ON_INSERT} hint is false.
+ * </p>
+ *
+ * @module pending
+ */
 public class JDBCInsertFeatureWriter extends JDBCFeatureReader implements FeatureWriter<SimpleFeatureType, SimpleFeature> {
 
+    /** Maximum number of key values allocated at once when the batch size is unlimited */
+    private static final int MAX_ALLOCATED = 1024;
+
     private final boolean batchInsert;
-    private final Collection<SimpleFeature> toAdd;
+    private final List<SimpleFeature> toAdd;
+    /** key values of the features to add, null if ids are not updated */
+    private final List<List<Object>> toAddKeys;
+    private List<List<Object>> allocated = null;
+    private int allocatedIndex = 0;
+    private int allocationSize = 1;
     ResultSetFeature last;
 
     public JDBCInsertFeatureWriter(final String sql, final Connection cx, final JDBCDataStore store,
@@ -46,12 +69,10 @@ public class JDBCInsertFeatureWriter extends JDBCFeatureReader implements Featur
             throws SQLException, IOException, DataStoreException {
         super(sql, cx, store, groupName, type, pkey, hints);
         last = new ResultSetFeature( rs, cx );
-        if(hints != null){
-            batchInsert = Boolean.FALSE.equals(hints.get(HintsPending.UPDATE_ID_ON_INSERT));
-        }else{
-            batchInsert = Boolean.FALSE;
-        }
+        final boolean updateIds = isUpdateIds(hints);
+        batchInsert = !updateIds || isAllocatable(pkey);
         toAdd = (batchInsert) ? new ArrayList<SimpleFeature>() : null;
+        toAddKeys = (batchInsert && updateIds) ? new ArrayList<List<Object>>() : null;
     }
 
     public JDBCInsertFeatureWriter(final PreparedStatement ps, final Connection cx, final JDBCDataStore store,
@@ -59,12 +80,10 @@ public class JDBCInsertFeatureWriter extends JDBCFeatureReader implements Featur
             throws SQLException, IOException, DataStoreException {
         super( ps, cx, store, groupName, type, pkey, hints );
         last = new ResultSetFeature( rs, ps.getConnection() );
-        if(hints == null){
-            batchInsert = Boolean.FALSE;
-        }else{
-            batchInsert = Boolean.FALSE.equals(hints.get(HintsPending.UPDATE_ID_ON_INSERT));
-        }
+        final boolean updateIds = isUpdateIds(hints);
+        batchInsert = !updateIds || isAllocatable(pkey);
         toAdd = (batchInsert) ? new ArrayList<SimpleFeature>() : null;
+        toAddKeys = (batchInsert && updateIds) ? new ArrayList<List<Object>>() : null;
     }
 
     public JDBCInsertFeatureWriter(final JDBCUpdateFeatureWriter other) throws SQLException {
@@ -72,6 +91,29 @@ public class JDBCInsertFeatureWriter extends JDBCFeatureReader implements Featur
         last = other.last;
         batchInsert = false;
         toAdd = null;
+        toAddKeys = null;
+    }
+
+    /**
+     * @return false if the hints state feature ids are not needed after insertion
+     */
+    private static boolean isUpdateIds(final Hints hints){
+        return hints == null || !Boolean.FALSE.equals(hints.get(HintsPending.UPDATE_ID_ON_INSERT));
+    }
+
+    /**
+     * @return true if all key values can be known before insertion
+     */
+    private static boolean isAllocatable(final PrimaryKey pkey){
+        if(pkey == null || pkey.getColumns().isEmpty()){
+            return false;
+        }
+        for(PrimaryKeyColumn col : pkey.getColumns()){
+            if(col instanceof AutoGeneratedPrimaryKeyColumn){
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
@@ -96,49 +138,92 @@ public class JDBCInsertFeatureWriter extends JDBCFeatureReader implements Featur
     public void write() throws DataStoreRuntimeException {
         
         if(batchInsert){
-            toAdd.add(FeatureUtilities.copy(last));
-            if(toAdd.size() > 1000){
-                try {
-                    dataStore.insert(toAdd, featureType, st.getConnection());
-                } catch (DataStoreException e) {
-                    throw new DataStoreRuntimeException(e);
-                } catch (SQLException e) {
-                    throw new DataStoreRuntimeException(e);
+            final SimpleFeature copy = FeatureUtilities.copy(last);
+            if(toAddKeys != null){
+                final List<Object> keyValues = nextKeyValues();
+                final String fid = dataStore.encodeFID(featureType, pkey, copy, keyValues);
+                if(fid == null){
+                    //a key value could not be allocated, insert now to know the id
+                    flush();
+                    insertLast();
+                    return;
                 }
-                toAdd.clear();
+                toAdd.add(copy);
+                toAddKeys.add(keyValues);
+                last.setID(fid);
+            }else{
+                toAdd.add(copy);
+            }
+            final int batchSize = dataStore.getBatchSize();
+            if(batchSize > 0 && toAdd.size() >= batchSize){
+                flush();
             }
         }else{
-            try {
-                dataStore.insert(last, featureType, st.getConnection());
+            insertLast();
+        }
+    }
 
-                //the datastore sets as userData, grab it and update the fid
-                String fid = (String) last.getUserData().get( "fid" );
-                last.setID( fid );
-            } catch (DataStoreException e) {
-                throw new DataStoreRuntimeException(e);
+    /**
+     * Allocate key values by blocks, each block doubles the previous one
+     * up to the batch size. Small writes do not waste key values.
+     */
+    private List<Object> nextKeyValues() throws DataStoreRuntimeException {
+        if(allocated == null || allocatedIndex >= allocated.size()){
+            try {
+                allocated = dataStore.getNextValues(pkey, allocationSize, st.getConnection());
             } catch (SQLException e) {
                 throw new DataStoreRuntimeException(e);
+            } catch (IOException e) {
+                throw new DataStoreRuntimeException(e);
             }
+            allocatedIndex = 0;
+            final int batchSize = dataStore.getBatchSize();
+            allocationSize = Math.min(allocationSize*2, (batchSize > 0) ? batchSize : MAX_ALLOCATED);
         }
+        return allocated.get(allocatedIndex++);
     }
 
-    @Override
-    public void close() throws DataStoreRuntimeException {
+    private void insertLast() throws DataStoreRuntimeException {
+        try {
+            dataStore.insert(last, featureType, st.getConnection());
+
+            //the datastore sets as userData, grab it and update the fid
+            String fid = (String) last.getUserData().get( "fid" );
+            last.setID( fid );
+        } catch (DataStoreException e) {
+            throw new DataStoreRuntimeException(e);
+        } catch (SQLException e) {
+            throw new DataStoreRuntimeException(e);
+        }
+    }
 
-        if(batchInsert && !toAdd.isEmpty()){
-            try {
-                //do the insert
+    /**
+     * Insert the waiting features.
+     */
+    private void flush() throws DataStoreRuntimeException {
+        if(toAdd.isEmpty()){
+            return;
+        }
+        try {
+            if(toAddKeys != null){
+                dataStore.insert(toAdd, toAddKeys, featureType, st.getConnection());
+                toAddKeys.clear();
+            }else{
                 dataStore.insert(toAdd, featureType, st.getConnection());
-
-                //the datastore sets as userData, grab it and update the fid
-                //String fid = (String) last.getUserData().get( "fid" );
-                //last.setID( fid );
-            } catch (DataStoreException e) {
-                throw new DataStoreRuntimeException(e);
-            } catch (SQLException e) {
-                throw new DataStoreRuntimeException(e);
             }
-            toAdd.clear();
+        } catch (DataStoreException e) {
+            throw new DataStoreRuntimeException(e);
+        } catch (SQLException e) {
+            throw new DataStoreRuntimeException(e);
+        }
+        toAdd.clear();
+    }
+
+    @Override
+    public void close() throws DataStoreRuntimeException {
+
+        if(batchInsert){
+            flush();
         }
         
         super.close();
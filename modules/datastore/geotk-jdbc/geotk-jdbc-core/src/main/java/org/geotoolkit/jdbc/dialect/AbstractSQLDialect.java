@@ -42,8 +42,10 @@ import java.sql.SQLException;
 import java.sql.Time;
 import java.sql.Timestamp;
 import java.sql.Types;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.logging.Level;
@@ -535,6 +537,27 @@ public abstract class AbstractSQLDialect implements SQLDialect{
         return null;
     }
 
+    /**
+     * {@inheritDoc }
+     *
+     * This implementation calls {@link #getNextSequenceValue(String, String, Connection)}
+     * for each value, subclasses should override it if the database can return
+     * several values of a sequence at once.
+     */
+    @Override
+    public List<Object> getNextSequenceValues(final String schemaName, final String sequenceName,
+            final int count, final Connection cx) throws SQLException {
+        final List<Object> values = new ArrayList<Object>(count);
+        for (int i=0; i<count; i++) {
+            final Object value = getNextSequenceValue(schemaName, sequenceName, cx);
+            if (value == null) {
+                return null;
+            }
+            values.add(value);
+        }
+        return values;
+    }
+
     /**
      * {@inheritDoc }
      */
@@ -0,0 +1,56 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.jdbc.dialect;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.opengis.feature.type.AttributeDescriptor;
+
+
+/**
+ * SQL dialect which can load rows in a table faster than with insert
+ * statements, using a database specific bulk load command.
+ *
+ * @author Johann Sorel (Geomatys)
+ *
+ * @module pending
+ */
+public interface BulkInsertSQLDialect extends SQLDialect {
+
+    /**
+     * Inserts rows in a table.
+     * <p>
+     * Geometries must be written with the srid given by
+     * {@link SQLQueryBuilder#getGeometrySRID}.
+     * The connection must not be closed.
+     * </p>
+     * @param schemaName The schema name, this might be <code>null</code>.
+     * @param tableName The table name.
+     * @param columns The inserted columns.
+     * @param rows The values of each row, in the columns order, values can be null.
+     * @param cx The database connection.
+     *
+     * @return false if the bulk load is not possible, in which case nothing
+     *         has been inserted and the rows must be inserted with statements.
+     */
+    boolean insertBulk(final String schemaName, final String tableName, final List<AttributeDescriptor> columns,
+            final List<Object[]> rows, final Connection cx) throws SQLException, IOException;
+
+}
@@ -21,6 +21,7 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
+import java.util.List;
 import java.util.Map;
 import java.sql.DatabaseMetaData;
 
@@ -620,6 +621,25 @@ public interface SQLDialect {
     Object getNextSequenceValue(final String schemaName, final String sequenceName, final Connection cx)
             throws SQLException;
 
+    /**
+     * Obtains the next values of a sequence, incrementing the sequence by the
+     * number of values in the process. Used to allocate the keys of features
+     * inserted in batch.
+     * <p>
+     * This method is given a direct connection to the database, but this connection
+     * should never be closed. However any statements or result sets instantiated
+     * from the connection must be closed.
+     * </p>
+     * @param schemaName The schema name, this might be <code>null</code>.
+     * @param sequenceName The name of the sequence.
+     * @param count The number of values.
+     * @param cx The database connection.
+     *
+     * @return The next values of the sequence, or <code>null</code>.
+     */
+    List<Object> getNextSequenceValues(final String schemaName, final String sequenceName,
+            final int count, final Connection cx) throws SQLException;
+
     /**
      * Returns true if this dialect can encode both {@linkplain Query#getStartIndex()}
      * and {@linkplain Query#getMaxFeatures()} into native SQL.
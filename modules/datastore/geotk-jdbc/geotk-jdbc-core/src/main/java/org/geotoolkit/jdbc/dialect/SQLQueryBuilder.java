@@ -17,8 +17,6 @@
 
 package org.geotoolkit.jdbc.dialect;
 
-import org.opengis.feature.Feature;
-import java.util.Collection;
 import com.vividsolutions.jts.geom.Geometry;
 
 import java.io.IOException;
@@ -329,111 +327,6 @@ public final class SQLQueryBuilder {
         return sqlType.toString() + sqlValues.toString();
     }
     
-    public String insertSQL(final SimpleFeatureType featureType, final Collection<? extends Feature> features,
-                               final List keyValues, final Connection cx) throws DataStoreException{
-        final SQLDialect dialect = getDialect();
-        final PrimaryKey key = store.getMetaModel().getPrimaryKey(featureType.getName());
-        final List<PrimaryKeyColumn> keyColumns = key.getColumns();
-
-        final StringBuilder sqlType = new StringBuilder();
-        sqlType.append("INSERT INTO ");
-        encodeTableName(featureType.getTypeName(), sqlType);
-        sqlType.append(" ( ");
-
-        //add all fields
-        fields :
-        for(int i=0,n=featureType.getAttributeCount(); i<n; i++){
-            final AttributeDescriptor desc = featureType.getDescriptor(i);
-            final String attName = desc.getLocalName();
-
-            //remove the primary key attribut that wil be auto-generated and null
-            for (PrimaryKeyColumn col : keyColumns) {
-                if(col.getName().equals(attName)){
-                    //only include if its non auto generating and not null
-                    if (col instanceof AutoGeneratedPrimaryKeyColumn) {
-                        continue fields;
-                    }
-                }
-            }
-
-            //the column
-            dialect.encodeColumnName(attName, sqlType);
-            sqlType.append(',');
-        }
-        
-        sqlType.setLength(sqlType.length() - 1);
-        sqlType.append(" ) ");
-        
-        
-        final StringBuilder sqlValues = new StringBuilder();
-        sqlValues.append(" VALUES ");
-
-        //add all fields
-        for(Feature feature : features){
-            
-            sqlValues.append(" (");
-            fields :
-            for(int i=0,n=featureType.getAttributeCount(); i<n; i++){
-                final AttributeDescriptor desc = featureType.getDescriptor(i);
-                final String attName = desc.getLocalName();
-                final Class binding = desc.getType().getBinding();
-                final Object value = feature.getProperty(attName).getValue();
-
-                //remove the primary key attribut that wil be auto-generated and null
-                for (PrimaryKeyColumn col : keyColumns) {
-                    if(col.getName().equals(attName)){
-                        //only include if its non auto generating and not null
-                        if (col instanceof AutoGeneratedPrimaryKeyColumn) {
-                            continue fields;
-                        }
-                    }
-                }
-
-                //the value
-                if (value == null) {
-                    //maybe it's an auto generated value from a sequence
-                    boolean found = false;
-                    for (int k=0; k<keyColumns.size(); k++) {
-                        if(keyColumns.get(k).getName().equals(attName)){
-                            dialect.encodeValue(keyValues.get(k), keyColumns.get(k).getType(), sqlValues);
-                            found = true;
-                            break;
-                        }
-                    }
-
-                    if(!found){
-                        if (!desc.isNillable()) {
-                            //TODO: throw an exception
-                        }
-                        sqlValues.append("null");
-                    }
-                } else {
-                    if (Geometry.class.isAssignableFrom(binding)) {
-                        final Geometry g = (Geometry) value;
-                        final int srid = getGeometrySRID(g, desc);
-                        try {
-                            dialect.encodeGeometryValue(g, srid, sqlValues);
-                        } catch (IOException ex) {
-                            throw new DataStoreException(ex);
-                        }
-                    } else {
-                        dialect.encodeValue(value, binding, sqlValues);
-                    }
-                }
-
-                sqlValues.append(',');
-            }
-            sqlValues.setLength(sqlValues.length() - 1);
-            sqlValues.append(" ),");
-        }
-
-        sqlValues.setLength(sqlValues.length() - 1);
-        sqlValues.append(';');        
-        
-        return sqlType.toString() + sqlValues.toString();
-    }
-    
-
     /**
      * Generates an 'UPDATE' sql statement.
      */
@@ -851,6 +744,16 @@ public final class SQLQueryBuilder {
      */
     public PreparedStatement insertSQLPS(final SimpleFeatureType featureType, final SimpleFeature feature,
             final List keyValues, final Connection cx) throws IOException, SQLException, DataStoreException{
+        final PreparedStatement ps = cx.prepareStatement(insertSQLPSQuery(featureType, feature));
+        setInsertSQLPSValues(ps, featureType, feature, keyValues, cx);
+        return ps;
+    }
+
+    /**
+     * Generates the sql of a 'INSERT INFO' prepared statement.
+     * Features with the same sql can be inserted in batch with the same statement.
+     */
+    public String insertSQLPSQuery(final SimpleFeatureType featureType, final SimpleFeature feature){
         final PreparedStatementSQLDialect dialect = (PreparedStatementSQLDialect) getDialect();
         final PrimaryKey key = store.getMetaModel().getPrimaryKey(featureType.getName());
         final List<PrimaryKeyColumn> keyColumns = key.getColumns();
@@ -904,11 +807,18 @@ public final class SQLQueryBuilder {
         sqlType.setLength(sqlType.length() - 1);
         sqlValues.setLength(sqlValues.length() - 1);
         sqlValues.append(")");
-        final String request = sqlType.toString() + sqlValues.toString();
-
+        return sqlType.toString() + sqlValues.toString();
+    }
 
-        //create the prepared statement-----------------------------------------
-        final PreparedStatement ps = cx.prepareStatement(request);
+    /**
+     * Fill a prepared statement created with the sql returned by
+     * {@link #insertSQLPSQuery(SimpleFeatureType, SimpleFeature)}.
+     */
+    public void setInsertSQLPSValues(final PreparedStatement ps, final SimpleFeatureType featureType,
+            final SimpleFeature feature, final List keyValues, final Connection cx) throws SQLException{
+        final PreparedStatementSQLDialect dialect = (PreparedStatementSQLDialect) getDialect();
+        final PrimaryKey key = store.getMetaModel().getPrimaryKey(featureType.getName());
+        final List<PrimaryKeyColumn> keyColumns = key.getColumns();
 
         //fill the prepared statement
         int attIdx = 0;
@@ -931,9 +841,6 @@ public final class SQLQueryBuilder {
 
             attIdx++;
 
-            //the column
-            dialect.encodeColumnName(attName, sqlType);
-
             //the value
             if (value == null) {
                 //maybe it's an auto generated value from a sequence
@@ -961,12 +868,7 @@ public final class SQLQueryBuilder {
                     dialect.setValue(value, binding, ps, attIdx, cx);
                 }
             }
-
-            sqlType.append(',');
-            sqlValues.append(',');
         }
-
-        return ps;
     }
 
     /**
@@ -16,10 +16,14 @@
  */
 package org.geotoolkit.jdbc;
 
+import java.sql.Connection;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 
 import org.geotoolkit.data.FeatureCollection;
 import org.geotoolkit.data.FeatureIterator;
+import org.geotoolkit.data.FeatureWriter;
 import org.geotoolkit.feature.simple.SimpleFeatureBuilder;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
@@ -164,6 +168,63 @@ public abstract class JDBCPrimaryKeyTest extends JDBCTestSupport {
         assertPrimaryKeyCanBeHidden(dataStore,sft);
     }
     
+    /**
+     * Features are inserted by batches, their ids must be known after each write.
+     */
+    public void testBatchedInsert() throws Exception {
+        dataStore.setBatchSize(2);
+        assertBatchedInsert("seq");
+        assertBatchedInsert("noninc");
+    }
+
+    private void assertBatchedInsert(final String name) throws DataStoreException {
+        final FeatureWriter<SimpleFeatureType, SimpleFeature> writer = dataStore.getFeatureWriterAppend(nsname(name));
+        final List<String> ids = new ArrayList<String>();
+        try{
+            for(int i=4; i<9; i++){
+                final SimpleFeature f = writer.next();
+                f.setAttribute(1, "f"+i);
+                f.setAttribute(2, new GeometryFactory().createPoint(new Coordinate(i,i)));
+                writer.write();
+                ids.add(f.getID());
+            }
+        }finally{
+            writer.close();
+        }
+
+        for(int i=0; i<ids.size(); i++){
+            assertEquals(tname(name) + "." + (i+4), ids.get(i));
+        }
+        final FeatureCollection features = dataStore.createSession(false).getFeatureCollection(QueryBuilder.all(nsname(name)));
+        assertEquals(8, features.size());
+        assertPrimaryKeyValues(features, 8);
+    }
+
+    /**
+     * Key values allocated at once must be distinct and must not be allocated again.
+     */
+    public void testNextValues() throws Exception {
+        final Connection cx = dataStore.getDataSource().getConnection();
+        try{
+            for(String name : new String[]{"seq","noninc"}){
+                final SimpleFeatureType sft = (SimpleFeatureType) dataStore.getFeatureType(nsname(name));
+                final PrimaryKey pkey = dataStore.getMetaModel().getPrimaryKey(sft.getName());
+
+                final List<List<Object>> values = ((DefaultJDBCDataStore)dataStore).getNextValues(pkey, 3, cx);
+                assertEquals(3, values.size());
+                for(int i=0; i<3; i++){
+                    assertEquals(1, values.get(i).size());
+                    assertEquals(4+i, ((Number)values.get(i).get(0)).intValue());
+                }
+
+                final List<List<Object>> next = ((DefaultJDBCDataStore)dataStore).getNextValues(pkey, 1, cx);
+                assertEquals(7, ((Number)next.get(0).get(0)).intValue());
+            }
+        }finally{
+            cx.close();
+        }
+    }
+
     public void testNullPrimaryKey() throws DataStoreException {
         SimpleFeatureType sft = (SimpleFeatureType) dataStore.getFeatureType(nsname("nokey"));
         assertFalse( dataStore.isWritable(nsname("nokey")));
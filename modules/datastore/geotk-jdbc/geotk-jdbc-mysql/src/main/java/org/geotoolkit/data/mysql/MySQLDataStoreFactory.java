@@ -56,7 +56,7 @@ public class MySQLDataStoreFactory extends JDBCDataStoreFactory {
     public static final ParameterDescriptorGroup PARAMETERS_DESCRIPTOR =
             new DefaultParameterDescriptorGroup("MySQLParameters",
                 DBTYPE,HOST,PORT,DATABASE,SCHEMA,USER,PASSWD,NAMESPACE,
-                DATASOURCE,MAXCONN,MINCONN,VALIDATECONN,FETCHSIZE,MAXWAIT,PREPARED_STATEMENTS);
+                DATASOURCE,MAXCONN,MINCONN,VALIDATECONN,FETCHSIZE,BATCHSIZE,MAXWAIT,PREPARED_STATEMENTS);
 
     @Override
     protected SQLDialect createSQLDialect(final JDBCDataStore dataStore) {
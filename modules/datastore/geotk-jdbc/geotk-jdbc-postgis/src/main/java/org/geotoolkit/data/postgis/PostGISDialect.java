@@ -31,18 +31,25 @@ import com.vividsolutions.jts.io.ParseException;
 import com.vividsolutions.jts.io.WKTReader;
 
 import java.io.IOException;
+import java.io.StringReader;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Timestamp;
 import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 
 import org.geotoolkit.data.jdbc.FilterToSQL;
 import org.geotoolkit.data.postgis.ewkb.JtsBinaryParser;
+import org.geotoolkit.data.postgis.ewkb.JtsBinaryWriter;
 import org.geotoolkit.data.postgis.wkb.WKBAttributeIO;
 import org.geotoolkit.factory.Hints;
 import org.geotoolkit.feature.AttributeDescriptorBuilder;
@@ -50,6 +57,8 @@ import org.geotoolkit.feature.AttributeTypeBuilder;
 import org.geotoolkit.feature.FeatureTypeBuilder;
 import org.geotoolkit.jdbc.JDBCDataStore;
 import org.geotoolkit.jdbc.dialect.AbstractSQLDialect;
+import org.geotoolkit.jdbc.dialect.BulkInsertSQLDialect;
+import org.geotoolkit.jdbc.dialect.SQLQueryBuilder;
 import org.geotoolkit.jdbc.reverse.DataBaseModel;
 import org.geotoolkit.jdbc.reverse.SchemaMetaModel;
 import org.geotoolkit.jdbc.reverse.TableMetaModel;
@@ -65,12 +74,13 @@ import org.opengis.feature.type.PropertyDescriptor;
 import org.opengis.util.FactoryException;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
+import org.postgresql.PGConnection;
 import org.postgresql.jdbc4.Jdbc4ResultSetMetaData;
 
 import static org.geotoolkit.jdbc.AbstractJDBCDataStore.*;
 
 
-public class PostGISDialect extends AbstractSQLDialect {
+public class PostGISDialect extends AbstractSQLDialect implements BulkInsertSQLDialect {
 
     private static final String GEOM_ENCODING = "Encoding";
     private static enum GeometryEncoding{
@@ -448,6 +458,29 @@ public class PostGISDialect extends AbstractSQLDialect {
         return null;
     }
 
+    @Override
+    public List<Object> getNextSequenceValues(final String schemaName, final String sequenceName,
+            final int count, final Connection cx) throws SQLException{
+        final Statement st = cx.createStatement();
+        try {
+            final String sql = "SELECT nextval('" + sequenceName + "') FROM generate_series(1," + count + ")";
+
+            dataStore.getLogger().fine(sql);
+            final ResultSet rs = st.executeQuery(sql);
+            try {
+                final List<Object> values = new ArrayList<Object>(count);
+                while (rs.next()) {
+                    values.add(rs.getLong(1));
+                }
+                return values;
+            } finally {
+                dataStore.closeSafe(rs);
+            }
+        } finally {
+            dataStore.closeSafe(st);
+        }
+    }
+
     @Override
     public Object getNextAutoGeneratedValue(final String schemaName, final String tableName,
             final String columnName, final Connection cx) throws SQLException{
@@ -637,6 +670,117 @@ public class PostGISDialect extends AbstractSQLDialect {
         }
     }
 
+    /**
+     * {@inheritDoc }
+     *
+     * Rows are loaded with a COPY command in text format, geometries are
+     * encoded in hexadecimal EWKB.
+     */
+    @Override
+    public boolean insertBulk(final String schemaName, final String tableName,
+            final List<AttributeDescriptor> columns, final List<Object[]> rows, final Connection cx)
+            throws SQLException, IOException {
+        final PGConnection pgcx;
+        if (cx instanceof PGConnection) {
+            pgcx = (PGConnection) cx;
+        } else if (cx.isWrapperFor(PGConnection.class)) {
+            pgcx = cx.unwrap(PGConnection.class);
+        } else {
+            return false;
+        }
+
+        for (AttributeDescriptor desc : columns) {
+            if (!isCopySupported(desc.getType().getBinding())) {
+                return false;
+            }
+        }
+
+        final StringBuilder sql = new StringBuilder("COPY ");
+        if (schemaName != null) {
+            encodeSchemaName(schemaName, sql);
+            sql.append('.');
+        }
+        encodeTableName(tableName, sql);
+        sql.append(" (");
+        for (AttributeDescriptor desc : columns) {
+            encodeColumnName(desc.getLocalName(), sql);
+            sql.append(',');
+        }
+        sql.setLength(sql.length() - 1);
+        sql.append(") FROM STDIN");
+
+        final JtsBinaryWriter writer = new JtsBinaryWriter();
+        final StringBuilder data = new StringBuilder();
+        for (Object[] row : rows) {
+            for (int i=0; i<row.length; i++) {
+                if (i > 0) {
+                    data.append('\t');
+                }
+                encodeCopyValue(row[i], columns.get(i), writer, data);
+            }
+            data.append('\n');
+        }
+
+        dataStore.getLogger().fine(sql.toString());
+        pgcx.getCopyAPI().copyIn(sql.toString(), new StringReader(data.toString()));
+        return true;
+    }
+
+    private static boolean isCopySupported(final Class binding) {
+        return Geometry.class.isAssignableFrom(binding)
+            || Number.class.isAssignableFrom(binding)
+            || CharSequence.class.isAssignableFrom(binding)
+            || Date.class.isAssignableFrom(binding)
+            || binding == Boolean.class
+            || binding == Character.class;
+    }
+
+    /**
+     * Encodes a value in the COPY text format.
+     */
+    static void encodeCopyValue(final Object value, final AttributeDescriptor desc,
+            final JtsBinaryWriter writer, final StringBuilder data) {
+        if (value == null) {
+            data.append("\\N");
+        } else if (value instanceof Geometry) {
+            Geometry g = (Geometry) value;
+            if (g instanceof LinearRing) {
+                //postgis does not handle linear rings, convert to just a line string
+                g = g.getFactory().createLineString(((LinearRing) g).getCoordinateSequence());
+            }
+            final int srid = SQLQueryBuilder.getGeometrySRID(g, desc);
+            if (srid > 0 && g.getSRID() != srid) {
+                g = (Geometry) g.clone();
+                g.setSRID(srid);
+            }
+            data.append(writer.writeHexed(g));
+        } else if (value instanceof Date) {
+            final Class binding = desc.getType().getBinding();
+            final long time = ((Date) value).getTime();
+            if (java.sql.Date.class.isAssignableFrom(binding)) {
+                data.append(new java.sql.Date(time));
+            } else if (Time.class.isAssignableFrom(binding)) {
+                data.append(new Time(time));
+            } else if (value instanceof Timestamp) {
+                data.append(value);
+            } else {
+                data.append(new Timestamp(time));
+            }
+        } else {
+            final String str = value.toString();
+            for (int i=0,n=str.length(); i<n; i++) {
+                final char c = str.charAt(i);
+                switch (c) {
+                    case '\\': data.append("\\\\"); break;
+                    case '\t': data.append("\\t"); break;
+                    case '\n': data.append("\\n"); break;
+                    case '\r': data.append("\\r"); break;
+                    default: data.append(c);
+                }
+            }
+        }
+    }
+
     @Override
     public FilterToSQL createFilterToSQL(){
         final PostgisFilterToSQL sql = new PostgisFilterToSQL(this);
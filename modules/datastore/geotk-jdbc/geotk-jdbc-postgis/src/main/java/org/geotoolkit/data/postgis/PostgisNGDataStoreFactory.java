@@ -57,7 +57,7 @@ public class PostgisNGDataStoreFactory extends JDBCDataStoreFactory {
     public static final ParameterDescriptorGroup PARAMETERS_DESCRIPTOR =
             new DefaultParameterDescriptorGroup("PostGISParameters",
                 DBTYPE,HOST,PORT,DATABASE,SCHEMA,USER,PASSWD,NAMESPACE,
-                DATASOURCE,MAXCONN,MINCONN,VALIDATECONN,FETCHSIZE,MAXWAIT,LOOSEBBOX,PREPARED_STATEMENTS);
+                DATASOURCE,MAXCONN,MINCONN,VALIDATECONN,FETCHSIZE,BATCHSIZE,MAXWAIT,LOOSEBBOX,PREPARED_STATEMENTS);
 
     @Override
     protected SQLDialect createSQLDialect(final JDBCDataStore dataStore) {
@@ -0,0 +1,88 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.data.postgis;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Point;
+
+import org.geotoolkit.data.postgis.ewkb.JtsBinaryParser;
+import org.geotoolkit.data.postgis.ewkb.JtsBinaryWriter;
+import org.geotoolkit.feature.FeatureTypeBuilder;
+import org.geotoolkit.jdbc.JDBCDataStore;
+
+import org.junit.Test;
+import org.opengis.feature.type.AttributeDescriptor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing the encoding of values in the COPY text format, no database needed.
+ *
+ * @author Johann Sorel (Geomatys)
+ * @module pending
+ */
+public class PostGISCopyEncodingTest {
+
+    private static String encode(final Object value, final AttributeDescriptor desc){
+        final StringBuilder data = new StringBuilder();
+        PostGISDialect.encodeCopyValue(value, desc, new JtsBinaryWriter(), data);
+        return data.toString();
+    }
+
+    @Test
+    public void testText() {
+        final AttributeDescriptor desc = new FeatureTypeBuilder().add("name", String.class);
+
+        assertEquals("abc", encode("abc", desc));
+        assertEquals("a\\tb\\nc\\rd", encode("a\tb\nc\rd", desc));
+        assertEquals("a\\\\b", encode("a\\b", desc));
+    }
+
+    @Test
+    public void testNull() {
+        final AttributeDescriptor desc = new FeatureTypeBuilder().add("name", String.class);
+
+        assertEquals("\\N", encode(null, desc));
+        //the text \N must not be read as null
+        assertEquals("\\\\N", encode("\\N", desc));
+    }
+
+    @Test
+    public void testNumber() {
+        final AttributeDescriptor desc = new FeatureTypeBuilder().add("value", Double.class);
+        assertEquals("12.5", encode(12.5d, desc));
+    }
+
+    /**
+     * Geometries are written in hexadecimal EWKB with the column SRID.
+     */
+    @Test
+    public void testGeometrySRID() {
+        final AttributeDescriptor desc = new FeatureTypeBuilder().add("geom", Point.class);
+        desc.getUserData().put(JDBCDataStore.JDBC_NATIVE_SRID, 4326);
+
+        final Point pt = new GeometryFactory().createPoint(new Coordinate(1, 2));
+        final Geometry result = new JtsBinaryParser().parse(encode(pt, desc));
+        assertEquals(4326, result.getSRID());
+        assertTrue(pt.equalsExact(result));
+        //the written geometry is not modified
+        assertEquals(0, pt.getSRID());
+    }
+
+}
@@ -22,6 +22,7 @@ import org.geotoolkit.data.dbf.DbaseFileHeader;
 import org.geotoolkit.data.dbf.DbaseFileReader;
 import org.geotoolkit.data.shapefile.lock.AccessManager;
 import org.geotoolkit.data.shapefile.shp.ShapefileReader;
+import org.geotoolkit.data.shapefile.shx.ShxReader;
 import org.geotoolkit.storage.DataStoreException;
 import org.geotoolkit.util.ArgumentChecks;
 import org.geotoolkit.util.Converters;
@@ -47,6 +48,12 @@ public class ShapefileAttributeReader {
     protected ShapefileReader.Record record;
     private boolean closed = false;
 
+    //record range, when only a part of the file is read
+    private ShxReader rangeShx = null;
+    private int rangeStart = 0;
+    private int rangeNext = 0;
+    private int rangeEnd = 0;
+
     //feature bbox must be bigger than this, otherwise shape geometry is only estimated
     private final boolean estimateRes;
     private final double estimateX;
@@ -118,6 +125,23 @@ public class ShapefileAttributeReader {
         return locker;
     }
 
+    /**
+     * Restrict the reader to a range of records. Shapes are located with the
+     * shx offsets, so several readers can read different parts of the same
+     * file at the same time.
+     *
+     * @param shx : shx reader, closed with the locker
+     * @param start : index of the first record, starting at 0
+     * @param end : index of the last record, exclusive
+     */
+    public void setRange(final ShxReader shx, final int start, final int end) {
+        ArgumentChecks.ensureNonNull("shx", shx);
+        this.rangeShx = shx;
+        this.rangeStart = start;
+        this.rangeNext = start;
+        this.rangeEnd = end;
+    }
+
     /**
      * {@inheritDoc }
      */
@@ -140,6 +164,10 @@ public class ShapefileAttributeReader {
      */
     public boolean hasNext() throws IOException {
 
+        if(rangeShx != null){
+            return rangeNext < rangeEnd;
+        }
+
         if(shp.hasNext()){
             if(dbf != null){
                 if(dbf.hasNext()){
@@ -174,14 +202,24 @@ public class ShapefileAttributeReader {
     public void next() throws IOException {
         nextShape();
         nextDbf();
+        if (rangeShx != null) {
+            rangeNext++;
+        }
     }
 
     protected void nextShape() throws IOException {
+        if (rangeShx != null) {
+            shp.goTo(rangeShx.getOffsetInBytes(rangeNext));
+        }
         record = shp.nextRecord();
     }
 
     protected void nextDbf() throws IOException {
         if (dbf != null) {
+            if (rangeShx != null && rangeNext == rangeStart) {
+                //dbf records are contiguous, move only to the first one
+                dbf.goTo(rangeStart+1);
+            }
             row = dbf.next();
         }
     }
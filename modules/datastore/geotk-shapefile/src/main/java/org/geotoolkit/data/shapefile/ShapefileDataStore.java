@@ -28,6 +28,7 @@ import com.vividsolutions.jts.geom.MultiPolygon;
 import com.vividsolutions.jts.geom.Point;
 import com.vividsolutions.jts.geom.Polygon;
 
+import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.net.MalformedURLException;
@@ -52,18 +53,23 @@ import org.geotoolkit.data.DataStoreRuntimeException;
 import org.geotoolkit.data.FeatureReader;
 import org.geotoolkit.data.FeatureWriter;
 import org.geotoolkit.data.memory.GenericEmptyFeatureIterator;
+import org.geotoolkit.data.memory.GenericMaxFeatureIterator;
+import org.geotoolkit.data.memory.GenericParallelFeatureIterator;
+import org.geotoolkit.data.memory.GenericStartIndexFeatureIterator;
 import org.geotoolkit.data.query.DefaultQueryCapabilities;
 import org.geotoolkit.data.query.Query;
 import org.geotoolkit.data.query.QueryCapabilities;
 import org.geotoolkit.data.query.QueryUtilities;
 import org.geotoolkit.data.dbf.DbaseFileHeader;
 import org.geotoolkit.data.dbf.DbaseFileReader;
+import org.geotoolkit.data.dbf.DbaseStatistics;
 import org.geotoolkit.data.shapefile.shx.ShxReader;
 import org.geotoolkit.data.shapefile.shp.ShapeType;
 import org.geotoolkit.data.shapefile.shp.ShapefileHeader;
 import org.geotoolkit.data.shapefile.shp.ShapefileReader;
 import org.geotoolkit.data.shapefile.shp.ShapefileWriter;
 import org.geotoolkit.factory.Hints;
+import org.geotoolkit.factory.HintsPending;
 import org.geotoolkit.feature.FeatureTypeUtilities;
 import org.geotoolkit.feature.SchemaException;
 import org.geotoolkit.feature.FeatureTypeBuilder;
@@ -99,12 +105,18 @@ public class ShapefileDataStore extends AbstractDataStore{
     // This is the default character as specified by the DBF specification
     public static final Charset DEFAULT_STRING_CHARSET = DbaseFileReader.DEFAULT_STRING_CHARSET;
 
+    /**
+     * Minimum number of records in a split.
+     */
+    private static final int MIN_SPLIT_SIZE = 1000;
+
     private final QueryCapabilities capabilities = new DefaultQueryCapabilities(false);
     protected final ShpFiles shpFiles;
     protected final boolean useMemoryMappedBuffer;
     protected final Charset dbfCharset;
     private Name name;
     private SimpleFeatureType schema;
+    private ShapefileStatistics statistics = null;
 
 
     /**
@@ -259,10 +271,126 @@ public class ShapefileDataStore extends AbstractDataStore{
                     // do nothing
                 }
             }
-        }else{
-            return super.getEnvelope(query);
         }
 
+        final ShapefileStatistics stats = getStatistics();
+        if (stats != null) {
+            final int match = stats.matches(query.getFilter());
+            if (match == DbaseStatistics.NONE) {
+                return null;
+            } else if (match == DbaseStatistics.ALL && query.getStartIndex() == 0
+                    && query.getMaxFeatures() == null && query.getCoordinateSystemReproject() == null
+                    && hasDefaultGeometry(query)) {
+                return stats.getEnvelope();
+            }
+        }
+        return super.getEnvelope(query);
+    }
+
+    private boolean hasDefaultGeometry(final Query query) throws DataStoreException {
+        final Name[] properties = query.getPropertyNames();
+        if (properties == null) {
+            return true;
+        }
+        final String geomName = getFeatureType().getGeometryDescriptor().getLocalName();
+        for (Name n : properties) {
+            if (n.getLocalPart().equals(geomName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc }
+     *
+     * Use the shapefile statistics when they can answer.
+     */
+    @Override
+    public long getCount(final Query query) throws DataStoreException {
+        typeCheck(query.getTypeName());
+        final ShapefileStatistics stats = getStatistics();
+        if (stats != null) {
+            final long count = stats.getCount(query);
+            if (count >= 0) {
+                return count;
+            }
+        }
+        return super.getCount(query);
+    }
+
+    /**
+     * Estimate the number of features matching the query, using the shapefile
+     * statistics, without reading the records.
+     *
+     * @param query : query
+     * @return estimated number of features, -1 if the shapefile has no statistics
+     * @throws DataStoreException
+     */
+    public long estimateCount(final Query query) throws DataStoreException {
+        typeCheck(query.getTypeName());
+        final ShapefileStatistics stats = getStatistics();
+        return (stats == null) ? -1 : stats.estimateCount(query);
+    }
+
+    /**
+     * Get the shapefile statistics, read from the sidecar file if it is up to date.
+     * Statistics are never computed by the queries, see {@link #computeStatistics() }.
+     *
+     * @return statistics, null if they were not computed, are obsolete or
+     *         for remote shapefiles
+     * @throws DataStoreException
+     */
+    public synchronized ShapefileStatistics getStatistics() throws DataStoreException {
+        if (!shpFiles.isLocal() || !shpFiles.exists(SHP)) {
+            return null;
+        }
+        if (statistics != null && statistics.isUpToDate()) {
+            return statistics;
+        }
+
+        final CoordinateReferenceSystem crs = getFeatureType().getCoordinateReferenceSystem();
+        try {
+            statistics = ShapefileStatistics.read(shpFiles, crs);
+        } catch (IOException ex) {
+            getLogger().log(Level.FINE, "Invalid statistics file for "+shpFiles, ex);
+            statistics = null;
+        }
+        return statistics;
+    }
+
+    /**
+     * Compute the shapefile statistics, reading all records, and save them in
+     * the sidecar file if the store is writable. Queries use them from then on,
+     * until the shapefile is modified.
+     *
+     * @return statistics, null for remote shapefiles
+     * @throws DataStoreException
+     */
+    public ShapefileStatistics computeStatistics() throws DataStoreException {
+        if (!shpFiles.isLocal() || !shpFiles.exists(SHP)) {
+            return null;
+        }
+        final CoordinateReferenceSystem crs = getFeatureType().getCoordinateReferenceSystem();
+        final ShapefileStatistics stats;
+        try {
+            stats = ShapefileStatistics.compute(shpFiles, dbfCharset, crs);
+        } catch (IOException ex) {
+            throw new DataStoreException(ex);
+        }
+        if (isWritable(getName())) {
+            final File file = ShapefileStatistics.getStatisticsFile(shpFiles);
+            try {
+                stats.save(file);
+            } catch (IOException ex) {
+                //statistics are only kept in memory
+                getLogger().log(Level.FINE, "Could not save statistics file "+file, ex);
+            }
+        }
+        synchronized (this) {
+            statistics = stats;
+        }
+        return stats;
     }
 
     /**
@@ -270,6 +398,112 @@ public class ShapefileDataStore extends AbstractDataStore{
      */
     @Override
     public FeatureReader getFeatureReader(final Query query) throws DataStoreException {
+        return getFeatureReader(query, 0, -1);
+    }
+
+    /**
+     * Split the records in ranges, each one read by a separate reader.
+     * Readers can be used at the same time from different threads, they share
+     * nothing but the files. Each reader applies the query filter, properties
+     * and reprojection on its own range. Readers hold a read lock on the files
+     * owned by the opening thread, they must be closed by that thread.
+     *
+     * <p>
+     * If the shapefile can not be split, because there is no shx file or not
+     * enough records, a single reader is returned.
+     * </p>
+     *
+     * @param query : query, without start index and max features
+     * @param nbSplits : wanted number of readers
+     * @return readers, covering all records
+     * @throws DataStoreException
+     */
+    public List<FeatureReader<SimpleFeatureType,SimpleFeature>> getFeatureReaders(final Query query,
+            final int nbSplits) throws DataStoreException {
+        if (query.getStartIndex() > 0 || query.getMaxFeatures() != null) {
+            throw new DataStoreException("Start index and max features can not be used on split readers.");
+        }
+
+        final int nbRecord = getRecordCount();
+        if (nbSplits <= 1 || nbRecord < nbSplits * MIN_SPLIT_SIZE) {
+            return Collections.singletonList((FeatureReader<SimpleFeatureType,SimpleFeature>)getFeatureReader(query));
+        }
+
+        final int step = (nbRecord + nbSplits - 1) / nbSplits;
+        final List<FeatureReader<SimpleFeatureType,SimpleFeature>> readers =
+                new ArrayList<FeatureReader<SimpleFeatureType, SimpleFeature>>(nbSplits);
+        try {
+            for (int start = 0; start < nbRecord; start += step) {
+                readers.add(getFeatureReader(query, start, Math.min(nbRecord, start + step)));
+            }
+        } catch (DataStoreException ex) {
+            for (FeatureReader reader : readers) {
+                reader.close();
+            }
+            throw ex;
+        }
+        return readers;
+    }
+
+    /**
+     * Read the features with several threads, each one reading a different
+     * range of records. Features are returned in no particular order.
+     *
+     * @param query : query, sort by is not supported
+     * @param nbThread : number of threads
+     * @return reader over all features matching the query
+     * @throws DataStoreException
+     */
+    public FeatureReader<SimpleFeatureType,SimpleFeature> getParallelFeatureReader(final Query query,
+            final int nbThread) throws DataStoreException {
+        //features are passed between threads, they must be separate instances
+        final Hints hints = new Hints();
+        if (query.getHints() != null) {
+            hints.putAll(query.getHints());
+        }
+        hints.put(HintsPending.FEATURE_DETACHED, Boolean.TRUE);
+        final QueryBuilder qb = new QueryBuilder(query);
+        qb.setStartIndex(0);
+        qb.setMaxFeatures(null);
+        qb.setHints(hints);
+
+        //more splits than threads, so threads finishing early can take another one
+        final List<FeatureReader<SimpleFeatureType,SimpleFeature>> readers =
+                getFeatureReaders(qb.buildQuery(), nbThread * 4);
+        FeatureReader<SimpleFeatureType,SimpleFeature> reader = GenericParallelFeatureIterator.wrap(readers, nbThread);
+        if (query.getStartIndex() > 0) {
+            reader = GenericStartIndexFeatureIterator.wrap(reader, query.getStartIndex());
+        }
+        if (query.getMaxFeatures() != null) {
+            reader = GenericMaxFeatureIterator.wrap(reader, query.getMaxFeatures());
+        }
+        return reader;
+    }
+
+    /**
+     * @return number of records in the shx file, -1 if there is no shx file
+     */
+    protected int getRecordCount() throws DataStoreException {
+        final AccessManager locker = shpFiles.createLocker();
+        try {
+            final ShxReader shx = locker.getSHXReader(useMemoryMappedBuffer);
+            return (shx == null) ? -1 : shx.getRecordCount();
+        } catch (IOException ex) {
+            throw new DataStoreException(ex);
+        } finally {
+            locker.dispose();
+        }
+    }
+
+    /**
+     * Create a reader on a range of records.
+     *
+     * @param query : query
+     * @param start : index of the first record, starting at 0
+     * @param end : index of the last record, exclusive, -1 to read all records
+     */
+    protected FeatureReader getFeatureReader(final Query query, final int start, final int end)
+            throws DataStoreException {
         typeCheck(query.getTypeName());
 
         final Hints hints = query.getHints();
@@ -304,7 +538,7 @@ public class ShapefileDataStore extends AbstractDataStore{
                         schema, propertyNames);
                
                 final ShapefileAttributeReader attReader = getAttributesReader(false,read3D,resample);
-                final FeatureIDReader idReader = new DefaultFeatureIDReader(typeName);
+                final FeatureIDReader idReader = createRange(attReader, typeName, start, end);
                 FeatureReader reader = ShapefileFeatureReader.create(attReader, idReader, newSchema, hints);
                 final QueryBuilder remaining = new QueryBuilder(query.getTypeName());
                 remaining.setProperties(query.getPropertyNames());
@@ -327,7 +561,7 @@ public class ShapefileDataStore extends AbstractDataStore{
                 }
 
                 final ShapefileAttributeReader attReader = getAttributesReader(true,read3D,resample);
-                final FeatureIDReader idReader = new DefaultFeatureIDReader(typeName);
+                final FeatureIDReader idReader = createRange(attReader, typeName, start, end);
                 FeatureReader reader = ShapefileFeatureReader.create(attReader,idReader, newSchema, hints);
                 QueryBuilder query2 = new QueryBuilder(query.getTypeName());
                 query2.setProperties(query.getPropertyNames());
@@ -345,6 +579,32 @@ public class ShapefileDataStore extends AbstractDataStore{
        
     }
 
+    /**
+     * Restrict the attribute reader to the record range.
+     *
+     * @return feature id reader for the range
+     */
+    private FeatureIDReader createRange(final ShapefileAttributeReader attReader, final String typeName,
+            final int start, final int end) throws DataStoreException {
+        if (end >= 0) {
+            try {
+                final ShxReader shx = attReader.getLocker().getSHXReader(useMemoryMappedBuffer);
+                if (shx == null) {
+                    throw new DataStoreException("Record ranges can not be read without a shx file.");
+                }
+                attReader.setRange(shx, start, end);
+            } catch (IOException ex) {
+                try {
+                    attReader.close();
+                } catch (IOException e) {
+                    //we tryed, return the first exception
+                }
+                throw new DataStoreException(ex);
+            }
+        }
+        return new DefaultFeatureIDReader(typeName, start);
+    }
+
     /**
      * {@inheritDoc }
      */
@@ -402,6 +662,10 @@ public class ShapefileDataStore extends AbstractDataStore{
 
         //delete the files
         shpFiles.delete();
+        ShapefileStatistics.getStatisticsFile(shpFiles).delete();
+        synchronized (this) {
+            statistics = null;
+        }
         
         final AccessManager locker = shpFiles.createLocker();
 
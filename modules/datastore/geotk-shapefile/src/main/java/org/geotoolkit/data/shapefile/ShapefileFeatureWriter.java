@@ -22,6 +22,7 @@ import static org.geotoolkit.data.shapefile.lock.ShpFileType.DBF;
 import static org.geotoolkit.data.shapefile.lock.ShpFileType.SHP;
 import static org.geotoolkit.data.shapefile.lock.ShpFileType.SHX;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
@@ -211,6 +212,13 @@ public class ShapefileFeatureWriter implements FeatureWriter<SimpleFeatureType,
     protected void clean() throws IOException {
         getLocker().disposeReaderAndWriters();
         getLocker().replaceStorageFiles();
+        //statistics and attribute indexes are obsolete
+        if (shpFiles.isLocal()) {
+            ShapefileStatistics.getStatisticsFile(shpFiles).delete();
+            for (File index : shpFiles.getAttributeIndexFiles()) {
+                index.delete();
+            }
+        }
     }
 
     /**
@@ -0,0 +1,351 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.data.shapefile;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import org.geotoolkit.data.dbf.DbaseFileHeader;
+import org.geotoolkit.data.dbf.DbaseFileReader;
+import org.geotoolkit.data.dbf.DbaseStatistics;
+import org.geotoolkit.data.shapefile.lock.AccessManager;
+import org.geotoolkit.data.shapefile.lock.ShpFileType;
+import org.geotoolkit.data.shapefile.lock.ShpFiles;
+import org.geotoolkit.data.shapefile.shp.ShapeType;
+import org.geotoolkit.data.shapefile.shp.ShapefileHeader;
+import org.geotoolkit.data.shapefile.shp.ShapefileReader;
+import org.geotoolkit.geometry.jts.JTSEnvelope2D;
+import org.geotoolkit.referencing.CRS;
+import org.geotoolkit.storage.DataStoreException;
+
+import org.opengis.filter.Filter;
+import org.opengis.filter.spatial.BBOX;
+import org.opengis.geometry.Envelope;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+/**
+ * Statistics of a shapefile : dbf statistics, envelope of the shapes, number
+ * of null shapes and a grid counting the shapes centers.
+ *
+ * <p>
+ * BBOX filters disjoint from the shapes envelope match no feature, those
+ * containing it match all features. The grid is used to estimate the
+ * selectivity of the other BBOX filters.
+ * Statistics are saved in the sidecar file [shp file].stat.
+ * </p>
+ *
+ * @author Johann Sorel (Geomatys)
+ * @module pending
+ */
+public class ShapefileStatistics extends DbaseStatistics {
+
+    /**
+     * Number of grid cells on each axis.
+     */
+    static final int GRID_SIZE = 32;
+
+    private final CoordinateReferenceSystem crs;
+
+    private int nullShapes = 0;
+    private double minX = Double.NaN;
+    private double minY = Double.NaN;
+    private double maxX = Double.NaN;
+    private double maxY = Double.NaN;
+    private double sumWidth = 0;
+    private double sumHeight = 0;
+
+    //grid extent, from the shapefile header
+    private double gridMinX;
+    private double gridMinY;
+    private double gridCellWidth;
+    private double gridCellHeight;
+    private final int[] grid;
+
+    private ShapefileStatistics(final DbaseFileHeader dbfHeader, final ShapefileHeader shpHeader,
+            final CoordinateReferenceSystem crs, final File ... sources) {
+        super(dbfHeader, sources);
+        this.crs = crs;
+        this.gridMinX = shpHeader.minX();
+        this.gridMinY = shpHeader.minY();
+        this.gridCellWidth = Math.max(0, (shpHeader.maxX() - gridMinX) / GRID_SIZE);
+        this.gridCellHeight = Math.max(0, (shpHeader.maxY() - gridMinY) / GRID_SIZE);
+        this.grid = new int[GRID_SIZE * GRID_SIZE];
+    }
+
+    private ShapefileStatistics(final DataInput in, final CoordinateReferenceSystem crs,
+            final File[] sources, final long[] lengths, final long[] lastModified) throws IOException {
+        super(in, sources, lengths, lastModified);
+        this.crs = crs;
+        nullShapes = in.readInt();
+        minX = in.readDouble();
+        minY = in.readDouble();
+        maxX = in.readDouble();
+        maxY = in.readDouble();
+        sumWidth = in.readDouble();
+        sumHeight = in.readDouble();
+        gridMinX = in.readDouble();
+        gridMinY = in.readDouble();
+        gridCellWidth = in.readDouble();
+        gridCellHeight = in.readDouble();
+        grid = new int[GRID_SIZE * GRID_SIZE];
+        for (int i = 0; i < grid.length; i++) {
+            grid[i] = in.readInt();
+        }
+    }
+
+    private void add(final ShapefileReader.Record record, final DbaseFileReader.Row row) throws IOException {
+        add(row);
+        if (record.type() == ShapeType.NULL) {
+            nullShapes++;
+            return;
+        }
+        if (Double.isNaN(minX)) {
+            minX = record.minX;
+            minY = record.minY;
+            maxX = record.maxX;
+            maxY = record.maxY;
+        } else {
+            minX = Math.min(minX, record.minX);
+            minY = Math.min(minY, record.minY);
+            maxX = Math.max(maxX, record.maxX);
+            maxY = Math.max(maxY, record.maxY);
+        }
+        sumWidth += record.maxX - record.minX;
+        sumHeight += record.maxY - record.minY;
+
+        final int cx = cell((record.minX + record.maxX) / 2, gridMinX, gridCellWidth);
+        final int cy = cell((record.minY + record.maxY) / 2, gridMinY, gridCellHeight);
+        grid[cy * GRID_SIZE + cx]++;
+    }
+
+    private static int cell(final double v, final double min, final double size) {
+        if (size == 0) {
+            return 0;
+        }
+        final double d = Math.floor((v - min) / size);
+        return (d < 0) ? 0 : ((d >= GRID_SIZE) ? GRID_SIZE - 1 : (int) d);
+    }
+
+    /**
+     * @return number of records without geometry
+     */
+    public int getNullShapeCount() {
+        return nullShapes;
+    }
+
+    /**
+     * @return envelope of the shapes, null if there are no shapes
+     */
+    public JTSEnvelope2D getEnvelope() {
+        if (Double.isNaN(minX)) {
+            return null;
+        }
+        return new JTSEnvelope2D(minX, maxX, minY, maxY, crs);
+    }
+
+    /**
+     * {@inheritDoc }
+     *
+     * Check BBOX filters against the shapes envelope.
+     */
+    @Override
+    protected int matchesOther(final Filter filter) {
+        final BBOX bbox = toBBOX(filter);
+        if (bbox == null) {
+            return UNKNOWN;
+        }
+        //the filter reprojects the geometries when the crs are different
+        final Object value = bbox.getExpression2().evaluate(null);
+        if (crs == null || !(value instanceof Envelope)
+                || !CRS.equalsIgnoreMetadata(crs, ((Envelope) value).getCoordinateReferenceSystem())) {
+            return UNKNOWN;
+        }
+        if (Double.isNaN(minX)
+                || bbox.getMaxX() < minX || bbox.getMinX() > maxX
+                || bbox.getMaxY() < minY || bbox.getMinY() > maxY) {
+            return NONE;
+        }
+        if (nullShapes == 0
+                && bbox.getMinX() <= minX && bbox.getMaxX() >= maxX
+                && bbox.getMinY() <= minY && bbox.getMaxY() >= maxY) {
+            return ALL;
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * {@inheritDoc }
+     *
+     * Estimate BBOX filters using the grid of the shapes centers.
+     */
+    @Override
+    protected double selectivityOther(final Filter filter) {
+        final BBOX bbox = toBBOX(filter);
+        if (bbox == null) {
+            return DEFAULT_SELECTIVITY;
+        }
+        final int nbShapes = count - nullShapes;
+        if (nbShapes == 0) {
+            return 0;
+        }
+
+        //a shape intersects the bbox if its center is in the bbox enlarged by half the shape size
+        final double halfWidth = sumWidth / nbShapes / 2;
+        final double halfHeight = sumHeight / nbShapes / 2;
+        final double bMinX = bbox.getMinX() - halfWidth;
+        final double bMaxX = bbox.getMaxX() + halfWidth;
+        final double bMinY = bbox.getMinY() - halfHeight;
+        final double bMaxY = bbox.getMaxY() + halfHeight;
+
+        double sum = 0;
+        for (int y = 0; y < GRID_SIZE; y++) {
+            final double fy = overlap(gridMinY + y * gridCellHeight, gridCellHeight, bMinY, bMaxY);
+            if (fy == 0) {
+                continue;
+            }
+            for (int x = 0; x < GRID_SIZE; x++) {
+                final int nb = grid[y * GRID_SIZE + x];
+                if (nb != 0) {
+                    sum += nb * fy * overlap(gridMinX + x * gridCellWidth, gridCellWidth, bMinX, bMaxX);
+                }
+            }
+        }
+        return Math.min(1d, sum / count);
+    }
+
+    /**
+     * @return fraction of the cell [start, start+size] in the range [min, max]
+     */
+    private static double overlap(final double start, final double size, final double min, final double max) {
+        if (size == 0) {
+            return (min <= start && start <= max) ? 1 : 0;
+        }
+        final double d = (Math.min(max, start + size) - Math.max(min, start)) / size;
+        return (d < 0) ? 0 : ((d > 1) ? 1 : d);
+    }
+
+    /**
+     * @return BBOX filter on the geometry, null if the filter is not a BBOX
+     *         on the geometry
+     */
+    private BBOX toBBOX(final Filter filter) {
+        if (!(filter instanceof BBOX)) {
+            return null;
+        }
+        final BBOX bbox = (BBOX) filter;
+        final String property = bbox.getPropertyName();
+        if (property != null && !property.isEmpty() && getColumn(property) != null) {
+            return null;
+        }
+        return bbox;
+    }
+
+    @Override
+    protected void write(final DataOutput out) throws IOException {
+        super.write(out);
+        out.writeInt(nullShapes);
+        out.writeDouble(minX);
+        out.writeDouble(minY);
+        out.writeDouble(maxX);
+        out.writeDouble(maxY);
+        out.writeDouble(sumWidth);
+        out.writeDouble(sumHeight);
+        out.writeDouble(gridMinX);
+        out.writeDouble(gridMinY);
+        out.writeDouble(gridCellWidth);
+        out.writeDouble(gridCellHeight);
+        for (int count : grid) {
+            out.writeInt(count);
+        }
+    }
+
+    private static File[] getSources(final ShpFiles shpFiles) {
+        final File shp = shpFiles.getFile(ShpFileType.SHP);
+        final File dbf = shpFiles.getFile(ShpFileType.DBF);
+        if (dbf != null && dbf.exists()) {
+            return new File[]{shp, dbf};
+        }
+        return new File[]{shp};
+    }
+
+    /**
+     * @param shpFiles : shapefile files
+     * @return sidecar file of the shapefile statistics
+     */
+    public static File getStatisticsFile(final ShpFiles shpFiles) {
+        return new File(shpFiles.getFile(ShpFileType.SHP).getPath() + ".stat");
+    }
+
+    /**
+     * Compute the statistics of a shapefile, reading the shp and dbf files once.
+     *
+     * @param shpFiles : local shapefile files
+     * @param charset : dbf charset
+     * @param crs : shapefile crs, can be null
+     * @return statistics
+     */
+    public static ShapefileStatistics compute(final ShpFiles shpFiles, final Charset charset,
+            final CoordinateReferenceSystem crs) throws IOException, DataStoreException {
+        final File[] sources = getSources(shpFiles);
+        final AccessManager locker = shpFiles.createLocker();
+        try {
+            final ShapefileReader shp = locker.getSHPReader(false, false, false, null);
+            final DbaseFileReader dbf = (sources.length > 1) ? locker.getDBFReader(false, charset) : null;
+            final ShapefileStatistics stats = new ShapefileStatistics(
+                    (dbf == null) ? null : dbf.getHeader(), shp.getHeader(), crs, sources);
+            while (shp.hasNext()) {
+                final ShapefileReader.Record record = shp.nextRecord();
+                final DbaseFileReader.Row row = (dbf != null && dbf.hasNext()) ? dbf.next() : null;
+                stats.add(record, row);
+            }
+            return stats;
+        } finally {
+            locker.dispose();
+        }
+    }
+
+    /**
+     * Read the statistics of a shapefile from its sidecar file.
+     *
+     * @param shpFiles : local shapefile files
+     * @param crs : shapefile crs, can be null
+     * @return statistics, null if the sidecar file does not exist, is not valid or obsolete
+     */
+    public static ShapefileStatistics read(final ShpFiles shpFiles, final CoordinateReferenceSystem crs)
+            throws IOException {
+        final File file = getStatisticsFile(shpFiles);
+        final File[] sources = getSources(shpFiles);
+        final long[] lengths = new long[sources.length];
+        final long[] lastModified = new long[sources.length];
+        final DataInputStream in = open(file, sources, lengths, lastModified);
+        if (in == null) {
+            return null;
+        }
+        try {
+            final ShapefileStatistics stats = new ShapefileStatistics(in, crs, sources, lengths, lastModified);
+            stats.setPersisted(file);
+            return stats;
+        } finally {
+            in.close();
+        }
+    }
+
+}
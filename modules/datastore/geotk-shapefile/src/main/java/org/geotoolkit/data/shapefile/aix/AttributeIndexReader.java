@@ -0,0 +1,269 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.data.shapefile.aix;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.BitSet;
+import java.util.Date;
+
+import org.geotoolkit.io.Closeable;
+
+/**
+ * Reads a .aix attribute index file.
+ *
+ * <p>
+ * The file is a B+tree of the values of one dbf column, bulk loaded by
+ * {@link AttributeIndexWriter}. Numeric and date values are stored as doubles,
+ * character values as strings. Leaves hold the values in ascending order with
+ * their record numbers and are chained, a range search descends the tree once
+ * then reads the following leaves until the upper bound.
+ * </p>
+ *
+ * @author Johann Sorel (Geomatys)
+ * @module pending
+ */
+public final class AttributeIndexReader implements Closeable {
+
+    /** key type of numeric and date columns */
+    public static final char NUMERIC = 'N';
+    /** key type of character columns */
+    public static final char TEXT = 'C';
+
+    static final int MAGIC = 0x41495831; //AIX1
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int NODE_SIZE = 256;
+    static final byte LEAF = 0;
+    static final byte INTERNAL = 1;
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final char keyType;
+    private final int nbEntries;
+    private final long rootOffset;
+    private final long sourceLength;
+    private final long sourceLastModified;
+    private ByteBuffer buffer = ByteBuffer.allocate(8192);
+
+    public AttributeIndexReader(final File file) throws IOException {
+        raf = new RandomAccessFile(file, "r");
+        channel = raf.getChannel();
+        final ByteBuffer header = read(0, HEADER_SIZE);
+        if(header.getInt() != MAGIC || header.getInt() != VERSION){
+            raf.close();
+            throw new IOException("File is not an attribute index : "+file);
+        }
+        keyType = header.getChar();
+        nbEntries = header.getInt();
+        header.getInt(); //height
+        rootOffset = header.getLong();
+        header.getLong(); //first leaf
+        sourceLength = header.getLong();
+        sourceLastModified = header.getLong();
+    }
+
+    /**
+     * @return length of the dbf file when the index was created, 0 if unknowned
+     */
+    public long getSourceLength() {
+        return sourceLength;
+    }
+
+    /**
+     * @return last modification time of the dbf file when the index was created, 0 if unknowned
+     */
+    public long getSourceLastModified() {
+        return sourceLastModified;
+    }
+
+    /**
+     * @return {@link #NUMERIC} or {@link #TEXT}
+     */
+    public char getKeyType() {
+        return keyType;
+    }
+
+    /**
+     * @return number of indexed values
+     */
+    public int getEntryCount() {
+        return nbEntries;
+    }
+
+    /**
+     * Convert a value to a key of this index.
+     *
+     * @return key or null if value can not be compared with indexed values
+     */
+    public Object toKey(final Object value){
+        return toKey(keyType, value);
+    }
+
+    /**
+     * Search the records which value is in the given range.
+     *
+     * @param min : lower bound key, null for no lower bound
+     * @param minInclusive : true if records equal to min are selected
+     * @param max : upper bound key, null for no upper bound
+     * @param maxInclusive : true if records equal to max are selected
+     * @param result : set of record numbers, starting at 0, where results are added
+     * @throws IOException
+     */
+    public void search(final Object min, final boolean minInclusive,
+            final Object max, final boolean maxInclusive, final BitSet result) throws IOException{
+        if(nbEntries == 0){
+            return;
+        }
+
+        //descend to the first leaf which may contain the lower bound
+        ByteBuffer node = readNode(rootOffset);
+        while(node.get() == INTERNAL){
+            final int count = node.getInt();
+            int child = 0;
+            for(int i=0; i<count; i++){
+                final Object key = readKey(node);
+                //equal keys may be at the end of the previous child
+                if(min != null && compare(key, min) < 0){
+                    child = i;
+                }
+            }
+            node.position(node.position() + child*8);
+            node = readNode(node.getLong());
+        }
+
+        //scan leaves
+        while(true){
+            final int count = node.getInt();
+            final Object[] keys = new Object[count];
+            for(int i=0; i<count; i++){
+                keys[i] = readKey(node);
+            }
+            final int recStart = node.position();
+            for(int i=0; i<count; i++){
+                if(min != null){
+                    final int c = compare(keys[i], min);
+                    if(c < 0 || (c == 0 && !minInclusive)){
+                        continue;
+                    }
+                }
+                if(max != null){
+                    final int c = compare(keys[i], max);
+                    if(c > 0 || (c == 0 && !maxInclusive)){
+                        return;
+                    }
+                }
+                result.set(node.getInt(recStart + i*4));
+            }
+            node.position(recStart + count*4);
+            final long next = node.getLong();
+            if(next < 0){
+                return;
+            }
+            node = readNode(next);
+            node.get(); //node type
+        }
+    }
+
+    private Object readKey(final ByteBuffer node){
+        if(keyType == NUMERIC){
+            return node.getDouble();
+        }else{
+            final byte[] bytes = new byte[node.getShort() & 0xFFFF];
+            node.get(bytes);
+            return new String(bytes, UTF8);
+        }
+    }
+
+    private int compare(final Object key1, final Object key2){
+        if(keyType == NUMERIC){
+            return Double.compare((Double)key1, (Double)key2);
+        }else{
+            return ((String)key1).compareTo((String)key2);
+        }
+    }
+
+    /**
+     * @return node content, positioned after the node length
+     */
+    private ByteBuffer readNode(final long offset) throws IOException{
+        final int length = read(offset, 4).getInt();
+        final ByteBuffer node = read(offset, length);
+        node.position(4);
+        return node;
+    }
+
+    private ByteBuffer read(long offset, final int length) throws IOException{
+        if(buffer.capacity() < length){
+            buffer = ByteBuffer.allocate(length);
+        }
+        buffer.clear();
+        buffer.limit(length);
+        while(buffer.hasRemaining()){
+            if(channel.read(buffer, offset + buffer.position()) < 0){
+                throw new IOException("Unexpected end of attribute index file.");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    @Override
+    public void close() throws IOException {
+        raf.close();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return !channel.isOpen();
+    }
+
+    /**
+     * Convert a value to an index key.
+     *
+     * @param keyType : {@link #NUMERIC} or {@link #TEXT}
+     * @param value : value to convert
+     * @return key or null if value can not be compared with indexed values
+     */
+    static Object toKey(final char keyType, final Object value){
+        if(value == null){
+            return null;
+        }
+        if(keyType == NUMERIC){
+            if(value instanceof Number){
+                return ((Number)value).doubleValue();
+            }else if(value instanceof Date){
+                return (double)((Date)value).getTime();
+            }else if(value instanceof String){
+                try{
+                    return Double.valueOf(((String)value).trim());
+                }catch(NumberFormatException ex){
+                    return null;
+                }
+            }
+        }else if(value instanceof String){
+            return value;
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,303 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.data.shapefile.aix;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.geotoolkit.data.shapefile.aix.AttributeIndexReader.*;
+
+/**
+ * Writes a .aix attribute index file, a B+tree of the values of one dbf column.
+ * Entries are added in any order, sorted and bulk loaded when the file is written.
+ * Null values are not indexed.
+ *
+ * @author Johann Sorel (Geomatys)
+ * @module pending
+ */
+public final class AttributeIndexWriter {
+
+    private final char keyType;
+    private double[] numKeys;
+    private String[] textKeys;
+    private int[] recnos = new int[1024];
+    private int size = 0;
+
+    /**
+     * @param keyType : {@link AttributeIndexReader#NUMERIC} or {@link AttributeIndexReader#TEXT}
+     */
+    public AttributeIndexWriter(final char keyType) {
+        if(keyType == NUMERIC){
+            numKeys = new double[recnos.length];
+        }else if(keyType == TEXT){
+            textKeys = new String[recnos.length];
+        }else{
+            throw new IllegalArgumentException("Unknowned key type : "+keyType);
+        }
+        this.keyType = keyType;
+    }
+
+    /**
+     * @param value : dbf value, ignored if null
+     * @param recno : record number, starting at 0
+     */
+    public void add(final Object value, final int recno){
+        final Object key = toKey(keyType, value);
+        if(key == null){
+            return;
+        }
+        if(size == recnos.length){
+            final int length = size*2;
+            recnos = Arrays.copyOf(recnos, length);
+            if(numKeys != null){
+                numKeys = Arrays.copyOf(numKeys, length);
+            }else{
+                textKeys = Arrays.copyOf(textKeys, length);
+            }
+        }
+        if(numKeys != null){
+            numKeys[size] = (Double)key;
+        }else{
+            textKeys[size] = (String)key;
+        }
+        recnos[size] = recno;
+        size++;
+    }
+
+    /**
+     * Sort entries and write the index file, without dbf file informations.
+     *
+     * @param file : index file to write
+     * @return number of indexed values
+     * @throws IOException
+     */
+    public int write(final File file) throws IOException{
+        return write(file, 0, 0);
+    }
+
+    /**
+     * Sort entries and write the index file.
+     *
+     * @param file : index file to write
+     * @param sourceLength : length of the indexed dbf file
+     * @param sourceLastModified : last modification time of the indexed dbf file,
+     *      the index is obsolete if the dbf length or time changes
+     * @return number of indexed values
+     * @throws IOException
+     */
+    public int write(final File file, final long sourceLength, final long sourceLastModified) throws IOException{
+        sort(0, size-1);
+
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try{
+            raf.setLength(0);
+            final FileChannel channel = raf.getChannel();
+            channel.position(HEADER_SIZE);
+
+            //leaves, each leaf references the next one
+            final int nbLeaves = Math.max(1, (size + NODE_SIZE - 1) / NODE_SIZE);
+            List<Object> levelKeys = new ArrayList<Object>(nbLeaves);
+            long[] levelOffsets = new long[nbLeaves];
+            final long[] leafSizes = new long[nbLeaves];
+            //compute leaf offsets first to write the next leaf pointer
+            long offset = HEADER_SIZE;
+            for(int i=0; i<nbLeaves; i++){
+                final int start = i*NODE_SIZE;
+                final int end = Math.min(size, start+NODE_SIZE);
+                levelOffsets[i] = offset;
+                leafSizes[i] = leafSize(start, end);
+                offset += leafSizes[i];
+                levelKeys.add((start < size) ? key(start) : null);
+            }
+            for(int i=0; i<nbLeaves; i++){
+                final int start = i*NODE_SIZE;
+                final int end = Math.min(size, start+NODE_SIZE);
+                final long next = (i+1 < nbLeaves) ? levelOffsets[i+1] : -1;
+                write(channel, leaf(start, end, next));
+            }
+
+            //internal nodes until we have a single root
+            int height = 1;
+            while(levelOffsets.length > 1){
+                final int nbNodes = (levelOffsets.length + NODE_SIZE - 1) / NODE_SIZE;
+                final List<Object> upperKeys = new ArrayList<Object>(nbNodes);
+                final long[] upperOffsets = new long[nbNodes];
+                for(int i=0; i<nbNodes; i++){
+                    final int start = i*NODE_SIZE;
+                    final int end = Math.min(levelOffsets.length, start+NODE_SIZE);
+                    upperOffsets[i] = channel.position();
+                    upperKeys.add(levelKeys.get(start));
+                    write(channel, internal(levelKeys, levelOffsets, start, end));
+                }
+                levelKeys = upperKeys;
+                levelOffsets = upperOffsets;
+                height++;
+            }
+
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putChar(keyType);
+            header.putInt(size);
+            header.putInt(height);
+            header.putLong(levelOffsets[0]);
+            header.putLong(HEADER_SIZE);
+            header.putLong(sourceLength);
+            header.putLong(sourceLastModified);
+            header.flip();
+            channel.position(0);
+            write(channel, header);
+        }finally{
+            raf.close();
+        }
+        return size;
+    }
+
+    private Object key(final int index){
+        return (numKeys != null) ? (Object)numKeys[index] : textKeys[index];
+    }
+
+    private long leafSize(final int start, final int end){
+        //node length + node type + count + keys + record numbers + next leaf
+        long length = 4 + 1 + 4 + (end-start)*4 + 8;
+        if(numKeys != null){
+            length += (end-start)*8;
+        }else{
+            for(int i=start; i<end; i++){
+                length += 2 + textKeys[i].getBytes(UTF8).length;
+            }
+        }
+        return length;
+    }
+
+    private ByteBuffer leaf(final int start, final int end, final long next) throws IOException{
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(buffer);
+        out.writeInt(0); //replaced by node length
+        out.writeByte(LEAF);
+        out.writeInt(end-start);
+        for(int i=start; i<end; i++){
+            writeKey(out, key(i));
+        }
+        for(int i=start; i<end; i++){
+            out.writeInt(recnos[i]);
+        }
+        out.writeLong(next);
+        return toNode(buffer);
+    }
+
+    private ByteBuffer internal(final List<Object> keys, final long[] offsets,
+            final int start, final int end) throws IOException{
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(buffer);
+        out.writeInt(0); //replaced by node length
+        out.writeByte(INTERNAL);
+        out.writeInt(end-start);
+        for(int i=start; i<end; i++){
+            writeKey(out, keys.get(i));
+        }
+        for(int i=start; i<end; i++){
+            out.writeLong(offsets[i]);
+        }
+        return toNode(buffer);
+    }
+
+    private void writeKey(final DataOutputStream out, final Object key) throws IOException{
+        if(numKeys != null){
+            out.writeDouble((Double)key);
+        }else{
+            final byte[] bytes = ((String)key).getBytes(UTF8);
+            out.writeShort(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static ByteBuffer toNode(final ByteArrayOutputStream buffer){
+        final ByteBuffer node = ByteBuffer.wrap(buffer.toByteArray());
+        node.putInt(0, node.capacity());
+        return node;
+    }
+
+    private static void write(final FileChannel channel, final ByteBuffer buffer) throws IOException{
+        while(buffer.hasRemaining()){
+            channel.write(buffer);
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // sort keys and record numbers together ///////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////
+
+    private int compare(final int i, final int j){
+        final int c = (numKeys != null) ? Double.compare(numKeys[i], numKeys[j])
+                                        : textKeys[i].compareTo(textKeys[j]);
+        if(c != 0){
+            return c;
+        }
+        //record number order for equal keys
+        return (recnos[i] < recnos[j]) ? -1 : ((recnos[i] == recnos[j]) ? 0 : 1);
+    }
+
+    private void swap(final int i, final int j){
+        final int r = recnos[i]; recnos[i] = recnos[j]; recnos[j] = r;
+        if(numKeys != null){
+            final double k = numKeys[i]; numKeys[i] = numKeys[j]; numKeys[j] = k;
+        }else{
+            final String k = textKeys[i]; textKeys[i] = textKeys[j]; textKeys[j] = k;
+        }
+    }
+
+    private void sort(int low, int high){
+        while(high - low > 16){
+            //median of three pivot, moved at high position
+            final int mid = (low + high) >>> 1;
+            if(compare(mid, low) < 0) swap(mid, low);
+            if(compare(high, low) < 0) swap(high, low);
+            if(compare(mid, high) < 0) swap(mid, high);
+            int store = low;
+            for(int i=low; i<high; i++){
+                if(compare(i, high) < 0){
+                    swap(i, store++);
+                }
+            }
+            swap(store, high);
+            //recurse on the smaller part
+            if(store - low < high - store){
+                sort(low, store-1);
+                low = store+1;
+            }else{
+                sort(store+1, high);
+                high = store-1;
+            }
+        }
+        //insertion sort for small ranges
+        for(int i=low+1; i<=high; i++){
+            for(int j=i; j>low && compare(j-1, j) > 0; j--){
+                swap(j-1, j);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,214 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.data.shapefile.indexed;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.geotoolkit.data.shapefile.aix.AttributeIndexReader;
+import org.geotoolkit.data.shapefile.lock.ShpFileType;
+import org.geotoolkit.data.shapefile.lock.ShpFiles;
+
+import org.opengis.filter.And;
+import org.opengis.filter.BinaryComparisonOperator;
+import org.opengis.filter.Filter;
+import org.opengis.filter.Or;
+import org.opengis.filter.PropertyIsBetween;
+import org.opengis.filter.PropertyIsEqualTo;
+import org.opengis.filter.PropertyIsGreaterThan;
+import org.opengis.filter.PropertyIsGreaterThanOrEqualTo;
+import org.opengis.filter.PropertyIsLessThan;
+import org.opengis.filter.PropertyIsLessThanOrEqualTo;
+import org.opengis.filter.expression.Expression;
+import org.opengis.filter.expression.Literal;
+import org.opengis.filter.expression.PropertyName;
+
+/**
+ * Evaluate the attribute predicates of a filter using the .aix attribute indexes.
+ *
+ * <p>
+ * Equality, range and between predicates on an indexed column are resolved
+ * to the set of matching record numbers. A And filter intersects the sets of
+ * its indexed children, a Or filter (as produced for IN predicates) is used
+ * only when all its children are indexed. The result is a superset of the
+ * matching records, the filter must still be evaluated on the features.
+ * </p>
+ *
+ * @author Johann Sorel (Geomatys)
+ * @module pending
+ */
+final class AttributeIndexSearch {
+
+    private final ShpFiles shpFiles;
+    private final long dbfLength;
+    private final long dbfLastModified;
+    private final Map<String,AttributeIndexReader> readers = new HashMap<String, AttributeIndexReader>();
+
+    AttributeIndexSearch(final ShpFiles shpFiles) {
+        this.shpFiles = shpFiles;
+        final File dbf = shpFiles.getFile(ShpFileType.DBF);
+        this.dbfLength = dbf.length();
+        this.dbfLastModified = dbf.lastModified();
+    }
+
+    /**
+     * @param filter : query filter
+     * @return record numbers, starting at 0, of the records which may match
+     *         the filter, null if filter can not use the attribute indexes
+     * @throws IOException
+     */
+    BitSet search(final Filter filter) throws IOException{
+        if(filter instanceof And){
+            BitSet result = null;
+            for(Filter child : ((And)filter).getChildren()){
+                final BitSet set = search(child);
+                if(set == null){
+                    continue;
+                }
+                if(result == null){
+                    result = set;
+                }else{
+                    result.and(set);
+                }
+            }
+            return result;
+
+        }else if(filter instanceof Or){
+            final BitSet result = new BitSet();
+            for(Filter child : ((Or)filter).getChildren()){
+                final BitSet set = search(child);
+                if(set == null){
+                    return null;
+                }
+                result.or(set);
+            }
+            return result;
+
+        }else if(filter instanceof PropertyIsBetween){
+            final PropertyIsBetween between = (PropertyIsBetween) filter;
+            final AttributeIndexReader reader = getReader(between.getExpression());
+            if(reader == null){
+                return null;
+            }
+            final Object min = toKey(reader, between.getLowerBoundary());
+            final Object max = toKey(reader, between.getUpperBoundary());
+            if(min == null || max == null){
+                return null;
+            }
+            final BitSet result = new BitSet();
+            reader.search(min, true, max, true, result);
+            return result;
+
+        }else if(filter instanceof BinaryComparisonOperator){
+            final BinaryComparisonOperator op = (BinaryComparisonOperator) filter;
+            Expression property = op.getExpression1();
+            Expression literal = op.getExpression2();
+            boolean inverse = false;
+            if(!(property instanceof PropertyName)){
+                property = op.getExpression2();
+                literal = op.getExpression1();
+                inverse = true;
+            }
+            final AttributeIndexReader reader = getReader(property);
+            if(reader == null){
+                return null;
+            }
+            if(reader.getKeyType() == AttributeIndexReader.TEXT && !op.isMatchingCase()){
+                return null;
+            }
+            final Object key = toKey(reader, literal);
+            if(key == null){
+                return null;
+            }
+
+            final BitSet result = new BitSet();
+            if(filter instanceof PropertyIsEqualTo){
+                reader.search(key, true, key, true, result);
+            }else if( (filter instanceof PropertyIsLessThan && !inverse)
+                   || (filter instanceof PropertyIsGreaterThan && inverse)){
+                reader.search(null, true, key, false, result);
+            }else if( (filter instanceof PropertyIsLessThanOrEqualTo && !inverse)
+                   || (filter instanceof PropertyIsGreaterThanOrEqualTo && inverse)){
+                reader.search(null, true, key, true, result);
+            }else if( (filter instanceof PropertyIsGreaterThan && !inverse)
+                   || (filter instanceof PropertyIsLessThan && inverse)){
+                reader.search(key, false, null, true, result);
+            }else if( (filter instanceof PropertyIsGreaterThanOrEqualTo && !inverse)
+                   || (filter instanceof PropertyIsLessThanOrEqualTo && inverse)){
+                reader.search(key, true, null, true, result);
+            }else{
+                //not equal, like, ...
+                return null;
+            }
+            return result;
+        }
+
+        return null;
+    }
+
+    private static Object toKey(final AttributeIndexReader reader, final Expression exp){
+        if(!(exp instanceof Literal)){
+            return null;
+        }
+        return reader.toKey(((Literal)exp).getValue());
+    }
+
+    /**
+     * @return index reader of the property column, null if there is no up to date index
+     */
+    private AttributeIndexReader getReader(final Expression exp) throws IOException{
+        if(!(exp instanceof PropertyName)){
+            return null;
+        }
+        String column = ((PropertyName)exp).getPropertyName();
+        final int sep = column.lastIndexOf(':');
+        if(sep >= 0){
+            column = column.substring(sep+1);
+        }
+        if(readers.containsKey(column)){
+            return readers.get(column);
+        }
+        AttributeIndexReader reader = null;
+        final File file = shpFiles.getAttributeIndexFile(column);
+        if(file.isFile()){
+            reader = new AttributeIndexReader(file);
+            //index was created for another version of the dbf file
+            if(reader.getSourceLength() != dbfLength || reader.getSourceLastModified() != dbfLastModified){
+                reader.close();
+                reader = null;
+            }
+        }
+        readers.put(column, reader);
+        return reader;
+    }
+
+    /**
+     * Close all opened indexes.
+     */
+    void close() throws IOException{
+        for(AttributeIndexReader reader : readers.values()){
+            if(reader != null){
+                reader.close();
+            }
+        }
+        readers.clear();
+    }
+
+}
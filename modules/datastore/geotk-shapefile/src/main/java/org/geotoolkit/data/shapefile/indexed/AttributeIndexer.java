@@ -0,0 +1,207 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.data.shapefile.indexed;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.geotoolkit.data.dbf.DbaseFileHeader;
+import org.geotoolkit.data.dbf.DbaseFileReader;
+import org.geotoolkit.data.shapefile.aix.AttributeIndexReader;
+import org.geotoolkit.data.shapefile.aix.AttributeIndexWriter;
+import org.geotoolkit.data.shapefile.lock.AccessManager;
+import org.geotoolkit.data.shapefile.lock.ShpFileType;
+import org.geotoolkit.data.shapefile.lock.ShpFiles;
+import org.geotoolkit.process.ProgressController;
+import org.geotoolkit.util.NullProgressListener;
+
+/**
+ * Utility class for Shapefile attribute indexing.
+ * Creates a .aix B+tree index file for each given dbf column, those indexes are
+ * used by the {@link IndexedShapefileDataStore} for equality, range and IN
+ * predicates. Character, numeric, float and date columns can be indexed.
+ *
+ * @author Johann Sorel (Geomatys)
+ * @module pending
+ */
+public class AttributeIndexer {
+
+    private ShpFiles shpFiles;
+    private Charset charset;
+
+    /**
+     * @param shpFiles : shapefile to index
+     */
+    public void setShapeFileName(final ShpFiles shpFiles) {
+        this.shpFiles = shpFiles;
+    }
+
+    /**
+     * @param charset : dbf charset, null for default
+     */
+    public void setCharset(final Charset charset) {
+        this.charset = charset;
+    }
+
+    /**
+     * Index the given dbf columns. All columns are indexed reading the dbf once.
+     *
+     * @param columns : dbf column names
+     * @param listener : progress listener, can be null
+     * @return number of indexed records
+     * @throws IOException
+     */
+    public int index(final String[] columns, ProgressController listener) throws IOException {
+        if (this.shpFiles == null) {
+            throw new IOException("You have to set a shape file name!");
+        }
+        if (!shpFiles.isLocal()) {
+            throw new IOException("Attribute indexes can only be created for local files.");
+        }
+        if (listener == null) {
+            listener = new NullProgressListener();
+        }
+
+        final AccessManager locker = shpFiles.createLocker();
+        final List<File> tempFiles = new ArrayList<File>();
+        int cnt = 0;
+        try {
+            //the indexes are valid for this version of the dbf file
+            final File dbf = shpFiles.getFile(ShpFileType.DBF);
+            final long dbfLength = dbf.length();
+            final long dbfLastModified = dbf.lastModified();
+            final DbaseFileReader reader = locker.getDBFReader(false, charset);
+            if (reader == null) {
+                throw new IOException("No dbf file for "+shpFiles);
+            }
+            final DbaseFileHeader header = reader.getHeader();
+
+            final int[] indexes = new int[columns.length];
+            final AttributeIndexWriter[] writers = new AttributeIndexWriter[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                indexes[i] = -1;
+                for (int k = 0, n = header.getNumFields(); k < n; k++) {
+                    if (header.getFieldName(k).equals(columns[i])) {
+                        indexes[i] = k;
+                        break;
+                    }
+                }
+                if (indexes[i] < 0) {
+                    throw new IOException("No column "+columns[i]+" in dbf file.");
+                }
+                writers[i] = new AttributeIndexWriter(getKeyType(header.getFieldType(indexes[i])));
+            }
+
+            listener.started();
+            final int nbRecords = Math.max(1, header.getNumRecords());
+            while (reader.hasNext()) {
+                final DbaseFileReader.Row row = reader.next();
+                for (int i = 0; i < indexes.length; i++) {
+                    writers[i].add(row.read(indexes[i]), cnt);
+                }
+                cnt++;
+                if (cnt % 100000 == 0) {
+                    listener.setProgress(cnt * 90f / nbRecords);
+                }
+            }
+            locker.disposeReaderAndWriters();
+
+            //write in temporary files, the datastore may be reading the old indexes
+            for (int i = 0; i < columns.length; i++) {
+                final File file = shpFiles.getAttributeIndexFile(columns[i]);
+                final File tmp = new File(file.getPath() + ".tmp");
+                tempFiles.add(tmp);
+                writers[i].write(tmp, dbfLength, dbfLastModified);
+                writers[i] = null;
+                if (!tmp.renameTo(file)) {
+                    file.delete();
+                    if (!tmp.renameTo(file)) {
+                        throw new IOException("Could not rename file " + tmp + " to " + file);
+                    }
+                }
+                listener.setProgress(90f + (i + 1) * 10f / columns.length);
+            }
+            listener.completed();
+        } finally {
+            locker.dispose();
+            for (File tmp : tempFiles) {
+                tmp.delete();
+            }
+        }
+        return cnt;
+    }
+
+    /**
+     * @param fieldType : dbf field type
+     * @return attribute index key type
+     * @throws IOException if field type can not be indexed
+     */
+    private static char getKeyType(final char fieldType) throws IOException {
+        switch (Character.toUpperCase(fieldType)) {
+            case 'C':
+                return AttributeIndexReader.TEXT;
+            case 'N':
+            case 'F':
+            case 'D':
+                return AttributeIndexReader.NUMERIC;
+            default:
+                throw new IOException("Dbf fields of type "+fieldType+" can not be indexed.");
+        }
+    }
+
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 2) {
+            usage();
+        }
+
+        final long start = System.currentTimeMillis();
+        final AttributeIndexer idx = new AttributeIndexer();
+        final List<String> columns = new ArrayList<String>();
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-c")) {
+                idx.setCharset(Charset.forName(args[++i]));
+            } else if (args[i].toLowerCase().endsWith(".shp")) {
+                idx.setShapeFileName(new ShpFiles(args[i]));
+            } else {
+                columns.add(args[i]);
+            }
+        }
+
+        try {
+            System.out.print("Indexing ");
+            final int cnt = idx.index(columns.toArray(new String[columns.size()]), null);
+            System.out.println();
+            System.out.print(cnt + " records indexed ");
+            System.out.println("in " + (System.currentTimeMillis() - start) + "ms.");
+            System.out.println();
+        } catch (Exception e) {
+            e.printStackTrace();
+            usage();
+            System.exit(1);
+        }
+    }
+
+    private static void usage() {
+        System.out.println("Usage: AttributeIndexer [-c <dbf charset>] <shape file> <column> [<column> ...]");
+        System.exit(1);
+    }
+
+}
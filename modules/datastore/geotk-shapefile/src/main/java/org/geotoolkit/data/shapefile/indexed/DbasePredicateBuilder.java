@@ -0,0 +1,168 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.data.shapefile.indexed;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.geotoolkit.data.dbf.DbaseFileHeader;
+import org.geotoolkit.data.dbf.DbaseFileReader;
+import org.geotoolkit.data.dbf.DbasePredicate;
+import org.geotoolkit.util.Converters;
+
+import org.opengis.feature.type.PropertyDescriptor;
+import org.opengis.filter.And;
+import org.opengis.filter.BinaryComparisonOperator;
+import org.opengis.filter.Filter;
+import org.opengis.filter.PropertyIsEqualTo;
+import org.opengis.filter.PropertyIsGreaterThan;
+import org.opengis.filter.PropertyIsGreaterThanOrEqualTo;
+import org.opengis.filter.PropertyIsLessThan;
+import org.opengis.filter.PropertyIsLessThanOrEqualTo;
+import org.opengis.filter.PropertyIsNotEqualTo;
+import org.opengis.filter.expression.Literal;
+import org.opengis.filter.expression.PropertyName;
+
+/**
+ * Translate the simple comparisons of a query filter in a predicate evaluated
+ * on the raw dbf bytes.
+ *
+ * <p>
+ * Only comparisons between a property and a literal, alone or in a And filter,
+ * are translated, and only for properties read without type conversion.
+ * The literal is converted to the property type, as the filter does when
+ * evaluated, equalities are translated only when no conversion is needed.
+ * The predicate never rejects a matching record, the filter must still be
+ * evaluated on the features.
+ * </p>
+ *
+ * @author Johann Sorel (Geomatys)
+ * @module pending
+ */
+final class DbasePredicateBuilder {
+
+    private DbasePredicateBuilder() {
+    }
+
+    /**
+     * @param filter : query filter
+     * @param reader : dbf reader
+     * @param atts : properties read, only those can be tested
+     * @return predicate or null if no part of the filter can be evaluated on the dbf bytes
+     */
+    static DbasePredicate create(final Filter filter, final DbaseFileReader reader,
+            final PropertyDescriptor[] atts) {
+        final List<DbasePredicate> predicates = new ArrayList<DbasePredicate>();
+        if (filter instanceof And) {
+            for (Filter child : ((And) filter).getChildren()) {
+                predicates.add(createComparison(child, reader, atts));
+            }
+        } else {
+            predicates.add(createComparison(filter, reader, atts));
+        }
+        return DbasePredicate.and(predicates);
+    }
+
+    private static DbasePredicate createComparison(final Filter filter, final DbaseFileReader reader,
+            final PropertyDescriptor[] atts) {
+        if (!(filter instanceof BinaryComparisonOperator)) {
+            return null;
+        }
+        final BinaryComparisonOperator op = (BinaryComparisonOperator) filter;
+        if (!(op.getExpression1() instanceof PropertyName) || !(op.getExpression2() instanceof Literal)) {
+            return null;
+        }
+
+        final int operator;
+        if (filter instanceof PropertyIsEqualTo) {
+            operator = DbasePredicate.EQUAL;
+        } else if (filter instanceof PropertyIsNotEqualTo) {
+            operator = DbasePredicate.NOT_EQUAL;
+        } else if (filter instanceof PropertyIsLessThan) {
+            operator = DbasePredicate.LESS;
+        } else if (filter instanceof PropertyIsLessThanOrEqualTo) {
+            operator = DbasePredicate.LESS_OR_EQUAL;
+        } else if (filter instanceof PropertyIsGreaterThan) {
+            operator = DbasePredicate.GREATER;
+        } else if (filter instanceof PropertyIsGreaterThanOrEqualTo) {
+            operator = DbasePredicate.GREATER_OR_EQUAL;
+        } else {
+            return null;
+        }
+
+        String name = ((PropertyName) op.getExpression1()).getPropertyName();
+        final int sep = name.lastIndexOf(':');
+        if (sep >= 0) {
+            name = name.substring(sep + 1);
+        }
+
+        final DbaseFileHeader header = reader.getHeader();
+        int column = -1;
+        for (int k = 0, n = header.getNumFields(); k < n; k++) {
+            if (header.getFieldName(k).equals(name)) {
+                column = k;
+                break;
+            }
+        }
+        if (column < 0) {
+            return null;
+        }
+
+        //the property must be read as stored in the dbf
+        final Class clazz = header.getFieldClass(column);
+        boolean read = false;
+        for (PropertyDescriptor desc : atts) {
+            if (desc.getName().getLocalPart().equals(name)) {
+                read = (desc.getType().getBinding() == clazz);
+                break;
+            }
+        }
+        if (!read) {
+            return null;
+        }
+        if (clazz == String.class && !op.isMatchingCase()) {
+            return null;
+        }
+
+        final Object literal = ((Literal) op.getExpression2()).getValue();
+        if (operator == DbasePredicate.EQUAL || operator == DbasePredicate.NOT_EQUAL) {
+            //equality falls back on converters in both directions and uses a
+            //tolerance on floating numbers, only keep the unambiguous cases
+            if (clazz == String.class) {
+                if (!(literal instanceof String)) {
+                    return null;
+                }
+            } else if (clazz == Integer.class || clazz == Long.class) {
+                if (!(literal instanceof Integer || literal instanceof Long
+                   || literal instanceof Short || literal instanceof Byte)) {
+                    return null;
+                }
+            } else {
+                return null;
+            }
+        } else if (!(literal instanceof Number || literal instanceof String)) {
+            return null;
+        }
+
+        final Object value = Converters.convert(literal, clazz);
+        if (value == null) {
+            return null;
+        }
+        return DbasePredicate.compare(reader, column, operator, value);
+    }
+
+}
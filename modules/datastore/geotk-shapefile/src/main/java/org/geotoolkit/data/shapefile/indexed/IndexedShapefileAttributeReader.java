@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.Iterator;
 
+import org.geotoolkit.data.dbf.DbasePredicate;
 import org.geotoolkit.data.shapefile.ShapefileAttributeReader;
 import org.geotoolkit.data.shapefile.lock.AccessManager;
 import org.geotoolkit.data.shapefile.indexed.IndexDataReader.ShpData;
@@ -28,6 +29,7 @@ import org.geotoolkit.index.CloseableCollection;
 import org.geotoolkit.storage.DataStoreException;
 
 import org.opengis.feature.type.PropertyDescriptor;
+import org.opengis.filter.Filter;
 
 /**
  * An AttributeReader implementation for shape. Pretty straightforward. <BR/>The
@@ -42,6 +44,7 @@ public class IndexedShapefileAttributeReader <T extends Iterator<ShpData>> exten
     private final CloseableCollection<ShpData> closeableCollection;
     private int recno;
     private ShpData next;
+    private DbasePredicate predicate;
 
     /**
      * Create the shape reader
@@ -68,6 +71,19 @@ public class IndexedShapefileAttributeReader <T extends Iterator<ShpData>> exten
         this.recno = 0;
     }
 
+    /**
+     * Records which do not match the simple comparisons of the filter are
+     * skipped on the dbf bytes while iterating, before their values are read.
+     * The last record may still be returned even if it does not match, the
+     * filter must still be evaluated on the features.
+     *
+     * @param filter : query filter, can be null
+     */
+    public void setDbaseFilter(final Filter filter) {
+        this.predicate = (dbf != null && filter != null) ?
+                DbasePredicateBuilder.create(filter, dbf, metaData) : null;
+    }
+
     @Override
     public void close() throws IOException {
         try {
@@ -104,6 +120,12 @@ public class IndexedShapefileAttributeReader <T extends Iterator<ShpData>> exten
     public void next() throws IOException {
         moveToNextShape();
         moveToNextDbf();
+        if (predicate != null) {
+            while (!row.matches(predicate) && hasNextInternal()) {
+                moveToNextShape();
+                moveToNextDbf();
+            }
+        }
     }
 
     protected void moveToNextShape() throws IOException{
@@ -32,10 +32,12 @@ import org.geotoolkit.data.memory.GenericEmptyFeatureIterator;
 import org.geotoolkit.data.query.Query;
 import org.geotoolkit.data.query.QueryBuilder;
 import org.geotoolkit.data.query.QueryUtilities;
+import org.geotoolkit.data.dbf.DbaseStatistics;
 import org.geotoolkit.data.shapefile.FeatureIDReader;
 import org.geotoolkit.data.shapefile.ShapefileDataStore;
 import org.geotoolkit.data.shapefile.ShapefileDataStoreFactory;
 import org.geotoolkit.data.shapefile.ShapefileFeatureReader;
+import org.geotoolkit.data.shapefile.ShapefileStatistics;
 import org.geotoolkit.data.shapefile.fix.IndexedFidReader;
 import org.geotoolkit.data.shapefile.fix.IndexedFidWriter;
 import org.geotoolkit.data.shapefile.indexed.IndexDataReader.ShpData;
@@ -194,6 +196,17 @@ public class IndexedShapefileDataStore extends ShapefileDataStore {
     @Override
     public FeatureReader<SimpleFeatureType, SimpleFeature> getFeatureReader(final Query query)
             throws DataStoreException {
+        return getFeatureReader(query, 0, -1);
+    }
+
+    /**
+     * {@inheritDoc }
+     *
+     * The record range is combined with the records found in the indexes.
+     */
+    @Override
+    protected FeatureReader<SimpleFeatureType, SimpleFeature> getFeatureReader(final Query query,
+            final int start, final int end) throws DataStoreException {
         final SimpleFeatureType originalSchema = getFeatureType();
         final Name              queryTypeName = query.getTypeName();
         final Name[]            queryPropertyNames = query.getPropertyNames();
@@ -270,7 +283,7 @@ public class IndexedShapefileDataStore extends ShapefileDataStore {
             }
             readSchema = (SimpleFeatureType)FeatureTypeUtilities.createSubType(originalSchema,readPropertyNames);
             
-            if(queryFilter instanceof BBOX){
+            if(queryFilter instanceof BBOX && end < 0){
                 //in case we have a BBOX filter only, which is very commun, we can speed
                 //the process by relying on the quadtree estimations
                 final Envelope bbox = (Envelope) queryFilter.accept(
@@ -287,7 +300,7 @@ public class IndexedShapefileDataStore extends ShapefileDataStore {
 
             }else{
                 reader = createFeatureReader(
-                    getAttributesReader(readProperties, queryFilter,read3D,queryRes),
+                    getAttributesReader(readProperties, queryFilter,read3D,queryRes,start,end),
                     readSchema, queryHints);
             }
         } catch (IOException ex) {
@@ -320,7 +333,8 @@ public class IndexedShapefileDataStore extends ShapefileDataStore {
     }
 
     private IndexedShapefileAttributeReader getAttributesReader(final List<? extends PropertyDescriptor> properties, 
-            final Filter filter, final boolean read3D, final double[] resample) throws DataStoreException{
+            final Filter filter, final boolean read3D, final double[] resample,
+            final int start, final int end) throws DataStoreException{
 
         final AccessManager locker = shpFiles.createLocker();
         
@@ -362,15 +376,34 @@ public class IndexedShapefileDataStore extends ShapefileDataStore {
                     throw new DataStoreException("Error querying index: " + e.getMessage());
                 }
             }
+
+            if (filter != null && shpFiles.isLocal()) {
+                try {
+                    goodRecs = queryAttributeIndexes(locker, filter, goodRecs);
+                } catch (IOException e) {
+                    throw new DataStoreException("Error querying attribute index: " + e.getMessage(), e);
+                }
+            }
+        }
+
+        if (end >= 0) {
+            try {
+                goodRecs = restrictToRange(locker, goodRecs, start, end);
+            } catch (IOException e) {
+                throw new DataStoreException(e);
+            }
         }
 
         final boolean readDBF = !(properties.size()==1 && properties.get(0) instanceof GeometryDescriptor);        
         final PropertyDescriptor[] atts = properties.toArray(new PropertyDescriptor[properties.size()]);
         try {
-            return new IndexedShapefileAttributeReader(locker,atts, 
+            final IndexedShapefileAttributeReader reader = new IndexedShapefileAttributeReader(locker,atts, 
                     read3D, useMemoryMappedBuffer,resample, 
                     readDBF, dbfCharset, resample,
                     goodRecs, ((goodRecs!=null)?goodRecs.iterator():null));
+            //skip records on the dbf bytes before reading the geometries
+            reader.setDbaseFilter(filter);
+            return reader;
         } catch (IOException ex) {
             throw new DataStoreException(ex);
         }
@@ -476,6 +509,89 @@ public class IndexedShapefileDataStore extends ShapefileDataStore {
         return records;
     }
 
+    /**
+     * Keep only the records in the range.
+     *
+     * @param records : records found in the indexes, null to select all records
+     * @param start : first record, starting at 0
+     * @param end : last record, exclusive
+     * @return records in the range, in record order
+     */
+    private CloseableCollection<ShpData> restrictToRange(final AccessManager locker,
+            final CloseableCollection<ShpData> records, final int start, final int end) throws IOException {
+        final BitSet range = new BitSet(end);
+        if (records == null) {
+            range.set(start, end);
+        } else {
+            try {
+                for (ShpData data : records) {
+                    final int recno = data.v1 - 1;
+                    if (recno >= start && recno < end) {
+                        range.set(recno);
+                    }
+                }
+            } finally {
+                records.close();
+            }
+        }
+        return new RecordBitSetCollection(range, locker.getSHXReader(useMemoryMappedBuffer));
+    }
+
+    /**
+     * Use the attribute indexes for the attribute predicates of the filter.
+     * Records found are intersected with the records found by the spatial index.
+     *
+     * @param filter : query filter
+     * @param spatialRecs : records found by the spatial index, null if not used
+     * @return records to read, or spatialRecs if no attribute index can be used
+     */
+    private CloseableCollection<ShpData> queryAttributeIndexes(final AccessManager locker,
+            final Filter filter, final CloseableCollection<ShpData> spatialRecs) throws IOException {
+
+        final AttributeIndexSearch search = new AttributeIndexSearch(shpFiles);
+        final BitSet records;
+        try {
+            records = search.search(filter);
+        } finally {
+            search.close();
+        }
+        if (records == null) {
+            return spatialRecs;
+        }
+
+        if (spatialRecs != null) {
+            final BitSet spatial = new BitSet();
+            try {
+                for (ShpData data : spatialRecs) {
+                    spatial.set(data.v1 - 1);
+                }
+            } finally {
+                spatialRecs.close();
+            }
+            records.and(spatial);
+        }
+
+        return new RecordBitSetCollection(records, locker.getSHXReader(useMemoryMappedBuffer));
+    }
+
+    /**
+     * Build the attribute indexes of the given dbf columns, those indexes
+     * will be used for equality, range and IN predicates on those columns.
+     *
+     * @param columns : dbf column names
+     * @throws DataStoreException if indexes could not be created
+     */
+    public void createAttributeIndex(final String ... columns) throws DataStoreException {
+        final AttributeIndexer indexer = new AttributeIndexer();
+        indexer.setShapeFileName(shpFiles);
+        indexer.setCharset(dbfCharset);
+        try {
+            indexer.index(columns, new NullProgressListener());
+        } catch (IOException ex) {
+            throw new DataStoreException(ex);
+        }
+    }
+
     /**
      * Returns true if the index for the given type exists and is useable.
      * 
@@ -608,7 +724,7 @@ public class IndexedShapefileDataStore extends ShapefileDataStore {
 
         //we read all properties
         final IndexedShapefileAttributeReader attReader = getAttributesReader(
-                schema.getAttributeDescriptors(),Filter.INCLUDE,true,null);
+                schema.getAttributeDescriptors(),Filter.INCLUDE,true,null,0,-1);
 
         try{
             final FeatureReader<SimpleFeatureType, SimpleFeature> reader = createFeatureReader(attReader, schema, null);
@@ -633,6 +749,14 @@ public class IndexedShapefileDataStore extends ShapefileDataStore {
         final Set<Identifier> fids = (Set<Identifier>) filter.accept(
                 IdCollectorFilterVisitor.IDENTIFIER_COLLECTOR, new TreeSet<Identifier>(IDENTIFIER_COMPARATOR));
 
+        if (fids.isEmpty()) {
+            final ShapefileStatistics stats = getStatistics();
+            if (stats != null && stats.matches(filter) != DbaseStatistics.UNKNOWN) {
+                //statistics prove the filter matches all features or none
+                return super.getEnvelope(query);
+            }
+        }
+
         final Set records = new HashSet();
         if (!fids.isEmpty()) {
             Collection<ShpData> recordsFound = null;
@@ -0,0 +1,103 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.data.shapefile.indexed;
+
+import java.io.IOException;
+import java.util.AbstractCollection;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.geotoolkit.data.DataStoreRuntimeException;
+import org.geotoolkit.data.shapefile.indexed.IndexDataReader.ShpData;
+import org.geotoolkit.data.shapefile.shx.ShxReader;
+import org.geotoolkit.index.CloseableCollection;
+
+/**
+ * Collection of the records selected in a bit set, iterated in record order.
+ * Shape offsets are read from the shx file while iterating.
+ *
+ * @author Johann Sorel (Geomatys)
+ * @module pending
+ */
+final class RecordBitSetCollection extends AbstractCollection<ShpData> implements CloseableCollection<ShpData> {
+
+    private final BitSet records;
+    private final ShxReader shx;
+
+    /**
+     * @param records : record numbers, starting at 0
+     * @param shx : shx reader, closed with the collection
+     */
+    RecordBitSetCollection(final BitSet records, final ShxReader shx) {
+        this.records = records;
+        this.shx = shx;
+    }
+
+    @Override
+    public Iterator<ShpData> iterator() {
+        return new Iterator<ShpData>() {
+            private int next = records.nextSetBit(0);
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public ShpData next() {
+                if (next < 0) {
+                    throw new NoSuchElementException("No more records.");
+                }
+                final ShpData data;
+                try {
+                    data = new ShpData(next+1, (long)shx.getOffsetInBytes(next));
+                } catch (IOException ex) {
+                    throw new DataStoreRuntimeException(ex);
+                }
+                next = records.nextSetBit(next+1);
+                return data;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("Not supported.");
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return records.cardinality();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return records.isEmpty();
+    }
+
+    @Override
+    public void close() throws IOException {
+        shx.close();
+    }
+
+    @Override
+    public void closeIterator(final Iterator<ShpData> iter) throws IOException {
+        // do nothing
+    }
+
+}
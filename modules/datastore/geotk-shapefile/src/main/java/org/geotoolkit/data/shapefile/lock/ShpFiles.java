@@ -265,6 +265,39 @@ public final class ShpFiles {
         return urls.get(type);
     }
 
+    /**
+     * Attribute indexes are stored next to the dbf file, one file for each
+     * indexed column, named : [base name].[column name].aix
+     *
+     * @param column : dbf column name
+     * @return attribute index file of the column, may not exist
+     */
+    public File getAttributeIndexFile(final String column) {
+        final File dbf = getFile(ShpFileType.DBF);
+        final String name = dbf.getName();
+        final int dot = name.lastIndexOf('.');
+        return new File(dbf.getParentFile(), name.substring(0, dot) + '.' + column + ".aix");
+    }
+
+    /**
+     * @return existing attribute index files of the dbf columns, empty if none
+     */
+    public File[] getAttributeIndexFiles() {
+        final File dbf = getFile(ShpFileType.DBF);
+        final String name = dbf.getName();
+        final String base = name.substring(0, name.lastIndexOf('.')+1);
+        final File[] files = dbf.getParentFile().listFiles(new FileFilter() {
+            @Override
+            public boolean accept(final File file) {
+                final String fileName = file.getName();
+                //dbf column names do not contain dots
+                return fileName.startsWith(base) && fileName.endsWith(".aix")
+                    && fileName.indexOf('.', base.length()) == fileName.length()-4;
+            }
+        });
+        return (files == null) ? new File[0] : files;
+    }
+
     /**
      * Determine if the location of this shapefile is local or remote.
      * 
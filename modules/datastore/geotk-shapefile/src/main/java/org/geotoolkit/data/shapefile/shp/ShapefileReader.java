@@ -103,6 +103,11 @@ public class ShapefileReader implements Closeable{
             return offset;
         }
 
+        /** The record shape type, NULL for records without geometry. */
+        public ShapeType type() {
+            return type;
+        }
+
         /** A summary of the record. */
         @Override
         public String toString() {
@@ -30,6 +30,11 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.geotoolkit.ShapeTestData;
 import org.geotoolkit.data.DataStore;
@@ -38,6 +43,7 @@ import org.geotoolkit.data.query.QueryBuilder;
 import org.geotoolkit.feature.DefaultName;
 import org.geotoolkit.data.FeatureReader;
 import org.geotoolkit.data.FeatureWriter;
+import org.geotoolkit.data.dbf.DbaseStatistics;
 import org.geotoolkit.data.query.Query;
 import org.geotoolkit.factory.FactoryFinder;
 import org.geotoolkit.data.FeatureCollection;
@@ -533,6 +539,185 @@ public class ShapefileDataStoreTest extends AbstractTestCaseSupport {
         }
     }
 
+    /**
+     * Split and parallel readers must return the same features as a single reader.
+     * Readers are opened and closed by the same thread, the files can be written after.
+     */
+    @Test
+    public void testParallelReading() throws Exception {
+        //enough records to split in 8 readers, 4 per thread
+        final int nbRecord = 10000;
+        final SimpleFeatureType type = FeatureTypeUtilities.createType("junk", "a:Point,b:java.lang.Integer");
+        final SimpleFeatureBuilder build = new SimpleFeatureBuilder(type);
+        final GeometryFactory gf = new GeometryFactory();
+        final Collection<SimpleFeature> features = new ArrayList<SimpleFeature>();
+        for (int i = 0; i < nbRecord; i++) {
+            build.add(gf.createPoint(new Coordinate(i, -i)));
+            build.add(i);
+            features.add(build.buildFeature(null));
+        }
+        final File tmpFile = getTempFile();
+        tmpFile.createNewFile();
+        final ShapefileDataStore s = new ShapefileDataStore(tmpFile.toURI().toURL());
+        writeFeatures(s, features);
+
+        final Map<String,Integer> expected = new HashMap<String, Integer>();
+        FeatureReader<SimpleFeatureType, SimpleFeature> reader = s.getFeatureReader(QueryBuilder.all(s.getName()));
+        try {
+            while (reader.hasNext()) {
+                final SimpleFeature f = reader.next();
+                expected.put(f.getID(), (Integer) f.getAttribute("b"));
+            }
+        } finally {
+            reader.close();
+        }
+        assertEquals(nbRecord, expected.size());
+
+        final List<FeatureReader<SimpleFeatureType, SimpleFeature>> readers =
+                s.getFeatureReaders(QueryBuilder.all(s.getName()), 8);
+        assertEquals(8, readers.size());
+        for (FeatureReader r : readers) {
+            r.close();
+        }
+
+        final Map<String,Integer> result = new HashMap<String, Integer>();
+        reader = s.getParallelFeatureReader(QueryBuilder.all(s.getName()), 2);
+        try {
+            while (reader.hasNext()) {
+                final SimpleFeature f = reader.next();
+                final Point pt = (Point) f.getDefaultGeometry();
+                assertEquals(pt.getX(), ((Integer) f.getAttribute("b")).doubleValue(), 0d);
+                assertNull(result.put(f.getID(), (Integer) f.getAttribute("b")));
+            }
+        } finally {
+            reader.close();
+        }
+        assertEquals(expected, result);
+
+        //filter and max features are applied on the merged reader
+        final QueryBuilder qb = new QueryBuilder(s.getName());
+        qb.setFilter(ff.less(ff.property("b"), ff.literal(3000)));
+        qb.setMaxFeatures(10);
+        reader = s.getParallelFeatureReader(qb.buildQuery(), 2);
+        try {
+            int count = 0;
+            while (reader.hasNext()) {
+                assertTrue((Integer) reader.next().getAttribute("b") < 3000);
+                count++;
+            }
+            assertEquals(10, count);
+        } finally {
+            reader.close();
+        }
+
+        //all read locks are released, a writer can replace the files
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<?> write = executor.submit(new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    writeFeatures(s, features);
+                    return null;
+                }
+            });
+            write.get(60, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Counts and envelopes answered by the statistics must be the same as
+     * the ones obtained by reading the features.
+     */
+    @Test
+    public void testStatistics() throws Exception {
+        final FeatureTypeBuilder ftb = new FeatureTypeBuilder();
+        ftb.setName("junk");
+        ftb.add("a", Point.class, DefaultGeographicCRS.WGS84);
+        ftb.add("b", Integer.class);
+        final SimpleFeatureType type = ftb.buildSimpleFeatureType();
+        final SimpleFeatureBuilder build = new SimpleFeatureBuilder(type);
+        final GeometryFactory gf = new GeometryFactory();
+        final Collection<SimpleFeature> features = new ArrayList<SimpleFeature>();
+        for (int i = 0; i < 100; i++) {
+            build.set("a", gf.createPoint(new Coordinate(i % 10, i / 10)));
+            build.set("b", i);
+            features.add(build.buildFeature(null));
+        }
+        final File tmpFile = getTempFile();
+        tmpFile.createNewFile();
+        ShapefileDataStore s = new ShapefileDataStore(tmpFile.toURI().toURL());
+        writeFeatures(s, features);
+        s = new ShapefileDataStore(tmpFile.toURI().toURL());
+
+        //queries do not compute the statistics
+        assertEquals(100, s.getCount(QueryBuilder.all(s.getName())));
+        assertEquals(-1, s.estimateCount(QueryBuilder.all(s.getName())));
+        assertNull(s.getStatistics());
+        assertFalse(ShapefileStatistics.getStatisticsFile(s.shpFiles).exists());
+
+        final ShapefileStatistics stats = s.computeStatistics();
+        assertNotNull(stats);
+        assertSame(stats, s.getStatistics());
+        assertEquals(100, stats.getCount());
+        assertEquals(0, ((Number) stats.getColumn("b").getMinimum()).intValue());
+        assertEquals(99, ((Number) stats.getColumn("b").getMaximum()).intValue());
+        assertTrue(ShapefileStatistics.getStatisticsFile(s.shpFiles).exists());
+
+        final CoordinateReferenceSystem crs = s.getFeatureType(s.getName()).getCoordinateReferenceSystem();
+        final Filter[] filters = {
+            Filter.INCLUDE,
+            ff.less(ff.property("b"), ff.literal(-5)),
+            ff.greaterOrEqual(ff.property("b"), ff.literal(0)),
+            ff.less(ff.property("b"), ff.literal(30)),
+            ff.bbox(ff.property("a"), new JTSEnvelope2D(-20, -10, -20, -10, crs)),
+            ff.bbox(ff.property("a"), new JTSEnvelope2D(-1, 20, -1, 20, crs)),
+            ff.bbox(ff.property("a"), new JTSEnvelope2D(2.5, 5.5, 2.5, 5.5, crs))
+        };
+        for (Filter filter : filters) {
+            final QueryBuilder qb = new QueryBuilder(s.getName());
+            qb.setFilter(filter);
+            final Query query = qb.buildQuery();
+
+            int count = 0;
+            final FeatureReader<SimpleFeatureType, SimpleFeature> reader = s.getFeatureReader(query);
+            try {
+                while (reader.hasNext()) {
+                    reader.next();
+                    count++;
+                }
+            } finally {
+                reader.close();
+            }
+            assertEquals(filter.toString(), count, s.getCount(query));
+
+            final long estimate = s.estimateCount(query);
+            assertTrue(estimate >= 0 && estimate <= 100);
+            if (stats.matches(filter) != DbaseStatistics.UNKNOWN) {
+                assertEquals(count, estimate);
+            }
+        }
+
+        //whole envelope from the statistics
+        final JTSEnvelope2D env = new JTSEnvelope2D(s.getEnvelope(QueryBuilder.all(s.getName())));
+        assertEquals(0, env.getMinX(), 0d);
+        assertEquals(9, env.getMaxX(), 0d);
+        assertEquals(0, env.getMinY(), 0d);
+        assertEquals(9, env.getMaxY(), 0d);
+
+        //statistics are read from the sidecar file
+        s = new ShapefileDataStore(tmpFile.toURI().toURL());
+        assertEquals(100, s.getStatistics().getCount());
+
+        //statistics are obsolete when the files change
+        writeFeatures(s, features);
+        s = new ShapefileDataStore(tmpFile.toURI().toURL());
+        assertNull(s.getStatistics());
+        assertEquals(100, s.computeStatistics().getCount());
+        assertTrue(s.getStatistics().isUpToDate());
+    }
+
     /**
      * Checks if feature reading optimizations still allow to execute the
      * queries or not
@@ -0,0 +1,117 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.data.shapefile.aix;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for attribute index reader and writer.
+ *
+ * @author Johann Sorel (Geomatys)
+ * @module pending
+ */
+public class AttributeIndexTest {
+
+    @Test
+    public void testNumericIndex() throws IOException {
+        //enough values for a tree of 3 levels, with many duplicates
+        final int nb = 100000;
+        final Random random = new Random(42);
+        final Integer[] values = new Integer[nb];
+        final AttributeIndexWriter writer = new AttributeIndexWriter(AttributeIndexReader.NUMERIC);
+        for (int i = 0; i < nb; i++) {
+            values[i] = (i % 100 == 0) ? null : random.nextInt(5000);
+            writer.add(values[i], i);
+        }
+
+        final File file = File.createTempFile("index", ".aix");
+        file.deleteOnExit();
+        assertEquals(nb - nb / 100, writer.write(file));
+
+        final AttributeIndexReader reader = new AttributeIndexReader(file);
+        try {
+            assertEquals(AttributeIndexReader.NUMERIC, reader.getKeyType());
+            final int[][] ranges = {{0, 0}, {4999, 4999}, {100, 250}, {-10, 10}, {2500, 10000}, {6000, 7000}};
+            for (int[] range : ranges) {
+                final BitSet expected = new BitSet();
+                for (int i = 0; i < nb; i++) {
+                    if (values[i] != null && values[i] >= range[0] && values[i] <= range[1]) {
+                        expected.set(i);
+                    }
+                }
+                final BitSet result = new BitSet();
+                reader.search(reader.toKey(range[0]), true, reader.toKey(range[1]), true, result);
+                assertEquals(expected, result);
+            }
+
+            //exclusive and open bounds
+            final BitSet expected = new BitSet();
+            for (int i = 0; i < nb; i++) {
+                if (values[i] != null && values[i] > 4000) {
+                    expected.set(i);
+                }
+            }
+            final BitSet result = new BitSet();
+            reader.search(reader.toKey(4000), false, null, true, result);
+            assertEquals(expected, result);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testTextIndex() throws IOException {
+        final String[] values = {"Texas", "Ohio", "Utah", "Ohio", null, "Maine", "Texas", "Iowa"};
+        final AttributeIndexWriter writer = new AttributeIndexWriter(AttributeIndexReader.TEXT);
+        for (int i = 0; i < values.length; i++) {
+            writer.add(values[i], i);
+        }
+        final File file = File.createTempFile("index", ".aix");
+        file.deleteOnExit();
+        writer.write(file, 1234, 5678);
+
+        final AttributeIndexReader reader = new AttributeIndexReader(file);
+        try {
+            assertEquals(1234, reader.getSourceLength());
+            assertEquals(5678, reader.getSourceLastModified());
+
+            BitSet result = new BitSet();
+            reader.search("Ohio", true, "Ohio", true, result);
+            assertEquals("{1, 3}", result.toString());
+
+            result = new BitSet();
+            reader.search("Ohio", false, "Texas", true, result);
+            assertEquals("{0, 6}", result.toString());
+
+            result = new BitSet();
+            reader.search(null, true, "Maine", false, result);
+            assertEquals("{7}", result.toString());
+
+            result = new BitSet();
+            reader.search("Alaska", true, "Alaska", true, result);
+            assertTrue(result.isEmpty());
+        } finally {
+            reader.close();
+        }
+    }
+
+}
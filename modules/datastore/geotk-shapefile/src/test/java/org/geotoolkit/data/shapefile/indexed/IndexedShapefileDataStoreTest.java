@@ -306,6 +306,76 @@ public class IndexedShapefileDataStoreTest extends AbstractTestCaseSupport {
         assertEquals(failureMsg, expectedFids, actualFids);
     }
 
+    @Test
+    public void testAttributeIndex() throws Exception {
+        File shpFile = copyShapefiles(STATE_POP);
+        URL url = shpFile.toURI().toURL();
+        IndexedShapefileDataStore ds = new IndexedShapefileDataStore(url, null, false, true, IndexType.QIX,null);
+        ds.createAttributeIndex("STATE_NAME", "PERSONS");
+
+        String base = shpFile.getPath().substring(0, shpFile.getPath().lastIndexOf('.'));
+        assertTrue(new File(base + ".STATE_NAME.aix").exists());
+        assertTrue(new File(base + ".PERSONS.aix").exists());
+
+        FilterFactory2 ff = (FilterFactory2) FactoryFinder.getFilterFactory(null);
+        Envelope bounds = (JTSEnvelope2D) ds.getEnvelope(QueryBuilder.all(ds.getName()));
+        JTSEnvelope2D west = new JTSEnvelope2D(bounds.getMinX(), bounds.centre().x,
+                bounds.getMinY(), bounds.getMaxY(), ds.getFeatureType().getCoordinateReferenceSystem());
+        String geometryName = ds.getFeatureType().getGeometryDescriptor().getLocalName();
+
+        Filter[] filters = new Filter[]{
+            ff.equals(ff.property("STATE_NAME"), ff.literal("Texas")),
+            ff.greater(ff.property("PERSONS"), ff.literal(5000000)),
+            ff.lessOrEqual(ff.literal(1000000), ff.property("PERSONS")),
+            ff.between(ff.property("PERSONS"), ff.literal(1000000), ff.literal(3000000)),
+            ff.or(Arrays.asList(
+                (Filter)ff.equals(ff.property("STATE_NAME"), ff.literal("Ohio")),
+                ff.equals(ff.property("STATE_NAME"), ff.literal("Utah")),
+                ff.equals(ff.property("STATE_NAME"), ff.literal("Unknown")))),
+            ff.and(
+                ff.bbox(ff.property(geometryName), west),
+                ff.less(ff.property("PERSONS"), ff.literal(2000000)))
+        };
+
+        for (Filter filter : filters) {
+            //expected result, evaluating the filter on all features
+            Set<String> expectedFids = new HashSet<String>();
+            FeatureIterator<SimpleFeature> ite = ds.getFeatureReader(QueryBuilder.all(ds.getName()));
+            while (ite.hasNext()) {
+                SimpleFeature f = ite.next();
+                if (filter.evaluate(f)) {
+                    expectedFids.add(f.getID());
+                }
+            }
+            ite.close();
+
+            Set<String> actualFids = new HashSet<String>();
+            ite = ds.getFeatureReader(QueryBuilder.filtered(ds.getName(), filter));
+            while (ite.hasNext()) {
+                actualFids.add(ite.next().getID());
+            }
+            ite.close();
+
+            assertEquals(filter.toString(), expectedFids, actualFids);
+        }
+        assertFalse(count(ds, ds.getFeatureType().getTypeName(), filters[0]) == 0);
+
+        //indexes are obsolete once the dbf is written
+        FeatureWriter<SimpleFeatureType, SimpleFeature> writer = ds.getFeatureWriter(ds.getName(), filters[0]);
+        try {
+            while (writer.hasNext()) {
+                writer.next();
+                writer.remove();
+            }
+        } finally {
+            writer.close();
+        }
+        assertFalse(new File(base + ".STATE_NAME.aix").exists());
+        assertFalse(new File(base + ".PERSONS.aix").exists());
+        assertEquals(0, count(ds, ds.getFeatureType().getTypeName(), filters[0]));
+        ds.dispose();
+    }
+
     private ArrayList performQueryComparison(
             final IndexedShapefileDataStore indexedDS,
             final IndexedShapefileDataStore baselineDS, final JTSEnvelope2D newBounds)
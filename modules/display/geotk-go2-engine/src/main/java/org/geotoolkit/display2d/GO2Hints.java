@@ -71,7 +71,8 @@ public final class GO2Hints extends Static {
 
     /**
      * Configure the generalization, false by default in stateless mode, true
-     * in statefull mode.
+     * in statefull mode. When active, display shapes are also snapped on the
+     * pixel grid and parts smaller than a pixel are not rendered.
      */
     public static final Key KEY_GENERALIZE = new NamedKey(Boolean.class, "GO2 - Generalize");
 
@@ -136,6 +137,16 @@ public final class GO2Hints extends Static {
      * Default value is false.
      */
     public static final Key KEY_PARALLAL_BUFFER = new NamedKey(Boolean.class, "GO2 - Parallal Buffer");
+
+    /**
+     * Prepare the features of a layer with several threads : the rule filters
+     * are evaluated and the geometries projected in parallel while the features
+     * are painted in their original order, the result is identical to a single
+     * thread rendering. Features must not be reused by the layer iterators.
+     *
+     * Default value is false.
+     */
+    public static final Key KEY_PARALLEL_PREPARATION = new NamedKey(Boolean.class, "GO2 - Parallel preparation");
     
     /**
      * Used only by J2DCanvasVolatile.
@@ -160,6 +171,8 @@ public final class GO2Hints extends Static {
     public static final Boolean COVERAGE_WRITER_OFF = Boolean.FALSE;
     public static final Boolean PARALLAL_BUFFER_ON = Boolean.TRUE;
     public static final Boolean PARALLAL_BUFFER_OFF = Boolean.FALSE;
+    public static final Boolean PARALLEL_PREPARATION_ON = Boolean.TRUE;
+    public static final Boolean PARALLEL_PREPARATION_OFF = Boolean.FALSE;
 
     /**
      * A value of 1.3 looks like the best average generalisation.
@@ -0,0 +1,326 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.display2d.container;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotoolkit.display2d.canvas.RenderingContext2D;
+import org.geotoolkit.display2d.primitive.GraphicJ2D;
+import org.geotoolkit.util.ExecutorUtilities;
+import org.geotoolkit.util.logging.Logging;
+
+import static org.geotoolkit.util.ArgumentChecks.*;
+
+/**
+ * Schedule the rendering of several layers in parallel.
+ * <p>
+ * Layers are rendered in separate buffers by a pool of threads, the buffers
+ * are painted on the rendering context in z-order as soon as all the layers
+ * bellow them are painted. The calling thread renders the lowest layer
+ * directly on the rendering context while the next ones are in progress.
+ * </p>
+ * <p>
+ * The memory used by the buffers of all renderings in progress is bounded
+ * by a budget, when the budget is exhausted the next layers wait for
+ * previous buffers to be painted, or are rendered directly by the calling
+ * thread once no buffer is pending.
+ * </p>
+ * <p>
+ * Graphics rendered by the scheduler threads, like groups of layers, are
+ * rendered in the scheduler thread itself, in order, since it would otherwise
+ * wait for tasks queued behind it in the same pool.
+ * The scheduler threads are worker threads of {@link ExecutorUtilities} :
+ * work a layer would share with the shared executor, like the parallel
+ * preparation of its features, runs in the scheduler thread too.
+ * </p>
+ * <p>
+ * The default scheduler uses one thread per processor and a quarter of the
+ * maximum heap size, it can be configured with the system properties
+ * {@value #THREADS_PROPERTY} and {@value #MEMORY_PROPERTY} (in bytes),
+ * or replaced with {@link #setDefault(RenderingScheduler)}.
+ * </p>
+ *
+ * @author Johann Sorel (Geomatys)
+ * @module pending
+ */
+public class RenderingScheduler {
+
+    private static final Logger LOGGER = Logging.getLogger(RenderingScheduler.class);
+
+    public static final String THREADS_PROPERTY = "org.geotoolkit.display2d.rendering.threads";
+    public static final String MEMORY_PROPERTY = "org.geotoolkit.display2d.rendering.memory";
+
+    /** Budget unit, in bytes */
+    private static final int PERMIT_SIZE = 1024;
+
+    private static RenderingScheduler DEFAULT;
+
+    private final ThreadPoolExecutor executor;
+    private final Semaphore budget;
+    private final int budgetPermits;
+
+    /**
+     * @param nbThread : number of rendering threads
+     * @param memory : maximum memory used by the layer buffers, in bytes
+     */
+    public RenderingScheduler(final int nbThread, final long memory) {
+        ensureStrictlyPositive("nbThread", nbThread);
+        ensureStrictlyPositive("memory", memory);
+        budgetPermits = (int) Math.max(1, Math.min(Integer.MAX_VALUE, memory / PERMIT_SIZE));
+        budget = new Semaphore(budgetPermits);
+        executor = new ThreadPoolExecutor(nbThread, nbThread,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger inc = new AtomicInteger();
+            @Override
+            public Thread newThread(Runnable r) {
+                return new RendererThread(RenderingScheduler.this, r, "Layer renderer "+inc.incrementAndGet());
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @return shared scheduler, created on first call
+     */
+    public static synchronized RenderingScheduler getDefault() {
+        if (DEFAULT == null) {
+            final int nbThread = Integer.getInteger(THREADS_PROPERTY,
+                    Runtime.getRuntime().availableProcessors());
+            final long memory = Long.getLong(MEMORY_PROPERTY,
+                    Runtime.getRuntime().maxMemory() / 4);
+            DEFAULT = new RenderingScheduler(Math.max(1, nbThread), Math.max(1, memory));
+        }
+        return DEFAULT;
+    }
+
+    /**
+     * Replace the shared scheduler, the previous one is shut down.
+     *
+     * @param scheduler : new shared scheduler, null to create a default one on next use
+     */
+    public static synchronized void setDefault(final RenderingScheduler scheduler) {
+        if (DEFAULT != null && DEFAULT != scheduler) {
+            DEFAULT.shutdown();
+        }
+        DEFAULT = scheduler;
+    }
+
+    /**
+     * @return number of rendering threads
+     */
+    public int getThreadCount() {
+        return executor.getMaximumPoolSize();
+    }
+
+    /**
+     * @return maximum memory used by the layer buffers, in bytes
+     */
+    public long getMemoryBudget() {
+        return (long) budgetPermits * PERMIT_SIZE;
+    }
+
+    /**
+     * Stop the rendering threads. Renderings in progress complete, next
+     * renderings with this scheduler are made in the calling thread.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Wait for the rendering threads to stop after a shutdown.
+     *
+     * @return true if the threads are stopped, false if the timeout elapsed
+     */
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Render the graphics in the given order, first graphic bellow.
+     * Return when all graphics are painted or when the rendering
+     * monitor requested to stop.
+     *
+     * @param graphics : graphics to render, in z-order
+     * @param context : rendering context to paint on
+     */
+    public void render(final List<? extends GraphicJ2D> graphics, final RenderingContext2D context) {
+        final int size = graphics.size();
+        if (size == 0) {
+            return;
+        } else if (size == 1 || getThreadCount() == 1 || executor.isShutdown() || isRendererThread()) {
+            //bypass threading
+            for (final GraphicJ2D gra : graphics) {
+                if (context.getMonitor().stopRequested()) return;
+                gra.paint(context);
+            }
+            return;
+        }
+
+        final Rectangle rect = context.getCanvasDisplayBounds();
+        final long bytes = 4L * rect.width * rect.height;
+        final int permits = (int) Math.max(1, Math.min(budgetPermits, (bytes + PERMIT_SIZE - 1) / PERMIT_SIZE));
+
+        final LinkedList<LayerTask> pending = new LinkedList<LayerTask>();
+        boolean rejected = false;
+        int next = 0;
+        try {
+            while (!context.getMonitor().stopRequested()) {
+                //nothing left bellow, the calling thread can paint the next layer directly
+                final GraphicJ2D direct = (pending.isEmpty() && next < size) ? graphics.get(next++) : null;
+
+                //start the following layers while the memory budget allows it
+                while (!rejected && next < size && budget.tryAcquire(permits)) {
+                    final LayerTask task = new LayerTask(graphics.get(next), context, rect, permits);
+                    try {
+                        executor.execute(task);
+                    } catch (RejectedExecutionException ex) {
+                        //scheduler has been shut down
+                        task.release();
+                        rejected = true;
+                        break;
+                    }
+                    pending.add(task);
+                    next++;
+                }
+
+                if (direct != null) {
+                    direct.paint(context);
+                    continue;
+                }
+                if (pending.isEmpty()) {
+                    break;
+                }
+
+                //paint the lowest pending layer when ready
+                final LayerTask task = pending.removeFirst();
+                final BufferedImage buffer;
+                try {
+                    buffer = task.get();
+                } catch (InterruptedException ex) {
+                    pending.addFirst(task);
+                    throw ex;
+                } catch (ExecutionException ex) {
+                    LOGGER.log(Level.WARNING, "Layer rendering failed", ex.getCause());
+                    task.release();
+                    continue;
+                }
+                context.switchToDisplayCRS();
+                context.getGraphics().drawImage(buffer, 0, 0, null);
+                task.release();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (final LayerTask task : pending) {
+                task.abandon();
+            }
+        }
+    }
+
+    /**
+     * @return true if the current thread is one of this scheduler threads
+     */
+    private boolean isRendererThread() {
+        final Thread thread = Thread.currentThread();
+        return thread instanceof RendererThread && ((RendererThread) thread).scheduler == this;
+    }
+
+    /**
+     * Thread of a scheduler pool, work shared by the layers rendered in
+     * this thread runs in the thread itself.
+     */
+    private static final class RendererThread extends ExecutorUtilities.WorkerThread {
+
+        private final RenderingScheduler scheduler;
+
+        private RendererThread(final RenderingScheduler scheduler, final Runnable r, final String name) {
+            super(r, name);
+            this.scheduler = scheduler;
+        }
+
+    }
+
+    /**
+     * Render a layer in a buffer of the canvas size. The memory budget
+     * reserved for the buffer is released once, when the buffer has been
+     * painted or when the task is abandoned and no longer running.
+     */
+    private final class LayerTask extends FutureTask<BufferedImage> {
+
+        private final int permits;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+        private volatile boolean abandoned = false;
+
+        private LayerTask(final GraphicJ2D graphic, final RenderingContext2D context,
+                final Rectangle rect, final int permits) {
+            super(new Callable<BufferedImage>() {
+                @Override
+                public BufferedImage call() {
+                    final BufferedImage buffer = new BufferedImage(rect.width, rect.height, BufferedImage.TYPE_INT_ARGB);
+                    final Graphics2D g2d = buffer.createGraphics();
+                    try {
+                        graphic.paint(context.create(g2d));
+                    } finally {
+                        g2d.dispose();
+                    }
+                    return buffer;
+                }
+            });
+            this.permits = permits;
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                budget.release(permits);
+            }
+        }
+
+        private void abandon() {
+            abandoned = true;
+            if (cancel(false) || isDone()) {
+                release();
+            }
+        }
+
+        @Override
+        protected void done() {
+            if (abandoned) {
+                release();
+            }
+        }
+
+    }
+
+}
@@ -20,6 +20,7 @@ package org.geotoolkit.display2d.container.statefull;
 import java.awt.geom.AffineTransform;
 
 import org.geotoolkit.display.canvas.ReferencedCanvas2D;
+import org.geotoolkit.display2d.GO2Hints;
 import org.geotoolkit.display2d.canvas.RenderingContext2D;
 import org.geotoolkit.geometry.jts.transform.CoordinateSequenceMathTransformer;
 import org.geotoolkit.geometry.jts.transform.GeometryCSTransformer;
@@ -43,6 +44,8 @@ public class StatefullContextParams<T extends MapLayer> {
     public final GeometryCSTransformer objToDisplayTransformer =
             new GeometryCSTransformer(new CoordinateSequenceMathTransformer(null));
     public CoordinateReferenceSystem objectiveCRS;
+    /** generalization grid size of display shapes, 0 for no generalization */
+    public double displayResolution = 0;
     public CoordinateReferenceSystem displayCRS;
 
     public StatefullContextParams(final ReferencedCanvas2D canvas, final T layer){
@@ -63,6 +66,10 @@ public class StatefullContextParams<T extends MapLayer> {
         objectiveCRS = context.getObjectiveCRS2D();
         displayCRS = context.getDisplayCRS();
 
+        //generalize unless explicitly disabled, like the query resampling
+        final Object generalize = context.getRenderingHints().get(GO2Hints.KEY_GENERALIZE);
+        displayResolution = Boolean.FALSE.equals(generalize) ? 0 : 1;
+
         final AffineTransform2D objtoDisp = context.getObjectiveToDisplay();
         if(!objtoDisp.equals(objectiveToDisplay)){
             objectiveToDisplay.setTransform(objtoDisp);
@@ -21,6 +21,7 @@ import java.awt.Shape;
 import org.geotoolkit.display2d.GO2Utilities;
 import org.geotoolkit.display2d.primitive.ProjectedGeometry;
 import org.geotoolkit.display2d.primitive.jts.AbstractJTSGeometryJ2D;
+import org.geotoolkit.display2d.primitive.jts.JTSGeneralizer;
 import org.geotoolkit.display2d.primitive.jts.JTSGeometryJ2D;
 import org.geotoolkit.geometry.isoonjts.JTSUtils;
 
@@ -48,6 +49,7 @@ public class StatefullProjectedGeometry implements ProjectedGeometry {
     private com.vividsolutions.jts.geom.Geometry    displayGeometryJTS = null;
     private Geometry                                displayGeometryISO = null;
     private final AbstractJTSGeometryJ2D            displayShape;
+    private Shape                                   generalizedShape = null;
 
     public StatefullProjectedGeometry(final StatefullContextParams params, final Class GeometryClazz,
             final com.vividsolutions.jts.geom.Geometry geom){
@@ -64,6 +66,7 @@ public class StatefullProjectedGeometry implements ProjectedGeometry {
         this.objectiveShape = copy.objectiveShape;
         this.displayGeometryJTS = copy.displayGeometryJTS;
         this.displayGeometryISO = copy.displayGeometryISO;
+        this.generalizedShape = copy.generalizedShape;
         this.displayShape = copy.displayShape.clone();
     }
 
@@ -82,6 +85,7 @@ public class StatefullProjectedGeometry implements ProjectedGeometry {
     public void clearDisplayCache(){
         displayGeometryISO = null;
         displayGeometryJTS = null;
+        generalizedShape = null;
     }
 
     @Override
@@ -116,6 +120,13 @@ public class StatefullProjectedGeometry implements ProjectedGeometry {
         if(objectiveGeometryJTS == null){
             return null;
         }
+        if(params.displayResolution > 0){
+            if(generalizedShape == null){
+                generalizedShape = JTSGeneralizer.toShape(
+                        objectiveGeometryJTS, params.objectiveToDisplay, params.displayResolution);
+            }
+            return generalizedShape;
+        }
         return displayShape;
     }
 
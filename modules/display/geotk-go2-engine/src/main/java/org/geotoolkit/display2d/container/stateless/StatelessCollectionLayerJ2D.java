@@ -26,9 +26,14 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
+import javax.measure.unit.NonSI;
 
 import org.geotoolkit.style.MutableRule;
 import org.geotoolkit.display2d.container.ContextContainer2D;
@@ -48,12 +53,14 @@ import org.geotoolkit.display2d.canvas.J2DCanvas;
 import org.geotoolkit.display2d.container.statefull.StatefullCachedRule;
 import org.geotoolkit.display2d.container.statefull.StatefullContextParams;
 import org.geotoolkit.display2d.primitive.DefaultProjectedObject;
+import org.geotoolkit.display2d.primitive.ProjectedGeometry;
 import org.geotoolkit.display2d.primitive.ProjectedObject;
 import org.geotoolkit.display2d.style.CachedRule;
 import org.geotoolkit.display2d.style.CachedSymbolizer;
 import org.geotoolkit.display2d.style.renderer.SymbolizerRenderer;
 import org.geotoolkit.factory.FactoryFinder;
 import org.geotoolkit.filter.identity.DefaultFeatureId;
+import org.geotoolkit.util.ExecutorUtilities;
 
 import org.opengis.feature.type.FeatureType;
 import org.opengis.display.primitive.Graphic;
@@ -61,6 +68,8 @@ import org.opengis.feature.type.ComplexType;
 import org.opengis.filter.Filter;
 import org.opengis.filter.expression.Literal;
 import org.opengis.filter.identity.FeatureId;
+import org.opengis.referencing.operation.TransformException;
+import org.opengis.style.PointSymbolizer;
 import org.opengis.style.Rule;
 import org.opengis.style.Style;
 import org.opengis.style.Symbolizer;
@@ -80,6 +89,8 @@ public class StatelessCollectionLayerJ2D<T extends CollectionMapLayer> extends S
 
     private static final Literal ID_EXPRESSION = FactoryFinder.getFilterFactory(null).literal("@id");
 
+    private static final int PREPARATION_BATCH = 256;
+
     protected final StatefullContextParams params;
     
     public StatelessCollectionLayerJ2D(final J2DCanvas canvas, final T layer){
@@ -312,8 +323,6 @@ public class StatelessCollectionLayerJ2D<T extends CollectionMapLayer> extends S
     
     protected final void renderByObjectOrder(final RenderingIterator statefullIterator,
             final RenderingContext2D context, final CachedRule[] rules) throws PortrayalException{
-        final CanvasMonitor monitor = context.getMonitor();
-
         //prepare the renderers
         final StatefullCachedRule renderers = new StatefullCachedRule(rules, context);
 
@@ -321,42 +330,13 @@ public class StatelessCollectionLayerJ2D<T extends CollectionMapLayer> extends S
             //performance routine, only one symbol to render
             if(renderers.rules.length == 1
                && (renderers.rules[0].getFilter() == null || renderers.rules[0].getFilter() == Filter.INCLUDE)
-               && renderers.rules[0].symbolizers().length == 1){
+               && renderers.rules[0].symbolizers().length == 1
+               && !isParallelPreparation(context)){
                 renderers.renderers[0][0].portray(statefullIterator);
                 return;
             }
 
-            while(statefullIterator.hasNext()){
-                if(monitor.stopRequested()) return;
-                final ProjectedObject projectedCandidate = statefullIterator.next();
-
-                boolean painted = false;
-                for(int i=0; i<renderers.elseRuleIndex; i++){
-                    final CachedRule rule = renderers.rules[i];
-                    final Filter ruleFilter = rule.getFilter();
-                    //test if the rule is valid for this feature
-                    if (ruleFilter == null || ruleFilter.evaluate(projectedCandidate.getCandidate())) {
-                        painted = true;
-                        for (final SymbolizerRenderer renderer : renderers.renderers[i]) {
-                            renderer.portray(projectedCandidate);
-                        }
-                    }
-                }
-
-                //the feature hasn't been painted, paint it with the 'else' rules
-                if(!painted){
-                    for(int i=renderers.elseRuleIndex; i<renderers.rules.length; i++){
-                        final CachedRule rule = renderers.rules[i];
-                        final Filter ruleFilter = rule.getFilter();
-                        //test if the rule is valid for this feature
-                        if (ruleFilter == null || ruleFilter.evaluate(projectedCandidate.getCandidate())) {
-                            for (final SymbolizerRenderer renderer : renderers.renderers[i]) {
-                                renderer.portray(projectedCandidate);
-                            }
-                        }
-                    }
-                }
-            }
+            portray(statefullIterator, context, renderers.rules, renderers.renderers, renderers.elseRuleIndex);
         }finally{
             try {
                 statefullIterator.close();
@@ -464,40 +444,7 @@ public class StatelessCollectionLayerJ2D<T extends CollectionMapLayer> extends S
         }
         
         try{
-            while(statefullIterator.hasNext()){
-                if(monitor.stopRequested()) return;
-                final ProjectedObject projectedCandidate = statefullIterator.next();
-                                
-                boolean painted = false;
-                for(int i=0; i<elseRuleIndex; i++){
-                    final CachedRule rule = rules[i];                    
-                    final Filter ruleFilter = rule.getFilter();
-                    //test if the rule is valid for this feature
-                    if (ruleFilter == null || ruleFilter.evaluate(projectedCandidate.getCandidate())) {
-                        painted = true;
-                        final CachedSymbolizer[] css = rule.symbolizers();
-                        for(int k=0; k<css.length; k++){
-                            renderers[i][k].portray(projectedCandidate);
-                        }
-                    }
-                }
-                
-                //paint with else rules
-                if(!painted){
-                    for(int i=elseRuleIndex; i<rules.length; i++){
-                        final CachedRule rule = rules[i];                    
-                        final Filter ruleFilter = rule.getFilter();
-                        //test if the rule is valid for this feature
-                        if (ruleFilter == null || ruleFilter.evaluate(projectedCandidate.getCandidate())) {
-                            final CachedSymbolizer[] css = rule.symbolizers();
-                            for(int k=0; k<css.length; k++){
-                                renderers[i][k].portray(projectedCandidate);
-                            }
-                        }
-                    }
-                }
-                
-            }
+            portray(statefullIterator, context, rules, renderers, elseRuleIndex);
         }finally{
             try {
                 statefullIterator.close();
@@ -505,6 +452,7 @@ public class StatelessCollectionLayerJ2D<T extends CollectionMapLayer> extends S
                 getLogger().log(Level.WARNING, null, ex);
             }
         }
+        if(monitor.stopRequested()) return;
         
         //merge images --------------------------
         originalContext.switchToDisplayCRS();
@@ -517,6 +465,222 @@ public class StatelessCollectionLayerJ2D<T extends CollectionMapLayer> extends S
         }
     }
     
+    /**
+     * Paint each candidate with the renderers of the rules it matches.
+     *
+     * @param rules : rules sorted with the else rules at the end
+     * @param renderers : renderers of each rule
+     * @param elseRuleIndex : index of the first else rule
+     */
+    private void portray(final RenderingIterator statefullIterator, final RenderingContext2D context,
+            final CachedRule[] rules, final SymbolizerRenderer[][] renderers, final int elseRuleIndex)
+            throws PortrayalException{
+
+        if(isParallelPreparation(context)){
+            portrayParallel(statefullIterator, context, rules, renderers, elseRuleIndex);
+            return;
+        }
+
+        final CanvasMonitor monitor = context.getMonitor();
+        while(statefullIterator.hasNext()){
+            if(monitor.stopRequested()) return;
+            final ProjectedObject projectedCandidate = statefullIterator.next();
+
+            boolean painted = false;
+            for(int i=0; i<elseRuleIndex; i++){
+                final Filter ruleFilter = rules[i].getFilter();
+                //test if the rule is valid for this feature
+                if (ruleFilter == null || ruleFilter.evaluate(projectedCandidate.getCandidate())) {
+                    painted = true;
+                    for (final SymbolizerRenderer renderer : renderers[i]) {
+                        renderer.portray(projectedCandidate);
+                    }
+                }
+            }
+
+            //the feature hasn't been painted, paint it with the 'else' rules
+            if(!painted){
+                for(int i=elseRuleIndex; i<rules.length; i++){
+                    final Filter ruleFilter = rules[i].getFilter();
+                    //test if the rule is valid for this feature
+                    if (ruleFilter == null || ruleFilter.evaluate(projectedCandidate.getCandidate())) {
+                        for (final SymbolizerRenderer renderer : renderers[i]) {
+                            renderer.portray(projectedCandidate);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Pipelined version of the portray method : the calling thread reads the
+     * candidates by batch, the preparation threads evaluate the rule filters
+     * and project the geometries, the calling thread paints the prepared batches
+     * in the reading order.
+     */
+    private void portrayParallel(final RenderingIterator statefullIterator, final RenderingContext2D context,
+            final CachedRule[] rules, final SymbolizerRenderer[][] renderers, final int elseRuleIndex)
+            throws PortrayalException{
+
+        final CanvasMonitor monitor = context.getMonitor();
+        final LinkedList<Future<PreparedObject[]>> pending = new LinkedList<Future<PreparedObject[]>>();
+        final int maxPending = 2 * ExecutorUtilities.getThreadCount();
+
+        try{
+            while(!monitor.stopRequested()){
+                //read the next batch
+                if(pending.size() < maxPending && statefullIterator.hasNext()){
+                    final List<Object> batch = new ArrayList<Object>(PREPARATION_BATCH);
+                    while(batch.size() < PREPARATION_BATCH && statefullIterator.hasNext()){
+                        batch.add(statefullIterator.next().getCandidate());
+                    }
+                    pending.add(ExecutorUtilities.submit(new Preparation(batch, context, rules, elseRuleIndex)));
+                    continue;
+                }
+
+                if(pending.isEmpty()) break;
+
+                //paint the oldest batch
+                final PreparedObject[] prepared = pending.removeFirst().get();
+                for(final PreparedObject candidate : prepared){
+                    if(monitor.stopRequested()) return;
+                    for(final int i : candidate.rules){
+                        for(final SymbolizerRenderer renderer : renderers[i]){
+                            renderer.portray(candidate.projected);
+                        }
+                    }
+                }
+            }
+        }catch(InterruptedException ex){
+            Thread.currentThread().interrupt();
+        }catch(ExecutionException ex){
+            throw new PortrayalException(ex.getCause());
+        }finally{
+            for(final Future<PreparedObject[]> future : pending){
+                future.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Layers rendered by the rendering scheduler threads are already rendered
+     * in parallel, their candidates are prepared while painting.
+     */
+    private boolean isParallelPreparation(final RenderingContext2D context){
+        return ExecutorUtilities.isParallelAllowed()
+            && Boolean.TRUE.equals(context.getRenderingHints().get(GO2Hints.KEY_PARALLEL_PREPARATION));
+    }
+
+    /**
+     * Create a projected object for the given candidate.
+     * Used by the parallel preparation, each candidate has its own projected object.
+     */
+    protected ProjectedObject createProjectedObject(final StatefullContextParams params, final Object candidate){
+        return new DefaultProjectedObject(params, candidate);
+    }
+
+    /**
+     * Candidate prepared for painting : the rules it matches have been
+     * evaluated and its geometries projected.
+     */
+    private static final class PreparedObject{
+        private final ProjectedObject projected;
+        private final int[] rules;
+
+        private PreparedObject(final ProjectedObject projected, final int[] rules) {
+            this.projected = projected;
+            this.rules = rules;
+        }
+    }
+
+    /**
+     * Prepare a batch of candidates. Each batch has its own parameters,
+     * the geometry transformers are not shared between threads.
+     */
+    private final class Preparation implements Callable<PreparedObject[]>{
+
+        private final List<Object> candidates;
+        private final RenderingContext2D context;
+        private final CachedRule[] rules;
+        private final int elseRuleIndex;
+
+        private Preparation(final List<Object> candidates, final RenderingContext2D context,
+                final CachedRule[] rules, final int elseRuleIndex) {
+            this.candidates = candidates;
+            this.context = context;
+            this.rules = rules;
+            this.elseRuleIndex = elseRuleIndex;
+        }
+
+        @Override
+        public PreparedObject[] call() {
+            final StatefullContextParams params = new StatefullContextParams(getCanvas(), item);
+            params.context = context;
+            params.update(context);
+
+            final PreparedObject[] prepared = new PreparedObject[candidates.size()];
+            final int[] matches = new int[rules.length];
+            for(int c=0,n=prepared.length; c<n; c++){
+                final Object candidate = candidates.get(c);
+
+                int nb = 0;
+                for(int i=0; i<elseRuleIndex; i++){
+                    final Filter ruleFilter = rules[i].getFilter();
+                    if (ruleFilter == null || ruleFilter.evaluate(candidate)) {
+                        matches[nb++] = i;
+                    }
+                }
+                if(nb == 0){
+                    for(int i=elseRuleIndex; i<rules.length; i++){
+                        final Filter ruleFilter = rules[i].getFilter();
+                        if (ruleFilter == null || ruleFilter.evaluate(candidate)) {
+                            matches[nb++] = i;
+                        }
+                    }
+                }
+
+                final int[] candidateRules = new int[nb];
+                System.arraycopy(matches, 0, candidateRules, 0, nb);
+                final ProjectedObject projected = createProjectedObject(params, candidate);
+                for(final int i : candidateRules){
+                    for(final CachedSymbolizer symbol : rules[i].symbolizers()){
+                        prepare(projected, symbol);
+                    }
+                }
+                prepared[c] = new PreparedObject(projected, candidateRules);
+            }
+            return prepared;
+        }
+
+        /**
+         * Resolve the geometries used by the symbolizer renderer, point symbols
+         * use the display geometry, other symbols the objective geometry and
+         * shape, and the display shape when their unit is the pixel.
+         */
+        private void prepare(final ProjectedObject projected, final CachedSymbolizer symbol){
+            final Symbolizer source = symbol.getSource();
+            final ProjectedGeometry geom = projected.getGeometry(source.getGeometryPropertyName());
+            if(geom == null){
+                return;
+            }
+            try {
+                if(source instanceof PointSymbolizer){
+                    geom.getDisplayGeometryJTS();
+                }else{
+                    geom.getObjectiveGeometryJTS();
+                    geom.getObjectiveShape();
+                    if(NonSI.PIXEL == source.getUnitOfMeasure()){
+                        geom.getDisplayShape();
+                    }
+                }
+            } catch (TransformException ex) {
+                //the renderer will report it
+            }
+        }
+
+    }
+
     protected boolean contain(final Set<FeatureId> ids, final Object candidate){
         return ids.contains(id(candidate));
     }
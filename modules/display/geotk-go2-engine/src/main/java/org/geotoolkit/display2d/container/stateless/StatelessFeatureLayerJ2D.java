@@ -65,6 +65,7 @@ import org.geotoolkit.display2d.GO2Hints;
 import org.geotoolkit.display2d.canvas.J2DCanvas;
 import org.geotoolkit.display2d.container.statefull.StatefullCachedRule;
 import org.geotoolkit.display2d.primitive.ProjectedFeature;
+import org.geotoolkit.display2d.primitive.ProjectedObject;
 import org.geotoolkit.display2d.style.renderer.SymbolizerRenderer;
 import org.geotoolkit.factory.Hints;
 import org.geotoolkit.factory.HintsPending;
@@ -183,12 +184,20 @@ public class StatelessFeatureLayerJ2D extends StatelessCollectionLayerJ2D<Featur
     @Override
     protected RenderingIterator getIterator(final Collection<?> features,
             final RenderingContext2D renderingContext, final StatefullContextParams params) {
-        final Hints iteHints = new Hints(HintsPending.FEATURE_DETACHED, Boolean.FALSE);
+        //features are kept by the parallel preparation, they must not be reused
+        final boolean detached = Boolean.TRUE.equals(
+                renderingContext.getRenderingHints().get(GO2Hints.KEY_PARALLEL_PREPARATION));
+        final Hints iteHints = new Hints(HintsPending.FEATURE_DETACHED, detached);
         final FeatureIterator<? extends Feature> iterator = ((FeatureCollection)features).iterator(iteHints);
         final StatefullProjectedFeature projectedFeature = new StatefullProjectedFeature(params);
         return new GraphicIterator(iterator, projectedFeature);
     }
 
+    @Override
+    protected ProjectedObject createProjectedObject(final StatefullContextParams params, final Object candidate) {
+        return new StatefullProjectedFeature(params, (Feature)candidate);
+    }
+
     /**
      * {@inheritDoc }
      */
@@ -23,6 +23,7 @@ import java.awt.image.ColorModel;
 import java.awt.image.SampleModel;
 import java.awt.image.WritableRaster;
 import java.beans.PropertyChangeEvent;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -39,7 +40,7 @@ import org.geotoolkit.display.primitive.SearchArea;
 import org.geotoolkit.display2d.GO2Hints;
 import org.geotoolkit.display2d.canvas.J2DCanvas;
 import org.geotoolkit.display2d.canvas.RenderingContext2D;
-import org.geotoolkit.display2d.container.MultiThreadedRendering;
+import org.geotoolkit.display2d.container.RenderingScheduler;
 import org.geotoolkit.display2d.container.statefull.StatefullCoverageLayerJ2D;
 import org.geotoolkit.display2d.primitive.AbstractGraphicJ2D;
 import org.geotoolkit.display2d.primitive.GraphicJ2D;
@@ -159,8 +160,15 @@ public class StatelessMapItemJ2D<T extends MapItem> extends AbstractGraphicJ2D i
         final Boolean mt = (Boolean) renderingContext.getRenderingHints().get(GO2Hints.KEY_MULTI_THREAD);
         
         if(Boolean.TRUE.equals(mt)){
-            final MultiThreadedRendering rendering = new MultiThreadedRendering(this.item, this.itemGraphics, renderingContext);
-            rendering.render();
+            final List<GraphicJ2D> graphics = new ArrayList<GraphicJ2D>();
+            for(final MapItem child : item.items()){
+                if(!child.isVisible()) continue;
+                final GraphicJ2D gra = itemGraphics.get(child);
+                if(gra != null){
+                    graphics.add(gra);
+                }
+            }
+            RenderingScheduler.getDefault().render(graphics, renderingContext);
         }else{
             for(final MapItem child : item.items()){
                 if(renderingContext.getMonitor().stopRequested()) break;
@@ -239,7 +239,9 @@ public class StatelessPyramidalCoverageLayerJ2D extends StatelessMapLayerJ2D<Cov
                 break;
             }
 
-            if(obj instanceof TileReference){
+            if(obj instanceof DataStoreException){
+                monitor.exceptionOccured((DataStoreException)obj, Level.WARNING);
+            }else if(obj instanceof TileReference){
                 final TileReference tile = (TileReference)obj;
                 final MathTransform trs = queries.get(tile.getPosition());
                 paintTile(context2D, pyramidCRS, tile, trs);
@@ -21,7 +21,9 @@ package org.geotoolkit.display2d.primitive;
 import com.vividsolutions.jts.geom.Geometry;
 
 import java.awt.Shape;
+import java.awt.geom.AffineTransform;
 
+import org.geotoolkit.display2d.primitive.jts.JTSGeneralizer;
 import org.geotoolkit.display2d.primitive.jts.JTSGeometryJ2D;
 import org.geotoolkit.geometry.jts.transform.CoordinateSequenceMathTransformer;
 import org.geotoolkit.geometry.jts.transform.GeometryCSTransformer;
@@ -43,9 +45,10 @@ public class DefaultProjectedGeometry implements ProjectedGeometry {
     private final Geometry objectiveGeometry;
     private Geometry displayGeometry = null;
     private final JTSGeometryJ2D objectiveShape = new JTSGeometryJ2D(null);
-    private final JTSGeometryJ2D displayShape = new JTSGeometryJ2D(null);
+    private Shape displayShape = null;
+    private MathTransform objToDisplay = null;
+    private double resolution = 0;
     private boolean isObjectiveCalculated = false;
-    private boolean isDisplayCalculated = false;
     
 
     public DefaultProjectedGeometry(final Geometry objGeom){
@@ -54,9 +57,26 @@ public class DefaultProjectedGeometry implements ProjectedGeometry {
 
     public void setObjToDisplay(final MathTransform trs){
         ((CoordinateSequenceMathTransformer)objToDisplayTransformer.getCSTransformer()).setTransform(trs);
+        objToDisplay = trs;
         displayGeometry = null;
+        displayShape = null;
         isObjectiveCalculated = false;
-        isDisplayCalculated = false;
+    }
+
+    /**
+     * Set the generalization of the display shape, coordinates are snapped
+     * on a grid of this size and parts smaller than a cell are removed.
+     *
+     * @param resolution : grid cell size in display units, 0 to keep all
+     *      coordinates, default is 0
+     */
+    public void setDisplayResolution(final double resolution){
+        this.resolution = resolution;
+        displayShape = null;
+    }
+
+    public double getDisplayResolution(){
+        return resolution;
     }
 
     @Override
@@ -66,7 +86,6 @@ public class DefaultProjectedGeometry implements ProjectedGeometry {
 
     @Override
     public Geometry getDisplayGeometryJTS() throws TransformException{
-        //TODO decimation
         if(displayGeometry == null){
             displayGeometry = objToDisplayTransformer.transform(objectiveGeometry);
         }
@@ -84,11 +103,14 @@ public class DefaultProjectedGeometry implements ProjectedGeometry {
 
     @Override
     public Shape getDisplayShape() throws TransformException{
-        if(!isDisplayCalculated){
-            displayShape.setGeometry( getDisplayGeometryJTS() );
-            isDisplayCalculated = true;
+        if(displayShape == null){
+            if(objToDisplay instanceof AffineTransform){
+                //generalize while projecting, no display geometry is created
+                displayShape = JTSGeneralizer.toShape(objectiveGeometry, (AffineTransform)objToDisplay, resolution);
+            }else{
+                displayShape = JTSGeneralizer.toShape(getDisplayGeometryJTS(), null, resolution);
+            }
         }
-
         return displayShape;
     }
 
@@ -0,0 +1,194 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.display2d.primitive.jts;
+
+import com.vividsolutions.jts.geom.CoordinateSequence;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryCollection;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.Polygon;
+
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+
+import org.geotoolkit.lang.Static;
+
+/**
+ * Generalize JTS geometries while projecting them to display.
+ * Coordinates are snapped on a grid of the given resolution, usually one pixel,
+ * consecutive coordinates falling in the same cell are collapsed and rings or
+ * lines which are smaller than a cell are removed.
+ * The result is a java2d path storing the coordinates in a float array.
+ *
+ * @author Johann Sorel (Geomatys)
+ * @module pending
+ */
+public final class JTSGeneralizer extends Static {
+
+    private JTSGeneralizer(){}
+
+    /**
+     * Create a generalized display shape of the geometry.
+     *
+     * @param geom : geometry to generalize, in objective crs
+     * @param objToDisplay : objective to display transform, null for identity
+     * @param resolution : grid cell size in display units, 0 to disable snapping,
+     *      only identical consecutive coordinates are collapsed in this case
+     * @return generalized shape, empty if the geometry is smaller than a cell
+     */
+    public static Shape toShape(final Geometry geom, final AffineTransform objToDisplay, final double resolution){
+        final Builder builder = new Builder(objToDisplay, resolution);
+        if(geom != null){
+            builder.append(geom);
+        }
+        return builder.toPath();
+    }
+
+    /**
+     * Accumulate the generalized coordinates of each part before creating the path.
+     */
+    private static final class Builder{
+
+        private final AffineTransform trs;
+        private final double resolution;
+        private final double[] pt = new double[2];
+
+        /** generalized coordinates, x and y interleaved */
+        private float[] coords = new float[64];
+        private int size = 0;
+        /** start index and closed flag of each part */
+        private int[] parts = new int[8];
+        private int nbPart = 0;
+        private boolean polygonal = false;
+
+        private Builder(final AffineTransform trs, final double resolution) {
+            this.trs = trs;
+            this.resolution = resolution;
+        }
+
+        private void append(final Geometry geom){
+            if(geom.isEmpty()){
+                return;
+            }
+            if(geom instanceof Point){
+                final int start = size;
+                appendSequence(((Point)geom).getCoordinateSequence());
+                endPart(start, false);
+            }else if(geom instanceof LineString){
+                final int start = size;
+                appendSequence(((LineString)geom).getCoordinateSequence());
+                //lines contained in one cell are not visible
+                if(size - start < 4){
+                    size = start;
+                }else{
+                    endPart(start, false);
+                }
+            }else if(geom instanceof Polygon){
+                polygonal = true;
+                final Polygon poly = (Polygon) geom;
+                if(!appendRing(poly.getExteriorRing())){
+                    //holes are not visible either
+                    return;
+                }
+                for(int i=0,n=poly.getNumInteriorRing(); i<n; i++){
+                    appendRing(poly.getInteriorRingN(i));
+                }
+            }else if(geom instanceof GeometryCollection){
+                for(int i=0,n=geom.getNumGeometries(); i<n; i++){
+                    append(geom.getGeometryN(i));
+                }
+            }
+        }
+
+        /**
+         * @return false if the ring is smaller than a cell and has been removed
+         */
+        private boolean appendRing(final LineString ring){
+            final int start = size;
+            appendSequence(ring.getCoordinateSequence());
+            //the closing coordinate is replaced by a close segment
+            if(size - start >= 4 && coords[size-2] == coords[start] && coords[size-1] == coords[start+1]){
+                size -= 2;
+            }
+            if(size - start < 6){
+                size = start;
+                return false;
+            }
+            endPart(start, true);
+            return true;
+        }
+
+        private void appendSequence(final CoordinateSequence cs){
+            final int start = size;
+            for(int i=0,n=cs.size(); i<n; i++){
+                pt[0] = cs.getX(i);
+                pt[1] = cs.getY(i);
+                if(trs != null){
+                    trs.transform(pt, 0, pt, 0, 1);
+                }
+                if(resolution > 0){
+                    pt[0] = Math.floor(pt[0]/resolution + 0.5) * resolution;
+                    pt[1] = Math.floor(pt[1]/resolution + 0.5) * resolution;
+                }
+                final float x = (float) pt[0];
+                final float y = (float) pt[1];
+                if(size > start && coords[size-2] == x && coords[size-1] == y){
+                    //same cell as the previous coordinate
+                    continue;
+                }
+                if(size+2 > coords.length){
+                    final float[] copy = new float[coords.length*2];
+                    System.arraycopy(coords, 0, copy, 0, size);
+                    coords = copy;
+                }
+                coords[size++] = x;
+                coords[size++] = y;
+            }
+        }
+
+        private void endPart(final int start, final boolean closed){
+            if(nbPart+2 > parts.length){
+                final int[] copy = new int[parts.length*2];
+                System.arraycopy(parts, 0, copy, 0, nbPart);
+                parts = copy;
+            }
+            parts[nbPart++] = start;
+            parts[nbPart++] = closed ? 1 : 0;
+        }
+
+        private Path2D.Float toPath(){
+            final Path2D.Float path = new Path2D.Float(
+                    polygonal ? Path2D.WIND_EVEN_ODD : Path2D.WIND_NON_ZERO, size/2 + nbPart/2);
+            for(int p=0; p<nbPart; p+=2){
+                final int start = parts[p];
+                final int end = (p+2 < nbPart) ? parts[p+2] : size;
+                path.moveTo(coords[start], coords[start+1]);
+                for(int i=start+2; i<end; i+=2){
+                    path.lineTo(coords[i], coords[i+1]);
+                }
+                if(parts[p+1] == 1){
+                    path.closePath();
+                }
+            }
+            return path;
+        }
+
+    }
+
+}
@@ -51,6 +51,7 @@ import javax.imageio.ImageWriter;
 import javax.imageio.spi.ImageWriterSpi;
 import javax.imageio.stream.ImageOutputStream;
 
+import org.geotoolkit.coverage.GridMosaic;
 import org.geotoolkit.coverage.grid.GridCoverage2D;
 import org.geotoolkit.coverage.grid.GridCoverageFactory;
 import org.geotoolkit.coverage.io.CoverageStoreException;
@@ -115,7 +116,28 @@ public class DefaultPortrayalService implements PortrayalService{
      */
     static final Map<String,String> MIME_CACHE = new ConcurrentHashMap<String, String>();
 
+    /**
+     * Cache of portrayed images, disabled by default.
+     */
+    private static volatile PortrayalCache CACHE = null;
+
     private DefaultPortrayalService(){}
+
+    /**
+     * Set the cache used to reuse images of previous portrayals.
+     *
+     * @param cache : portrayal cache, null to disable caching
+     */
+    public static void setCache(final PortrayalCache cache){
+        CACHE = cache;
+    }
+
+    /**
+     * @return portrayal cache, null if caching is disabled
+     */
+    public static PortrayalCache getCache(){
+        return CACHE;
+    }
     
     
     /**
@@ -231,6 +253,15 @@ public class DefaultPortrayalService implements PortrayalService{
 
     public static BufferedImage portray(final CanvasDef canvasDef, final SceneDef sceneDef, final ViewDef viewDef) throws PortrayalException{
 
+        final PortrayalCache cache = CACHE;
+        final PortrayalCache.Key key = (cache == null) ? null : cache.createKey(canvasDef, sceneDef, viewDef);
+        if(key != null){
+            final BufferedImage cached = cache.get(key);
+            if(cached != null){
+                return cached;
+            }
+        }
+
         final Envelope contextEnv = viewDef.getEnvelope();
         final CoordinateReferenceSystem crs = contextEnv.getCoordinateReferenceSystem();
 
@@ -243,8 +274,14 @@ public class DefaultPortrayalService implements PortrayalService{
 
         canvas.getController().repaint();
         final BufferedImage buffer = canvas.getSnapShot();
+        final boolean complete = !canvas.getMonitor().stopRequested();
         canvas.dispose();
 
+        //interrupted portrayals are not cached
+        if(key != null && complete && buffer != null){
+            cache.put(key, buffer);
+        }
+
         return buffer;
     }
 
@@ -322,6 +359,23 @@ public class DefaultPortrayalService implements PortrayalService{
         return new PortrayalRenderedImage(canvasDef, sceneDef, viewDef, gridSize, tileSize, scale);
     }
     
+    /**
+     * Create a rendered image which tile model maps the given mosaic.
+     * Tiles are rendered in parallel, blocks of tiles which already exist
+     * in the mosaic are not rendered in advance.
+     * 
+     * @param canvasDef
+     * @param sceneDef
+     * @param viewDef
+     * @param mosaic : mosaic to generate tiles for
+     * @return 
+     */
+    public static RenderedImage prepareImage(final CanvasDef canvasDef, final SceneDef sceneDef, final ViewDef viewDef, 
+            final GridMosaic mosaic) throws PortrayalException{        
+        return new PortrayalRenderedImage(canvasDef, sceneDef, viewDef, 
+                mosaic.getGridSize(), mosaic.getTileSize(), mosaic.getScale(), mosaic);
+    }
+    
     ////////////////////////////////////////////////////////////////////////////
     // PAINTING IN A STREAM or OUTPUT //////////////////////////////////////////
     ////////////////////////////////////////////////////////////////////////////
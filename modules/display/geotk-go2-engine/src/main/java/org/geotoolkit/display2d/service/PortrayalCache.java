@@ -0,0 +1,553 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.display2d.service;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.beans.PropertyChangeEvent;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.imageio.ImageIO;
+
+import org.geotoolkit.data.FeatureCollection;
+import org.geotoolkit.data.StorageContentEvent;
+import org.geotoolkit.data.StorageListener;
+import org.geotoolkit.data.StorageManagementEvent;
+import org.geotoolkit.map.EmptyMapLayer;
+import org.geotoolkit.map.FeatureMapLayer;
+import org.geotoolkit.map.ItemListener;
+import org.geotoolkit.map.MapContext;
+import org.geotoolkit.map.MapLayer;
+import org.geotoolkit.map.MapItem;
+import org.geotoolkit.util.collection.CollectionChangeEvent;
+import org.geotoolkit.util.logging.Logging;
+
+import org.opengis.feature.type.Name;
+import org.opengis.geometry.Envelope;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+import static org.geotoolkit.util.ArgumentChecks.*;
+
+/**
+ * Cache of portrayed images, used by {@link DefaultPortrayalService} when set with
+ * {@link DefaultPortrayalService#setCache(PortrayalCache)}.
+ * <p>
+ * Images are identified by their map context, the canvas, view and scene
+ * definitions. The most recently used images are kept in memory up to a
+ * memory budget, the others can be stored in a directory up to a disk budget.
+ * </p>
+ * <p>
+ * The cached images of a map context are dropped when the context, its layers
+ * or their styles change, and when the features of one of its layers change.
+ * Scenes with portrayal extensions are never cached since they can modify the
+ * canvas in any way. Map contexts with layers other than feature layers, like
+ * coverage layers, are not cached either since the changes of their data
+ * are not notified.
+ * </p>
+ *
+ * @author Johann Sorel (Geomatys)
+ * @module pending
+ */
+public class PortrayalCache {
+
+    private static final Logger LOGGER = Logging.getLogger(PortrayalCache.class);
+
+    private final long memoryBudget;
+    private final File directory;
+    private final long diskBudget;
+
+    /** listeners and version of each map context */
+    private final Map<MapContext,ContextState> states = new WeakHashMap<MapContext, ContextState>();
+    private final LinkedHashMap<Key,BufferedImage> memory = new LinkedHashMap<Key, BufferedImage>(16, 0.75f, true);
+    private final LinkedHashMap<Key,Stored> disk = new LinkedHashMap<Key, Stored>(16, 0.75f, true);
+    private long memorySize = 0;
+    private long diskSize = 0;
+
+    /**
+     * Create a memory only cache.
+     *
+     * @param memoryBudget : maximum size of the images kept in memory, in bytes
+     */
+    public PortrayalCache(final long memoryBudget) {
+        this(memoryBudget, null, 0);
+    }
+
+    /**
+     * @param memoryBudget : maximum size of the images kept in memory, in bytes
+     * @param directory : directory where images removed from memory are stored,
+     *      null for no disk storage
+     * @param diskBudget : maximum size of the stored images files, in bytes
+     */
+    public PortrayalCache(final long memoryBudget, final File directory, final long diskBudget) {
+        ensurePositive("memoryBudget", memoryBudget);
+        ensurePositive("diskBudget", diskBudget);
+        if(directory != null && !directory.isDirectory() && !directory.mkdirs()){
+            throw new IllegalArgumentException("Can not create directory : " + directory);
+        }
+        this.memoryBudget = memoryBudget;
+        this.directory = directory;
+        this.diskBudget = (directory == null) ? 0 : diskBudget;
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public long getDiskBudget() {
+        return diskBudget;
+    }
+
+    /**
+     * Create the key of a portrayal.
+     *
+     * @return key, null if this portrayal can not be cached
+     */
+    public Key createKey(final CanvasDef canvasDef, final SceneDef sceneDef, final ViewDef viewDef){
+        final MapContext context = sceneDef.getContext();
+        final Envelope env = viewDef.getEnvelope();
+        if(context == null || env == null || canvasDef.getDimension() == null || !sceneDef.extensions().isEmpty()){
+            return null;
+        }
+
+        final ContextState state;
+        synchronized(this){
+            ContextState candidate = states.get(context);
+            if(candidate == null){
+                candidate = new ContextState(context);
+                states.put(context, candidate);
+            }
+            state = candidate;
+        }
+        if(!state.isCacheable()){
+            return null;
+        }
+        return new Key(state, canvasDef, sceneDef, viewDef);
+    }
+
+    /**
+     * @return copy of the cached image, null if there is none
+     */
+    public BufferedImage get(final Key key){
+        final Stored stored;
+        synchronized(this){
+            final BufferedImage image = memory.get(key);
+            if(image != null){
+                return copy(image);
+            }
+            stored = disk.remove(key);
+            if(stored == null){
+                return null;
+            }
+            diskSize -= stored.size;
+        }
+        final File file = stored.file;
+
+        //read the stored image and move it back in memory
+        BufferedImage image = null;
+        try {
+            image = ImageIO.read(file);
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Could not read cached image "+file, ex);
+        }
+        file.delete();
+        if(image == null){
+            return null;
+        }
+        if(image.getType() != stored.type){
+            image = convert(image, stored.type);
+        }
+        put(key, image);
+        return copy(image);
+    }
+
+    /**
+     * Store a copy of the portrayed image. Nothing is stored if the map context
+     * changed since the key was created.
+     */
+    public void put(final Key key, final BufferedImage image){
+        final List<Map.Entry<Key,BufferedImage>> evicted = new ArrayList<Map.Entry<Key, BufferedImage>>();
+        synchronized(this){
+            if(!key.isValid()){
+                return;
+            }
+            final long size = sizeOf(image);
+            if(size > memoryBudget){
+                return;
+            }
+            final BufferedImage previous = memory.put(key, copy(image));
+            if(previous != null){
+                memorySize -= sizeOf(previous);
+            }
+            memorySize += size;
+
+            final Iterator<Map.Entry<Key,BufferedImage>> ite = memory.entrySet().iterator();
+            while(memorySize > memoryBudget && ite.hasNext()){
+                final Map.Entry<Key,BufferedImage> entry = ite.next();
+                ite.remove();
+                memorySize -= sizeOf(entry.getValue());
+                evicted.add(entry);
+            }
+        }
+
+        if(directory != null){
+            for(Map.Entry<Key,BufferedImage> entry : evicted){
+                store(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Write an image removed from memory in the cache directory.
+     */
+    private void store(final Key key, final BufferedImage image){
+        //custom and indexed images can not be restored in the same type
+        final int type = image.getType();
+        if(type == BufferedImage.TYPE_CUSTOM || type == BufferedImage.TYPE_BYTE_BINARY
+                || type == BufferedImage.TYPE_BYTE_INDEXED || !key.isValid()){
+            return;
+        }
+        final File file;
+        try {
+            file = File.createTempFile("portrayal", ".png", directory);
+            if(!ImageIO.write(image, "png", file)){
+                file.delete();
+                return;
+            }
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Could not store cached image", ex);
+            return;
+        }
+        final Stored stored = new Stored(file, type);
+
+        final List<File> evicted = new ArrayList<File>();
+        synchronized(this){
+            if(!key.isValid() || stored.size > diskBudget){
+                evicted.add(file);
+            }else{
+                final Stored previous = disk.put(key, stored);
+                if(previous != null){
+                    diskSize -= previous.size;
+                    evicted.add(previous.file);
+                }
+                diskSize += stored.size;
+
+                final Iterator<Stored> ite = disk.values().iterator();
+                while(diskSize > diskBudget && ite.hasNext()){
+                    final Stored candidate = ite.next();
+                    ite.remove();
+                    diskSize -= candidate.size;
+                    evicted.add(candidate.file);
+                }
+            }
+        }
+        for(File f : evicted){
+            f.delete();
+        }
+    }
+
+    /**
+     * Remove all cached images.
+     */
+    public void clear(){
+        final List<File> files;
+        synchronized(this){
+            for(ContextState state : states.values()){
+                state.version.incrementAndGet();
+            }
+            memory.clear();
+            memorySize = 0;
+            files = new ArrayList<File>();
+            for(Stored stored : disk.values()){
+                files.add(stored.file);
+            }
+            disk.clear();
+            diskSize = 0;
+        }
+        for(File f : files){
+            f.delete();
+        }
+    }
+
+    /**
+     * Remove the cached images of a map context.
+     */
+    private void invalidate(final ContextState state){
+        final List<File> files = new ArrayList<File>();
+        synchronized(this){
+            state.version.incrementAndGet();
+            final Iterator<Map.Entry<Key,BufferedImage>> ite = memory.entrySet().iterator();
+            while(ite.hasNext()){
+                final Map.Entry<Key,BufferedImage> entry = ite.next();
+                if(entry.getKey().state == state){
+                    ite.remove();
+                    memorySize -= sizeOf(entry.getValue());
+                }
+            }
+            final Iterator<Map.Entry<Key,Stored>> dite = disk.entrySet().iterator();
+            while(dite.hasNext()){
+                final Map.Entry<Key,Stored> entry = dite.next();
+                if(entry.getKey().state == state){
+                    dite.remove();
+                    diskSize -= entry.getValue().size;
+                    files.add(entry.getValue().file);
+                }
+            }
+        }
+        for(File f : files){
+            f.delete();
+        }
+    }
+
+    private static long sizeOf(final BufferedImage image){
+        final DataBuffer buffer = image.getRaster().getDataBuffer();
+        return (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+    }
+
+    private static BufferedImage copy(final BufferedImage image){
+        return new BufferedImage(image.getColorModel(), image.copyData(null),
+                image.isAlphaPremultiplied(), null);
+    }
+
+    private static BufferedImage convert(final BufferedImage image, final int type){
+        final BufferedImage result = new BufferedImage(image.getWidth(), image.getHeight(), type);
+        final Graphics2D g = result.createGraphics();
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return result;
+    }
+
+    /**
+     * Image file in the cache directory.
+     */
+    private static final class Stored{
+
+        private final File file;
+        private final long size;
+        /** type of the original image */
+        private final int type;
+
+        private Stored(final File file, final int type) {
+            this.file = file;
+            this.size = file.length();
+            this.type = type;
+        }
+
+    }
+
+    /**
+     * Identify a portrayal of a map context at a given version.
+     */
+    public static final class Key{
+
+        private final ContextState state;
+        private final long version;
+        private final CoordinateReferenceSystem crs;
+        private final double[] bounds;
+        private final double azimuth;
+        private final Dimension dimension;
+        private final Color background;
+        private final boolean stretch;
+        private final Map<Object,Object> hints;
+        private final int hash;
+
+        private Key(final ContextState state, final CanvasDef canvasDef, final SceneDef sceneDef, final ViewDef viewDef) {
+            this.state = state;
+            this.version = state.version.get();
+
+            final Envelope env = viewDef.getEnvelope();
+            final int dim = env.getDimension();
+            this.crs = env.getCoordinateReferenceSystem();
+            this.bounds = new double[dim*2];
+            for(int i=0; i<dim; i++){
+                bounds[i] = env.getMinimum(i);
+                bounds[dim+i] = env.getMaximum(i);
+            }
+            this.azimuth = viewDef.getAzimuth();
+            this.dimension = new Dimension(canvasDef.getDimension());
+            this.background = canvasDef.getBackground();
+            this.stretch = canvasDef.isStretchImage();
+            this.hints = (sceneDef.getHints() == null) ?
+                    new HashMap<Object, Object>() : new HashMap<Object, Object>(sceneDef.getHints());
+
+            int h = System.identityHashCode(state);
+            h = 31*h + (int)(version ^ (version >>> 32));
+            h = 31*h + Arrays.hashCode(bounds);
+            h = 31*h + dimension.hashCode();
+            h = 31*h + hints.hashCode();
+            this.hash = h;
+        }
+
+        private boolean isValid(){
+            return version == state.version.get();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if(obj == this){
+                return true;
+            }
+            if(!(obj instanceof Key)){
+                return false;
+            }
+            final Key other = (Key) obj;
+            return hash == other.hash
+                && state == other.state
+                && version == other.version
+                && stretch == other.stretch
+                && Double.doubleToLongBits(azimuth) == Double.doubleToLongBits(other.azimuth)
+                && Arrays.equals(bounds, other.bounds)
+                && dimension.equals(other.dimension)
+                && (background == null ? other.background == null : background.equals(other.background))
+                && (crs == null ? other.crs == null : crs.equals(other.crs))
+                && hints.equals(other.hints);
+        }
+
+    }
+
+    /**
+     * @return number of map contexts with a state, released contexts are not counted
+     */
+    synchronized int getContextCount(){
+        return states.size();
+    }
+
+    /**
+     * Forward the events of a map context to its state. The context references
+     * this listener, the listener only references the state weakly.
+     */
+    private static final class ContextListener implements ItemListener{
+
+        private final WeakReference<ContextState> state;
+
+        private ContextListener(final ContextState state) {
+            this.state = new WeakReference<ContextState>(state);
+        }
+
+        @Override
+        public void itemChange(final CollectionChangeEvent<MapItem> event) {
+            final ContextState candidate = state.get();
+            if(candidate != null){
+                candidate.itemChange(event);
+            }
+        }
+
+        @Override
+        public void propertyChange(final PropertyChangeEvent event) {
+            final ContextState candidate = state.get();
+            if(candidate != null){
+                candidate.propertyChange(event);
+            }
+        }
+
+    }
+
+    /**
+     * Listen to a map context, its layers and the sessions of its feature layers.
+     * The state does not reference the context, neither directly nor through
+     * its listeners, the context entry is released with the context.
+     */
+    private final class ContextState implements ItemListener, StorageListener{
+
+        private final AtomicLong version = new AtomicLong();
+        private final StorageListener.Weak storageListener = new StorageListener.Weak(this);
+        /** feature type names of the feature layers */
+        private final Set<Name> names = new HashSet<Name>();
+        /** false if a layer data can change without notification */
+        private boolean cacheable = true;
+
+        private ContextState(final MapContext context) {
+            context.addItemListener(new ContextListener(this));
+            registerSessions(context);
+        }
+
+        private synchronized void registerSessions(final MapContext context){
+            storageListener.unregisterAll();
+            names.clear();
+            cacheable = true;
+            for(MapLayer layer : context.layers()){
+                if(layer instanceof FeatureMapLayer){
+                    final FeatureCollection<?> col = ((FeatureMapLayer)layer).getCollection();
+                    storageListener.registerSource(col.getSession());
+                    names.add(col.getFeatureType().getName());
+                }else if(!(layer instanceof EmptyMapLayer)){
+                    cacheable = false;
+                }
+            }
+        }
+
+        private synchronized boolean isCacheable(){
+            return cacheable;
+        }
+
+        private synchronized boolean isRendered(final Name name){
+            return name == null || names.contains(name);
+        }
+
+        @Override
+        public void itemChange(final CollectionChangeEvent<MapItem> event) {
+            if(event.getSource() instanceof MapContext && event.getType() != CollectionChangeEvent.ITEM_CHANGED){
+                registerSessions((MapContext)event.getSource());
+            }
+            invalidate(this);
+        }
+
+        @Override
+        public void propertyChange(final PropertyChangeEvent event) {
+            invalidate(this);
+        }
+
+        @Override
+        public void structureChanged(final StorageManagementEvent event) {
+            invalidate(this);
+        }
+
+        @Override
+        public void contentChanged(final StorageContentEvent event) {
+            if(isRendered(event.getFeatureTypeName())){
+                invalidate(this);
+            }
+        }
+
+    }
+
+}
@@ -24,36 +24,84 @@ import java.awt.geom.NoninvertibleTransformException;
 import java.awt.geom.Point2D;
 import java.awt.image.*;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.media.jai.RasterFactory;
+import org.geotoolkit.coverage.GridMosaic;
 import org.geotoolkit.display.exception.PortrayalException;
 import org.geotoolkit.display2d.canvas.J2DCanvasBuffered;
 import org.geotoolkit.geometry.GeneralEnvelope;
+import org.geotoolkit.util.ExecutorUtilities;
 import org.opengis.geometry.Envelope;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.opengis.referencing.operation.TransformException;
 
 /**
- *
+ * Rendered image which tiles are portrayed on demand.
+ * Tiles are rendered by blocks, several blocks are rendered in parallel,
+ * each rendering thread using it's own canvas. Following blocks are
+ * prepared in advance, we expect the user to access tiles lines by lines.
+ * Only the tiles of the most recently used blocks are kept, tiles of older
+ * blocks are rendered again if requested.
+ * <p>
+ * Blocks are rendered by the shared executor of {@link ExecutorUtilities},
+ * as many blocks at the same time as it has threads. A thread waiting for a
+ * block nobody has started renders it itself. Tiles requested from a worker
+ * thread, for example by a process already running in parallel, are rendered
+ * by that thread only, without rendering following blocks in advance.
+ * </p>
+ * 
  * @author Johann Sorel (Geomatys)
  * @module pending
  */
 public class PortrayalRenderedImage implements RenderedImage{
 
-    /** store pregenerated tiles */
-    private final Map<Integer,Raster> tileCache = new HashMap<Integer, Raster>();
+    private static final Logger LOGGER = Logger.getLogger(PortrayalRenderedImage.class.getName());
+    
+    /** number of blocks rendered at the same time by the shared executor */
+    private final int nbThread = ExecutorUtilities.getThreadCount();
+    /** maximum number of rendered blocks kept */
+    private final int maxBlocks = 2*nbThread + 1;
+
+    /** tiles of the most recently used blocks, access synchronized on blocks */
+    private final Map<Integer,Map<Integer,Raster>> tileCache =
+            new LinkedHashMap<Integer, Map<Integer,Raster>>(16, 0.75f, true){
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Integer, Map<Integer,Raster>> eldest) {
+            return size() > maxBlocks;
+        }
+    };
+    /** blocks being rendered */
+    private final Map<Integer,FutureTask<?>> blocks = new HashMap<Integer, FutureTask<?>>();
+    /** idle canvas, one canvas for each rendering thread */
+    private final BlockingQueue<J2DCanvasBuffered> canvas = new LinkedBlockingQueue<J2DCanvasBuffered>();
+    private final AtomicInteger nbCanvas = new AtomicInteger(1);
     private final ColorModel colorModel;
     private final SampleModel sampleModel;
     private final Dimension gridSize;
     private final Dimension tileSize;
     private final double scale;
     private final Point2D upperleft;
-    private final J2DCanvasBuffered canvas;
+    private final GridMosaic mosaic;
+    private final CanvasDef canvasDef;
+    private final SceneDef sceneDef;
+    private final ViewDef viewDef;
+    private final Dimension canvasSize;
     private final int nbtileonwidth;
     private final int nbtileonheight;
+    private final int nbblockonwidth;
+    private final int nbblock;
+    /** next block to render in advance */
+    private int prefetch = 0;
     
     /**
      * 
@@ -65,23 +113,42 @@ public class PortrayalRenderedImage implements RenderedImage{
      */
     public PortrayalRenderedImage(final CanvasDef canvasDef, final SceneDef sceneDef, final ViewDef viewDef, 
             final Dimension gridSize, final Dimension tileSize, final double scale) throws PortrayalException{
+        this(canvasDef, sceneDef, viewDef, gridSize, tileSize, scale, null);
+    }
+    
+    /**
+     * 
+     * @param canvasDef : canvas size will be ignored
+     * @param sceneDef
+     * @param viewDef
+     * @param gridSize
+     * @param tileSize 
+     * @param mosaic : blocks of tiles which are not missing in this mosaic
+     *        won't be rendered in advance, can be null
+     */
+    public PortrayalRenderedImage(final CanvasDef canvasDef, final SceneDef sceneDef, final ViewDef viewDef, 
+            final Dimension gridSize, final Dimension tileSize, final double scale, 
+            final GridMosaic mosaic) throws PortrayalException{
         this.gridSize = gridSize;
         this.tileSize = tileSize;
         this.scale = scale;
+        this.mosaic = mosaic;
+        this.canvasDef = canvasDef;
+        this.sceneDef = sceneDef;
+        this.viewDef = viewDef;
         this.colorModel = ColorModel.getRGBdefault();
         this.sampleModel = colorModel.createCompatibleSampleModel(1, 1);
                 
         
         final Envelope envelope = viewDef.getEnvelope();
-        final CoordinateReferenceSystem crs = envelope.getCoordinateReferenceSystem();
         this.upperleft = new Point2D.Double(
                 envelope.getMinimum(0),
                 envelope.getMaximum(1));        
         
         //prepare a J2DCanvas to render several tiles in the same tile
-        //we consider a 2000*2000 size to be the maximum, which is 16Mb in memory
-        //we expect the user to access tile lines by lines.              
-        final int maxNbTile = (2000*2000) / (tileSize.width*tileSize.height);
+        //we consider a 1000*1000 size to be the maximum, which is 4Mb in memory
+        //for each rendering thread.
+        final int maxNbTile = Math.max(1, (1000*1000) / (tileSize.width*tileSize.height));
         
         if(maxNbTile < gridSize.width){
             //we can not generate a full line
@@ -92,13 +159,15 @@ public class PortrayalRenderedImage implements RenderedImage{
             nbtileonwidth = gridSize.width;
             nbtileonheight = maxNbTile / gridSize.width; 
         }
+        nbblockonwidth = (gridSize.width + nbtileonwidth - 1) / nbtileonwidth;
+        nbblock = nbblockonwidth * ((gridSize.height + nbtileonheight - 1) / nbtileonheight);
         
-        final Dimension canvasSize = new Dimension(
+        canvasSize = new Dimension(
                 nbtileonwidth*tileSize.width, 
                 nbtileonheight*tileSize.height);
         
-        canvas = new J2DCanvasBuffered(crs, canvasSize);        
-        DefaultPortrayalService.prepareCanvas(canvas, canvasDef, sceneDef, viewDef);        
+        //first canvas is created now to report errors early
+        canvas.add(createCanvas(viewDef));
     }
     
     /**
@@ -277,55 +346,221 @@ public class PortrayalRenderedImage implements RenderedImage{
         return sampleModel;
     }
     
+    /**
+     * Return the tile, waiting for it's block to be rendered if needed.
+     * Returned tiles are shared and must not be modified.
+     */
     @Override
     public Raster getTile(int col, int row) {
         final int index = getTileIndex(col, row);
+        final int block = getBlockIndex(col, row);
         
-        Raster raster = tileCache.get(index);
-        if(raster != null){
-            return raster;
+        //the block may be evicted by other blocks before we get the tile,
+        //in which case it is rendered again
+        for(;;){
+            final FutureTask<?> future;
+            synchronized(blocks){
+                final Raster raster = getCachedTile(block, index);
+                if(raster != null){
+                    prefetch(block);
+                    return raster;
+                }
+                future = render(block);
+                prefetch(block);
+            }
+
+            //render the block here if no thread has started it yet
+            future.run();
+            try {
+                future.get();
+            } catch (InterruptedException ex) {
+                LOGGER.log(Level.WARNING, ex.getMessage(), ex);
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException ex) {
+                LOGGER.log(Level.WARNING, ex.getMessage(), ex);
+                return null;
+            }
         }
-        
-        //we clear our cache and geenrate tiles
-        tileCache.clear();
-
-        final double tilespanX = scale*tileSize.width;
-        final double tilespanY = scale*tileSize.height;
-
-        final GeneralEnvelope canvasEnv = new GeneralEnvelope(canvas.getObjectiveCRS());            
-        canvasEnv.setRange(0, 
-                upperleft.getX() + (col)*tilespanX, 
-                upperleft.getX() + (col+nbtileonwidth)*tilespanX
-                );
-        canvasEnv.setRange(1, 
-                upperleft.getY() - (row+nbtileonheight)*tilespanY, 
-                upperleft.getY() - (row)*tilespanY
-                );
+    }
 
-        try {
-            canvas.getController().setVisibleArea(canvasEnv);
-        } catch (NoninvertibleTransformException ex) {
-            Logger.getLogger(PortrayalRenderedImage.class.getName()).log(Level.SEVERE, null, ex);
-        } catch (TransformException ex) {
-            Logger.getLogger(PortrayalRenderedImage.class.getName()).log(Level.SEVERE, null, ex);
+    /**
+     * Must be called while holding the blocks lock.
+     */
+    private Raster getCachedTile(final int block, final int index){
+        final Map<Integer,Raster> tiles = tileCache.get(block);
+        return (tiles == null) ? null : tiles.get(index);
+    }
+
+    /**
+     * @return number of rendered tiles kept
+     */
+    int getCachedTileCount(){
+        synchronized(blocks){
+            int count = 0;
+            for(Map<Integer,Raster> tiles : tileCache.values()){
+                count += tiles.size();
+            }
+            return count;
         }
-        
-        //cut the canvas buffer in pieces
-        canvas.repaint();
-        final BufferedImage canvasBuffer = canvas.getSnapShot();
-        for(int x=0; x<nbtileonwidth && col+x<gridSize.width; x++){
-            for(int y=0; y<nbtileonheight && row+y<gridSize.height; y++){
-                final int idx = getTileIndex(col+x, row+y);
-                final BufferedImage tile = canvasBuffer.getSubimage(
-                        x*tileSize.width, 
-                        y*tileSize.height, 
-                        tileSize.width, 
-                        tileSize.height);
-                tileCache.put(idx, tile.getRaster());
+    }
+    
+    /**
+     * Schedule the rendering of the block if not already running.
+     * Worker threads do not submit the block, the caller runs it.
+     * Must be called while holding the blocks lock.
+     */
+    private FutureTask<?> render(final int block){
+        FutureTask<?> future = blocks.get(block);
+        if(future == null){
+            future = new FutureTask<Object>(new Callable<Object>() {
+                @Override
+                public Object call() throws PortrayalException {
+                    try{
+                        renderBlock(block);
+                    }finally{
+                        synchronized(blocks){
+                            blocks.remove(block);
+                        }
+                    }
+                    return null;
+                }
+            });
+            blocks.put(block, future);
+            if(!ExecutorUtilities.isWorkerThread()){
+                ExecutorUtilities.execute(future);
             }
-        }        
+        }
+        return future;
+    }
+    
+    /**
+     * Schedule rendering of the blocks following the given one, at most one
+     * block in advance for each rendering thread. Blocks already rendered
+     * are not rendered again. Worker threads do not render in advance.
+     * Must be called while holding the blocks lock.
+     */
+    private void prefetch(final int block){
+        if(ExecutorUtilities.isWorkerThread()){
+            return;
+        }
+        if(prefetch <= block){
+            prefetch = block+1;
+        }
+        while(prefetch < nbblock && prefetch <= block+nbThread 
+                && blocks.size() < nbThread){
+            if(!tileCache.containsKey(prefetch) && !isComplete(prefetch)){
+                render(prefetch);
+            }
+            prefetch++;
+        }
+    }
+    
+    /**
+     * @return true if all tiles of the block already exist in the mosaic.
+     */
+    private boolean isComplete(final int block){
+        if(mosaic == null){
+            return false;
+        }
+        final int startCol = (block % nbblockonwidth) * nbtileonwidth;
+        final int startRow = (block / nbblockonwidth) * nbtileonheight;
+        for(int x=startCol, nx=Math.min(startCol+nbtileonwidth, gridSize.width); x<nx; x++){
+            for(int y=startRow, ny=Math.min(startRow+nbtileonheight, gridSize.height); y<ny; y++){
+                if(mosaic.isMissing(x, y)){
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Render a block with an idle canvas and cut it in tiles.
+     */
+    private void renderBlock(final int block) throws PortrayalException{
+        final int col = (block % nbblockonwidth) * nbtileonwidth;
+        final int row = (block / nbblockonwidth) * nbtileonheight;
         
-        return tileCache.get(index);
+        final J2DCanvasBuffered cvs = acquireCanvas();
+        try{
+            final double tilespanX = scale*tileSize.width;
+            final double tilespanY = scale*tileSize.height;
+
+            final GeneralEnvelope canvasEnv = new GeneralEnvelope(cvs.getObjectiveCRS());            
+            canvasEnv.setRange(0, 
+                    upperleft.getX() + (col)*tilespanX, 
+                    upperleft.getX() + (col+nbtileonwidth)*tilespanX
+                    );
+            canvasEnv.setRange(1, 
+                    upperleft.getY() - (row+nbtileonheight)*tilespanY, 
+                    upperleft.getY() - (row)*tilespanY
+                    );
+
+            try {
+                cvs.getController().setVisibleArea(canvasEnv);
+            } catch (NoninvertibleTransformException ex) {
+                LOGGER.log(Level.SEVERE, null, ex);
+            } catch (TransformException ex) {
+                LOGGER.log(Level.SEVERE, null, ex);
+            }
+
+            //cut the canvas buffer in pieces, canvas buffer is reused so tiles are copied
+            cvs.repaint();
+            final BufferedImage canvasBuffer = cvs.getSnapShot();
+            final Map<Integer,Raster> tiles = new HashMap<Integer, Raster>();
+            for(int x=0; x<nbtileonwidth && col+x<gridSize.width; x++){
+                for(int y=0; y<nbtileonheight && row+y<gridSize.height; y++){
+                    final int idx = getTileIndex(col+x, row+y);
+                    final BufferedImage tile = canvasBuffer.getSubimage(
+                            x*tileSize.width, 
+                            y*tileSize.height, 
+                            tileSize.width, 
+                            tileSize.height);
+                    tiles.put(idx, tile.copyData(null));
+                }
+            }
+            synchronized(blocks){
+                //oldest block is evicted if the cache is full
+                tileCache.put(block, tiles);
+            }
+        }finally{
+            canvas.add(cvs);
+        }
+    }
+    
+    /**
+     * Get an idle canvas, creating a new one if each rendering thread
+     * does not have one yet.
+     */
+    private J2DCanvasBuffered acquireCanvas() throws PortrayalException{
+        final J2DCanvasBuffered cvs = canvas.poll();
+        if(cvs != null){
+            return cvs;
+        }
+        if(nbCanvas.incrementAndGet() <= nbThread){
+            try{
+                //the monitor is only set on the first canvas, a repaint stops
+                //the rendering in progress on the monitor
+                return createCanvas(new ViewDef(viewDef.getEnvelope(), viewDef.getAzimuth()));
+            }catch(PortrayalException ex){
+                nbCanvas.decrementAndGet();
+                throw ex;
+            }
+        }
+        nbCanvas.decrementAndGet();
+        try {
+            return canvas.take();
+        } catch (InterruptedException ex) {
+            throw new PortrayalException(ex);
+        }
+    }
+    
+    private J2DCanvasBuffered createCanvas(final ViewDef view) throws PortrayalException{
+        final CoordinateReferenceSystem crs = view.getEnvelope().getCoordinateReferenceSystem();
+        final J2DCanvasBuffered cvs = new J2DCanvasBuffered(crs, canvasSize);        
+        DefaultPortrayalService.prepareCanvas(cvs, canvasDef, sceneDef, view);
+        return cvs;
     }
 
     @Override
@@ -390,4 +625,11 @@ public class PortrayalRenderedImage implements RenderedImage{
         return row*getNumXTiles() + col;
     }
     
+    /**
+     * @return index of the block containing this tile coordinate
+     */
+    private int getBlockIndex(int col, int row){
+        return (row/nbtileonheight)*nbblockonwidth + col/nbtileonwidth;
+    }
+    
 }
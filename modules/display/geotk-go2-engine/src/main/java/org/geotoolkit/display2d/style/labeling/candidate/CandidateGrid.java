@@ -0,0 +1,209 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.display2d.style.labeling.candidate;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.geotoolkit.util.ArgumentChecks.*;
+
+/**
+ * Grid index of label candidates bounds in display coordinates.
+ * Each candidate is registered in all the cells its bounds overlap, searching
+ * an area only returns the candidates of the cells it overlaps instead of
+ * all the candidates.
+ * <p>
+ * This index is not thread safe, searches can only run concurrently while
+ * no candidate is added, moved or removed.
+ * </p>
+ *
+ * @author Johann Sorel (Geomatys)
+ * @module pending
+ */
+public class CandidateGrid {
+
+    /** Default cell size, in pixels */
+    public static final int DEFAULT_CELL_SIZE = 64;
+
+    /** Bounds overlap tolerance, in pixels */
+    private static final double TOLERANCE = 0.5;
+
+    private final double cellSize;
+    private final Map<Long,List<Candidate>> cells = new HashMap<Long, List<Candidate>>();
+    private final Map<Candidate,Rectangle2D> bounds = new IdentityHashMap<Candidate, Rectangle2D>();
+
+    public CandidateGrid() {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * @param cellSize : width and height of the cells, in pixels
+     */
+    public CandidateGrid(final double cellSize) {
+        ensureStrictlyPositive("cellSize", cellSize);
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * Add a candidate or move it if it is already in the index.
+     *
+     * @param candidate : candidate to index
+     * @param area : candidate bounds in display coordinates
+     */
+    public void put(final Candidate candidate, final Rectangle2D area){
+        remove(candidate);
+        final Rectangle2D copy = (Rectangle2D) area.clone();
+        bounds.put(candidate, copy);
+
+        final int minx = cell(copy.getMinX());
+        final int maxx = cell(copy.getMaxX());
+        final int miny = cell(copy.getMinY());
+        final int maxy = cell(copy.getMaxY());
+        for(int x=minx; x<=maxx; x++){
+            for(int y=miny; y<=maxy; y++){
+                final Long key = key(x, y);
+                List<Candidate> lst = cells.get(key);
+                if(lst == null){
+                    lst = new ArrayList<Candidate>(4);
+                    cells.put(key, lst);
+                }
+                lst.add(candidate);
+            }
+        }
+    }
+
+    /**
+     * Remove a candidate from the index.
+     *
+     * @return true if the candidate was indexed
+     */
+    public boolean remove(final Candidate candidate){
+        final Rectangle2D area = bounds.remove(candidate);
+        if(area == null){
+            return false;
+        }
+
+        final int minx = cell(area.getMinX());
+        final int maxx = cell(area.getMaxX());
+        final int miny = cell(area.getMinY());
+        final int maxy = cell(area.getMaxY());
+        for(int x=minx; x<=maxx; x++){
+            for(int y=miny; y<=maxy; y++){
+                final Long key = key(x, y);
+                final List<Candidate> lst = cells.get(key);
+                if(lst == null) continue;
+                for(int i=lst.size()-1; i>=0; i--){
+                    if(lst.get(i) == candidate){
+                        lst.remove(i);
+                        break;
+                    }
+                }
+                if(lst.isEmpty()){
+                    cells.remove(key);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return indexed bounds of the candidate, null if it is not indexed
+     */
+    public Rectangle2D getBounds(final Candidate candidate){
+        return bounds.get(candidate);
+    }
+
+    /**
+     * Find the candidates which bounds intersect the given area.
+     *
+     * @param area : searched area in display coordinates
+     * @return candidates, each candidate is returned once
+     */
+    public List<Candidate> search(final Rectangle2D area){
+        final int minx = cell(area.getMinX()-TOLERANCE);
+        final int maxx = cell(area.getMaxX()+TOLERANCE);
+        final int miny = cell(area.getMinY()-TOLERANCE);
+        final int maxy = cell(area.getMaxY()+TOLERANCE);
+
+        if(minx == maxx && miny == maxy){
+            //single cell, no duplicates possible
+            final List<Candidate> lst = cells.get(key(minx, miny));
+            if(lst == null){
+                return Collections.emptyList();
+            }
+            final List<Candidate> result = new ArrayList<Candidate>(lst.size());
+            for(Candidate c : lst){
+                if(overlaps(bounds.get(c), area)){
+                    result.add(c);
+                }
+            }
+            return result;
+        }
+
+        final Map<Candidate,Boolean> visited = new IdentityHashMap<Candidate, Boolean>();
+        final List<Candidate> result = new ArrayList<Candidate>();
+        for(int x=minx; x<=maxx; x++){
+            for(int y=miny; y<=maxy; y++){
+                final List<Candidate> lst = cells.get(key(x, y));
+                if(lst == null) continue;
+                for(Candidate c : lst){
+                    if(visited.put(c, Boolean.TRUE) == null && overlaps(bounds.get(c), area)){
+                        result.add(c);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return number of indexed candidates
+     */
+    public int size(){
+        return bounds.size();
+    }
+
+    public void clear(){
+        cells.clear();
+        bounds.clear();
+    }
+
+    /**
+     * Unlike Rectangle2D.intersects, touching and empty rectangles overlap.
+     * Rectangles closer than the tolerance overlap too, candidates are tested
+     * for exact intersection afterward and their bounds may differ slightly
+     * from the rounding of the exact test.
+     */
+    private static boolean overlaps(final Rectangle2D r1, final Rectangle2D r2){
+        return r1.getMinX() <= r2.getMaxX()+TOLERANCE && r2.getMinX() <= r1.getMaxX()+TOLERANCE
+            && r1.getMinY() <= r2.getMaxY()+TOLERANCE && r2.getMinY() <= r1.getMaxY()+TOLERANCE;
+    }
+
+    private int cell(final double coord){
+        return (int) Math.floor(coord / cellSize);
+    }
+
+    private static Long key(final int x, final int y){
+        return Long.valueOf(((long)x << 32) | (y & 0xFFFFFFFFL));
+    }
+
+}
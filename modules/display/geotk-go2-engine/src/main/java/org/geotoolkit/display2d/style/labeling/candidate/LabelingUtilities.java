@@ -119,6 +119,73 @@ public class LabelingUtilities {
         return false;
     }
 
+    /**
+     * Test the candidate against the candidates of the grid which bounds
+     * intersect its own bounds. Only point candidates are indexed in grids,
+     * linear candidates never intersect other candidates.
+     *
+     * @param candidate : tested candidate
+     * @param grid : index of the point candidates, with bounds from {@link #getBounds(PointCandidate, Point, boolean)}
+     *      without combination and with correction.
+     */
+    public static boolean intersects(final Candidate candidate, final CandidateGrid grid){
+        if(!(candidate instanceof PointCandidate)){
+            return false;
+        }
+        final PointCandidate pc = (PointCandidate) candidate;
+        for(Candidate c : grid.search(getBounds(pc, null, true))){
+            if(c != candidate && intersects(pc, null, (PointCandidate)c, null, true)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Calculate the display bounds of a rotated point candidate, in the same way
+     * as {@link #intersects(PointCandidate, Point, PointCandidate, Point, boolean)}.
+     *
+     * @param label : point candidate
+     * @param combine : displacement of the label, can be null
+     * @param useCorrection : true to apply the candidate correction
+     * @return bounds of the label in display coordinates
+     */
+    public static Rectangle2D getBounds(final PointCandidate label, final Point combine, final boolean useCorrection){
+        double x = label.x;
+        double y = label.y;
+        if(useCorrection){
+            x += label.correctionX;
+            y += label.correctionY;
+        }
+        if(combine != null){
+            x += combine.x;
+            y += combine.y;
+        }
+
+        final double rotation = Math.toRadians(label.getDescriptor().getRotation());
+        final double cos = Math.cos(rotation);
+        final double sin = Math.sin(rotation);
+        final double top = -label.upper;
+        final double bottom = label.lower;
+
+        //corners of the label rotated around its anchor
+        final double[] xs = {
+            -sin*top,                    -sin*bottom,
+            cos*label.width - sin*top,   cos*label.width - sin*bottom};
+        final double[] ys = {
+            cos*top,                     cos*bottom,
+            sin*label.width + cos*top,   sin*label.width + cos*bottom};
+
+        double minx = xs[0], maxx = xs[0], miny = ys[0], maxy = ys[0];
+        for(int i=1; i<4; i++){
+            minx = Math.min(minx, xs[i]);
+            maxx = Math.max(maxx, xs[i]);
+            miny = Math.min(miny, ys[i]);
+            maxy = Math.max(maxy, ys[i]);
+        }
+        return new Rectangle2D.Double(x+minx, y+miny, maxx-minx, maxy-miny);
+    }
+
     public static boolean intersects(final Candidate candidate1, final Candidate candidate2){
         if(candidate1 instanceof PointCandidate){
             if(candidate2 instanceof PointCandidate){
@@ -29,6 +29,7 @@ import java.util.TreeSet;
 
 import org.geotoolkit.display2d.canvas.RenderingContext2D;
 import org.geotoolkit.display2d.style.labeling.candidate.Candidate;
+import org.geotoolkit.display2d.style.labeling.candidate.CandidateGrid;
 import org.geotoolkit.display2d.style.labeling.DefaultLabelRenderer;
 import org.geotoolkit.display2d.style.labeling.LabelDescriptor;
 import org.geotoolkit.display2d.style.labeling.candidate.LabelingUtilities;
@@ -47,26 +48,12 @@ import org.geotoolkit.display2d.style.labeling.PointLabelDescriptor;
  */
 public class DecimationLabelRenderer extends DefaultLabelRenderer{
     
-    private final SortedSet<Candidate> candidates = Collections.synchronizedSortedSet(new TreeSet<Candidate>(LabelingUtilities.XY_COMPARATOR){
-        
-        public boolean add(final LabelDescriptor label) {
-
-            if(label instanceof PointLabelDescriptor){
-                final PointCandidate pc = (PointCandidate)pointRenderer.generateCandidat((PointLabelDescriptor) label);
-                if(pc == null) return true;
-                pc.setPriority(1);
-                if(!LabelingUtilities.intersects(pc,candidates)){
-                    candidates.add(pc);
-                }                  
-            }else if(label instanceof LinearLabelDescriptor){
-                final LinearCandidate lc = (LinearCandidate)LinearRenderer.generateCandidat((LinearLabelDescriptor) label);
-                lc.setPriority(1);
-                candidates.add(lc);
-            }
-            return true;
-        }
-        
-    });
+    private final SortedSet<Candidate> candidates = Collections.synchronizedSortedSet(new TreeSet<Candidate>(LabelingUtilities.XY_COMPARATOR));
+
+    /**
+     * Index of the placed point candidates, guarded by the candidates lock.
+     */
+    private final CandidateGrid grid = new CandidateGrid();
 
     private final List<LabelLayer> layers = new ArrayList<LabelLayer>();
 
@@ -145,9 +132,9 @@ public class DecimationLabelRenderer extends DefaultLabelRenderer{
                     if(pc == null) return true;
                     pc.setPriority(1);
                     synchronized(candidates){
-                        if(!LabelingUtilities.intersects(pc,candidates)){
-                            candidates.add(pc);
-                        }                  
+                        if(!LabelingUtilities.intersects(pc,grid) && candidates.add(pc)){
+                            grid.put(pc, LabelingUtilities.getBounds(pc, null, true));
+                        }
                     }
                 }else if(label instanceof LinearLabelDescriptor){
                     final LinearCandidate lc = (LinearCandidate)LinearRenderer.generateCandidat((LinearLabelDescriptor) label);
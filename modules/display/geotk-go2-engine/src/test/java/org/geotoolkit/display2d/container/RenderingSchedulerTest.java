@@ -0,0 +1,127 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.display2d.container;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Point;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+
+import org.geotoolkit.data.DataUtilities;
+import org.geotoolkit.data.FeatureCollection;
+import org.geotoolkit.data.FeatureWriter;
+import org.geotoolkit.display2d.GO2Hints;
+import org.geotoolkit.display2d.service.CanvasDef;
+import org.geotoolkit.display2d.service.DefaultPortrayalService;
+import org.geotoolkit.display2d.service.SceneDef;
+import org.geotoolkit.display2d.service.ViewDef;
+import org.geotoolkit.factory.Hints;
+import org.geotoolkit.feature.FeatureTypeBuilder;
+import org.geotoolkit.geometry.GeneralEnvelope;
+import org.geotoolkit.map.MapBuilder;
+import org.geotoolkit.map.MapContext;
+import org.geotoolkit.map.MapItem;
+import org.geotoolkit.referencing.crs.DefaultGeographicCRS;
+import org.geotoolkit.style.DefaultStyleFactory;
+import org.geotoolkit.style.MutableStyleFactory;
+
+import org.junit.After;
+import org.junit.Test;
+
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing the layer rendering scheduler.
+ *
+ * @author Johann Sorel (Geomatys)
+ * @module pending
+ */
+public class RenderingSchedulerTest {
+
+    private static final GeometryFactory GF = new GeometryFactory();
+    private static final MutableStyleFactory SF = new DefaultStyleFactory();
+
+    @After
+    public void tearDown(){
+        RenderingScheduler.setDefault(null);
+    }
+
+    private static MapContext createContext() throws Exception{
+        final FeatureTypeBuilder sftb = new FeatureTypeBuilder();
+        sftb.setName("test");
+        sftb.add("geom", Point.class, DefaultGeographicCRS.WGS84);
+        final SimpleFeatureType sft = sftb.buildSimpleFeatureType();
+
+        final MapContext context = MapBuilder.createContext(DefaultGeographicCRS.WGS84);
+        for(int g=0; g<6; g++){
+            final MapItem group = MapBuilder.createItem();
+            for(int l=0; l<3; l++){
+                final FeatureCollection col = DataUtilities.collection("id", sft);
+                final FeatureWriter writer = col.getSession().getDataStore().getFeatureWriterAppend(sft.getName());
+                final SimpleFeature sf = (SimpleFeature) writer.next();
+                sf.setAttribute("geom", GF.createPoint(new Coordinate(g*20-60, l*20-20)));
+                writer.write();
+                writer.close();
+                group.items().add(MapBuilder.createFeatureLayer(col, SF.style(SF.pointSymbolizer())));
+            }
+            context.items().add(group);
+        }
+        return context;
+    }
+
+    private static BufferedImage portray(final MapContext context, final boolean multiThread) throws Exception{
+        final GeneralEnvelope env = new GeneralEnvelope(DefaultGeographicCRS.WGS84);
+        env.setRange(0, -180, 180);
+        env.setRange(1, -90, 90);
+        return DefaultPortrayalService.portray(
+                new CanvasDef(new Dimension(360, 180), Color.WHITE),
+                new SceneDef(context, new Hints(GO2Hints.KEY_MULTI_THREAD, multiThread)),
+                new ViewDef(env));
+    }
+
+    private static void assertSameImage(final BufferedImage expected, final BufferedImage result){
+        assertEquals(expected.getWidth(), result.getWidth());
+        assertEquals(expected.getHeight(), result.getHeight());
+        for(int x=0; x<expected.getWidth(); x++){
+            for(int y=0; y<expected.getHeight(); y++){
+                assertEquals(expected.getRGB(x, y), result.getRGB(x, y));
+            }
+        }
+    }
+
+    /**
+     * Groups rendered by the scheduler threads must not wait for tasks
+     * queued in the same pool.
+     */
+    @Test(timeout=60000)
+    public void testNestedGroups() throws Exception{
+        final MapContext context = createContext();
+        final BufferedImage expected = portray(context, false);
+
+        for(int nbThread=1; nbThread<=2; nbThread++){
+            RenderingScheduler.setDefault(new RenderingScheduler(nbThread, 64*1024*1024));
+            assertSameImage(expected, portray(context, true));
+        }
+    }
+
+}
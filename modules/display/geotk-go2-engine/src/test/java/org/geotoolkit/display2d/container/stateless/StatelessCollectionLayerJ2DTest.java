@@ -0,0 +1,161 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.display2d.container.stateless;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import javax.measure.unit.NonSI;
+import javax.measure.unit.SI;
+
+import org.geotoolkit.data.DataUtilities;
+import org.geotoolkit.data.FeatureCollection;
+import org.geotoolkit.data.FeatureWriter;
+import org.geotoolkit.display2d.GO2Hints;
+import org.geotoolkit.display2d.service.CanvasDef;
+import org.geotoolkit.display2d.service.DefaultPortrayalService;
+import org.geotoolkit.display2d.service.SceneDef;
+import org.geotoolkit.display2d.service.ViewDef;
+import org.geotoolkit.factory.FactoryFinder;
+import org.geotoolkit.factory.Hints;
+import org.geotoolkit.feature.FeatureTypeBuilder;
+import org.geotoolkit.geometry.GeneralEnvelope;
+import org.geotoolkit.map.MapBuilder;
+import org.geotoolkit.map.MapContext;
+import org.geotoolkit.referencing.crs.DefaultGeographicCRS;
+import org.geotoolkit.style.DefaultStyleFactory;
+import org.geotoolkit.style.MutableFeatureTypeStyle;
+import org.geotoolkit.style.MutableRule;
+import org.geotoolkit.style.MutableStyle;
+import org.geotoolkit.style.MutableStyleFactory;
+
+import org.junit.Test;
+
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.FilterFactory;
+import org.opengis.style.Symbolizer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing the collection layer rendering.
+ *
+ * @author Johann Sorel (Geomatys)
+ * @module pending
+ */
+public class StatelessCollectionLayerJ2DTest {
+
+    private static final GeometryFactory GF = new GeometryFactory();
+    private static final MutableStyleFactory SF = new DefaultStyleFactory();
+    private static final FilterFactory FF = FactoryFinder.getFilterFactory(null);
+
+    private static MapContext createContext() throws Exception{
+        final FeatureTypeBuilder sftb = new FeatureTypeBuilder();
+        sftb.setName("test");
+        sftb.add("geom", Geometry.class, DefaultGeographicCRS.WGS84);
+        sftb.add("type", Integer.class);
+        final SimpleFeatureType sft = sftb.buildSimpleFeatureType();
+        final FeatureCollection col = DataUtilities.collection("id", sft);
+
+        //several preparation batches of points, lines and polygons
+        final Random random = new Random(42);
+        final FeatureWriter writer = col.getSession().getDataStore().getFeatureWriterAppend(sft.getName());
+        for(int i=0; i<2000; i++){
+            final double x = random.nextDouble()*340 - 170;
+            final double y = random.nextDouble()*160 - 80;
+            final int type = i % 3;
+            final Geometry geom;
+            if(type == 0){
+                geom = GF.createPoint(new Coordinate(x, y));
+            }else if(type == 1){
+                geom = GF.createLineString(new Coordinate[]{
+                    new Coordinate(x, y), new Coordinate(x+5, y+3), new Coordinate(x+8, y-2)});
+            }else{
+                geom = GF.createPolygon(GF.createLinearRing(new Coordinate[]{
+                    new Coordinate(x, y), new Coordinate(x+6, y), new Coordinate(x+6, y+4),
+                    new Coordinate(x, y+4), new Coordinate(x, y)}), null);
+            }
+            final SimpleFeature sf = (SimpleFeature) writer.next();
+            sf.setAttribute("geom", geom);
+            sf.setAttribute("type", type);
+            writer.write();
+        }
+        writer.close();
+
+        final MutableRule points = SF.rule(SF.pointSymbolizer());
+        points.setFilter(FF.equals(FF.property("type"), FF.literal(0)));
+        final MutableRule lines = SF.rule(new Symbolizer[]{
+            SF.lineSymbolizer(SF.stroke(Color.BLUE, 2), null),
+            SF.lineSymbolizer("metre", (String)null, SF.description("metre", "metre"), SI.METRE,
+                    SF.stroke(Color.GREEN, 1000), FF.literal(0))});
+        lines.setFilter(FF.equals(FF.property("type"), FF.literal(1)));
+        final MutableRule others = SF.rule(new Symbolizer[]{
+            SF.polygonSymbolizer(SF.stroke(Color.RED, 1), SF.fill(Color.YELLOW), null),
+            SF.polygonSymbolizer("degree", (String)null, SF.description("degree", "degree"), NonSI.DEGREE_ANGLE,
+                    SF.stroke(Color.BLACK, 0.5), SF.fill(Color.GRAY), null, FF.literal(0))});
+        others.setElseFilter(true);
+
+        final MutableFeatureTypeStyle fts = SF.featureTypeStyle();
+        fts.rules().add(points);
+        fts.rules().add(lines);
+        fts.rules().add(others);
+        final MutableStyle style = SF.style();
+        style.featureTypeStyles().add(fts);
+
+        final MapContext context = MapBuilder.createContext(DefaultGeographicCRS.WGS84);
+        context.layers().add(MapBuilder.createFeatureLayer(col, style));
+        return context;
+    }
+
+    private static BufferedImage portray(final MapContext context, final boolean parallel) throws Exception{
+        final GeneralEnvelope env = new GeneralEnvelope(DefaultGeographicCRS.WGS84);
+        env.setRange(0, -180, 180);
+        env.setRange(1, -90, 90);
+        final Hints hints = new Hints(GO2Hints.KEY_MULTI_THREAD, Boolean.FALSE);
+        hints.put(GO2Hints.KEY_PARALLEL_PREPARATION, parallel);
+        return DefaultPortrayalService.portray(
+                new CanvasDef(new Dimension(720, 360), Color.WHITE),
+                new SceneDef(context, hints),
+                new ViewDef(env));
+    }
+
+    /**
+     * Candidates prepared by the preparation threads must be painted like
+     * the candidates prepared while painting.
+     */
+    @Test
+    public void testParallelPreparation() throws Exception{
+        final MapContext context = createContext();
+        final BufferedImage expected = portray(context, false);
+        final BufferedImage result = portray(context, true);
+
+        assertEquals(expected.getWidth(), result.getWidth());
+        assertEquals(expected.getHeight(), result.getHeight());
+        for(int x=0; x<expected.getWidth(); x++){
+            for(int y=0; y<expected.getHeight(); y++){
+                assertEquals(expected.getRGB(x, y), result.getRGB(x, y));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,155 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.display2d.jts;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.LinearRing;
+import com.vividsolutions.jts.geom.MultiPolygon;
+import com.vividsolutions.jts.geom.Polygon;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.PathIterator;
+import org.geotoolkit.display2d.primitive.DefaultProjectedGeometry;
+import org.geotoolkit.display2d.primitive.jts.JTSGeneralizer;
+import org.geotoolkit.referencing.operation.transform.AffineTransform2D;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the display generalization of JTS geometries.
+ *
+ * @author Johann Sorel (Geomatys)
+ * @module pending
+ */
+public class GeneralizerTest {
+
+    private static final double DELTA = 0.000000001d;
+    private static final GeometryFactory GF = new GeometryFactory();
+
+    private static void assertSegment(final PathIterator ite, final int type, final double x, final double y){
+        final double[] buffer = new double[6];
+        assertFalse(ite.isDone());
+        assertEquals(type, ite.currentSegment(buffer));
+        if(type != PathIterator.SEG_CLOSE){
+            assertEquals(x, buffer[0], DELTA);
+            assertEquals(y, buffer[1], DELTA);
+        }
+        ite.next();
+    }
+
+    @Test
+    public void testLineString() {
+        final LineString line = GF.createLineString(new Coordinate[]{
+            new Coordinate(0.1, 0.2),
+            new Coordinate(0.3, 0.1),
+            new Coordinate(2.8, 0.4),
+            new Coordinate(3.1, 0.2),
+            new Coordinate(5.2, 3.9)
+        });
+
+        final Shape shape = JTSGeneralizer.toShape(line, null, 1);
+        final PathIterator ite = shape.getPathIterator(null);
+        assertSegment(ite, PathIterator.SEG_MOVETO, 0, 0);
+        assertSegment(ite, PathIterator.SEG_LINETO, 3, 0);
+        assertSegment(ite, PathIterator.SEG_LINETO, 5, 4);
+        assertTrue(ite.isDone());
+
+        //a line in a single pixel is removed
+        final LineString small = GF.createLineString(new Coordinate[]{
+            new Coordinate(0.1, 0.2),
+            new Coordinate(0.3, 0.1)
+        });
+        assertTrue(JTSGeneralizer.toShape(small, null, 1).getPathIterator(null).isDone());
+    }
+
+    @Test
+    public void testPolygon() {
+        //coordinates are scaled by 10 in display
+        final AffineTransform trs = new AffineTransform(10, 0, 0, 10, 0, 0);
+
+        final LinearRing exterior = GF.createLinearRing(new Coordinate[]{
+            new Coordinate(0, 0),
+            new Coordinate(0, 1),
+            new Coordinate(1, 1),
+            new Coordinate(1.01, 1.01),
+            new Coordinate(1, 0),
+            new Coordinate(0, 0)
+        });
+        final LinearRing hole = GF.createLinearRing(new Coordinate[]{
+            new Coordinate(0.5, 0.5),
+            new Coordinate(0.5, 0.52),
+            new Coordinate(0.52, 0.52),
+            new Coordinate(0.5, 0.5)
+        });
+        final Polygon polygon = GF.createPolygon(exterior, new LinearRing[]{hole});
+
+        PathIterator ite = JTSGeneralizer.toShape(polygon, trs, 1).getPathIterator(null);
+        assertEquals(PathIterator.WIND_EVEN_ODD, ite.getWindingRule());
+        assertSegment(ite, PathIterator.SEG_MOVETO, 0, 0);
+        assertSegment(ite, PathIterator.SEG_LINETO, 0, 10);
+        assertSegment(ite, PathIterator.SEG_LINETO, 10, 10);
+        assertSegment(ite, PathIterator.SEG_LINETO, 10, 0);
+        assertSegment(ite, PathIterator.SEG_CLOSE, 0, 0);
+        //the sub-pixel hole is removed
+        assertTrue(ite.isDone());
+
+        //without generalization all coordinates are kept
+        ite = JTSGeneralizer.toShape(polygon, trs, 0).getPathIterator(null);
+        int nb = 0;
+        while(!ite.isDone()){
+            nb++;
+            ite.next();
+        }
+        assertEquals((5 + 1) + (3 + 1), nb);
+
+        //sub-pixel polygons are removed
+        final MultiPolygon mp = GF.createMultiPolygon(new Polygon[]{
+            GF.createPolygon(hole, null), polygon});
+        ite = JTSGeneralizer.toShape(mp, trs, 1).getPathIterator(null);
+        assertSegment(ite, PathIterator.SEG_MOVETO, 0, 0);
+    }
+
+    /**
+     * Projected geometries keep all coordinates unless a resolution is set.
+     */
+    @Test
+    public void testProjectedGeometry() throws Exception {
+        final LineString line = GF.createLineString(new Coordinate[]{
+            new Coordinate(0.25, 0.25),
+            new Coordinate(0.375, 0.125),
+            new Coordinate(2.75, 0.375)
+        });
+
+        final DefaultProjectedGeometry projected = new DefaultProjectedGeometry(line);
+        projected.setObjToDisplay(new AffineTransform2D(new AffineTransform()));
+        assertEquals(0, projected.getDisplayResolution(), DELTA);
+        PathIterator ite = projected.getDisplayShape().getPathIterator(null);
+        assertSegment(ite, PathIterator.SEG_MOVETO, 0.25, 0.25);
+        assertSegment(ite, PathIterator.SEG_LINETO, 0.375, 0.125);
+        assertSegment(ite, PathIterator.SEG_LINETO, 2.75, 0.375);
+        assertTrue(ite.isDone());
+
+        projected.setDisplayResolution(1);
+        ite = projected.getDisplayShape().getPathIterator(null);
+        assertSegment(ite, PathIterator.SEG_MOVETO, 0, 0);
+        assertSegment(ite, PathIterator.SEG_LINETO, 3, 0);
+        assertTrue(ite.isDone());
+    }
+
+}
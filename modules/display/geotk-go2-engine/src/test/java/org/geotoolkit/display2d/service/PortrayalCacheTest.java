@@ -0,0 +1,180 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.display2d.service;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Point;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+
+import org.geotoolkit.coverage.grid.GridCoverage2D;
+import org.geotoolkit.coverage.grid.GridCoverageFactory;
+import org.geotoolkit.data.DataUtilities;
+import org.geotoolkit.data.FeatureCollection;
+import org.geotoolkit.data.FeatureWriter;
+import org.geotoolkit.feature.FeatureTypeBuilder;
+import org.geotoolkit.geometry.GeneralEnvelope;
+import org.geotoolkit.map.MapBuilder;
+import org.geotoolkit.map.MapContext;
+import org.geotoolkit.referencing.crs.DefaultGeographicCRS;
+import org.geotoolkit.style.DefaultStyleFactory;
+import org.geotoolkit.style.MutableStyleFactory;
+
+import org.junit.Test;
+
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing portrayal cache.
+ *
+ * @author Johann Sorel (Geomatys)
+ * @module pending
+ */
+public class PortrayalCacheTest {
+
+    private static final GeometryFactory GF = new GeometryFactory();
+    private static final MutableStyleFactory SF = new DefaultStyleFactory();
+
+    private static BufferedImage createImage(final int width, final int height){
+        final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, Color.RED.getRGB());
+        return image;
+    }
+
+    private static PortrayalCache.Key createKey(final PortrayalCache cache, final MapContext context, final int width){
+        final GeneralEnvelope env = new GeneralEnvelope(DefaultGeographicCRS.WGS84);
+        env.setRange(0, -180, 180);
+        env.setRange(1, -90, 90);
+        return cache.createKey(
+                new CanvasDef(new Dimension(width, 10), Color.WHITE),
+                new SceneDef(context),
+                new ViewDef(env));
+    }
+
+    @Test
+    public void testMemoryCache(){
+        final PortrayalCache cache = new PortrayalCache(4*10*10*2);
+        final MapContext context = MapBuilder.createContext(DefaultGeographicCRS.WGS84);
+
+        final PortrayalCache.Key key1 = createKey(cache, context, 10);
+        final PortrayalCache.Key key2 = createKey(cache, context, 10);
+        assertEquals(key1, key2);
+        assertNull(cache.get(key1));
+
+        cache.put(key1, createImage(10, 10));
+        final BufferedImage image = cache.get(key2);
+        assertNotNull(image);
+        assertEquals(Color.RED.getRGB(), image.getRGB(0, 0));
+
+        //returned images are copies
+        image.setRGB(0, 0, Color.BLUE.getRGB());
+        assertEquals(Color.RED.getRGB(), cache.get(key1).getRGB(0, 0));
+
+        //the least recently used image is removed when the budget is exceeded
+        final PortrayalCache.Key key3 = createKey(cache, context, 11);
+        final PortrayalCache.Key key4 = createKey(cache, context, 9);
+        cache.put(key3, createImage(11, 10));
+        assertNull(cache.get(key1));
+        assertNotNull(cache.get(key3));
+        cache.put(key4, createImage(9, 10));
+        assertNotNull(cache.get(key3));
+        assertNotNull(cache.get(key4));
+    }
+
+    @Test
+    public void testInvalidation() throws Exception{
+        final FeatureTypeBuilder sftb = new FeatureTypeBuilder();
+        sftb.setName("test");
+        sftb.add("geom", Point.class, DefaultGeographicCRS.WGS84);
+        final SimpleFeatureType sft = sftb.buildSimpleFeatureType();
+        final FeatureCollection col = DataUtilities.collection("id", sft);
+
+        final PortrayalCache cache = new PortrayalCache(1024*1024);
+        final MapContext context = MapBuilder.createContext(DefaultGeographicCRS.WGS84);
+        context.layers().add(MapBuilder.createFeatureLayer(col, SF.style(SF.pointSymbolizer())));
+
+        PortrayalCache.Key key = createKey(cache, context, 10);
+        cache.put(key, createImage(10, 10));
+        assertNotNull(cache.get(createKey(cache, context, 10)));
+
+        //adding features invalidates the cached images
+        final FeatureWriter writer = col.getSession().getDataStore().getFeatureWriterAppend(sft.getName());
+        final SimpleFeature sf = (SimpleFeature) writer.next();
+        sf.setAttribute("geom", GF.createPoint(new Coordinate(0, 0)));
+        writer.write();
+        writer.close();
+        assertNull(cache.get(key));
+        assertNull(cache.get(createKey(cache, context, 10)));
+
+        //images of a previous version are not stored
+        cache.put(key, createImage(10, 10));
+        assertNull(cache.get(createKey(cache, context, 10)));
+
+        //modifying the layers invalidates the cached images
+        key = createKey(cache, context, 10);
+        cache.put(key, createImage(10, 10));
+        assertNotNull(cache.get(key));
+        context.layers().get(0).setVisible(false);
+        assertNull(cache.get(createKey(cache, context, 10)));
+    }
+
+    /**
+     * The cache must not keep the map contexts alive.
+     */
+    @Test
+    public void testContextRelease() throws Exception{
+        final PortrayalCache cache = new PortrayalCache(1024*1024);
+        MapContext context = MapBuilder.createContext(DefaultGeographicCRS.WGS84);
+        cache.put(createKey(cache, context, 10), createImage(10, 10));
+        assertEquals(1, cache.getContextCount());
+
+        context = null;
+        for(int i=0; i<50 && cache.getContextCount() > 0; i++){
+            System.gc();
+            Thread.sleep(100);
+        }
+        assertEquals(0, cache.getContextCount());
+    }
+
+    /**
+     * Coverage changes are not notified, contexts with coverage layers are not cached.
+     */
+    @Test
+    public void testCoverageLayer(){
+        final PortrayalCache cache = new PortrayalCache(1024*1024);
+        final MapContext context = MapBuilder.createContext(DefaultGeographicCRS.WGS84);
+        context.layers().add(MapBuilder.createEmptyMapLayer());
+        assertNotNull(createKey(cache, context, 10));
+
+        final GeneralEnvelope env = new GeneralEnvelope(DefaultGeographicCRS.WGS84);
+        env.setRange(0, -180, 180);
+        env.setRange(1, -90, 90);
+        final GridCoverage2D coverage = new GridCoverageFactory().create("test", createImage(10, 10), env);
+        context.layers().add(MapBuilder.createCoverageLayer(coverage, SF.style(SF.rasterSymbolizer()), "test"));
+        assertNull(createKey(cache, context, 10));
+
+        context.layers().remove(1);
+        assertNotNull(createKey(cache, context, 10));
+    }
+
+}
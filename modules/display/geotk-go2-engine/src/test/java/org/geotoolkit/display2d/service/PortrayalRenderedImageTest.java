@@ -0,0 +1,74 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.display2d.service;
+
+import java.awt.Color;
+import java.awt.Dimension;
+
+import org.geotoolkit.geometry.GeneralEnvelope;
+import org.geotoolkit.map.MapBuilder;
+import org.geotoolkit.map.MapContext;
+import org.geotoolkit.referencing.crs.DefaultGeographicCRS;
+import org.geotoolkit.util.ExecutorUtilities;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing tiles rendered on demand.
+ *
+ * @author Johann Sorel (Geomatys)
+ * @module pending
+ */
+public class PortrayalRenderedImageTest {
+
+    /**
+     * Reading a sparse subset of tiles must not keep the unread tiles forever.
+     */
+    @Test
+    public void testSparseRead() throws Exception{
+        final MapContext context = MapBuilder.createContext(DefaultGeographicCRS.WGS84);
+        final GeneralEnvelope env = new GeneralEnvelope(DefaultGeographicCRS.WGS84);
+        env.setRange(0, -180, 180);
+        env.setRange(1, -90, 90);
+
+        //blocks of 100 tiles, two blocks on each row
+        final Dimension gridSize = new Dimension(150, 30);
+        final Dimension tileSize = new Dimension(100, 100);
+        final double scale = 360d / (gridSize.width*tileSize.width);
+
+        final PortrayalRenderedImage image = new PortrayalRenderedImage(
+                new CanvasDef(new Dimension(1, 1), Color.WHITE),
+                new SceneDef(context),
+                new ViewDef(env),
+                gridSize, tileSize, scale);
+
+        final int maxTiles = (2*ExecutorUtilities.getThreadCount() + 1) * 100;
+        for(int row=0; row<gridSize.height; row++){
+            assertNotNull(image.getTile(0, row));
+            assertTrue(image.getCachedTileCount() <= maxTiles);
+        }
+
+        //recent tiles can be read again
+        assertNotNull(image.getTile(1, gridSize.height-1));
+        //old tiles are rendered again
+        assertNotNull(image.getTile(0, 0));
+        assertTrue(image.getCachedTileCount() <= maxTiles);
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.display2d.style.labeling;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.geotoolkit.display2d.style.labeling.candidate.Candidate;
+import org.geotoolkit.display2d.style.labeling.candidate.CandidateGrid;
+import org.geotoolkit.display2d.style.labeling.candidate.LabelingUtilities;
+import org.geotoolkit.display2d.style.labeling.candidate.PointCandidate;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the label candidates grid index.
+ *
+ * @author Johann Sorel (Geomatys)
+ * @module pending
+ */
+public class CandidateGridTest {
+
+    private static final double DELTA = 0.000001d;
+
+    private static PointCandidate createCandidate(final float x, final float y, final float rotation){
+        final PointLabelDescriptor desc = new DefaultPointLabelDescriptor("label",
+                new Font("Dialog", Font.PLAIN, 12), Color.BLACK, 0, Color.WHITE,
+                0, 0, 0, 0, rotation, null, null);
+        return new PointCandidate(desc, 40, 10, 2, x, y);
+    }
+
+    @Test
+    public void testBounds(){
+        Rectangle2D bounds = LabelingUtilities.getBounds(createCandidate(100, 50, 0), null, false);
+        assertEquals(100, bounds.getMinX(), DELTA);
+        assertEquals(40, bounds.getMinY(), DELTA);
+        assertEquals(140, bounds.getMaxX(), DELTA);
+        assertEquals(52, bounds.getMaxY(), DELTA);
+
+        //rotated by 90° the label goes down from its anchor
+        bounds = LabelingUtilities.getBounds(createCandidate(100, 50, 90), null, false);
+        assertEquals(98, bounds.getMinX(), DELTA);
+        assertEquals(50, bounds.getMinY(), DELTA);
+        assertEquals(110, bounds.getMaxX(), DELTA);
+        assertEquals(90, bounds.getMaxY(), DELTA);
+    }
+
+    @Test
+    public void testSearch(){
+        final CandidateGrid grid = new CandidateGrid(16);
+        final PointCandidate c1 = createCandidate(0, 0, 0);
+        final PointCandidate c2 = createCandidate(200, 200, 0);
+        grid.put(c1, LabelingUtilities.getBounds(c1, null, true));
+        grid.put(c2, LabelingUtilities.getBounds(c2, null, true));
+        assertEquals(2, grid.size());
+
+        List<Candidate> found = grid.search(new Rectangle2D.Double(10, -5, 100, 100));
+        assertEquals(1, found.size());
+        assertSame(c1, found.get(0));
+
+        //moving a candidate updates its cells
+        c1.correctionX = 300;
+        grid.put(c1, LabelingUtilities.getBounds(c1, null, true));
+        assertTrue(grid.search(new Rectangle2D.Double(10, -5, 100, 100)).isEmpty());
+        assertEquals(1, grid.search(new Rectangle2D.Double(310, -5, 10, 10)).size());
+
+        assertTrue(grid.remove(c1));
+        assertFalse(grid.remove(c1));
+        assertTrue(grid.search(new Rectangle2D.Double(310, -5, 10, 10)).isEmpty());
+    }
+
+    @Test
+    public void testIntersects(){
+        //the grid must give the same result as testing all candidates
+        final Random random = new Random(42);
+        final List<Candidate> all = new ArrayList<Candidate>();
+        final CandidateGrid grid = new CandidateGrid();
+
+        for(int i=0; i<500; i++){
+            final PointCandidate candidate = createCandidate(
+                    random.nextFloat()*1000, random.nextFloat()*1000, random.nextFloat()*360);
+            final boolean expected = LabelingUtilities.intersects(candidate, all);
+            assertEquals(expected, LabelingUtilities.intersects(candidate, grid));
+            if(!expected){
+                all.add(candidate);
+                grid.put(candidate, LabelingUtilities.getBounds(candidate, null, true));
+            }
+        }
+    }
+
+}
@@ -23,6 +23,7 @@ import java.util.List;
 
 import org.geotoolkit.display2d.canvas.RenderingContext2D;
 import org.geotoolkit.display2d.style.labeling.candidate.Candidate;
+import org.geotoolkit.display2d.style.labeling.candidate.CandidateGrid;
 import org.geotoolkit.display2d.style.labeling.DefaultLabelRenderer;
 import org.geotoolkit.display2d.style.labeling.LabelDescriptor;
 import org.geotoolkit.display2d.style.labeling.LabelLayer;
@@ -136,19 +137,18 @@ public class DisplacementLabelRenderer extends DefaultLabelRenderer{
         candidates = LabelingUtilities.sortByCost(candidates);
 
         final List<Candidate> cleaned = new ArrayList<Candidate>();
+        final CandidateGrid grid = new CandidateGrid();
 
-        loop:
         for(int i= candidates.size()-1; i>=0; i--){
             Candidate candidate = candidates.get(i);
 
-            for(Candidate other : cleaned){
-                if(other == candidate) continue;
-
-                if(LabelingUtilities.intersects(candidate,other)){
-                    continue loop;
-                }
+            if(LabelingUtilities.intersects(candidate,grid)){
+                continue;
             }
             cleaned.add(candidate);
+            if(candidate instanceof PointCandidate){
+                grid.put(candidate, LabelingUtilities.getBounds((PointCandidate)candidate, null, true));
+            }
         }
 
         return cleaned;
@@ -18,49 +18,79 @@
 package org.geotoolkit.display2d.ext.labeling;
 
 import java.awt.Point;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.geotoolkit.display2d.style.labeling.candidate.Candidate;
+import org.geotoolkit.display2d.style.labeling.candidate.CandidateGrid;
 import org.geotoolkit.display2d.style.labeling.candidate.LabelingUtilities;
 import org.geotoolkit.display2d.style.labeling.candidate.PointCandidate;
+import org.geotoolkit.util.ExecutorUtilities;
 
 /**
  * Not effective implementation of simulated annealing.
  * Really slow and no good result, experimentale.
+ * <p>
+ * Candidates displaced bounds are indexed in a grid, only the candidates
+ * near a label are tested for collisions.
+ * </p>
+ * <p>
+ * In parallel mode, the trial placements of a group of intersecting labels
+ * are scored concurrently against the grid, which is only read meanwhile.
+ * The best trial is then applied by the calling thread.
+ * </p>
  *
  * @author Johann Sorel (Geomatys)
  * @module pending
  */
 public class SimulatedAnnealing {
 
+    /** Number of trial placements tested before giving up on a group of labels */
+    private static final int TRIALS = 5;
+
     private SimulatedAnnealing(){
     }
 
-    public static Set<Candidate> simulate(final List<Candidate> cdts, double temperature, final double coolDown){
+    public static Set<Candidate> simulate(final List<Candidate> cdts, final double temperature, final double coolDown){
+        return simulate(cdts, temperature, coolDown, false);
+    }
+
+    /**
+     * @param parallel : true to score the trial placements with several threads
+     */
+    public static Set<Candidate> simulate(final List<Candidate> cdts, double temperature, final double coolDown,
+            boolean parallel){
+        parallel = parallel && ExecutorUtilities.getThreadCount() > 1 && ExecutorUtilities.isParallelAllowed();
 
         final Map<Candidate,Point> candidates = new HashMap<Candidate,Point>();
+        final CandidateGrid grid = new CandidateGrid();
         for(Candidate cdt : cdts){
-            candidates.put(cdt, new Point(
+            final Point p = new Point(
                     (int) Math.floor(Math.random() * temperature - temperature/2),
-                    (int) Math.floor(Math.random() * temperature - temperature/2)));
+                    (int) Math.floor(Math.random() * temperature - temperature/2));
+            candidates.put(cdt, p);
+            if(cdt instanceof PointCandidate){
+                grid.put(cdt, LabelingUtilities.getBounds((PointCandidate)cdt, p, false));
+            }
         }
 
         //calculate the cost without any changes
         for(Candidate c : candidates.keySet()){
             Point p = candidates.get(c);
-            c.setCost(solutionCost(c, p, candidates));
+            c.setCost(solutionCost(c, p, candidates, grid));
         }
 
 //        double bestSolutionCost = solutionCost(candidates);
         int sameResult = 0;
 
-        int count = 0;
         //when we reach 10 times the same result, that means we haven't find anything better
         while(sameResult < 10){
-            System.out.println(count++ +" "+ sameResult);
 
             boolean change = false;
 
@@ -70,10 +100,9 @@ public class SimulatedAnnealing {
                 Point p = candidates.get(c);
 
                 //TODO find the best local solution using label intersecting this label
-                boolean better = findBestLocalCombinaison((PointCandidate)c, p, candidates,temperature);
+                boolean better = findBestLocalCombinaison((PointCandidate)c, p, candidates, grid, temperature, parallel);
 
                 if(better){
-                    System.out.println("found better");
                     change = true;
                 }
 
@@ -122,15 +151,15 @@ public class SimulatedAnnealing {
         return candidates.keySet();
     }
 
-    private static boolean findBestLocalCombinaison(final PointCandidate c, final Point p, final Map<Candidate,Point> candidates, final double temperature){
+    private static boolean findBestLocalCombinaison(final PointCandidate c, final Point p, final Map<Candidate,Point> candidates,
+            final CandidateGrid grid, final double temperature, final boolean parallel){
 
         Map<PointCandidate,Point> localCandidates = new HashMap<PointCandidate,Point>();
         localCandidates.put(c, new Point(p));
 
         //search for the candidates that intersect the current candidate
-        for(Candidate other : candidates.keySet()){
+        for(Candidate other : grid.search(LabelingUtilities.getBounds(c, p, false))){
             if(other == c) continue;
-            if(!(other instanceof PointCandidate)) continue;
 
             Point otherPoint = candidates.get(other);
 
@@ -139,28 +168,66 @@ public class SimulatedAnnealing {
             }
         }
 
-        if(localCandidates.size() > 1){
-            final int originalCost = solutionLocalCost(localCandidates,candidates);
+        if(localCandidates.size() > 1 && parallel){
+            final int originalCost = solutionLocalCost(localCandidates,candidates,grid);
+            int cost = originalCost;
+
+            //search the best solution, one batch of trials at a time
+            boolean better = true;
+            while(better){
+                final List<Map<PointCandidate,Point>> trials = new ArrayList<Map<PointCandidate,Point>>(TRIALS);
+                for(int i=0; i<TRIALS; i++){
+                    final Map<PointCandidate,Point> trial = new HashMap<PointCandidate,Point>();
+                    for(PointCandidate cdt : localCandidates.keySet()){
+                        trial.put(cdt, new Point(
+                                (int) Math.floor(Math.random() * temperature - temperature/2),
+                                (int) Math.floor(Math.random() * temperature - temperature/2)));
+                    }
+                    trials.add(trial);
+                }
+
+                final int[] costs = scoreParallel(trials, candidates, grid);
+                int best = 0;
+                for(int i=1; i<costs.length; i++){
+                    if(costs[i] < costs[best]) best = i;
+                }
+
+                better = costs[best] < cost;
+                if(better){
+                    cost = costs[best];
+                    for(Map.Entry<PointCandidate,Point> entry : trials.get(best).entrySet()){
+                        final PointCandidate cdt = entry.getKey();
+                        final Point pt = entry.getValue();
+                        candidates.get(cdt).setLocation(pt);
+                        grid.put(cdt, LabelingUtilities.getBounds(cdt, pt, false));
+                    }
+                }
+            }
+
+            return cost < originalCost;
+        }else if(localCandidates.size() > 1){
+            final int originalCost = solutionLocalCost(localCandidates,candidates,grid);
             int cost = originalCost;
 
             //search the best solution
             int sameResult = 0;
 
-            while(sameResult < 5){
+            while(sameResult < TRIALS){
                 for(Candidate cdt : localCandidates.keySet()){
                     Point pt = localCandidates.get(cdt);
                     pt.x = (int) Math.floor(Math.random() * temperature - temperature/2);
                     pt.y = (int) Math.floor(Math.random() * temperature - temperature/2);
                 }
 
-                int acost = solutionLocalCost(localCandidates,candidates);
+                int acost = solutionLocalCost(localCandidates,candidates,grid);
 
                 if(acost < cost){
                     cost = acost;
                     sameResult = 0;
-                    for(Candidate cdt : localCandidates.keySet()){
+                    for(PointCandidate cdt : localCandidates.keySet()){
                         Point pt = localCandidates.get(cdt);
                         candidates.get(cdt).setLocation(pt);
+                        grid.put(cdt, LabelingUtilities.getBounds(cdt, pt, false));
                     }
                 }else{
                     sameResult++;
@@ -175,6 +242,41 @@ public class SimulatedAnnealing {
         
     }
 
+    /**
+     * Score trial placements with several threads. The candidates map and
+     * the grid are only read.
+     *
+     * @return cost of each trial
+     */
+    private static int[] scoreParallel(final List<Map<PointCandidate,Point>> trials,
+            final Map<Candidate,Point> candidates, final CandidateGrid grid){
+        final List<Future<Integer>> futures = new ArrayList<Future<Integer>>(trials.size());
+        try{
+            for(final Map<PointCandidate,Point> trial : trials){
+                futures.add(ExecutorUtilities.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        return solutionLocalCost(trial, candidates, grid);
+                    }
+                }));
+            }
+            final int[] costs = new int[trials.size()];
+            for(int i=0; i<costs.length; i++){
+                costs[i] = futures.get(i).get();
+            }
+            return costs;
+        }catch(InterruptedException ex){
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        }catch(ExecutionException ex){
+            throw new RuntimeException(ex.getCause());
+        }finally{
+            for(Future<?> future : futures){
+                future.cancel(false);
+            }
+        }
+    }
+
     /**
      * Called to determine if annealing should take place.
      *
@@ -188,48 +290,55 @@ public class SimulatedAnnealing {
         return (Math.random() < Math.exp(d / temperature));
     }
 
-    private static int solutionCost(final Map<? extends Candidate,Point> candidates){
+    private static int solutionCost(final Map<? extends Candidate,Point> candidates, final CandidateGrid grid){
         int d = 0;
 
         for(Candidate c : candidates.keySet()){
             Point p = candidates.get(c);
-            d += solutionCost(c, p, candidates);
+            d += solutionCost(c, p, candidates, grid);
         }
 
         return d;
     }
 
-    private static int solutionLocalCost(final Map<? extends Candidate,Point> localCandidates, final Map<? extends Candidate,Point> candidates){
+    private static int solutionLocalCost(final Map<? extends Candidate,Point> localCandidates,
+            final Map<? extends Candidate,Point> candidates, final CandidateGrid grid){
         int d = 0;
 
         for(Candidate c : localCandidates.keySet()){
             Point p = localCandidates.get(c);
-            d += solutionCost(c, p, candidates);
+            d += solutionCost(c, p, candidates, grid);
         }
 
         return d;
     }
 
-
-    private static int solutionCost(final Candidate candidate, final Point p, final Map<? extends Candidate,Point> candidates){
+    /**
+     * @param grid : index of the point candidates at their displacement in the candidates map
+     */
+    private static int solutionCost(final Candidate candidate, final Point p, final Map<? extends Candidate,Point> candidates,
+            final CandidateGrid grid){
         int d = Math.abs(p.x) + Math.abs(p.y);
 
-        for(Candidate other : candidates.keySet()){
+        if(!(candidate instanceof PointCandidate)){
+            return d;
+        }
+
+        //only the candidates near this one can intersect it
+        for(Candidate other : grid.search(LabelingUtilities.getBounds((PointCandidate)candidate, p, false))){
             if(other == candidate) continue;
 
-            if(candidate instanceof PointCandidate && other instanceof PointCandidate){
-                Point otherPoint = candidates.get(other);
+            Point otherPoint = candidates.get(other);
 
-                if(candidate.getPriority() > other.getPriority()){
-                    continue;
-                }else if(candidate.getPriority() == other.getPriority()){
-                    if(LabelingUtilities.intersects((PointCandidate)candidate, p, (PointCandidate)other, otherPoint,false)){
-                        d += 10;
-                    }
-                }else{
-                    if(LabelingUtilities.intersects((PointCandidate)candidate, p, (PointCandidate)other, otherPoint,false)){
-                        d += 20;
-                    }
+            if(candidate.getPriority() > other.getPriority()){
+                continue;
+            }else if(candidate.getPriority() == other.getPriority()){
+                if(LabelingUtilities.intersects((PointCandidate)candidate, p, (PointCandidate)other, otherPoint,false)){
+                    d += 10;
+                }
+            }else{
+                if(LabelingUtilities.intersects((PointCandidate)candidate, p, (PointCandidate)other, otherPoint,false)){
+                    d += 20;
                 }
             }
         }
@@ -0,0 +1,118 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.filter;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.opengis.filter.And;
+import org.opengis.filter.Filter;
+import org.opengis.filter.PropertyIsEqualTo;
+import org.opengis.filter.PropertyIsLessThan;
+import org.opengis.filter.expression.Literal;
+import org.opengis.filter.spatial.Intersects;
+
+import static org.junit.Assert.*;
+import static org.geotoolkit.filter.FilterTestConstants.*;
+
+/**
+ * Compiled filters must give the same results as the original filters.
+ *
+ * @author Johann Sorel (Geomatys)
+ * @module pending
+ */
+public class FilterCompilationTest {
+
+    @Test
+    public void testSameResults() {
+        final Filter[] filters = {
+            FF.equals(FF.property("testInteger"), FF.literal("101")),
+            FF.equals(FF.literal(101d), FF.property("testLong")),
+            FF.notEqual(FF.property("testString"), FF.literal("TEST STRING DATA"), false),
+            FF.notEqual(FF.property("testString"), FF.literal("TEST STRING DATA"), true),
+            FF.less(FF.property("testInteger"), FF.literal("200")),
+            FF.less(FF.literal("200"), FF.property("testInteger")),
+            FF.greaterOrEqual(FF.property("testDouble"), FF.literal(101)),
+            FF.lessOrEqual(FF.property("testShort"), FF.literal(100.5)),
+            FF.greater(FF.property("datetime1"), FF.literal("2001-01-01T00:00:00Z")),
+            FF.between(FF.property("testFloat"), FF.literal("100"), FF.literal(102)),
+            FF.like(FF.property("testString"), "test*"),
+            FF.like(FF.property("testString2"), "cow $?0"),
+            FF.isNull(FF.property("testNull")),
+            FF.intersects(FF.property("testGeometry"), FF.literal(WRONG_GEOMETRY)),
+            FF.and(FF.intersects(FF.property("testGeometry"), FF.literal(RIGHT_GEOMETRY)),
+                   FF.equals(FF.property("testBoolean"), FF.literal("true"))),
+            FF.or(FF.like(FF.property("testString"), "*data"),
+                  FF.less(FF.property("testByte"), FF.literal(0))),
+            FF.not(FF.equals(FF.property("testCharacter"), FF.literal("t"))),
+            FF.id(java.util.Collections.singleton(FF.featureId("testFeatureType.1")))
+        };
+
+        for (Filter filter : filters) {
+            final Filter compiled = FilterUtilities.compile(filter, FEATURE_TYPE_1);
+            assertEquals(filter.toString(), filter.evaluate(FEATURE_1), compiled.evaluate(FEATURE_1));
+        }
+    }
+
+    @Test
+    public void testMixedTypeEquality() {
+        final Filter[] filters = {
+            FF.equals(FF.property("testInteger"), FF.literal("0101")),
+            FF.equals(FF.property("testInteger"), FF.literal(101.4d)),
+            FF.equals(FF.property("testInteger"), FF.literal(101d)),
+            FF.notEqual(FF.property("testInteger"), FF.literal(101.4d), true),
+            FF.equals(FF.literal(101.4f), FF.property("testLong")),
+            FF.equals(FF.property("testShort"), FF.literal("101.0")),
+            FF.equals(FF.property("testDouble"), FF.literal("101")),
+            FF.equals(FF.property("testString"), FF.literal(101)),
+            FF.notEqual(FF.property("testByte"), FF.literal("0101"), true)
+        };
+
+        for (Filter filter : filters) {
+            final Filter compiled = FilterUtilities.compile(filter, FEATURE_TYPE_1);
+            assertEquals(filter.toString(), filter.evaluate(FEATURE_1), compiled.evaluate(FEATURE_1));
+        }
+
+        //equality literals are not converted
+        final Filter compiled = FilterUtilities.compile(
+                FF.equals(FF.property("testInteger"), FF.literal(101.4d)), FEATURE_TYPE_1);
+        assertTrue(compiled instanceof PropertyIsEqualTo);
+        assertEquals(101.4d, ((Literal) ((PropertyIsEqualTo) compiled).getExpression2()).getValue());
+        assertFalse(compiled.evaluate(FEATURE_1));
+    }
+
+    @Test
+    public void testCompilation() {
+        //literals are converted to the attribute binding
+        Filter compiled = FilterUtilities.compile(
+                FF.less(FF.property("testInteger"), FF.literal("200")), FEATURE_TYPE_1);
+        assertTrue(compiled instanceof PropertyIsLessThan);
+        assertEquals(200, ((Literal) ((PropertyIsLessThan) compiled).getExpression2()).getValue());
+
+        //cheapest filters are evaluated first
+        compiled = FilterUtilities.compile(FF.and(
+                FF.intersects(FF.property("testGeometry"), FF.literal(RIGHT_GEOMETRY)),
+                FF.equals(FF.property("testBoolean"), FF.literal(true))), FEATURE_TYPE_1);
+        assertTrue(compiled instanceof And);
+        final List<Filter> children = ((And) compiled).getChildren();
+        assertEquals(2, children.size());
+        assertTrue(children.get(1) instanceof Intersects);
+
+        assertSame(Filter.INCLUDE, FilterUtilities.compile(Filter.INCLUDE, FEATURE_TYPE_1));
+    }
+
+}
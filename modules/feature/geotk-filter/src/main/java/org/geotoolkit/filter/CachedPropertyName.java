@@ -21,7 +21,6 @@ import org.opengis.feature.simple.SimpleFeature;
 import org.geotoolkit.filter.accessor.Accessors;
 import org.geotoolkit.filter.accessor.PropertyAccessor;
 
-import org.opengis.feature.Property;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.ComplexType;
 import org.opengis.filter.expression.ExpressionVisitor;
@@ -39,43 +38,24 @@ class CachedPropertyName extends AbstractExpression implements PropertyName{
 
     private final PropertyAccessor accessor;
 
+    //attribute index when the expected type is a simple feature type
+    private final SimpleFeatureType simpleType;
+    private final int index;
+
     CachedPropertyName(final String property, final Class clazz, final ComplexType expectedType) {
         ensureNonNull("property name", property);
         this.property = property;
-                
-        final PropertyAccessor fallacc = Accessors.getAccessor(clazz,property,null);
-        
-        //try to create a faster accessor
-//        if(Property.class.isAssignableFrom(clazz) && expectedType instanceof SimpleFeatureType ){
-//            final SimpleFeatureType sft = (SimpleFeatureType) expectedType;
-//            final int index = sft.indexOf(property);
-//            this.accessor = new PropertyAccessor() {
-//                @Override
-//                public boolean canHandle(Class object, String xpath, Class target) {
-//                    return true;
-//                }
-//                @Override
-//                public Object get(Object object, String xpath, Class target) throws IllegalArgumentException {
-//                    if(object instanceof SimpleFeature){
-//                        return ((SimpleFeature)object).getAttribute(index);
-//                    }else{
-//                        return fallacc.get(object, xpath, target);
-//                    }
-//                }
-//                @Override
-//                public void set(Object object, String xpath, Object value, Class target) throws IllegalArgumentException {
-//                    if(object instanceof SimpleFeature){
-//                        ((SimpleFeature)object).setAttribute(index,value);
-//                    }else{
-//                        fallacc.set(object,xpath,value,target);
-//                    }
-//                    
-//                }
-//            };
-//        }else{
-            this.accessor = fallacc;
-//        }
-        
+        this.accessor = Accessors.getAccessor(clazz,property,null);
+
+        //direct attribute access for features of the expected type
+        if(expectedType instanceof SimpleFeatureType && !property.isEmpty()
+                && property.indexOf('/') < 0 && property.indexOf('@') < 0){
+            this.simpleType = (SimpleFeatureType) expectedType;
+            this.index = simpleType.indexOf(property);
+        }else{
+            this.simpleType = null;
+            this.index = -1;
+        }
     }
 
     /**
@@ -91,6 +71,10 @@ class CachedPropertyName extends AbstractExpression implements PropertyName{
      */
     @Override
     public Object evaluate(final Object candidate) {
+        if(index >= 0 && candidate instanceof SimpleFeature
+                && ((SimpleFeature)candidate).getFeatureType() == simpleType){
+            return ((SimpleFeature)candidate).getAttribute(index);
+        }
         return accessor.get(candidate, property, null);
     }
 
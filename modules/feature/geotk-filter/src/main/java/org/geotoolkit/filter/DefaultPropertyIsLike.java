@@ -20,7 +20,7 @@ package org.geotoolkit.filter;
 import java.io.Serializable;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.geotoolkit.util.StringUtilities;
 import org.geotoolkit.util.logging.Logging;
@@ -52,8 +52,8 @@ public class DefaultPropertyIsLike implements PropertyIsLike,Serializable {
     private final String wildcardMulti;
     /** The escape sequence for the REGEXP pattern. */
     private final String escape;
-    /** The matcher to match patterns with. */
-    private transient Matcher match;
+    /** The compiled pattern, thread safe unlike a matcher. */
+    private transient volatile Pattern compiled;
     /** Used to indicate if case should be ignored or not */
     private final boolean matchingCase;
 
@@ -145,8 +145,11 @@ public class DefaultPropertyIsLike implements PropertyIsLike,Serializable {
                 pattern);
     }
 
-    private Matcher getMatcher() {
-        if (match == null) {
+    /**
+     * @return regular expression equivalent to the like pattern, compiled on first call
+     */
+    public Pattern getPattern() {
+        if (compiled == null) {
             // protect the vars as this is moved code
 
             String pattern1 = this.pattern;
@@ -231,10 +234,9 @@ public class DefaultPropertyIsLike implements PropertyIsLike,Serializable {
 
             pattern1 = tmp.toString();
             LOGGER.log(Level.FINER, "final pattern {0}", pattern1);
-            java.util.regex.Pattern compPattern = java.util.regex.Pattern.compile(pattern1);
-            match = compPattern.matcher("");
+            compiled = Pattern.compile(pattern1);
         }
-        return match;
+        return compiled;
     }
 
     public DefaultPropertyIsLike(final Expression expr, final String pattern, final String wildcardMulti,
@@ -280,10 +282,7 @@ public class DefaultPropertyIsLike implements PropertyIsLike,Serializable {
             return false;
         }
 
-        final Matcher matcher = getMatcher();
-        matcher.reset(attribute.evaluate(feature).toString());
-
-        return matcher.matches();
+        return getPattern().matcher(value.toString()).matches();
     }
 
     @Override
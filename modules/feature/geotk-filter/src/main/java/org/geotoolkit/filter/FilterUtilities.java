@@ -17,9 +17,11 @@
 
 package org.geotoolkit.filter;
 
+import org.geotoolkit.filter.visitor.CompileFilterVisitor;
 import org.geotoolkit.filter.visitor.PrepareFilterVisitor;
 import org.geotoolkit.lang.Static;
 import org.opengis.feature.type.ComplexType;
+import org.opengis.feature.type.FeatureType;
 import org.opengis.filter.Filter;
 import org.opengis.filter.expression.PropertyName;
 
@@ -47,6 +49,22 @@ public final class FilterUtilities extends Static {
         return (Filter) filter.accept(visitor, null);
     }
 
+    /**
+     * Compile a filter for the evaluation of features of a given type.
+     * Properties are resolved and literals converted once, see {@link CompileFilterVisitor}.
+     * The returned filter should not be used on features of a different type.
+     *
+     * @param filter : filter to compile
+     * @param type : type of the evaluated features, if null the filter is returned unchanged
+     * @return compiled filter
+     */
+    public static Filter compile(final Filter filter, final FeatureType type){
+        if(filter == null || type == null) return filter;
+        if(filter == Filter.INCLUDE || filter == Filter.EXCLUDE) return filter;
+        final CompileFilterVisitor visitor = new CompileFilterVisitor(type);
+        return (Filter) filter.accept(visitor, null);
+    }
+
     /**
      * Generates a property name which caches the value accessor.
      * the returned PropertyName should not be used against objects of a different
@@ -20,6 +20,8 @@ package org.geotoolkit.filter.binaryspatial;
 import org.opengis.feature.Feature;
 import java.util.logging.Level;
 import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
 
 import java.io.Serializable;
 import java.util.logging.Logger;
@@ -33,6 +35,7 @@ import org.geotoolkit.util.logging.Logging;
 import org.opengis.feature.ComplexAttribute;
 
 import org.opengis.filter.expression.Expression;
+import org.opengis.filter.expression.Literal;
 import org.opengis.filter.expression.PropertyName;
 import org.opengis.filter.spatial.BinarySpatialOperator;
 import org.opengis.util.FactoryException;
@@ -66,9 +69,14 @@ public abstract class AbstractBinarySpatialOperator<E extends Expression,F exten
     }
 
 
+    private static final PreparedGeometryFactory PREPARED_FACTORY = new PreparedGeometryFactory();
+
     protected final E left;
     protected final F right;
 
+    //cache the literal operand, reprojected and prepared
+    private transient volatile PreparedOperand preparedOperand;
+
     protected AbstractBinarySpatialOperator(final E left, final F right){
         ensureNonNull("left", left);
         ensureNonNull("right", right);
@@ -122,6 +130,99 @@ public abstract class AbstractBinarySpatialOperator<E extends Expression,F exten
         return new Geometry[]{leftGeom, JTS.transform(rightGeom, trs)};
     }
 
+    /**
+     * Evaluate both operands and reproject them in the same CRS, like
+     * {@link #toSameCRS(Geometry, Geometry)}.
+     * When an operand is a literal, its geometry is reprojected and prepared
+     * only once, then reused as long as the other operand CRS does not change.
+     *
+     * @return reprojected operands, null if an operand is null or if it could
+     *         not be reprojected
+     */
+    protected Operands evaluateOperands(final Object object) {
+        final boolean leftLiteral = left instanceof Literal;
+        final boolean rightLiteral = right instanceof Literal;
+        if (leftLiteral == rightLiteral) {
+            //no literal, or nothing which depends on the object
+            final Geometry leftGeom = left.evaluate(object, Geometry.class);
+            final Geometry rightGeom = right.evaluate(object, Geometry.class);
+            if (leftGeom == null || rightGeom == null) {
+                return null;
+            }
+            try {
+                final Geometry[] values = toSameCRS(leftGeom, rightGeom);
+                return new Operands(values[0], values[1], null, null);
+            } catch (FactoryException ex) {
+                LOGGER.log(Level.WARNING, null, ex);
+            } catch (TransformException ex) {
+                LOGGER.log(Level.WARNING, null, ex);
+            }
+            return null;
+        }
+
+        final Geometry geom = (leftLiteral ? right : left).evaluate(object, Geometry.class);
+        if (geom == null) {
+            return null;
+        }
+        try {
+            final CoordinateReferenceSystem crs = JTS.findCoordinateReferenceSystem(geom);
+            final PreparedOperand operand = getPreparedOperand(crs, rightLiteral);
+            if (operand == null) {
+                return null;
+            }
+            if (rightLiteral) {
+                //the literal has been reprojected in the left operand crs
+                return new Operands(geom, operand.geometry, null, operand.prepared);
+            }
+            //the right operand is reprojected in the literal crs
+            Geometry rightGeom = geom;
+            if (operand.transform != null) {
+                rightGeom = JTS.transform(geom, operand.transform);
+            }
+            return new Operands(operand.geometry, rightGeom, operand.prepared, null);
+        } catch (FactoryException ex) {
+            LOGGER.log(Level.WARNING, null, ex);
+        } catch (TransformException ex) {
+            LOGGER.log(Level.WARNING, null, ex);
+        }
+        return null;
+    }
+
+    /**
+     * @param crs : crs of the non literal operand, can be null
+     * @param rightLiteral : true if the literal is the right operand
+     * @return literal operand prepared for the given crs, null if the literal geometry is null
+     */
+    private PreparedOperand getPreparedOperand(final CoordinateReferenceSystem crs, final boolean rightLiteral)
+            throws FactoryException, TransformException {
+        PreparedOperand operand = preparedOperand;
+        if (operand != null && (operand.crs == crs
+                || (operand.crs != null && crs != null && CRS.equalsIgnoreMetadata(operand.crs, crs)))) {
+            return operand;
+        }
+
+        final Geometry literal = (rightLiteral ? right : left).evaluate(null, Geometry.class);
+        if (literal == null) {
+            return null;
+        }
+        final CoordinateReferenceSystem literalCRS = JTS.findCoordinateReferenceSystem(literal);
+
+        Geometry geometry = literal;
+        MathTransform transform = null;
+        if (crs != null && literalCRS != null && !CRS.equalsIgnoreMetadata(crs, literalCRS)) {
+            //same choice as toSameCRS, the right operand is reprojected
+            if (rightLiteral) {
+                geometry = JTS.transform(literal, CRS.findMathTransform(literalCRS, crs));
+            } else {
+                transform = CRS.findMathTransform(crs, literalCRS);
+            }
+        }
+
+        operand = new PreparedOperand(crs, geometry, PREPARED_FACTORY.create(geometry), transform);
+        preparedOperand = operand;
+        return operand;
+    }
+
     /**
      * Reproject one or both geometries to the same crs, the matching crs
      * will be compatible with the requested unit.
@@ -201,4 +302,75 @@ public abstract class AbstractBinarySpatialOperator<E extends Expression,F exten
 
     }
 
+    /**
+     * Operands evaluated on an object, in the same CRS.
+     * The prepared geometry of a literal operand is given when available.
+     */
+    protected static final class Operands {
+
+        public final Geometry left;
+        public final Geometry right;
+        /** Prepared left geometry, null if the left operand is not a literal. */
+        public final PreparedGeometry preparedLeft;
+        /** Prepared right geometry, null if the right operand is not a literal. */
+        public final PreparedGeometry preparedRight;
+
+        private Operands(final Geometry left, final Geometry right,
+                final PreparedGeometry preparedLeft, final PreparedGeometry preparedRight) {
+            this.left = left;
+            this.right = right;
+            this.preparedLeft = preparedLeft;
+            this.preparedRight = preparedRight;
+        }
+
+        public boolean intersects() {
+            if (preparedRight != null) {
+                return preparedRight.intersects(left);
+            } else if (preparedLeft != null) {
+                return preparedLeft.intersects(right);
+            }
+            return left.intersects(right);
+        }
+
+        /**
+         * @return true if the left geometry contains the right one
+         */
+        public boolean contains() {
+            if (preparedLeft != null) {
+                return preparedLeft.contains(right);
+            }
+            return left.contains(right);
+        }
+
+        /**
+         * @return true if the left geometry is within the right one
+         */
+        public boolean within() {
+            if (preparedRight != null) {
+                return preparedRight.contains(left);
+            }
+            return left.within(right);
+        }
+    }
+
+    /**
+     * Literal geometry, reprojected for a given crs of the other operand.
+     */
+    private static final class PreparedOperand {
+
+        private final CoordinateReferenceSystem crs;
+        private final Geometry geometry;
+        private final PreparedGeometry prepared;
+        /** Transform of the other operand to the literal crs, null if none. */
+        private final MathTransform transform;
+
+        private PreparedOperand(final CoordinateReferenceSystem crs, final Geometry geometry,
+                final PreparedGeometry prepared, final MathTransform transform) {
+            this.crs = crs;
+            this.geometry = geometry;
+            this.prepared = prepared;
+            this.transform = transform;
+        }
+    }
+
 }
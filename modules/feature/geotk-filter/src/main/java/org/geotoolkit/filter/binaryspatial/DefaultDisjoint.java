@@ -18,16 +18,11 @@
 package org.geotoolkit.filter.binaryspatial;
 
 import com.vividsolutions.jts.geom.Envelope;
-import com.vividsolutions.jts.geom.Geometry;
 
-import java.util.logging.Level;
-import java.util.logging.Logger;
 import org.geotoolkit.util.StringUtilities;
 import org.opengis.filter.FilterVisitor;
 import org.opengis.filter.expression.Expression;
 import org.opengis.filter.spatial.Disjoint;
-import org.opengis.util.FactoryException;
-import org.opengis.referencing.operation.TransformException;
 
 /**
  * Immutable "disjoint" filter.
@@ -46,31 +41,16 @@ public class DefaultDisjoint extends AbstractBinarySpatialOperator<Expression,Ex
      */
     @Override
     public boolean evaluate(final Object object) {
-        Geometry leftGeom = left.evaluate(object, Geometry.class);
-        Geometry rightGeom = right.evaluate(object, Geometry.class);
-
-        if(leftGeom == null || rightGeom == null){
-            return false;
-        }
-
-        final Geometry[] values;
-        try {
-            values = toSameCRS(leftGeom, rightGeom);
-        } catch (FactoryException ex) {
-            Logger.getLogger(DefaultContains.class.getName()).log(Level.WARNING, null, ex);
-            return false;
-        } catch (TransformException ex) {
-            Logger.getLogger(DefaultContains.class.getName()).log(Level.WARNING, null, ex);
+        final Operands values = evaluateOperands(object);
+        if (values == null) {
             return false;
         }
-        leftGeom = values[0];
-        rightGeom = values[1];
 
-        final Envelope envLeft = leftGeom.getEnvelopeInternal();
-        final Envelope envRight = rightGeom.getEnvelopeInternal();
+        final Envelope envLeft = values.left.getEnvelopeInternal();
+        final Envelope envRight = values.right.getEnvelopeInternal();
 
         if(envRight.intersects(envLeft)){
-            return leftGeom.disjoint(rightGeom);
+            return !values.intersects();
         }
 
         return true;
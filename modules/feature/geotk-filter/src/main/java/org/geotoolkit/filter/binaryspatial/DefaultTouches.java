@@ -17,16 +17,12 @@
  */
 package org.geotoolkit.filter.binaryspatial;
 
-import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.Envelope;
 
-import java.util.logging.Level;
-import java.util.logging.Logger;
 import org.geotoolkit.util.StringUtilities;
 import org.opengis.filter.FilterVisitor;
 import org.opengis.filter.expression.Expression;
 import org.opengis.filter.spatial.Touches;
-import org.opengis.util.FactoryException;
-import org.opengis.referencing.operation.TransformException;
 
 /**
  * Immutable "touches" filter.
@@ -45,27 +41,19 @@ public class DefaultTouches extends AbstractBinarySpatialOperator<Expression,Exp
      */
     @Override
     public boolean evaluate(final Object object) {
-        Geometry leftGeom = left.evaluate(object, Geometry.class);
-        Geometry rightGeom = right.evaluate(object, Geometry.class);
-
-        if(leftGeom == null || rightGeom == null){
+        final Operands values = evaluateOperands(object);
+        if (values == null) {
             return false;
         }
 
-        final Geometry[] values;
-        try {
-            values = toSameCRS(leftGeom, rightGeom);
-        } catch (FactoryException ex) {
-            Logger.getLogger(DefaultContains.class.getName()).log(Level.WARNING, null, ex);
-            return false;
-        } catch (TransformException ex) {
-            Logger.getLogger(DefaultContains.class.getName()).log(Level.WARNING, null, ex);
-            return false;
+        final Envelope envLeft = values.left.getEnvelopeInternal();
+        final Envelope envRight = values.right.getEnvelopeInternal();
+
+        if (envLeft.intersects(envRight)) {
+            return values.left.touches(values.right);
         }
-        leftGeom = values[0];
-        rightGeom = values[1];
 
-        return leftGeom.touches(rightGeom);
+        return false;
     }
 
     /**
@@ -0,0 +1,297 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.filter.visitor;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+import org.geotoolkit.filter.DefaultPropertyIsLike;
+import org.geotoolkit.util.Converters;
+
+import org.opengis.feature.Feature;
+import org.opengis.feature.type.FeatureType;
+import org.opengis.feature.type.PropertyDescriptor;
+import org.opengis.filter.And;
+import org.opengis.filter.BinaryComparisonOperator;
+import org.opengis.filter.BinaryLogicOperator;
+import org.opengis.filter.Filter;
+import org.opengis.filter.Id;
+import org.opengis.filter.Not;
+import org.opengis.filter.Or;
+import org.opengis.filter.PropertyIsBetween;
+import org.opengis.filter.PropertyIsGreaterThan;
+import org.opengis.filter.PropertyIsGreaterThanOrEqualTo;
+import org.opengis.filter.PropertyIsLessThan;
+import org.opengis.filter.PropertyIsLessThanOrEqualTo;
+import org.opengis.filter.PropertyIsLike;
+import org.opengis.filter.PropertyIsNull;
+import org.opengis.filter.expression.BinaryExpression;
+import org.opengis.filter.expression.Expression;
+import org.opengis.filter.expression.Function;
+import org.opengis.filter.expression.Literal;
+import org.opengis.filter.expression.PropertyName;
+import org.opengis.filter.spatial.BBOX;
+import org.opengis.filter.spatial.BinarySpatialOperator;
+
+import static org.geotoolkit.util.ArgumentChecks.*;
+
+/**
+ * Simplify and compile a filter for the evaluation of features of a given type.
+ * In addition to the preparation of property names :
+ * <ul>
+ *   <li>attributes of simple feature types are accessed by index,</li>
+ *   <li>literals in ordering comparisons (&lt;, &lt;=, &gt;, &gt;=, between) with
+ *       an attribute are converted to the attribute binding,</li>
+ *   <li>like patterns are compiled,</li>
+ *   <li>children of And and Or filters are sorted by estimated cost, cheapest first.</li>
+ * </ul>
+ * Equality literals are not converted : equality filters try both conversion
+ * directions and tolerate numeric rounding on each evaluation, converting the
+ * literal before would change their result.
+ * The compiled filter should only be used on features of the given type.
+ *
+ * @author Johann Sorel (Geomatys)
+ * @module pending
+ */
+public class CompileFilterVisitor extends PrepareFilterVisitor {
+
+    private static final Comparator<Filter> COST_COMPARATOR = new Comparator<Filter>() {
+        @Override
+        public int compare(final Filter f1, final Filter f2) {
+            final int c1 = cost(f1);
+            final int c2 = cost(f2);
+            return (c1 < c2) ? -1 : ((c1 == c2) ? 0 : 1);
+        }
+    };
+
+    private final FeatureType type;
+
+    public CompileFilterVisitor(final FeatureType type) {
+        super(Feature.class, type);
+        ensureNonNull("type", type);
+        this.type = type;
+    }
+
+    @Override
+    public Object visit(final And filter, final Object extraData) {
+        final Object result = super.visit(filter, extraData);
+        if (result instanceof And) {
+            final List<Filter> children = sortByCost(((And) result).getChildren());
+            if (children != null) {
+                return getFactory(extraData).and(children);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Object visit(final Or filter, final Object extraData) {
+        final Object result = super.visit(filter, extraData);
+        if (result instanceof Or) {
+            final List<Filter> children = sortByCost(((Or) result).getChildren());
+            if (children != null) {
+                return getFactory(extraData).or(children);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Object visit(final PropertyIsGreaterThan filter, final Object extraData) {
+        final PropertyIsGreaterThan f = (PropertyIsGreaterThan) super.visit(filter, extraData);
+        final Expression exp2 = convert(f.getExpression1(), f.getExpression2(), false);
+        if (exp2 == f.getExpression2()) {
+            return f;
+        }
+        return getFactory(extraData).greater(f.getExpression1(), exp2, f.isMatchingCase());
+    }
+
+    @Override
+    public Object visit(final PropertyIsGreaterThanOrEqualTo filter, final Object extraData) {
+        final PropertyIsGreaterThanOrEqualTo f = (PropertyIsGreaterThanOrEqualTo) super.visit(filter, extraData);
+        final Expression exp2 = convert(f.getExpression1(), f.getExpression2(), false);
+        if (exp2 == f.getExpression2()) {
+            return f;
+        }
+        return getFactory(extraData).greaterOrEqual(f.getExpression1(), exp2, f.isMatchingCase());
+    }
+
+    @Override
+    public Object visit(final PropertyIsLessThan filter, final Object extraData) {
+        final PropertyIsLessThan f = (PropertyIsLessThan) super.visit(filter, extraData);
+        final Expression exp2 = convert(f.getExpression1(), f.getExpression2(), false);
+        if (exp2 == f.getExpression2()) {
+            return f;
+        }
+        return getFactory(extraData).less(f.getExpression1(), exp2, f.isMatchingCase());
+    }
+
+    @Override
+    public Object visit(final PropertyIsLessThanOrEqualTo filter, final Object extraData) {
+        final PropertyIsLessThanOrEqualTo f = (PropertyIsLessThanOrEqualTo) super.visit(filter, extraData);
+        final Expression exp2 = convert(f.getExpression1(), f.getExpression2(), false);
+        if (exp2 == f.getExpression2()) {
+            return f;
+        }
+        return getFactory(extraData).lessOrEqual(f.getExpression1(), exp2, f.isMatchingCase());
+    }
+
+    @Override
+    public Object visit(final PropertyIsBetween filter, final Object extraData) {
+        final PropertyIsBetween f = (PropertyIsBetween) super.visit(filter, extraData);
+        final Expression lower = convert(f.getExpression(), f.getLowerBoundary(), true);
+        final Expression upper = convert(f.getExpression(), f.getUpperBoundary(), true);
+        if (lower == f.getLowerBoundary() && upper == f.getUpperBoundary()) {
+            return f;
+        }
+        return getFactory(extraData).between(f.getExpression(), lower, upper);
+    }
+
+    @Override
+    public Object visit(final PropertyIsLike filter, final Object extraData) {
+        final Object result = super.visit(filter, extraData);
+        if (result instanceof DefaultPropertyIsLike) {
+            ((DefaultPropertyIsLike) result).getPattern();
+        }
+        return result;
+    }
+
+    /**
+     * Convert a literal compared to an attribute to the attribute binding,
+     * the same conversion the ordering comparison filters do on each evaluation.
+     *
+     * @param property : expression the literal is compared to
+     * @param literal : expression to convert if it is a literal
+     * @param between : true to convert numbers to Double, like PropertyIsBetween does
+     * @return converted literal, or the same expression if no conversion applies
+     */
+    private Expression convert(final Expression property, final Expression literal, final boolean between) {
+        if (!(property instanceof PropertyName) || !(literal instanceof Literal)) {
+            return literal;
+        }
+        final Object value = ((Literal) literal).getValue();
+        Class binding = getBinding((PropertyName) property);
+        if (value == null || binding == null) {
+            return literal;
+        }
+        if (between && Number.class.isAssignableFrom(binding)) {
+            binding = Double.class;
+        }
+        //comparisons with a date literal have their own conversion rules
+        if (binding.isInstance(value) || (value instanceof Date && !Date.class.isAssignableFrom(binding))) {
+            return literal;
+        }
+        final Object converted = Converters.convert(value, binding);
+        if (converted == null) {
+            return literal;
+        }
+        return ff.literal(converted);
+    }
+
+    /**
+     * @return binding of the attribute, null if unknowned or not a type literals are converted to
+     */
+    private Class getBinding(final PropertyName property) {
+        final String name = property.getPropertyName();
+        if (name == null || name.isEmpty() || name.indexOf('/') >= 0 || name.indexOf('@') >= 0) {
+            return null;
+        }
+        final PropertyDescriptor desc = type.getDescriptor(name);
+        if (desc == null) {
+            return null;
+        }
+        final Class binding = desc.getType().getBinding();
+        if (binding == null || binding.isInterface() || Modifier.isAbstract(binding.getModifiers())) {
+            return null;
+        }
+        if (Number.class.isAssignableFrom(binding) || Date.class.isAssignableFrom(binding)
+                || binding == String.class || binding == Boolean.class) {
+            return binding;
+        }
+        return null;
+    }
+
+    /**
+     * @return children sorted by cost, null if the order does not change
+     */
+    private static List<Filter> sortByCost(final List<Filter> children) {
+        final List<Filter> sorted = new ArrayList<Filter>(children);
+        Collections.sort(sorted, COST_COMPARATOR);
+        return sorted.equals(children) ? null : sorted;
+    }
+
+    /**
+     * Estimate the relative cost of a filter evaluation.
+     *
+     * @param filter : filter to evaluate
+     * @return estimated cost, greater or equal to 0
+     */
+    public static int cost(final Filter filter) {
+        if (filter == Filter.INCLUDE || filter == Filter.EXCLUDE) {
+            return 0;
+        } else if (filter instanceof BinaryLogicOperator) {
+            int cost = 1;
+            for (Filter child : ((BinaryLogicOperator) filter).getChildren()) {
+                cost += cost(child);
+            }
+            return cost;
+        } else if (filter instanceof Not) {
+            return 1 + cost(((Not) filter).getFilter());
+        } else if (filter instanceof Id) {
+            return 2;
+        } else if (filter instanceof PropertyIsNull) {
+            return 1 + cost(((PropertyIsNull) filter).getExpression());
+        } else if (filter instanceof BinaryComparisonOperator) {
+            final BinaryComparisonOperator op = (BinaryComparisonOperator) filter;
+            return 2 + cost(op.getExpression1()) + cost(op.getExpression2());
+        } else if (filter instanceof PropertyIsBetween) {
+            final PropertyIsBetween op = (PropertyIsBetween) filter;
+            return 3 + cost(op.getExpression()) + cost(op.getLowerBoundary()) + cost(op.getUpperBoundary());
+        } else if (filter instanceof PropertyIsLike) {
+            return 10 + cost(((PropertyIsLike) filter).getExpression());
+        } else if (filter instanceof BBOX) {
+            return 20 + cost(((BBOX) filter).getExpression1());
+        } else if (filter instanceof BinarySpatialOperator) {
+            final BinarySpatialOperator op = (BinarySpatialOperator) filter;
+            return 100 + cost(op.getExpression1()) + cost(op.getExpression2());
+        }
+        return 50;
+    }
+
+    private static int cost(final Expression exp) {
+        if (exp instanceof Literal) {
+            return 0;
+        } else if (exp instanceof PropertyName) {
+            return 1;
+        } else if (exp instanceof BinaryExpression) {
+            final BinaryExpression be = (BinaryExpression) exp;
+            return 1 + cost(be.getExpression1()) + cost(be.getExpression2());
+        } else if (exp instanceof Function) {
+            int cost = 10;
+            for (Expression param : ((Function) exp).getParameters()) {
+                cost += cost(param);
+            }
+            return cost;
+        }
+        return 5;
+    }
+
+}
@@ -21,8 +21,15 @@ import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.LinearRing;
 
+import java.util.HashMap;
+import java.util.Map;
+
+import org.geotoolkit.geometry.jts.JTS;
+import org.geotoolkit.referencing.CRS;
+import org.geotoolkit.referencing.crs.DefaultGeographicCRS;
 import org.junit.Test;
 
+import org.opengis.filter.Filter;
 import org.opengis.filter.spatial.BBOX;
 import org.opengis.filter.spatial.Beyond;
 
@@ -35,6 +42,8 @@ import org.opengis.filter.spatial.Intersects;
 import org.opengis.filter.spatial.Overlaps;
 import org.opengis.filter.spatial.Touches;
 import org.opengis.filter.spatial.Within;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.operation.MathTransform;
 import static org.junit.Assert.*;
 import static org.geotoolkit.filter.FilterTestConstants.*;
 
@@ -261,5 +270,49 @@ public class BinarySpatialTest {
         assertTrue(within.evaluate(CANDIDATE_1));
 
     }
-    
+
+    /**
+     * Filters with a literal operand reuse the prepared literal geometry,
+     * results must not change when the candidates crs changes.
+     */
+    @Test
+    public void testPreparedLiteral() throws Exception {
+        final CoordinateReferenceSystem wgs84 = DefaultGeographicCRS.WGS84;
+        final CoordinateReferenceSystem mercator = CRS.decode("EPSG:3395");
+        final MathTransform trs = CRS.findMathTransform(wgs84, mercator);
+        final Geometry literal = (Geometry) GEOM_CONTAINS.clone();
+        literal.setUserData(wgs84);
+
+        final Filter[] filters = {
+            FF.intersects(FF.property("geom"), FF.literal(literal)),
+            FF.intersects(FF.literal(literal), FF.property("geom")),
+            FF.contains(FF.literal(literal), FF.property("geom")),
+            FF.within(FF.property("geom"), FF.literal(literal)),
+            FF.disjoint(FF.property("geom"), FF.literal(literal))
+        };
+
+        final Map<String,Object> candidate = new HashMap<String,Object>();
+        for (CoordinateReferenceSystem crs : new CoordinateReferenceSystem[]{wgs84, mercator, wgs84}) {
+            for (int x = -2; x < 14; x++) {
+                for (int y = -2; y < 23; y += 3) {
+                    Geometry pt = GF.createPoint(new Coordinate(x + 0.5, y + 0.5));
+                    final boolean inside = literal.contains(pt);
+                    final boolean intersects = literal.intersects(pt);
+                    if (crs == mercator) {
+                        pt = JTS.transform(pt, trs);
+                    }
+                    pt.setUserData(crs);
+                    candidate.put("geom", pt);
+
+                    final String msg = pt.toString();
+                    assertEquals(msg, intersects, filters[0].evaluate(candidate));
+                    assertEquals(msg, intersects, filters[1].evaluate(candidate));
+                    assertEquals(msg, inside, filters[2].evaluate(candidate));
+                    assertEquals(msg, inside, filters[3].evaluate(candidate));
+                    assertEquals(msg, !intersects, filters[4].evaluate(candidate));
+                }
+            }
+        }
+    }
+
 }
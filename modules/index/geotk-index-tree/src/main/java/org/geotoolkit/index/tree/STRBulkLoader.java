@@ -0,0 +1,221 @@
+/*
+ *    Geotoolkit.org - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2008-2012, Open Source Geospatial Foundation (OSGeo)
+ *    (C) 2009-2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.index.tree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import org.geotoolkit.index.tree.hilbert.HilbertRTree;
+import org.geotoolkit.referencing.CRS;
+import org.geotoolkit.util.ArgumentChecks;
+import org.geotoolkit.util.collection.UnmodifiableArrayList;
+import org.opengis.geometry.Envelope;
+import org.opengis.geometry.MismatchedReferenceSystemException;
+import org.opengis.referencing.operation.TransformException;
+
+/**Fill a {@code Tree} in one pass with Sort-Tile-Recursive packing.
+ *
+ * <br/>
+ * Entries are sorted by their center on first axis and cut into slabs, each
+ * slab is sorted on next axis and so on, last axis is cut in groups of
+ * {@link Tree#getMaxElements()} elements which become tree leaves.
+ * Same process is repeated on leaves boundaries to build upper levels until
+ * only one root {@code Node} left. Resulting nodes are full, no split is done.
+ *
+ * <blockquote><font size=-1>
+ * <strong>NOTE: {@code HilbertRTree} leaves are packed at Hilbert order 0,
+ * their order increase later with new insertions.</strong>
+ * </font></blockquote>
+ *
+ * Example : <br/>
+ * <pre>
+ * {@code
+ * final Tree tree = TreeFactory.createStarRTree(16, crs, null, TreeNodeFactory.DEFAULT_FACTORY);
+ * STRBulkLoader.load(tree, envelopes);
+ * }
+ * </pre>
+ *
+ * @author Rémi Marechal (Geomatys).
+ */
+public final class STRBulkLoader {
+
+    private STRBulkLoader() {
+    }
+
+    /**
+     * Element to pack with its center coordinates computed once.
+     */
+    private static final class Item {
+        final Object value;
+        final double[] center;
+
+        Item(final Object value, final Envelope bound) {
+            this.value = value;
+            final int dim = bound.getDimension();
+            center = new double[dim];
+            for (int i = 0; i < dim; i++) {
+                center[i] = bound.getMedian(i);
+            }
+        }
+    }
+
+    /**
+     * Compare {@code Item} centers on one axis.
+     */
+    private static final class AxisComparator implements Comparator<Item> {
+        private final int axis;
+
+        AxisComparator(final int axis) {
+            this.axis = axis;
+        }
+
+        @Override
+        public int compare(final Item o1, final Item o2) {
+            return Double.compare(o1.center[axis], o2.center[axis]);
+        }
+    }
+
+    /**Fill tree with all entries.
+     *
+     * <blockquote><font size=-1>
+     * <strong>NOTE: if tree already contains entries, they are packed again with new ones.</strong>
+     * </font></blockquote>
+     *
+     * @param tree tree to fill.
+     * @param entries {@code Envelope}s to insert.
+     * @throws MismatchedReferenceSystemException if entry CRS is different from tree CRS
+     */
+    public static void load(final Tree tree, final Iterable<? extends Envelope> entries) throws IllegalArgumentException, TransformException {
+        ArgumentChecks.ensureNonNull("load : entries", entries);
+        load(tree, entries.iterator());
+    }
+
+    /**Fill tree with all entries given by iterator.
+     *
+     * <blockquote><font size=-1>
+     * <strong>NOTE: if tree already contains entries, they are packed again with new ones.</strong>
+     * </font></blockquote>
+     *
+     * @param tree tree to fill.
+     * @param entries {@code Envelope}s to insert.
+     * @throws MismatchedReferenceSystemException if entry CRS is different from tree CRS
+     */
+    public static void load(final Tree tree, final Iterator<? extends Envelope> entries) throws IllegalArgumentException, TransformException {
+        ArgumentChecks.ensureNonNull("load : tree", tree);
+        ArgumentChecks.ensureNonNull("load : entries", entries);
+        final List<Item> items = new ArrayList<Item>();
+        final Node oldRoot = tree.getRoot();
+        if (oldRoot != null && !oldRoot.isEmpty()) {
+            final List<Envelope> existing = new ArrayList<Envelope>();
+            tree.search(oldRoot.getBoundary(), existing);
+            for (Envelope env : existing) {
+                items.add(new Item(env, env));
+            }
+        }
+        while (entries.hasNext()) {
+            final Envelope entry = entries.next();
+            ArgumentChecks.ensureNonNull("load : entry", entry);
+            if (!CRS.equalsIgnoreMetadata(tree.getCrs(), entry.getCoordinateReferenceSystem())) {
+                throw new MismatchedReferenceSystemException();
+            }
+            items.add(new Item(entry, entry));
+        }
+        if (items.isEmpty()) {
+            tree.setRoot(null);
+            return;
+        }
+
+        final int dim = tree.getCrs().getCoordinateSystem().getDimension();
+        final int maxElements = tree.getMaxElements();
+        final boolean hilbert = tree instanceof HilbertRTree;
+
+        //leaves
+        List<Item> level = new ArrayList<Item>();
+        for (List<Item> group : pack(items, dim, maxElements)) {
+            final List<Envelope> leafEntries = new ArrayList<Envelope>(group.size());
+            for (Item it : group) {
+                leafEntries.add((Envelope) it.value);
+            }
+            final Node leaf = tree.createNode(tree, null, null, leafEntries);
+            level.add(new Item(leaf, leaf.getBoundary()));
+        }
+        items.clear();
+
+        //upper levels
+        while (level.size() > 1) {
+            final List<Item> upper = new ArrayList<Item>();
+            for (List<Item> group : pack(level, dim, maxElements)) {
+                final Node[] children = new Node[group.size()];
+                for (int i = 0; i < children.length; i++) {
+                    children[i] = (Node) group.get(i).value;
+                }
+                final Node branch = tree.createNode(tree, null, UnmodifiableArrayList.wrap(children), null);
+                if (hilbert) {
+                    branch.setUserProperty("hilbertOrder", 0);
+                }
+                upper.add(new Item(branch, branch.getBoundary()));
+            }
+            level = upper;
+        }
+        tree.setRoot((Node) level.get(0).value);
+    }
+
+    /**Cut items in groups of at most maxElements elements with Sort-Tile-Recursive order.
+     *
+     * @param items elements to pack.
+     * @param dim space dimension.
+     * @param maxElements max elements number per group.
+     * @return groups list.
+     */
+    private static List<List<Item>> pack(final List<Item> items, final int dim, final int maxElements) {
+        final Item[] array = items.toArray(new Item[items.size()]);
+        final List<List<Item>> groups = new ArrayList<List<Item>>((array.length + maxElements - 1) / maxElements);
+        tile(array, 0, array.length, 0, dim, maxElements, groups);
+        return groups;
+    }
+
+    /**Sort array range on axis then cut it in slabs, recursively on next axis.
+     *
+     * @param array elements to pack.
+     * @param from first index (inclusive).
+     * @param to last index (exclusive).
+     * @param axis axis to sort on.
+     * @param dim space dimension.
+     * @param maxElements max elements number per group.
+     * @param groups list where are added result groups.
+     */
+    private static void tile(final Item[] array, final int from, final int to, final int axis,
+            final int dim, final int maxElements, final List<List<Item>> groups) {
+        Arrays.sort(array, from, to, new AxisComparator(axis));
+        final int size = to - from;
+        if (axis == dim - 1) {
+            for (int i = from; i < to; i += maxElements) {
+                groups.add(Arrays.asList(Arrays.copyOfRange(array, i, Math.min(i + maxElements, to))));
+            }
+            return;
+        }
+        final int nbGroups = (size + maxElements - 1) / maxElements;
+        final int nbSlabs = (int) Math.ceil(Math.pow(nbGroups, 1.0 / (dim - axis)));
+        final int slabSize = maxElements * ((nbGroups + nbSlabs - 1) / nbSlabs);
+        for (int i = from; i < to; i += slabSize) {
+            tile(array, i, Math.min(i + slabSize, to), axis + 1, dim, maxElements, groups);
+        }
+    }
+}
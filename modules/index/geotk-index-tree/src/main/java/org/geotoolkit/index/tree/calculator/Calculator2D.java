@@ -47,9 +47,7 @@ public class Calculator2D extends Calculator {
 
         @Override
         public int compare(Node o1, Node o2) {
-            java.lang.Double x1 = new java.lang.Double(o1.getBoundary().getLowerCorner().getOrdinate(0));
-            java.lang.Double x2 = new java.lang.Double(o2.getBoundary().getLowerCorner().getOrdinate(0));
-            return x1.compareTo(x2);
+            return java.lang.Double.compare(o1.getBoundary().getMinimum(0), o2.getBoundary().getMinimum(0));
         }
     };
     /**
@@ -62,9 +60,7 @@ public class Calculator2D extends Calculator {
 
         @Override
         public int compare(Node o1, Node o2) {
-            java.lang.Double y1 = new java.lang.Double(o1.getBoundary().getLowerCorner().getOrdinate(1));
-            java.lang.Double y2 = new java.lang.Double(o2.getBoundary().getLowerCorner().getOrdinate(1));
-            return y1.compareTo(y2);
+            return java.lang.Double.compare(o1.getBoundary().getMinimum(1), o2.getBoundary().getMinimum(1));
         }
     };
     /**
@@ -77,9 +73,7 @@ public class Calculator2D extends Calculator {
 
         @Override
         public int compare(Envelope o1, Envelope o2) {
-            java.lang.Double x1 = new java.lang.Double(o1.getLowerCorner().getOrdinate(0));
-            java.lang.Double x2 = new java.lang.Double(o2.getLowerCorner().getOrdinate(0));
-            return x1.compareTo(x2);
+            return java.lang.Double.compare(o1.getMinimum(0), o2.getMinimum(0));
         }
     };
     /**
@@ -92,9 +86,7 @@ public class Calculator2D extends Calculator {
 
         @Override
         public int compare(Envelope o1, Envelope o2) {
-            java.lang.Double y1 = new java.lang.Double(o1.getLowerCorner().getOrdinate(1));
-            java.lang.Double y2 = new java.lang.Double(o2.getLowerCorner().getOrdinate(1));
-            return y1.compareTo(y2);
+            return java.lang.Double.compare(o1.getMinimum(1), o2.getMinimum(1));
         }
     };
     /**
@@ -107,9 +99,7 @@ public class Calculator2D extends Calculator {
 
         @Override
         public int compare(Node o1, Node o2) {
-            java.lang.Double x1 = new java.lang.Double(o1.getBoundary().getUpperCorner().getOrdinate(0));
-            java.lang.Double x2 = new java.lang.Double(o2.getBoundary().getUpperCorner().getOrdinate(0));
-            return x1.compareTo(x2);
+            return java.lang.Double.compare(o1.getBoundary().getMaximum(0), o2.getBoundary().getMaximum(0));
         }
     };
     /**
@@ -122,9 +112,7 @@ public class Calculator2D extends Calculator {
 
         @Override
         public int compare(Node o1, Node o2) {
-            java.lang.Double y1 = new java.lang.Double(o1.getBoundary().getUpperCorner().getOrdinate(1));
-            java.lang.Double y2 = new java.lang.Double(o2.getBoundary().getUpperCorner().getOrdinate(1));
-            return y1.compareTo(y2);
+            return java.lang.Double.compare(o1.getBoundary().getMaximum(1), o2.getBoundary().getMaximum(1));
         }
     };
     /**
@@ -137,9 +125,7 @@ public class Calculator2D extends Calculator {
 
         @Override
         public int compare(Envelope o1, Envelope o2) {
-            java.lang.Double x1 = new java.lang.Double(o1.getUpperCorner().getOrdinate(0));
-            java.lang.Double x2 = new java.lang.Double(o2.getUpperCorner().getOrdinate(0));
-            return x1.compareTo(x2);
+            return java.lang.Double.compare(o1.getMaximum(0), o2.getMaximum(0));
         }
     };
     /**
@@ -152,9 +138,7 @@ public class Calculator2D extends Calculator {
 
         @Override
         public int compare(Envelope o1, Envelope o2) {
-            java.lang.Double y1 = new java.lang.Double(o1.getUpperCorner().getOrdinate(1));
-            java.lang.Double y2 = new java.lang.Double(o2.getUpperCorner().getOrdinate(1));
-            return y1.compareTo(y2);
+            return java.lang.Double.compare(o1.getMaximum(1), o2.getMaximum(1));
         }
     };
 
@@ -206,9 +190,16 @@ public class Calculator2D extends Calculator {
      */
     @Override
     public double getOverlaps(final Envelope envelopA, final Envelope envelopB) {
-        final GeneralEnvelope ge = new GeneralEnvelope(envelopA);
-        ge.intersect(envelopB);
-        return getGeneralEnvelopArea(ge);
+        double overlaps = 1;
+        for (int i = 0; i < 2; i++) {
+            final double span = Math.min(envelopA.getMaximum(i), envelopB.getMaximum(i))
+                              - Math.max(envelopA.getMinimum(i), envelopB.getMinimum(i));
+            if (span <= 0) {
+                return 0;
+            }
+            overlaps *= span;
+        }
+        return overlaps;
     }
 
     /**
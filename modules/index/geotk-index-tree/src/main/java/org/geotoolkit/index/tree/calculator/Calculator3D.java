@@ -45,9 +45,7 @@ public class Calculator3D extends Calculator {
 
         @Override
         public int compare(Node o1, Node o2) {
-            java.lang.Double x1 = new java.lang.Double(o1.getBoundary().getLowerCorner().getOrdinate(0));
-            java.lang.Double x2 = new java.lang.Double(o2.getBoundary().getLowerCorner().getOrdinate(0));
-            return x1.compareTo(x2);
+            return java.lang.Double.compare(o1.getBoundary().getMinimum(0), o2.getBoundary().getMinimum(0));
         }
     };
 
@@ -58,9 +56,7 @@ public class Calculator3D extends Calculator {
 
         @Override
         public int compare(Node o1, Node o2) {
-            java.lang.Double y1 = new java.lang.Double(o1.getBoundary().getLowerCorner().getOrdinate(1));
-            java.lang.Double y2 = new java.lang.Double(o2.getBoundary().getLowerCorner().getOrdinate(1));
-            return y1.compareTo(y2);
+            return java.lang.Double.compare(o1.getBoundary().getMinimum(1), o2.getBoundary().getMinimum(1));
         }
     };
 
@@ -71,9 +67,7 @@ public class Calculator3D extends Calculator {
 
         @Override
         public int compare(Node o1, Node o2) {
-            java.lang.Double y1 = new java.lang.Double(o1.getBoundary().getLowerCorner().getOrdinate(2));
-            java.lang.Double y2 = new java.lang.Double(o2.getBoundary().getLowerCorner().getOrdinate(2));
-            return y1.compareTo(y2);
+            return java.lang.Double.compare(o1.getBoundary().getMinimum(2), o2.getBoundary().getMinimum(2));
         }
     };
 
@@ -84,9 +78,7 @@ public class Calculator3D extends Calculator {
 
         @Override
         public int compare(Envelope o1, Envelope o2) {
-            java.lang.Double x1 = new java.lang.Double(o1.getLowerCorner().getOrdinate(0));
-            java.lang.Double x2 = new java.lang.Double(o2.getLowerCorner().getOrdinate(0));
-            return x1.compareTo(x2);
+            return java.lang.Double.compare(o1.getMinimum(0), o2.getMinimum(0));
         }
     };
 
@@ -97,9 +89,7 @@ public class Calculator3D extends Calculator {
 
         @Override
         public int compare(Envelope o1, Envelope o2) {
-            java.lang.Double y1 = new java.lang.Double(o1.getLowerCorner().getOrdinate(1));
-            java.lang.Double y2 = new java.lang.Double(o2.getLowerCorner().getOrdinate(1));
-            return y1.compareTo(y2);
+            return java.lang.Double.compare(o1.getMinimum(1), o2.getMinimum(1));
         }
     };
 
@@ -110,9 +100,7 @@ public class Calculator3D extends Calculator {
 
         @Override
         public int compare(Envelope o1, Envelope o2) {
-            java.lang.Double y1 = new java.lang.Double(o1.getLowerCorner().getOrdinate(2));
-            java.lang.Double y2 = new java.lang.Double(o2.getLowerCorner().getOrdinate(2));
-            return y1.compareTo(y2);
+            return java.lang.Double.compare(o1.getMinimum(2), o2.getMinimum(2));
         }
     };
 
@@ -123,9 +111,7 @@ public class Calculator3D extends Calculator {
 
         @Override
         public int compare(Node o1, Node o2) {
-            java.lang.Double x1 = new java.lang.Double(o1.getBoundary().getUpperCorner().getOrdinate(0));
-            java.lang.Double x2 = new java.lang.Double(o2.getBoundary().getUpperCorner().getOrdinate(0));
-            return x1.compareTo(x2);
+            return java.lang.Double.compare(o1.getBoundary().getMaximum(0), o2.getBoundary().getMaximum(0));
         }
     };
 
@@ -136,9 +122,7 @@ public class Calculator3D extends Calculator {
 
         @Override
         public int compare(Node o1, Node o2) {
-            java.lang.Double y1 = new java.lang.Double(o1.getBoundary().getUpperCorner().getOrdinate(1));
-            java.lang.Double y2 = new java.lang.Double(o2.getBoundary().getUpperCorner().getOrdinate(1));
-            return y1.compareTo(y2);
+            return java.lang.Double.compare(o1.getBoundary().getMaximum(1), o2.getBoundary().getMaximum(1));
         }
     };
 
@@ -149,9 +133,7 @@ public class Calculator3D extends Calculator {
 
         @Override
         public int compare(Node o1, Node o2) {
-            java.lang.Double y1 = new java.lang.Double(o1.getBoundary().getUpperCorner().getOrdinate(2));
-            java.lang.Double y2 = new java.lang.Double(o2.getBoundary().getUpperCorner().getOrdinate(2));
-            return y1.compareTo(y2);
+            return java.lang.Double.compare(o1.getBoundary().getMaximum(2), o2.getBoundary().getMaximum(2));
         }
     };
 
@@ -162,9 +144,7 @@ public class Calculator3D extends Calculator {
 
         @Override
         public int compare(Envelope o1, Envelope o2) {
-            java.lang.Double x1 = new java.lang.Double(o1.getUpperCorner().getOrdinate(0));
-            java.lang.Double x2 = new java.lang.Double(o2.getUpperCorner().getOrdinate(0));
-            return x1.compareTo(x2);
+            return java.lang.Double.compare(o1.getMaximum(0), o2.getMaximum(0));
         }
     };
 
@@ -175,9 +155,7 @@ public class Calculator3D extends Calculator {
 
         @Override
         public int compare(Envelope o1, Envelope o2) {
-            java.lang.Double y1 = new java.lang.Double(o1.getUpperCorner().getOrdinate(1));
-            java.lang.Double y2 = new java.lang.Double(o2.getUpperCorner().getOrdinate(1));
-            return y1.compareTo(y2);
+            return java.lang.Double.compare(o1.getMaximum(1), o2.getMaximum(1));
         }
     };
 
@@ -188,9 +166,7 @@ public class Calculator3D extends Calculator {
 
         @Override
         public int compare(Envelope o1, Envelope o2) {
-            java.lang.Double y1 = new java.lang.Double(o1.getUpperCorner().getOrdinate(2));
-            java.lang.Double y2 = new java.lang.Double(o2.getUpperCorner().getOrdinate(2));
-            return y1.compareTo(y2);
+            return java.lang.Double.compare(o1.getMaximum(2), o2.getMaximum(2));
         }
     };
 
@@ -242,9 +218,16 @@ public class Calculator3D extends Calculator {
      */
     @Override
     public double getOverlaps(final Envelope envelopA, final Envelope envelopB) {
-        final GeneralEnvelope ge = new GeneralEnvelope(envelopA);
-        ge.intersect(envelopB);
-        return getGeneralEnvelopBulk(ge);
+        double overlaps = 1;
+        for (int i = 0; i < 3; i++) {
+            final double span = Math.min(envelopA.getMaximum(i), envelopB.getMaximum(i))
+                              - Math.max(envelopA.getMinimum(i), envelopB.getMinimum(i));
+            if (span <= 0) {
+                return 0;
+            }
+            overlaps *= span;
+        }
+        return overlaps;
     }
 
     /**
@@ -150,7 +150,7 @@ public class HilbertRTree extends DefaultAbstractTree {
                     }
                 }
             }else{
-                final GeneralEnvelope rS = new GeneralEnvelope(regionSearch);
+                final GeneralEnvelope rS = (regionSearch instanceof GeneralEnvelope) ? (GeneralEnvelope) regionSearch : new GeneralEnvelope(regionSearch);
                 if(rS.contains(bound, true)){
                     searchHilbertNode(candidate, null, resultList);
                 }else if(rS.intersects(bound, true)){
@@ -169,7 +169,7 @@ public class HilbertRTree extends DefaultAbstractTree {
                         }
                     }else{
                         for(Node child : candidate.getChildren()){
-                            searchHilbertNode(child, regionSearch, resultList);
+                            searchHilbertNode(child, rS, resultList);
                         }
                     }
                 }
@@ -0,0 +1,168 @@
+/*
+ *    Geotoolkit.org - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2008-2012, Open Source Geospatial Foundation (OSGeo)
+ *    (C) 2009-2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.index.tree.io;
+
+import java.nio.MappedByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import org.geotoolkit.index.tree.Node;
+import org.geotoolkit.index.tree.Tree;
+import org.geotoolkit.util.collection.UnmodifiableArrayList;
+import org.opengis.geometry.Envelope;
+
+/**Read only {@code Node} decoded from a {@link MappedTree} record
+ * when its content is asked.
+ *
+ * @author Rémi Marechal (Geomatys)
+ */
+final class MappedNode extends Node {
+
+    private final long offset;
+    private List<Node> children;
+    private List<Envelope> entries;
+
+    /**
+     * @param tree mapped tree which contains record.
+     * @param parent {@code Node} parent pointer.
+     * @param offset node record offset in file.
+     */
+    MappedNode(final MappedTree tree, final Node parent, final long offset) {
+        this.tree   = tree;
+        this.parent = parent;
+        this.offset = offset;
+    }
+
+    private MappedByteBuffer buffer() {
+        return ((MappedTree) tree).getBuffer(offset);
+    }
+
+    private int position() {
+        return (int) (offset % MappedTree.CHUNK_SIZE);
+    }
+
+    private int count() {
+        return buffer().getInt(position() + 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setParent(final Node parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized List<Node> getChildren() {
+        if (children == null) {
+            if (isLeaf()) {
+                children = Collections.emptyList();
+            } else {
+                final MappedTree mt = (MappedTree) tree;
+                final MappedByteBuffer buffer = buffer();
+                final int count = count();
+                final int step = 16 * mt.getDimension() + 8;
+                final Node[] nodes = new Node[count];
+                int elt = position() + MappedTree.nodeHeaderSize(mt.getDimension()) + step - 8;
+                for (int i = 0; i < count; i++, elt += step) {
+                    nodes[i] = new MappedNode(mt, this, buffer.getLong(elt));
+                }
+                children = UnmodifiableArrayList.wrap(nodes);
+            }
+        }
+        return children;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized List<Envelope> getEntries() {
+        if (entries == null) {
+            if (!isLeaf()) {
+                entries = Collections.emptyList();
+            } else {
+                final MappedTree mt = (MappedTree) tree;
+                final MappedByteBuffer buffer = buffer();
+                final int count = count();
+                final int step = 16 * mt.getDimension();
+                final Envelope[] envs = new Envelope[count];
+                int elt = position() + MappedTree.nodeHeaderSize(mt.getDimension());
+                for (int i = 0; i < count; i++, elt += step) {
+                    envs[i] = mt.readEnvelope(buffer, elt);
+                }
+                entries = UnmodifiableArrayList.wrap(envs);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isLeaf() {
+        return buffer().get(position()) == MappedTree.LEAF;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEmpty() {
+        return count() == 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isFull() {
+        return count() >= tree.getMaxElements();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Envelope getBoundary() {
+        if (boundary == null) {
+            boundary = ((MappedTree) tree).readEnvelope(buffer(), position() + 5);
+        }
+        return boundary;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Node getParent() {
+        return parent;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Tree getTree() {
+        return tree;
+    }
+}
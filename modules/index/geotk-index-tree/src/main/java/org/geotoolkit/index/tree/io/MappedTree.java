@@ -0,0 +1,353 @@
+/*
+ *    Geotoolkit.org - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2008-2012, Open Source Geospatial Foundation (OSGeo)
+ *    (C) 2009-2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.index.tree.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import org.geotoolkit.geometry.GeneralEnvelope;
+import org.geotoolkit.index.tree.Node;
+import org.geotoolkit.index.tree.Tree;
+import org.geotoolkit.index.tree.calculator.Calculator;
+import org.geotoolkit.index.tree.calculator.DefaultCalculator;
+import org.geotoolkit.index.tree.nodefactory.NodeFactory;
+import org.geotoolkit.index.tree.nodefactory.TreeNodeFactory;
+import org.geotoolkit.referencing.CRS;
+import org.geotoolkit.util.ArgumentChecks;
+import org.geotoolkit.util.converter.Classes;
+import org.opengis.geometry.Envelope;
+import org.opengis.geometry.MismatchedReferenceSystemException;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+/**Read only {@code Tree} searched straight from a memory mapped file
+ * written by {@link MappedTreeWriter}.
+ *
+ * <br/>
+ * Nothing is decoded when the file is opened : search reads node boundaries
+ * and entries from the mapped buffers, only result entries are created on heap.
+ * {@link #getRoot()} gives access to lazily decoded {@code Node}s.
+ * <br/>
+ * File layout (big endian) :<br/>
+ * - header page : magic, version, dimension, max elements, page size, root offset, node count, entry count.<br/>
+ * - node record : type byte, elements count, node boundary, then for a leaf entries
+ *   boundaries, for a branch children boundaries each followed by child record offset.<br/>
+ * Envelopes are stored as lower corner coordinates followed by upper corner coordinates.
+ *
+ * <blockquote><font size=-1>
+ * <strong>NOTE: insert, delete and setRoot are not supported.</strong>
+ * </font></blockquote>
+ *
+ * @author Rémi Marechal (Geomatys)
+ * @author Johann Sorel (Geomatys)
+ */
+public class MappedTree implements Tree {
+
+    static final int MAGIC      = 0x47544B52;
+    static final int VERSION    = 1;
+    static final int PAGE_SIZE  = 4096;
+    static final long CHUNK_SIZE = 1L << 30;
+    static final byte BRANCH    = 0;
+    static final byte LEAF      = 1;
+
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final MappedByteBuffer[] chunks;
+    private final CoordinateReferenceSystem crs;
+    private final Calculator calculator;
+    private final int dimension;
+    private final int maxElements;
+    private final long rootOffset;
+    private final long nodeCount;
+    private final long entryCount;
+
+    /**Map tree file.
+     *
+     * @param input file written by {@link MappedTreeWriter}.
+     * @param crs tree coordinate reference system, not stored in file.
+     * @throws IOException if file is not a valid mapped tree.
+     */
+    public MappedTree(final File input, final CoordinateReferenceSystem crs) throws IOException {
+        ArgumentChecks.ensureNonNull("MappedTree : input", input);
+        ArgumentChecks.ensureNonNull("MappedTree : crs", crs);
+        this.crs = crs;
+        raf = new RandomAccessFile(input, "r");
+        channel = raf.getChannel();
+        try {
+            final long size = channel.size();
+            if (size < PAGE_SIZE) {
+                throw new IOException("Not a mapped tree file : " + input);
+            }
+            final int nbChunk = (int) ((size + CHUNK_SIZE - 1) / CHUNK_SIZE);
+            chunks = new MappedByteBuffer[nbChunk];
+            for (int i = 0; i < nbChunk; i++) {
+                final long start = i * CHUNK_SIZE;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(CHUNK_SIZE, size - start));
+            }
+            final MappedByteBuffer header = chunks[0];
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException("Not a mapped tree file : " + input);
+            }
+            if (header.getInt(4) != VERSION) {
+                throw new IOException("Unsupported mapped tree version : " + header.getInt(4));
+            }
+            dimension   = header.getInt(8);
+            maxElements = header.getInt(12);
+            if (header.getInt(16) != PAGE_SIZE) {
+                throw new IOException("Unsupported mapped tree page size : " + header.getInt(16));
+            }
+            rootOffset  = header.getLong(20);
+            nodeCount   = header.getLong(28);
+            entryCount  = header.getLong(36);
+        } catch (IOException ex) {
+            raf.close();
+            throw ex;
+        }
+        if (crs.getCoordinateSystem().getDimension() != dimension) {
+            raf.close();
+            throw new IllegalArgumentException("CoordinateSystem dimension from CRS does not match tree file dimension : " + dimension);
+        }
+        switch (dimension) {
+            case 2  : calculator = DefaultCalculator.CALCULATOR_2D; break;
+            case 3  : calculator = DefaultCalculator.CALCULATOR_3D; break;
+            default : calculator = null;
+        }
+    }
+
+    /**
+     * @param dimension space dimension.
+     * @return node record size without its elements.
+     */
+    static int nodeHeaderSize(final int dimension) {
+        return 1 + 4 + 16 * dimension;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void search(final Envelope regionSearch, final List<Envelope> result) throws IllegalArgumentException {
+        ArgumentChecks.ensureNonNull("search : region search", regionSearch);
+        ArgumentChecks.ensureNonNull("search : result", result);
+        if (!CRS.equalsIgnoreMetadata(crs, regionSearch.getCoordinateReferenceSystem())) {
+            throw new MismatchedReferenceSystemException();
+        }
+        if (rootOffset < 0) {
+            return;
+        }
+        final double[] region = new double[2 * dimension];
+        for (int i = 0; i < dimension; i++) {
+            region[i]             = regionSearch.getMinimum(i);
+            region[i + dimension] = regionSearch.getMaximum(i);
+        }
+        if (intersects(region, rootOffset + 5, false)) {
+            nodeSearch(rootOffset, region, intersects(region, rootOffset + 5, true), result);
+        }
+    }
+
+    /**Find all entries which intersect region in node record.
+     *
+     * @param offset node record offset.
+     * @param region lower upper search coordinates.
+     * @param within true if region contains all node, then no more test are done.
+     * @param result {@code List} where is add search resulting.
+     */
+    private void nodeSearch(final long offset, final double[] region, final boolean within, final List<Envelope> result) {
+        final MappedByteBuffer buffer = chunks[(int) (offset / CHUNK_SIZE)];
+        final int pos   = (int) (offset % CHUNK_SIZE);
+        final int count = buffer.getInt(pos + 1);
+        final int coordSize = 16 * dimension;
+        int elt = pos + nodeHeaderSize(dimension);
+        if (buffer.get(pos) == LEAF) {
+            for (int i = 0; i < count; i++, elt += coordSize) {
+                if (within || intersects(region, offset - pos + elt, false)) {
+                    result.add(readEnvelope(buffer, elt));
+                }
+            }
+        } else {
+            for (int i = 0; i < count; i++, elt += coordSize + 8) {
+                final long childOffset = offset - pos + elt;
+                if (within) {
+                    nodeSearch(buffer.getLong(elt + coordSize), region, true, result);
+                } else if (intersects(region, childOffset, false)) {
+                    nodeSearch(buffer.getLong(elt + coordSize), region, intersects(region, childOffset, true), result);
+                }
+            }
+        }
+    }
+
+    /**Compare region with envelope stored at offset, edges inclusive.
+     *
+     * @param region lower upper search coordinates.
+     * @param offset envelope offset in file.
+     * @param contains true to test if region contains envelope, false to test intersection.
+     */
+    private boolean intersects(final double[] region, final long offset, final boolean contains) {
+        final MappedByteBuffer buffer = chunks[(int) (offset / CHUNK_SIZE)];
+        final int pos = (int) (offset % CHUNK_SIZE);
+        for (int i = 0; i < dimension; i++) {
+            final double min = buffer.getDouble(pos + 8 * i);
+            final double max = buffer.getDouble(pos + 8 * (i + dimension));
+            if (contains) {
+                if (min < region[i] || max > region[i + dimension]) return false;
+            } else {
+                if (max < region[i] || min > region[i + dimension]) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return envelope stored at position in buffer.
+     */
+    GeneralEnvelope readEnvelope(final MappedByteBuffer buffer, final int position) {
+        final double[] coords = new double[2 * dimension];
+        for (int i = 0; i < coords.length; i++) {
+            coords[i] = buffer.getDouble(position + 8 * i);
+        }
+        final GeneralEnvelope env = new GeneralEnvelope(crs);
+        env.setEnvelope(coords);
+        return env;
+    }
+
+    /**
+     * @return buffer which contains record at offset.
+     */
+    MappedByteBuffer getBuffer(final long offset) {
+        return chunks[(int) (offset / CHUNK_SIZE)];
+    }
+
+    /**
+     * @return space dimension of stored envelopes.
+     */
+    int getDimension() {
+        return dimension;
+    }
+
+    /**
+     * @return number of nodes stored in file.
+     */
+    public long getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * @return number of entries stored in file.
+     */
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    /**Release file handle. Mapped buffers are released when garbage collected.
+     * Tree should not be used after this method has been called.
+     *
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        raf.close();
+    }
+
+    /**
+     * Not supported, mapped tree is read only.
+     */
+    @Override
+    public void insert(final Envelope entry) throws IllegalArgumentException {
+        throw new UnsupportedOperationException("Mapped tree is read only.");
+    }
+
+    /**
+     * Not supported, mapped tree is read only.
+     */
+    @Override
+    public void delete(final Envelope entry) throws IllegalArgumentException {
+        throw new UnsupportedOperationException("Mapped tree is read only.");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getMaxElements() {
+        return maxElements;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <blockquote><font size=-1>
+     * <strong>NOTE: returned {@code Node} decode its children only when they are asked.</strong>
+     * </font></blockquote>
+     */
+    @Override
+    public Node getRoot() {
+        if (rootOffset < 0) {
+            return null;
+        }
+        return new MappedNode(this, null, rootOffset);
+    }
+
+    /**
+     * Not supported, mapped tree is read only.
+     */
+    @Override
+    public void setRoot(final Node root) {
+        throw new UnsupportedOperationException("Mapped tree is read only.");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CoordinateReferenceSystem getCrs() {
+        return crs;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Calculator getCalculator() {
+        return calculator;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public NodeFactory getNodeFactory() {
+        return TreeNodeFactory.DEFAULT_FACTORY;
+    }
+
+    /**
+     * Not supported, mapped tree is read only.
+     */
+    @Override
+    public Node createNode(final Tree tree, final Node parent, final List<Node> listChildren, final List<Envelope> listEntries, final double... coordinates) {
+        throw new UnsupportedOperationException("Mapped tree is read only.");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return Classes.getShortClassName(this) + " : " + nodeCount + " nodes, " + entryCount + " entries.";
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ *    Geotoolkit.org - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2008-2012, Open Source Geospatial Foundation (OSGeo)
+ *    (C) 2009-2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.index.tree.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import org.geotoolkit.index.tree.Node;
+import org.geotoolkit.index.tree.Tree;
+import org.geotoolkit.util.ArgumentChecks;
+import org.opengis.geometry.Envelope;
+
+import static org.geotoolkit.index.tree.io.MappedTree.*;
+
+/**Write a {@code Tree} in the page aligned binary format read by {@link MappedTree}.
+ *
+ * <br/>
+ * Nodes are written children first, each parent record holding the boundary
+ * and the file offset of its children. A node record never straddles a page
+ * boundary when it fits in one page, so a search only touches the pages of
+ * the nodes it really visits.
+ * <br/>
+ * Example : <br/>
+ * <pre>
+ * {@code
+ * MappedTreeWriter.write(tree, file);
+ * final MappedTree mapped = new MappedTree(file, tree.getCrs());
+ * mapped.search(regionSearch, result);
+ * }
+ * </pre>
+ *
+ * @author Rémi Marechal (Geomatys)
+ * @author Johann Sorel (Geomatys)
+ */
+public class MappedTreeWriter {
+
+    private final File output;
+    private DataOutputStream dataOPStream = null;
+    private long position;
+    private long nodeCount;
+    private long entryCount;
+    private int dimension;
+
+    /**
+     * @param output file where tree will be written.
+     */
+    public MappedTreeWriter(final File output) {
+        ArgumentChecks.ensureNonNull("MappedTreeWriter : output", output);
+        this.output = output;
+    }
+
+    /**Write tree in mapped binary format.
+     *
+     * @param tree
+     * @throws IOException
+     */
+    public void write(final Tree tree) throws IOException {
+        ArgumentChecks.ensureNonNull("write : tree", tree);
+        dimension   = tree.getCrs().getCoordinateSystem().getDimension();
+        nodeCount   = 0;
+        entryCount  = 0;
+        dataOPStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output), PAGE_SIZE * 16));
+        long rootOffset = -1;
+        try {
+            //header page is written at the end, when root offset is known.
+            dataOPStream.write(new byte[PAGE_SIZE]);
+            position = PAGE_SIZE;
+            final Node root = tree.getRoot();
+            if (root != null && !root.isEmpty()) {
+                rootOffset = writeNode(root);
+            }
+        } finally {
+            dataOPStream.close();
+            dataOPStream = null;
+        }
+
+        final RandomAccessFile raf = new RandomAccessFile(output, "rw");
+        try {
+            raf.seek(0);
+            raf.writeInt(MAGIC);
+            raf.writeInt(VERSION);
+            raf.writeInt(dimension);
+            raf.writeInt(tree.getMaxElements());
+            raf.writeInt(PAGE_SIZE);
+            raf.writeLong(rootOffset);
+            raf.writeLong(nodeCount);
+            raf.writeLong(entryCount);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**Write node sub-tree, children before parent.
+     *
+     * @param node
+     * @return offset of node record in file.
+     * @throws IOException
+     */
+    private long writeNode(final Node node) throws IOException {
+        final int coordLength = 2 * dimension;
+        final int headerSize  = nodeHeaderSize(dimension);
+        if (node.isLeaf()) {
+            //hilbert leaf store its entries within cells.
+            final List<Envelope> entries = new ArrayList<Envelope>(node.getEntries());
+            for (Node cell : node.getChildren()) {
+                entries.addAll(cell.getEntries());
+            }
+            final int size = entries.size();
+            final long offset = align(headerSize + (long) size * coordLength * 8);
+            dataOPStream.writeByte(LEAF);
+            dataOPStream.writeInt(size);
+            writeEnvelope(node.getBoundary());
+            for (Envelope entry : entries) {
+                writeEnvelope(entry);
+            }
+            position += headerSize + (long) size * coordLength * 8;
+            entryCount += size;
+            nodeCount++;
+            return offset;
+        }
+
+        final List<Node> children = new ArrayList<Node>();
+        for (Node child : node.getChildren()) {
+            if (!child.isEmpty()) {
+                children.add(child);
+            }
+        }
+        final int size = children.size();
+        final long[] offsets = new long[size];
+        for (int i = 0; i < size; i++) {
+            offsets[i] = writeNode(children.get(i));
+        }
+        final long offset = align(headerSize + (long) size * (coordLength * 8 + 8));
+        dataOPStream.writeByte(BRANCH);
+        dataOPStream.writeInt(size);
+        writeEnvelope(node.getBoundary());
+        for (int i = 0; i < size; i++) {
+            writeEnvelope(children.get(i).getBoundary());
+            dataOPStream.writeLong(offsets[i]);
+        }
+        position += headerSize + (long) size * (coordLength * 8 + 8);
+        nodeCount++;
+        return offset;
+    }
+
+    /**Pad output so that a record of given length doesn't straddle a page
+     * (or a mapped chunk for records larger than a page).
+     *
+     * @param length record length in bytes.
+     * @return record offset.
+     * @throws IOException
+     */
+    private long align(final long length) throws IOException {
+        if (length > CHUNK_SIZE) {
+            throw new IOException("Node record too large for mapped format : " + length + " bytes.");
+        }
+        final long inPage = position % PAGE_SIZE;
+        long padding = 0;
+        if (inPage != 0 && (length > PAGE_SIZE || inPage + length > PAGE_SIZE)) {
+            padding = PAGE_SIZE - inPage;
+        }
+        final long inChunk = (position + padding) % CHUNK_SIZE;
+        if (inChunk + length > CHUNK_SIZE) {
+            padding += CHUNK_SIZE - inChunk;
+        }
+        while (padding > 0) {
+            final int n = (int) Math.min(padding, PAGE_SIZE);
+            dataOPStream.write(new byte[n]);
+            padding  -= n;
+            position += n;
+        }
+        return position;
+    }
+
+    /**Write lower then upper corner coordinates.
+     *
+     * @param env
+     * @throws IOException
+     */
+    private void writeEnvelope(final Envelope env) throws IOException {
+        if (env.getDimension() != dimension) {
+            throw new IOException("Envelope dimension " + env.getDimension() + " does not match tree dimension " + dimension);
+        }
+        for (int i = 0; i < dimension; i++) {
+            dataOPStream.writeDouble(env.getMinimum(i));
+        }
+        for (int i = 0; i < dimension; i++) {
+            dataOPStream.writeDouble(env.getMaximum(i));
+        }
+    }
+
+    /**To write one time without MappedTreeWriter re-utilization.
+     *
+     * @param tree
+     * @param output
+     * @throws IOException
+     */
+    public static void write(final Tree tree, final File output) throws IOException {
+        ArgumentChecks.ensureNonNull("static write : tree", tree);
+        new MappedTreeWriter(output).write(tree);
+    }
+}
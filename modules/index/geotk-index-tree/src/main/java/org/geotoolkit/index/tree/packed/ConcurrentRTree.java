@@ -0,0 +1,333 @@
+/*
+ *    Geotoolkit.org - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2008-2012, Open Source Geospatial Foundation (OSGeo)
+ *    (C) 2009-2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.index.tree.packed;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.geotoolkit.referencing.CRS;
+import org.geotoolkit.util.ArgumentChecks;
+import org.geotoolkit.util.converter.Classes;
+import org.opengis.geometry.Envelope;
+import org.opengis.geometry.MismatchedReferenceSystemException;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+/**
+ * R-Tree which can be searched by any number of threads while entries are inserted or deleted.
+ *
+ * <br/>
+ * Content is an immutable snapshot made of a small buffer of last inserted entries
+ * and a few {@link PackedRTree} levels of growing sizes. Search reads the current
+ * snapshot without any lock. Insert and delete are serialized : they build a new
+ * snapshot, copying only the buffer or the modified level, then publish it.
+ * When the buffer is full it becomes a new level, merged with all smaller levels,
+ * so each entry is packed again only a logarithmic number of times.
+ * Deleted entries are marked in their level, which is packed again when too many
+ * of its entries are deleted.
+ *
+ * <blockquote><font size=-1>
+ * <strong>NOTE: a search sees tree content as it was when search started.</strong>
+ * </font></blockquote>
+ *
+ * @author Rémi Marechal (Geomatys).
+ * @author Johann Sorel  (Geomatys).
+ */
+public class ConcurrentRTree {
+
+    /**
+     * Default number of inserted entries kept before being packed.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 256;
+
+    /**
+     * Immutable packed entries with their deleted identifiers.
+     */
+    private static final class Level {
+        final PackedRTree tree;
+        final Envelope[] entries;
+        /** Sorted identifiers of deleted entries. */
+        final int[] deleted;
+
+        Level(final int maxElements, final Envelope[] entries) {
+            this(new PackedRTree(maxElements, Arrays.asList(entries)), entries, new int[0]);
+        }
+
+        Level(final PackedRTree tree, final Envelope[] entries, final int[] deleted) {
+            this.tree    = tree;
+            this.entries = entries;
+            this.deleted = deleted;
+        }
+
+        int liveSize() {
+            return entries.length - deleted.length;
+        }
+
+        boolean isDeleted(final int id) {
+            return deleted.length != 0 && Arrays.binarySearch(deleted, id) >= 0;
+        }
+
+        void addLiveEntries(final List<Envelope> target) {
+            for (int i = 0; i < entries.length; i++) {
+                if (!isDeleted(i)) {
+                    target.add(entries[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Immutable tree content.
+     */
+    private static final class Snapshot {
+        /** Levels sorted by increasing size. */
+        final Level[] levels;
+        final Envelope[] buffer;
+        final int size;
+
+        Snapshot(final Level[] levels, final Envelope[] buffer, final int size) {
+            this.levels = levels;
+            this.buffer = buffer;
+            this.size   = size;
+        }
+    }
+
+    private final CoordinateReferenceSystem crs;
+    private final int dimension;
+    private final int maxElements;
+    private final int bufferSize;
+    private volatile Snapshot snapshot;
+
+    /**Create an empty tree.
+     *
+     * @param maxElements max elements number per node.
+     * @param crs associate coordinate system.
+     */
+    public ConcurrentRTree(final int maxElements, final CoordinateReferenceSystem crs) {
+        this(maxElements, crs, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**Create an empty tree.
+     *
+     * @param maxElements max elements number per node.
+     * @param crs associate coordinate system.
+     * @param bufferSize number of inserted entries kept before being packed.
+     */
+    public ConcurrentRTree(final int maxElements, final CoordinateReferenceSystem crs, final int bufferSize) {
+        ArgumentChecks.ensureNonNull("Create Tree : CRS", crs);
+        ArgumentChecks.ensureBetween("Create Tree : maxElements", 2, Integer.MAX_VALUE, maxElements);
+        ArgumentChecks.ensureStrictlyPositive("Create Tree : bufferSize", bufferSize);
+        this.crs         = crs;
+        this.dimension   = crs.getCoordinateSystem().getDimension();
+        this.maxElements = maxElements;
+        this.bufferSize  = bufferSize;
+        this.snapshot    = new Snapshot(new Level[0], new Envelope[0], 0);
+    }
+
+    /**
+     * @return associate crs.
+     */
+    public CoordinateReferenceSystem getCrs() {
+        return crs;
+    }
+
+    /**
+     * @return max elements number per node.
+     */
+    public int getMaxElements() {
+        return maxElements;
+    }
+
+    /**
+     * @return number of entries in tree.
+     */
+    public int size() {
+        return snapshot.size;
+    }
+
+    /**
+     * Find entries which intersect regionSearch parameter and add them into result {@code List}.
+     * This method never blocks, even while entries are inserted.
+     *
+     * @param regionSearch Define the region to find entries within tree.
+     * @param result List of entries.
+     * @throws MismatchedReferenceSystemException if region CRS is different from tree CRS
+     */
+    public void search(final Envelope regionSearch, final List<Envelope> result) throws IllegalArgumentException {
+        ArgumentChecks.ensureNonNull("search : region search", regionSearch);
+        ArgumentChecks.ensureNonNull("search : result", result);
+        checkCRS(regionSearch);
+        final Snapshot current = snapshot;
+        final double[] region = toCoordinates(regionSearch);
+        for (final Level level : current.levels) {
+            level.tree.search(region, new IdVisitor() {
+                @Override
+                public boolean visit(final int id) {
+                    if (!level.isDeleted(id)) {
+                        result.add(level.entries[id]);
+                    }
+                    return true;
+                }
+            });
+        }
+        for (Envelope entry : current.buffer) {
+            if (intersects(region, entry)) {
+                result.add(entry);
+            }
+        }
+    }
+
+    /**
+     * Insert an entry. Writers are serialized, searches are not blocked.
+     *
+     * @param entry to insert into tree.
+     * @throws MismatchedReferenceSystemException if entry CRS is different from tree CRS
+     */
+    public synchronized void insert(final Envelope entry) throws IllegalArgumentException {
+        ArgumentChecks.ensureNonNull("insert : entry", entry);
+        checkCRS(entry);
+        final Snapshot current = snapshot;
+        final Envelope[] buffer = Arrays.copyOf(current.buffer, current.buffer.length + 1);
+        buffer[buffer.length - 1] = entry;
+        if (buffer.length < bufferSize) {
+            snapshot = new Snapshot(current.levels, buffer, current.size + 1);
+            return;
+        }
+
+        //buffer is full : merge it with all levels which are not larger.
+        final List<Envelope> merged = new ArrayList<Envelope>(Arrays.asList(buffer));
+        final Level[] levels = current.levels;
+        int first = 0;
+        while (first < levels.length && levels[first].liveSize() <= merged.size()) {
+            levels[first].addLiveEntries(merged);
+            first++;
+        }
+        final Level[] newLevels = new Level[levels.length - first + 1];
+        newLevels[0] = new Level(maxElements, merged.toArray(new Envelope[merged.size()]));
+        System.arraycopy(levels, first, newLevels, 1, levels.length - first);
+        snapshot = new Snapshot(newLevels, new Envelope[0], current.size + 1);
+    }
+
+    /**
+     * Find an entry equals to given one and delete it. Writers are serialized, searches are not blocked.
+     *
+     * @param entry to delete.
+     * @return true if an entry has been deleted.
+     * @throws MismatchedReferenceSystemException if entry CRS is different from tree CRS
+     */
+    public synchronized boolean delete(final Envelope entry) throws IllegalArgumentException {
+        ArgumentChecks.ensureNonNull("delete : entry", entry);
+        checkCRS(entry);
+        final Snapshot current = snapshot;
+
+        final Envelope[] buffer = current.buffer;
+        for (int i = 0; i < buffer.length; i++) {
+            if (buffer[i].equals(entry)) {
+                final Envelope[] newBuffer = new Envelope[buffer.length - 1];
+                System.arraycopy(buffer, 0, newBuffer, 0, i);
+                System.arraycopy(buffer, i + 1, newBuffer, i, buffer.length - i - 1);
+                snapshot = new Snapshot(current.levels, newBuffer, current.size - 1);
+                return true;
+            }
+        }
+
+        final double[] region = toCoordinates(entry);
+        final Level[] levels = current.levels;
+        for (int l = 0; l < levels.length; l++) {
+            final Level level = levels[l];
+            final int[] found = new int[]{-1};
+            level.tree.search(region, new IdVisitor() {
+                @Override
+                public boolean visit(final int id) {
+                    if (!level.isDeleted(id) && level.entries[id].equals(entry)) {
+                        found[0] = id;
+                        return false;
+                    }
+                    return true;
+                }
+            });
+            if (found[0] < 0) {
+                continue;
+            }
+            final int pos = -(Arrays.binarySearch(level.deleted, found[0]) + 1);
+            final int[] deleted = new int[level.deleted.length + 1];
+            System.arraycopy(level.deleted, 0, deleted, 0, pos);
+            deleted[pos] = found[0];
+            System.arraycopy(level.deleted, pos, deleted, pos + 1, level.deleted.length - pos);
+            Level newLevel = new Level(level.tree, level.entries, deleted);
+
+            final Level[] newLevels;
+            if (newLevel.liveSize() == 0) {
+                newLevels = new Level[levels.length - 1];
+                System.arraycopy(levels, 0, newLevels, 0, l);
+                System.arraycopy(levels, l + 1, newLevels, l, levels.length - l - 1);
+            } else {
+                if (deleted.length * 4 > level.entries.length) {
+                    //too many holes, pack level again.
+                    final List<Envelope> live = new ArrayList<Envelope>(newLevel.liveSize());
+                    newLevel.addLiveEntries(live);
+                    newLevel = new Level(maxElements, live.toArray(new Envelope[live.size()]));
+                }
+                newLevels = levels.clone();
+                newLevels[l] = newLevel;
+                //keep levels sorted by size.
+                for (int i = l; i > 0 && newLevels[i].liveSize() < newLevels[i - 1].liveSize(); i--) {
+                    final Level tmp = newLevels[i];
+                    newLevels[i] = newLevels[i - 1];
+                    newLevels[i - 1] = tmp;
+                }
+            }
+            snapshot = new Snapshot(newLevels, buffer, current.size - 1);
+            return true;
+        }
+        return false;
+    }
+
+    private void checkCRS(final Envelope env) {
+        if (!CRS.equalsIgnoreMetadata(crs, env.getCoordinateReferenceSystem())) {
+            throw new MismatchedReferenceSystemException();
+        }
+    }
+
+    private double[] toCoordinates(final Envelope env) {
+        final double[] coords = new double[2 * dimension];
+        for (int i = 0; i < dimension; i++) {
+            coords[i]             = env.getMinimum(i);
+            coords[i + dimension] = env.getMaximum(i);
+        }
+        return coords;
+    }
+
+    private boolean intersects(final double[] region, final Envelope env) {
+        for (int i = 0; i < dimension; i++) {
+            if (env.getMaximum(i) < region[i] || env.getMinimum(i) > region[i + dimension]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        final Snapshot current = snapshot;
+        return Classes.getShortClassName(this) + " : " + current.size + " entries, "
+                + current.levels.length + " levels, " + current.buffer.length + " buffered.";
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ *    Geotoolkit.org - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2008-2012, Open Source Geospatial Foundation (OSGeo)
+ *    (C) 2009-2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.index.tree.packed;
+
+/**
+ * Receive identifiers of entries found by a {@link PackedRTree} search.
+ *
+ * @author Rémi Marechal (Geomatys).
+ */
+public interface IdVisitor {
+
+    /**
+     * Called for each entry which intersects search region.
+     *
+     * @param id entry identifier.
+     * @return true to continue search, false to stop it.
+     */
+    boolean visit(int id);
+}
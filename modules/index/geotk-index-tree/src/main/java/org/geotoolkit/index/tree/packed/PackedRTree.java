@@ -0,0 +1,416 @@
+/*
+ *    Geotoolkit.org - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2008-2012, Open Source Geospatial Foundation (OSGeo)
+ *    (C) 2009-2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.index.tree.packed;
+
+import java.util.List;
+import org.geotoolkit.util.ArgumentChecks;
+import org.geotoolkit.util.converter.Classes;
+import org.opengis.geometry.Envelope;
+
+/**
+ * Immutable R-Tree stored in primitive arrays.
+ *
+ * <br/>
+ * Entries are identified by an {@code int}, their index in the coordinates given
+ * at construction. Tree is packed with Sort-Tile-Recursive order, nodes and entries
+ * boundaries are stored in {@code double[]} arrays as lower corner coordinates
+ * followed by upper corner coordinates, and children of a node are stored
+ * contiguously so a node only keeps its first child index and its children number.
+ * <br/>
+ * Search doesn't create any object, found identifiers are given to an {@link IdVisitor}.
+ * Tree can be searched concurrently by any number of threads.
+ *
+ * Example : <br/>
+ * <pre>
+ * {@code
+ * final PackedRTree tree = new PackedRTree(16, envelopes);
+ * tree.search(new double[]{xmin, ymin, xmax, ymax}, new IdVisitor() {
+ *     public boolean visit(int id) {
+ *         result.add(envelopes.get(id));
+ *         return true;
+ *     }
+ * });
+ * }
+ * </pre>
+ *
+ * @author Rémi Marechal (Geomatys).
+ */
+public class PackedRTree {
+
+    private final int dimension;
+    private final int maxElements;
+    private final int size;
+
+    /** Entries boundaries in tree order. */
+    private final double[] entryBounds;
+    /** Entries identifiers in tree order. */
+    private final int[] entryIds;
+
+    /** Nodes boundaries, leaves first, root last. */
+    private double[] nodeBounds;
+    /** Index of first child, in entries for a leaf, in nodes for a branch. */
+    private int[] nodeFirst;
+    /** Children number. */
+    private int[] nodeSize;
+    private int nodeCount;
+    private final int leafCount;
+    private final int root;
+
+    /**Create tree from envelopes, each entry identifier is its index in list.
+     *
+     * @param maxElements max elements number per node.
+     * @param entries envelopes to index.
+     */
+    public PackedRTree(final int maxElements, final List<? extends Envelope> entries) {
+        this(maxElements, dimensionOf(entries), toCoordinates(entries));
+    }
+
+    /**Create tree from packed coordinates, each entry identifier is its index in array.
+     *
+     * @param maxElements max elements number per node.
+     * @param dimension space dimension.
+     * @param coordinates for each entry lower corner then upper corner coordinates.
+     */
+    public PackedRTree(final int maxElements, final int dimension, final double[] coordinates) {
+        ArgumentChecks.ensureNonNull("PackedRTree : coordinates", coordinates);
+        ArgumentChecks.ensureBetween("PackedRTree : maxElements", 2, Integer.MAX_VALUE, maxElements);
+        ArgumentChecks.ensureStrictlyPositive("PackedRTree : dimension", dimension);
+        final int stride = 2 * dimension;
+        if (coordinates.length % stride != 0) {
+            throw new IllegalArgumentException("PackedRTree : coordinates length is not a multiple of 2 * dimension");
+        }
+        this.dimension   = dimension;
+        this.maxElements = maxElements;
+        this.size        = coordinates.length / stride;
+
+        //leaves
+        final int[] order = identity(size);
+        final int[] groups = pack(order, centers(coordinates, order, size), size);
+        final int nbLeaves = groups.length - 1;
+        entryBounds = new double[coordinates.length];
+        entryIds    = order;
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(coordinates, order[i] * stride, entryBounds, i * stride, stride);
+        }
+        final int estimate = nbLeaves + nbLeaves / (maxElements - 1) + 2;
+        nodeBounds = new double[estimate * stride];
+        nodeFirst  = new int[estimate];
+        nodeSize   = new int[estimate];
+        for (int g = 0; g < nbLeaves; g++) {
+            addNode(entryBounds, groups[g], groups[g + 1]);
+        }
+        leafCount = nbLeaves;
+
+        //upper levels
+        int levelStart = 0;
+        int levelCount = nbLeaves;
+        while (levelCount > 1) {
+            final int[] perm = identity(levelCount);
+            final double[] levelBounds = new double[levelCount * stride];
+            System.arraycopy(nodeBounds, levelStart * stride, levelBounds, 0, levelCount * stride);
+            final int[] levelGroups = pack(perm, centers(levelBounds, perm, levelCount), levelCount);
+            reorderLevel(levelStart, perm);
+            for (int g = 0; g < levelGroups.length - 1; g++) {
+                addNode(nodeBounds, levelStart + levelGroups[g], levelStart + levelGroups[g + 1]);
+            }
+            levelStart += levelCount;
+            levelCount = levelGroups.length - 1;
+        }
+        root = (levelCount == 1) ? levelStart : -1;
+    }
+
+    /**
+     * @return space dimension of indexed entries.
+     */
+    public int getDimension() {
+        return dimension;
+    }
+
+    /**
+     * @return max elements number per node.
+     */
+    public int getMaxElements() {
+        return maxElements;
+    }
+
+    /**
+     * @return number of indexed entries.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return number of tree nodes.
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**Give to visitor identifier of each entry which intersects region, edges inclusive.
+     *
+     * @param regionSearch Define the region to find entries within tree.
+     * @param visitor receive found identifiers.
+     */
+    public void search(final Envelope regionSearch, final IdVisitor visitor) {
+        ArgumentChecks.ensureNonNull("search : region search", regionSearch);
+        if (regionSearch.getDimension() != dimension) {
+            throw new IllegalArgumentException("search : region dimension is not tree dimension.");
+        }
+        final double[] region = new double[2 * dimension];
+        for (int i = 0; i < dimension; i++) {
+            region[i]             = regionSearch.getMinimum(i);
+            region[i + dimension] = regionSearch.getMaximum(i);
+        }
+        search(region, visitor);
+    }
+
+    /**Give to visitor identifier of each entry which intersects region, edges inclusive.
+     * This method doesn't create any object.
+     *
+     * @param region lower corner then upper corner coordinates of search region.
+     * @param visitor receive found identifiers.
+     */
+    public void search(final double[] region, final IdVisitor visitor) {
+        ArgumentChecks.ensureNonNull("search : region", region);
+        ArgumentChecks.ensureNonNull("search : visitor", visitor);
+        if (root >= 0 && intersects(nodeBounds, root, region)) {
+            nodeSearch(root, region, visitor);
+        }
+    }
+
+    /**
+     * @return false if visitor stopped search.
+     */
+    private boolean nodeSearch(final int node, final double[] region, final IdVisitor visitor) {
+        final int first = nodeFirst[node];
+        final int end   = first + nodeSize[node];
+        if (node < leafCount) {
+            for (int e = first; e < end; e++) {
+                if (intersects(entryBounds, e, region) && !visitor.visit(entryIds[e])) {
+                    return false;
+                }
+            }
+        } else {
+            for (int c = first; c < end; c++) {
+                if (intersects(nodeBounds, c, region) && !nodeSearch(c, region, visitor)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if boundary at index in bounds array intersects region, edges inclusive.
+     */
+    private boolean intersects(final double[] bounds, final int index, final double[] region) {
+        final int offset = index * 2 * dimension;
+        for (int i = 0; i < dimension; i++) {
+            if (bounds[offset + dimension + i] < region[i]
+             || bounds[offset + i] > region[dimension + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**Append a node which covers elements [from, to) of bounds array.
+     */
+    private void addNode(final double[] bounds, final int from, final int to) {
+        final int stride = 2 * dimension;
+        if (nodeCount == nodeFirst.length) {
+            final int capacity = nodeCount * 2 + 1;
+            final double[] nb = new double[capacity * stride];
+            System.arraycopy(nodeBounds, 0, nb, 0, nodeCount * stride);
+            nodeBounds = nb;
+            final int[] nf = new int[capacity];
+            System.arraycopy(nodeFirst, 0, nf, 0, nodeCount);
+            nodeFirst = nf;
+            final int[] ns = new int[capacity];
+            System.arraycopy(nodeSize, 0, ns, 0, nodeCount);
+            nodeSize = ns;
+        }
+        final int offset = nodeCount * stride;
+        System.arraycopy(bounds, from * stride, nodeBounds, offset, stride);
+        for (int e = from + 1; e < to; e++) {
+            final int eo = e * stride;
+            for (int i = 0; i < dimension; i++) {
+                nodeBounds[offset + i] = Math.min(nodeBounds[offset + i], bounds[eo + i]);
+                nodeBounds[offset + dimension + i] = Math.max(nodeBounds[offset + dimension + i], bounds[eo + dimension + i]);
+            }
+        }
+        nodeFirst[nodeCount] = from;
+        nodeSize[nodeCount]  = to - from;
+        nodeCount++;
+    }
+
+    /**Reorder level nodes stored from levelStart following permutation.
+     */
+    private void reorderLevel(final int levelStart, final int[] perm) {
+        final int stride = 2 * dimension;
+        final int count  = perm.length;
+        final double[] bounds = new double[count * stride];
+        final int[] first = new int[count];
+        final int[] sizes = new int[count];
+        for (int i = 0; i < count; i++) {
+            final int src = levelStart + perm[i];
+            System.arraycopy(nodeBounds, src * stride, bounds, i * stride, stride);
+            first[i] = nodeFirst[src];
+            sizes[i] = nodeSize[src];
+        }
+        System.arraycopy(bounds, 0, nodeBounds, levelStart * stride, count * stride);
+        System.arraycopy(first, 0, nodeFirst, levelStart, count);
+        System.arraycopy(sizes, 0, nodeSize, levelStart, count);
+    }
+
+    /**
+     * @return centers coordinates of count elements, in element order.
+     */
+    private double[] centers(final double[] bounds, final int[] order, final int count) {
+        final double[] centers = new double[count * dimension];
+        for (int i = 0; i < count; i++) {
+            final int offset = order[i] * 2 * dimension;
+            for (int d = 0; d < dimension; d++) {
+                centers[i * dimension + d] = (bounds[offset + d] + bounds[offset + dimension + d]) / 2;
+            }
+        }
+        return centers;
+    }
+
+    /**Sort order array with Sort-Tile-Recursive order.
+     *
+     * @param order elements index, sorted in place.
+     * @param centers elements centers, indexed by element index.
+     * @param count elements number.
+     * @return groups limits : group i covers order indexes [groups[i], groups[i+1]).
+     */
+    private int[] pack(final int[] order, final double[] centers, final int count) {
+        //slabs may end with partial groups, so there can be more than count / maxElements groups.
+        final int[] groups = new int[count + 1];
+        final int[] nb = new int[1];
+        if (count > 0) {
+            tile(order, centers, 0, count, 0, groups, nb);
+        }
+        groups[nb[0]] = count;
+        final int[] result = new int[nb[0] + 1];
+        System.arraycopy(groups, 0, result, 0, result.length);
+        return result;
+    }
+
+    private void tile(final int[] order, final double[] centers, final int from, final int to,
+            final int axis, final int[] groups, final int[] nb) {
+        final double[] keys = new double[to - from];
+        for (int i = from; i < to; i++) {
+            keys[i - from] = centers[order[i] * dimension + axis];
+        }
+        sort(keys, order, from, 0, keys.length - 1);
+        final int count = to - from;
+        if (axis == dimension - 1) {
+            for (int i = from; i < to; i += maxElements) {
+                groups[nb[0]++] = i;
+            }
+            return;
+        }
+        final int nbGroups = (count + maxElements - 1) / maxElements;
+        final int nbSlabs  = (int) Math.ceil(Math.pow(nbGroups, 1.0 / (dimension - axis)));
+        final int slabSize = maxElements * ((nbGroups + nbSlabs - 1) / nbSlabs);
+        for (int i = from; i < to; i += slabSize) {
+            tile(order, centers, i, Math.min(i + slabSize, to), axis + 1, groups, nb);
+        }
+    }
+
+    /**Quick sort keys[lo..hi] and order[offset+lo..offset+hi] together.
+     */
+    private static void sort(final double[] keys, final int[] order, final int offset, int lo, int hi) {
+        while (hi - lo > 16) {
+            final double pivot = keys[(lo + hi) >>> 1];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (keys[i] < pivot) i++;
+                while (keys[j] > pivot) j--;
+                if (i <= j) {
+                    swap(keys, order, offset, i++, j--);
+                }
+            }
+            //recurse on smaller part, loop on larger one.
+            if (j - lo < hi - i) {
+                sort(keys, order, offset, lo, j);
+                lo = i;
+            } else {
+                sort(keys, order, offset, i, hi);
+                hi = j;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            for (int j = i; j > lo && keys[j - 1] > keys[j]; j--) {
+                swap(keys, order, offset, j, j - 1);
+            }
+        }
+    }
+
+    private static void swap(final double[] keys, final int[] order, final int offset, final int i, final int j) {
+        final double k = keys[i];
+        keys[i] = keys[j];
+        keys[j] = k;
+        final int o = order[offset + i];
+        order[offset + i] = order[offset + j];
+        order[offset + j] = o;
+    }
+
+    private static int[] identity(final int size) {
+        final int[] array = new int[size];
+        for (int i = 0; i < size; i++) {
+            array[i] = i;
+        }
+        return array;
+    }
+
+    private static int dimensionOf(final List<? extends Envelope> entries) {
+        ArgumentChecks.ensureNonNull("PackedRTree : entries", entries);
+        if (entries.isEmpty()) {
+            throw new IllegalArgumentException("PackedRTree : impossible to define dimension from empty list");
+        }
+        return entries.get(0).getDimension();
+    }
+
+    private static double[] toCoordinates(final List<? extends Envelope> entries) {
+        final int dim = entries.get(0).getDimension();
+        final double[] coords = new double[entries.size() * 2 * dim];
+        int offset = 0;
+        for (Envelope env : entries) {
+            if (env.getDimension() != dim) {
+                throw new IllegalArgumentException("PackedRTree : entries are not in same dimension");
+            }
+            for (int i = 0; i < dim; i++) {
+                coords[offset + i]       = env.getMinimum(i);
+                coords[offset + dim + i] = env.getMaximum(i);
+            }
+            offset += 2 * dim;
+        }
+        return coords;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return Classes.getShortClassName(this) + " : " + size + " entries, " + nodeCount + " nodes, dimension " + dimension;
+    }
+}
@@ -132,7 +132,7 @@ public class StarRTree extends DefaultAbstractTree {
                     }
                 }
             }else{
-                final GeneralEnvelope rS = new GeneralEnvelope(regionSearch);
+                final GeneralEnvelope rS = (regionSearch instanceof GeneralEnvelope) ? (GeneralEnvelope) regionSearch : new GeneralEnvelope(regionSearch);
                 if(rS.contains(bound, true)){
                     nodeSearch(candidate, null, resultList);
                 }else if(rS.intersects(bound, true)){
@@ -144,7 +144,7 @@ public class StarRTree extends DefaultAbstractTree {
                         }
                     }else{
                         for(Node child : candidate.getChildren()){
-                            nodeSearch(child, regionSearch, resultList);
+                            nodeSearch(child, rS, resultList);
                         }
                     }
                 }
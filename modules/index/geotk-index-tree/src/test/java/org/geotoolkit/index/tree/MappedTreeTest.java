@@ -0,0 +1,152 @@
+/*
+ *    Geotoolkit.org - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2008-2012, Open Source Geospatial Foundation (OSGeo)
+ *    (C) 2009-2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.index.tree;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.geotoolkit.geometry.GeneralEnvelope;
+import org.geotoolkit.index.tree.basic.SplitCase;
+import org.geotoolkit.index.tree.calculator.DefaultCalculator;
+import org.geotoolkit.index.tree.io.MappedTree;
+import org.geotoolkit.index.tree.io.MappedTreeWriter;
+import org.geotoolkit.index.tree.nodefactory.TreeNodeFactory;
+import org.geotoolkit.referencing.crs.DefaultEngineeringCRS;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.opengis.geometry.Envelope;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.operation.TransformException;
+
+/**
+ * Test suite to search trees from memory mapped file.
+ *
+ * @author Rémi Marechal (Geomatys).
+ */
+public class MappedTreeTest {
+
+    private final File fil = new File("tree.map");
+
+    public MappedTreeTest() {
+        fil.deleteOnExit();
+    }
+
+    /**
+     * Test mapped (Basic) R-Tree.
+     */
+    @Test
+    public void basicRTreeTest() throws IOException, TransformException {
+        final Tree tree = TreeFactory.createBasicRTree(4, DefaultEngineeringCRS.CARTESIAN_3D, SplitCase.LINEAR, DefaultCalculator.CALCULATOR_3D, TreeNodeFactory.DEFAULT_FACTORY);
+        testTree(tree, DefaultEngineeringCRS.CARTESIAN_3D);
+    }
+
+    /**
+     * Test mapped R*Tree.
+     */
+    @Test
+    public void starRTreeTest() throws IOException, TransformException {
+        final Tree tree = TreeFactory.createStarRTree(4, DefaultEngineeringCRS.CARTESIAN_3D, DefaultCalculator.CALCULATOR_3D, TreeNodeFactory.DEFAULT_FACTORY);
+        testTree(tree, DefaultEngineeringCRS.CARTESIAN_3D);
+    }
+
+    /**
+     * Test mapped Hilbert R-Tree.
+     */
+    @Test
+    public void hilbertRTreeTest() throws IOException, TransformException {
+        final Tree tree = TreeFactory.createHilbertRTree(4, 2, DefaultEngineeringCRS.CARTESIAN_2D, DefaultCalculator.CALCULATOR_2D, TreeNodeFactory.DEFAULT_FACTORY);
+        testTree(tree, DefaultEngineeringCRS.CARTESIAN_2D);
+    }
+
+    /**
+     * Insert data, write tree and compare search results between heap and mapped tree.
+     */
+    private void testTree(final Tree tree, final CoordinateReferenceSystem crs) throws IOException, TransformException {
+        final int dim = crs.getCoordinateSystem().getDimension();
+        final List<GeneralEnvelope> lData = new ArrayList<GeneralEnvelope>();
+        for (int j = -120; j <= 120; j += 4) {
+            for (int i = -200; i <= 200; i += 4) {
+                final GeneralEnvelope ge = new GeneralEnvelope(crs);
+                if (dim == 2) {
+                    ge.setEnvelope(i, j, i, j);
+                } else {
+                    ge.setEnvelope(i, j, 20, i, j, 20);
+                }
+                lData.add(ge);
+            }
+        }
+        Collections.shuffle(lData);
+        for (GeneralEnvelope ge : lData) {
+            tree.insert(ge);
+        }
+        MappedTreeWriter.write(tree, fil);
+
+        final MappedTree mapped = new MappedTree(fil, crs);
+        try {
+            assertEquals(lData.size(), mapped.getEntryCount());
+            assertTrue(new GeneralEnvelope(tree.getRoot().getBoundary()).equals(mapped.getRoot().getBoundary(), 1E-9, false));
+
+            final GeneralEnvelope region = new GeneralEnvelope(crs);
+            if (dim == 2) {
+                region.setEnvelope(-50, -30, 60, 40);
+            } else {
+                region.setEnvelope(-50, -30, 0, 60, 40, 30);
+            }
+            final List<Envelope> listRef  = new ArrayList<Envelope>();
+            final List<Envelope> listTest = new ArrayList<Envelope>();
+            tree.search(region, listRef);
+            mapped.search(region, listTest);
+            assertFalse(listRef.isEmpty());
+            assertTrue(compareList(listRef, listTest));
+
+            listRef.clear();
+            listTest.clear();
+            tree.search(tree.getRoot().getBoundary(), listRef);
+            mapped.search(mapped.getRoot().getBoundary(), listTest);
+            assertEquals(lData.size(), listTest.size());
+            assertTrue(compareList(listRef, listTest));
+        } finally {
+            mapped.close();
+        }
+    }
+
+    /**
+     * @return true if listA contains same elements from listB.
+     */
+    private boolean compareList(final List<Envelope> listA, final List<Envelope> listB) {
+        if (listA.size() != listB.size()) {
+            return false;
+        }
+        for (Envelope envA : listA) {
+            final GeneralEnvelope ge = new GeneralEnvelope(envA);
+            boolean found = false;
+            for (Envelope envB : listB) {
+                if (ge.equals(envB, 1E-9, false)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ *    Geotoolkit.org - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2008-2012, Open Source Geospatial Foundation (OSGeo)
+ *    (C) 2009-2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.index.tree;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.geotoolkit.geometry.GeneralEnvelope;
+import org.geotoolkit.index.tree.basic.SplitCase;
+import org.geotoolkit.index.tree.calculator.DefaultCalculator;
+import org.geotoolkit.index.tree.nodefactory.TreeNodeFactory;
+import org.geotoolkit.referencing.crs.DefaultEngineeringCRS;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.opengis.geometry.Envelope;
+import org.opengis.referencing.operation.TransformException;
+
+/**
+ * Test suite of Sort-Tile-Recursive tree filling.
+ *
+ * @author Rémi Marechal (Geomatys).
+ */
+public class STRBulkLoaderTest {
+
+    private final List<GeneralEnvelope> lData = new ArrayList<GeneralEnvelope>();
+
+    public STRBulkLoaderTest() {
+        for (int j = -120; j <= 120; j += 4) {
+            for (int i = -200; i <= 200; i += 4) {
+                final GeneralEnvelope ge = new GeneralEnvelope(DefaultEngineeringCRS.CARTESIAN_2D);
+                ge.setEnvelope(i, j, i + 1, j + 1);
+                lData.add(ge);
+            }
+        }
+        Collections.shuffle(lData);
+    }
+
+    @Test
+    public void basicRTreeTest() throws TransformException {
+        testTree(TreeFactory.createBasicRTree(4, DefaultEngineeringCRS.CARTESIAN_2D, SplitCase.LINEAR, DefaultCalculator.CALCULATOR_2D, TreeNodeFactory.DEFAULT_FACTORY));
+    }
+
+    @Test
+    public void starRTreeTest() throws TransformException {
+        testTree(TreeFactory.createStarRTree(4, DefaultEngineeringCRS.CARTESIAN_2D, DefaultCalculator.CALCULATOR_2D, TreeNodeFactory.DEFAULT_FACTORY));
+    }
+
+    @Test
+    public void hilbertRTreeTest() throws TransformException {
+        testTree(TreeFactory.createHilbertRTree(4, 2, DefaultEngineeringCRS.CARTESIAN_2D, DefaultCalculator.CALCULATOR_2D, TreeNodeFactory.DEFAULT_FACTORY));
+    }
+
+    /**
+     * Load tree, compare search with brute force search, then check tree still accept insertion.
+     */
+    private void testTree(final Tree tree) throws TransformException {
+        STRBulkLoader.load(tree, lData);
+
+        final GeneralEnvelope region = new GeneralEnvelope(DefaultEngineeringCRS.CARTESIAN_2D);
+        region.setEnvelope(-50, -30, 60, 40);
+        final List<Envelope> result = new ArrayList<Envelope>();
+        tree.search(region, result);
+        int expected = 0;
+        for (GeneralEnvelope ge : lData) {
+            if (region.intersects(ge, true)) {
+                expected++;
+            }
+        }
+        assertEquals(expected, result.size());
+
+        result.clear();
+        tree.search(tree.getRoot().getBoundary(), result);
+        assertEquals(lData.size(), result.size());
+
+        final int depth = depth(tree.getRoot());
+        final int minDepth = (int) Math.ceil(Math.log(lData.size()) / Math.log(tree.getMaxElements()));
+        assertTrue("packed tree depth " + depth, depth <= minDepth + 1);
+
+        final GeneralEnvelope entry = new GeneralEnvelope(DefaultEngineeringCRS.CARTESIAN_2D);
+        entry.setEnvelope(1000, 1000, 1001, 1001);
+        tree.insert(entry);
+        result.clear();
+        tree.search(entry, result);
+        assertEquals(1, result.size());
+    }
+
+    private static int depth(final Node node) {
+        if (node.isLeaf()) {
+            return 1;
+        }
+        return 1 + depth(node.getChildren().get(0));
+    }
+}
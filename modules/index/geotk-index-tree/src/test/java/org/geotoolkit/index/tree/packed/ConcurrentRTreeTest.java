@@ -0,0 +1,125 @@
+/*
+ *    Geotoolkit.org - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2008-2012, Open Source Geospatial Foundation (OSGeo)
+ *    (C) 2009-2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.index.tree.packed;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.geotoolkit.geometry.GeneralEnvelope;
+import org.geotoolkit.referencing.crs.DefaultEngineeringCRS;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.opengis.geometry.Envelope;
+
+/**
+ * Test suite of concurrent R-Tree.
+ *
+ * @author Rémi Marechal (Geomatys).
+ */
+public class ConcurrentRTreeTest {
+
+    private final List<GeneralEnvelope> lData = new ArrayList<GeneralEnvelope>();
+
+    public ConcurrentRTreeTest() {
+        for (int j = -120; j <= 120; j += 4) {
+            for (int i = -200; i <= 200; i += 4) {
+                final GeneralEnvelope ge = new GeneralEnvelope(DefaultEngineeringCRS.CARTESIAN_2D);
+                ge.setEnvelope(i, j, i + 1, j + 1);
+                lData.add(ge);
+            }
+        }
+        Collections.shuffle(lData);
+    }
+
+    /**
+     * Insert and delete entries, compare search with brute force search.
+     */
+    @Test
+    public void insertDeleteTest() {
+        final ConcurrentRTree tree = new ConcurrentRTree(4, DefaultEngineeringCRS.CARTESIAN_2D, 16);
+        for (GeneralEnvelope ge : lData) {
+            tree.insert(ge);
+        }
+        assertEquals(lData.size(), tree.size());
+
+        final List<GeneralEnvelope> removed = lData.subList(0, lData.size() / 2);
+        for (GeneralEnvelope ge : removed) {
+            assertTrue(tree.delete(ge));
+        }
+        final List<GeneralEnvelope> remaining = new ArrayList<GeneralEnvelope>(lData.subList(lData.size() / 2, lData.size()));
+        assertEquals(remaining.size(), tree.size());
+        assertFalse(tree.delete(removed.get(0)));
+
+        final GeneralEnvelope region = new GeneralEnvelope(DefaultEngineeringCRS.CARTESIAN_2D);
+        region.setEnvelope(-50, -30, 60, 40);
+        final List<Envelope> result = new ArrayList<Envelope>();
+        tree.search(region, result);
+        int expected = 0;
+        for (GeneralEnvelope ge : remaining) {
+            if (region.intersects(ge, true)) {
+                expected++;
+                assertTrue(result.contains(ge));
+            }
+        }
+        assertEquals(expected, result.size());
+    }
+
+    /**
+     * Search from several threads while entries are inserted.
+     */
+    @Test
+    public void concurrentSearchTest() throws InterruptedException {
+        final ConcurrentRTree tree = new ConcurrentRTree(8, DefaultEngineeringCRS.CARTESIAN_2D);
+        final GeneralEnvelope region = new GeneralEnvelope(DefaultEngineeringCRS.CARTESIAN_2D);
+        region.setEnvelope(-200, -120, 201, 121);
+        final AtomicBoolean stop = new AtomicBoolean(false);
+        final AtomicInteger errors = new AtomicInteger();
+        final Thread[] readers = new Thread[4];
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = new Thread() {
+                @Override
+                public void run() {
+                    int previous = 0;
+                    while (!stop.get()) {
+                        final List<Envelope> result = new ArrayList<Envelope>();
+                        tree.search(region, result);
+                        //entries are only inserted, a search never see less than previous one.
+                        if (result.size() < previous) {
+                            errors.incrementAndGet();
+                        }
+                        previous = result.size();
+                    }
+                }
+            };
+            readers[i].start();
+        }
+        for (GeneralEnvelope ge : lData) {
+            tree.insert(ge);
+        }
+        stop.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertEquals(0, errors.get());
+        final List<Envelope> result = new ArrayList<Envelope>();
+        tree.search(region, result);
+        assertEquals(lData.size(), result.size());
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ *    Geotoolkit.org - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2008-2012, Open Source Geospatial Foundation (OSGeo)
+ *    (C) 2009-2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.index.tree.packed;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import org.geotoolkit.geometry.GeneralEnvelope;
+import org.geotoolkit.referencing.crs.DefaultEngineeringCRS;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Test suite of primitive packed R-Tree.
+ *
+ * @author Rémi Marechal (Geomatys).
+ */
+public class PackedRTreeTest {
+
+    private final List<GeneralEnvelope> lData = new ArrayList<GeneralEnvelope>();
+
+    public PackedRTreeTest() {
+        for (int j = -120; j <= 120; j += 4) {
+            for (int i = -200; i <= 200; i += 4) {
+                final GeneralEnvelope ge = new GeneralEnvelope(DefaultEngineeringCRS.CARTESIAN_2D);
+                ge.setEnvelope(i, j, i + 1, j + 1);
+                lData.add(ge);
+            }
+        }
+        Collections.shuffle(lData);
+    }
+
+    /**
+     * Compare search result with brute force search.
+     */
+    @Test
+    public void searchTest() {
+        final PackedRTree tree = new PackedRTree(4, lData);
+        assertEquals(lData.size(), tree.size());
+
+        final GeneralEnvelope region = new GeneralEnvelope(DefaultEngineeringCRS.CARTESIAN_2D);
+        region.setEnvelope(-50, -30, 60, 40);
+        final BitSet found = new BitSet();
+        tree.search(region, new IdVisitor() {
+            @Override
+            public boolean visit(final int id) {
+                assertFalse(found.get(id));
+                found.set(id);
+                return true;
+            }
+        });
+        for (int i = 0; i < lData.size(); i++) {
+            assertEquals(region.intersects(lData.get(i), true), found.get(i));
+        }
+    }
+
+    /**
+     * Search must stop when visitor returns false.
+     */
+    @Test
+    public void stopSearchTest() {
+        final PackedRTree tree = new PackedRTree(4, lData);
+        final int[] count = new int[1];
+        tree.search(new double[]{-200, -120, 201, 121}, new IdVisitor() {
+            @Override
+            public boolean visit(final int id) {
+                return ++count[0] < 10;
+            }
+        });
+        assertEquals(10, count[0]);
+    }
+
+    /**
+     * Empty tree search find nothing.
+     */
+    @Test
+    public void emptyTest() {
+        final PackedRTree tree = new PackedRTree(4, 2, new double[0]);
+        tree.search(new double[]{-10, -10, 10, 10}, new IdVisitor() {
+            @Override
+            public boolean visit(final int id) {
+                fail("empty tree");
+                return true;
+            }
+        });
+    }
+}
@@ -25,6 +25,7 @@ import org.geotoolkit.process.AbstractProcessingRegistry;
 import org.geotoolkit.process.coverage.coveragetofeatures.CoverageToFeaturesDescriptor;
 import org.geotoolkit.process.coverage.coveragetovector.CoverageToVectorDescriptor;
 import org.geotoolkit.process.coverage.kriging.KrigingDescriptor;
+import org.geotoolkit.process.coverage.pyramid.CopyPyramidDescriptor;
 import org.geotoolkit.process.coverage.pyramid.MapcontextPyramidDescriptor;
 import org.geotoolkit.process.coverage.tiling.TilingDescriptor;
 import org.opengis.metadata.Identifier;
@@ -53,7 +54,8 @@ public class CoverageProcessingRegistry extends AbstractProcessingRegistry{
               CoverageToFeaturesDescriptor.INSTANCE,
               TilingDescriptor.INSTANCE,
               KrigingDescriptor.INSTANCE,
-              MapcontextPyramidDescriptor.INSTANCE);
+              MapcontextPyramidDescriptor.INSTANCE,
+              CopyPyramidDescriptor.INSTANCE);
     }
 
     @Override
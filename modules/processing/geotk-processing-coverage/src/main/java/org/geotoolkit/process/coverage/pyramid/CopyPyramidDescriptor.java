@@ -0,0 +1,79 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.process.coverage.pyramid;
+
+import org.geotoolkit.coverage.PyramidalModel;
+import org.geotoolkit.parameter.DefaultParameterDescriptor;
+import org.geotoolkit.parameter.DefaultParameterDescriptorGroup;
+import org.geotoolkit.process.AbstractProcessDescriptor;
+import org.geotoolkit.process.Process;
+import org.geotoolkit.process.ProcessDescriptor;
+import org.geotoolkit.process.coverage.CoverageProcessingRegistry;
+import org.geotoolkit.util.SimpleInternationalString;
+import org.opengis.parameter.ParameterDescriptor;
+import org.opengis.parameter.ParameterDescriptorGroup;
+import org.opengis.parameter.ParameterValueGroup;
+
+/**
+ * Description of a pyramid copy process.
+ * Can be used to migrate a pyramid from a storage layout to another.
+ *
+ * @author Johann Sorel (Geomatys)
+ * @module pending
+ */
+public final class CopyPyramidDescriptor extends AbstractProcessDescriptor{
+
+    public static final String NAME = "copypyramid";
+
+    /**
+     * Mandatory - Pyramids to copy.
+     */
+    public static final ParameterDescriptor<PyramidalModel> IN_SOURCE =
+            new DefaultParameterDescriptor<PyramidalModel>("source",
+            "The container which tiles are copied.",PyramidalModel.class,null,true);
+    
+    /**
+     * Mandatory - Container which will receive the tiles.
+     */
+    public static final ParameterDescriptor<PyramidalModel> IN_CONTAINER =
+            new DefaultParameterDescriptor<PyramidalModel>("container",
+            "The container which will receive the tiles.",PyramidalModel.class,null,true);
+    
+    public static final ParameterDescriptorGroup INPUT_DESC =
+            new DefaultParameterDescriptorGroup(NAME+"InputParameters",
+                IN_SOURCE,IN_CONTAINER);
+
+
+    public static final ParameterDescriptorGroup OUTPUT_DESC =
+            new DefaultParameterDescriptorGroup(NAME+"OutputParameters");
+    
+    public static final ProcessDescriptor INSTANCE = new CopyPyramidDescriptor();
+
+
+    private CopyPyramidDescriptor(){
+        super(NAME, CoverageProcessingRegistry.IDENTIFICATION,
+                new SimpleInternationalString("Copy pyramids, mosaics and tiles "
+                + "from a container to another. Tiles already in the target container are not copied."),
+                INPUT_DESC, OUTPUT_DESC);
+    }
+
+    @Override
+    public Process createProcess(final ParameterValueGroup input) {
+        return new CopyPyramidProcess(input);
+    }
+
+}
@@ -0,0 +1,206 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.process.coverage.pyramid;
+
+import java.awt.Dimension;
+import java.awt.Point;
+import java.awt.image.RenderedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import javax.imageio.ImageReader;
+import org.geotoolkit.coverage.GridMosaic;
+import org.geotoolkit.coverage.Pyramid;
+import org.geotoolkit.coverage.PyramidalModel;
+import org.geotoolkit.coverage.TileReference;
+import org.geotoolkit.process.AbstractProcess;
+import org.geotoolkit.process.ProcessEvent;
+import org.geotoolkit.process.ProcessException;
+import org.geotoolkit.referencing.CRS;
+import org.geotoolkit.storage.DataStoreException;
+import org.geotoolkit.util.Cancellable;
+import org.opengis.parameter.ParameterValueGroup;
+
+/**
+ * Copy all pyramids of a PyramidalModel in another one.
+ * Pyramids and mosaics are reused in the target container if they exist.
+ * Tiles which already exist in the target mosaic are not copied, an
+ * interrupted copy can be run again to complete it.
+ *
+ * @author Johann Sorel (Geomatys)
+ * @module pending
+ */
+public final class CopyPyramidProcess extends AbstractProcess{
+
+    /**
+     * Number of tiles read at the same time.
+     */
+    private static final int BATCH_SIZE = 256;
+
+    /**
+     * Number of tiles written at the same time, the target container
+     * flushes its files once per written batch.
+     */
+    private static final int WRITE_SIZE = 32;
+
+    CopyPyramidProcess(final ParameterValueGroup input){
+        super(CopyPyramidDescriptor.INSTANCE,input);
+    }
+
+    @Override
+    public ParameterValueGroup call() throws ProcessException{
+        if (inputParameters == null) {
+            fireFailEvent(new ProcessEvent(this,
+                    "Input parameters not set.",0,
+                    new NullPointerException("Input parameters not set.")));
+        }
+
+        final PyramidalModel source = (PyramidalModel) inputParameters.parameter(
+                CopyPyramidDescriptor.IN_SOURCE.getName().getCode()).getValue();
+        final PyramidalModel container = (PyramidalModel) inputParameters.parameter(
+                CopyPyramidDescriptor.IN_CONTAINER.getName().getCode()).getValue();
+
+        try{
+            final List<GridMosaic> mosaics = new ArrayList<GridMosaic>();
+            for(Pyramid pyramid : source.getPyramidSet().getPyramids()){
+                for(int i=0,n=pyramid.getScales().length; i<n; i++){
+                    mosaics.add(pyramid.getMosaic(i));
+                }
+            }
+
+            int nbDone = 0;
+            for(final GridMosaic mosaic : mosaics){
+                final Pyramid target = getOrCreatePyramid(container, mosaic.getPyramid());
+                final GridMosaic targetMosaic = getOrCreateMosaic(container, target, mosaic);
+                copy(mosaic, container, target.getId(), targetMosaic);
+
+                nbDone++;
+                fireProgressEvent(new ProcessEvent(this, "Mosaic at scale "+mosaic.getScale()+" copied.",
+                        nbDone * 100f / mosaics.size()));
+            }
+        }catch(DataStoreException ex){
+            throw new ProcessException(ex.getMessage(), this, ex);
+        }
+
+        return outputParameters;
+    }
+
+    private static Pyramid getOrCreatePyramid(final PyramidalModel container,
+            final Pyramid pyramid) throws DataStoreException{
+        for(Pyramid candidate : container.getPyramidSet().getPyramids()){
+            if(CRS.equalsApproximatively(pyramid.getCoordinateReferenceSystem(),
+                    candidate.getCoordinateReferenceSystem())){
+                return candidate;
+            }
+        }
+        return container.createPyramid(pyramid.getCoordinateReferenceSystem());
+    }
+
+    private static GridMosaic getOrCreateMosaic(final PyramidalModel container,
+            final Pyramid pyramid, final GridMosaic mosaic) throws DataStoreException{
+        final double[] scales = pyramid.getScales();
+        for(int i=0; i<scales.length; i++){
+            if(scales[i] == mosaic.getScale()){
+                return pyramid.getMosaic(i);
+            }
+        }
+        return container.createMosaic(pyramid.getId(), mosaic.getGridSize(),
+                mosaic.getTileSize(), mosaic.getUpperLeftCorner(), mosaic.getScale());
+    }
+
+    /**
+     * Copy tiles missing in target mosaic by batches, tiles of a batch are
+     * read in parallel by the source mosaic.
+     */
+    private void copy(final GridMosaic mosaic, final PyramidalModel container,
+            final String pyramidId, final GridMosaic target) throws DataStoreException, ProcessException{
+        final Dimension gridSize = mosaic.getGridSize();
+        final List<Point> batch = new ArrayList<Point>(BATCH_SIZE);
+        for(int y=0; y<gridSize.height; y++){
+            for(int x=0; x<gridSize.width; x++){
+                if(mosaic.isMissing(x, y) || !target.isMissing(x, y)){
+                    continue;
+                }
+                batch.add(new Point(x, y));
+                if(batch.size() == BATCH_SIZE){
+                    copy(mosaic, batch, container, pyramidId, target.getId());
+                    batch.clear();
+                }
+            }
+        }
+        if(!batch.isEmpty()){
+            copy(mosaic, batch, container, pyramidId, target.getId());
+        }
+    }
+
+    private void copy(final GridMosaic mosaic, final List<Point> positions, final PyramidalModel container,
+            final String pyramidId, final String mosaicId) throws DataStoreException, ProcessException{
+        final BlockingQueue<Object> queue = mosaic.getTiles(positions, null);
+        final Map<Point,RenderedImage> tiles = new HashMap<Point, RenderedImage>();
+        while(true){
+            final Object obj;
+            try {
+                obj = queue.take();
+            } catch (InterruptedException ex) {
+                throw new ProcessException(ex.getMessage(), this, ex);
+            }
+            if(obj == GridMosaic.END_OF_QUEUE){
+                break;
+            }
+            if(obj instanceof DataStoreException){
+                if(queue instanceof Cancellable){
+                    ((Cancellable)queue).cancel();
+                }
+                throw (DataStoreException) obj;
+            }
+            if(obj instanceof TileReference){
+                final TileReference tile = (TileReference) obj;
+                final Point pt = tile.getPosition();
+                tiles.put(pt, read(tile));
+                if(tiles.size() == WRITE_SIZE){
+                    container.writeTiles(pyramidId, mosaicId, tiles);
+                    tiles.clear();
+                }
+            }
+        }
+        if(!tiles.isEmpty()){
+            container.writeTiles(pyramidId, mosaicId, tiles);
+        }
+    }
+
+    private static RenderedImage read(final TileReference tile) throws DataStoreException{
+        final Object input = tile.getInput();
+        if(input instanceof RenderedImage){
+            return (RenderedImage) input;
+        }
+        ImageReader reader = null;
+        try {
+            reader = tile.getImageReader();
+            return reader.read(tile.getImageIndex());
+        } catch (IOException ex) {
+            throw new DataStoreException(ex.getMessage(), ex);
+        } finally {
+            if(reader != null){
+                reader.dispose();
+            }
+        }
+    }
+
+}
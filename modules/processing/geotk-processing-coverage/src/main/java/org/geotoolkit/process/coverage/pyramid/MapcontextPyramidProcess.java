@@ -45,6 +45,7 @@ import org.opengis.referencing.crs.CoordinateReferenceSystem;
  * If a pyramid with the given CRS already exist it will be reused.
  * If a mosaic at the given scale exist it will be used.
  * Missing tiles in the mosaic will be generated.
+ * Tiles are rendered in parallel, a progress event is sent after each mosaic.
  * 
  * @author Johann Sorel (Geomatys)
  * @module pending
@@ -100,6 +101,14 @@ public final class MapcontextPyramidProcess extends AbstractProcess{
                 pyramid = container.createPyramid(crs);
             }
             
+            //estimate the number of tiles to report progress
+            long nbTile = 0;
+            for(final double scale : scales){
+                nbTile += Math.max(1, (long)(envelope.getSpan(0) / (scale*tileSize.width)+0.5)) 
+                        * Math.max(1, (long)(envelope.getSpan(1) / (scale*tileSize.height)+0.5));
+            }
+            long nbTileDone = 0;
+            
             //generate each mosaic
             for(final double scale : scales){
                 final double gridWidth  = envelope.getSpan(0) / (scale*tileSize.width);
@@ -131,11 +140,15 @@ public final class MapcontextPyramidProcess extends AbstractProcess{
                         gridSize, tileDim, upperleft, scale);
                 }
                 
-                final RenderedImage image = DefaultPortrayalService.prepareImage(
-                        canvasDef, sceneDef, viewDef, 
-                        mosaic.getGridSize(), mosaic.getTileSize(), scale);
+                if(hasMissingTiles(mosaic)){
+                    final RenderedImage image = DefaultPortrayalService.prepareImage(
+                            canvasDef, sceneDef, viewDef, mosaic);
+                    container.writeTiles(pyramid.getId(), mosaic.getId(), image, true);
+                }
                 
-                container.writeTiles(pyramid.getId(), mosaic.getId(), image, true);
+                nbTileDone += Math.max(1, (long)(gridWidth+0.5)) * Math.max(1, (long)(gridHeight+0.5));
+                fireProgressEvent(new ProcessEvent(this, "Mosaic at scale "+scale+" generated.", 
+                        (float)(nbTileDone * 100.0 / nbTile)));
             }
             
         }catch(DataStoreException ex){
@@ -147,4 +160,19 @@ public final class MapcontextPyramidProcess extends AbstractProcess{
         return outputParameters;
     }
     
+    /**
+     * @return true if at least one tile of the mosaic is missing.
+     */
+    private static boolean hasMissingTiles(final GridMosaic mosaic){
+        final Dimension gridSize = mosaic.getGridSize();
+        for(int y=0; y<gridSize.height; y++){
+            for(int x=0; x<gridSize.width; x++){
+                if(mosaic.isMissing(x, y)){
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
 }
@@ -113,6 +113,22 @@ public final class HintsPending extends Hints {
      */
     public static final Key KEY_IGNORE_SMALL_FEATURES = new Key(double[].class);
 
+    /**
+     * Maximum number of features a join operation can hold in memory.
+     * When one side of a join is larger, the join is made in several passes.
+     *
+     * Default value is 100000.
+     */
+    public static final Key JOIN_BUFFER_SIZE = new Key(Integer.class);
+
+    /**
+     * Maximum size in bytes of the features a sort operation can hold in memory.
+     * When features are larger, they are sorted by parts in temporary files.
+     *
+     * Default value is 64Mb.
+     */
+    public static final Key SORT_BUFFER_SIZE = new Key(Long.class);
+
     private HintsPending(){}
 
 }
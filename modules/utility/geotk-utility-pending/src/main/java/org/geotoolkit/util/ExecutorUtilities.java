@@ -0,0 +1,189 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.geotoolkit.lang.Static;
+
+import static org.geotoolkit.util.ArgumentChecks.*;
+
+/**
+ * Shared executor for the computations split between several threads.
+ * <p>
+ * The executor is created on first use with one thread per processor, or the
+ * number of threads given by the system property {@value #THREADS_PROPERTY}.
+ * Threads are daemon and released after a minute without work. The number of
+ * threads can be changed and the executor shut down, a new one is created on
+ * next use.
+ * </p>
+ * <p>
+ * Threads of the shared executor and of the pools created with
+ * {@link #newThreadFactory(java.lang.String) } are worker threads : tasks
+ * submitted from a worker thread run immediately in that thread. Work already
+ * running in parallel does not split again, and tasks never wait for tasks
+ * queued behind them.
+ * </p>
+ *
+ * @author Johann Sorel (Geomatys)
+ * @module pending
+ */
+public final class ExecutorUtilities extends Static {
+
+    public static final String THREADS_PROPERTY = "org.geotoolkit.executor.threads";
+
+    private static int nbThread = Math.max(1, Integer.getInteger(THREADS_PROPERTY,
+            Runtime.getRuntime().availableProcessors()));
+    private static ThreadPoolExecutor executor = null;
+
+    private ExecutorUtilities(){}
+
+    /**
+     * @return number of threads of the shared executor
+     */
+    public static synchronized int getThreadCount(){
+        return nbThread;
+    }
+
+    /**
+     * Change the number of threads of the shared executor.
+     *
+     * @param count : number of threads, at least one
+     */
+    public static synchronized void setThreadCount(final int count){
+        ensureStrictlyPositive("count", count);
+        if(executor != null){
+            if(count > nbThread){
+                executor.setMaximumPoolSize(count);
+                executor.setCorePoolSize(count);
+            }else{
+                executor.setCorePoolSize(count);
+                executor.setMaximumPoolSize(count);
+            }
+        }
+        nbThread = count;
+    }
+
+    /**
+     * @return shared executor, created if needed
+     */
+    public static synchronized ExecutorService getExecutor(){
+        if(executor == null){
+            executor = new ThreadPoolExecutor(nbThread, nbThread,
+                    60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), newThreadFactory("Geotk worker"));
+            executor.allowCoreThreadTimeOut(true);
+        }
+        return executor;
+    }
+
+    /**
+     * Stop the shared executor once the submitted tasks are done.
+     * A new executor is created on next use.
+     */
+    public static synchronized void shutdown(){
+        if(executor != null){
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    /**
+     * @return true if the current thread is a worker thread
+     */
+    public static boolean isWorkerThread(){
+        return Thread.currentThread() instanceof WorkerThread;
+    }
+
+    /**
+     * @return true if splitting work between threads is worth it : the shared
+     *      executor has several threads and the current thread is not a worker
+     */
+    public static boolean isParallelAllowed(){
+        return getThreadCount() > 1 && !isWorkerThread();
+    }
+
+    /**
+     * Submit a task to the shared executor.
+     * Called from a worker thread, the task runs before this method returns.
+     *
+     * @param task : task to run
+     * @return task future
+     */
+    public static <T> Future<T> submit(final Callable<T> task){
+        ensureNonNull("task", task);
+        if(isWorkerThread()){
+            final FutureTask<T> future = new FutureTask<T>(task);
+            future.run();
+            return future;
+        }
+        return getExecutor().submit(task);
+    }
+
+    /**
+     * Execute a task with the shared executor.
+     * Called from a worker thread, the task runs before this method returns.
+     *
+     * @param task : task to run
+     */
+    public static void execute(final Runnable task){
+        ensureNonNull("task", task);
+        if(isWorkerThread()){
+            task.run();
+        }else{
+            getExecutor().execute(task);
+        }
+    }
+
+    /**
+     * Create a factory of daemon worker threads, for pools which can not share
+     * the executor : tasks blocking on I/O or waiting for a consumer.
+     *
+     * @param name : thread names prefix
+     * @return thread factory
+     */
+    public static ThreadFactory newThreadFactory(final String name){
+        ensureNonNull("name", name);
+        return new ThreadFactory() {
+            private final AtomicInteger inc = new AtomicInteger();
+            @Override
+            public Thread newThread(final Runnable r) {
+                return new WorkerThread(r, name+" "+inc.incrementAndGet());
+            }
+        };
+    }
+
+    /**
+     * Daemon thread recognized by {@link ExecutorUtilities#isWorkerThread() }.
+     */
+    public static class WorkerThread extends Thread {
+
+        public WorkerThread(final Runnable target, final String name) {
+            super(target, name);
+            setDaemon(true);
+        }
+
+    }
+
+}
@@ -0,0 +1,87 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2012, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing the shared executor.
+ *
+ * @author Johann Sorel (Geomatys)
+ * @module pending
+ */
+public class ExecutorUtilitiesTest {
+
+    private final int nbThread = ExecutorUtilities.getThreadCount();
+
+    @After
+    public void tearDown() {
+        ExecutorUtilities.setThreadCount(nbThread);
+    }
+
+    /**
+     * Tasks submitted by a worker thread must run in that thread, a single
+     * thread executor would otherwise wait forever.
+     */
+    @Test(timeout=10000)
+    public void testNestedTasks() throws Exception {
+        ExecutorUtilities.setThreadCount(1);
+        assertFalse(ExecutorUtilities.isWorkerThread());
+
+        final Future<Thread> future = ExecutorUtilities.submit(new Callable<Thread>() {
+            @Override
+            public Thread call() throws Exception {
+                assertTrue(ExecutorUtilities.isWorkerThread());
+                assertFalse(ExecutorUtilities.isParallelAllowed());
+                final Future<Thread> nested = ExecutorUtilities.submit(new Callable<Thread>() {
+                    @Override
+                    public Thread call() {
+                        return Thread.currentThread();
+                    }
+                });
+                assertTrue(nested.isDone());
+                assertSame(Thread.currentThread(), nested.get());
+                return Thread.currentThread();
+            }
+        });
+        assertNotSame(Thread.currentThread(), future.get());
+        assertTrue(future.get().isDaemon());
+    }
+
+    @Test
+    public void testShutdown() throws Exception {
+        ExecutorUtilities.setThreadCount(2);
+        assertEquals(2, ExecutorUtilities.getThreadCount());
+        assertTrue(ExecutorUtilities.isParallelAllowed());
+
+        ExecutorUtilities.shutdown();
+        //a new executor is created on next use
+        final Future<Integer> future = ExecutorUtilities.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return 1;
+            }
+        });
+        assertEquals(Integer.valueOf(1), future.get());
+    }
+
+}